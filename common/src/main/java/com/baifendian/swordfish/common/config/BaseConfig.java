@@ -182,6 +182,37 @@ public class BaseConfig {
     return MessageFormat.format("{0}/{1}.{2}", getHdfsWorkflowDir(projectId), filename, "zip");
   }
 
+  /**
+   * hdfs 上的数据根目录
+   *
+   * @return
+   */
+  public static String getHdfsDataBasePath() {
+    return hdfsDataBasePath;
+  }
+
+  /**
+   * hdfs 上即席查询结果的目录, 每个执行一个子目录
+   *
+   * @param projectId
+   * @return
+   */
+  public static String getHdfsAdHocDir(int projectId) {
+    return String.format("%s/%d/adhoc", hdfsDataBasePath, projectId);
+  }
+
+  /**
+   * hdfs 上即席查询结果的文件名称, 每个语句一个文件
+   *
+   * @param projectId
+   * @param execId
+   * @param index
+   * @return
+   */
+  public static String getHdfsAdHocResultFilename(int projectId, int execId, int index) {
+    return String.format("%s/%d/%d.result", getHdfsAdHocDir(projectId), execId, index);
+  }
+
   /**
    * 工作流执行的目录
    *
@@ -194,6 +225,15 @@ public class BaseConfig {
     return String.format("%s/%d/%d/%d", localExecBasePath, projectId, workflowId, execId);
   }
 
+  /**
+   * 得到本地执行的根目录
+   *
+   * @return
+   */
+  public static String getLocalExecBasePath() {
+    return localExecBasePath;
+  }
+
   /**
    * 得到系统环境变量路径
    *
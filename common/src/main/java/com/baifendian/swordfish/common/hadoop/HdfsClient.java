@@ -20,10 +20,12 @@ import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.SeekableByteChannel;
 
 public class HdfsClient implements Closeable {
 
@@ -215,6 +217,162 @@ public class HdfsClient implements Closeable {
     }
   }
 
+  /**
+   * 打开 hdfs 文件的输入流, 由调用者关闭
+   *
+   * @param hdfsFile hdfs 文件路径
+   * @return {@link InputStream}
+   */
+  public InputStream open(String hdfsFile) throws HdfsException {
+    Path pathObject = new Path(hdfsFile);
+
+    try {
+      if (!isFile(pathObject)) {
+        throw new HdfsException("File " + hdfsFile + " is not a valid file");
+      }
+
+      return fileSystem.open(pathObject);
+    } catch (IOException e) {
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 打开 hdfs 文件的只读 channel, 支持随机读取, 由调用者关闭
+   *
+   * @param hdfsFile hdfs 文件路径
+   * @return {@link SeekableByteChannel}
+   */
+  public SeekableByteChannel openChannel(String hdfsFile) throws HdfsException {
+    Path pathObject = new Path(hdfsFile);
+
+    try {
+      FileStatus fileStatus = fileSystem.getFileStatus(pathObject);
+      if (!fileStatus.isFile()) {
+        throw new HdfsException("File " + hdfsFile + " is not a valid file");
+      }
+
+      return new HdfsSeekableByteChannel(fileSystem.open(pathObject), fileStatus.getLen());
+    } catch (IOException e) {
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 创建 hdfs 文件并返回输出流, 父目录不存在时会自动创建, 由调用者关闭
+   *
+   * @param hdfsFile  hdfs 文件路径
+   * @param overwrite 文件已经存在时，是否覆盖
+   * @return {@link OutputStream}
+   */
+  public OutputStream create(String hdfsFile, boolean overwrite) throws HdfsException {
+    try {
+      return fileSystem.create(new Path(hdfsFile), overwrite);
+    } catch (IOException e) {
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 打开 hdfs 文件的输入流, 从 offset 开始读取, 由调用者关闭
+   *
+   * @param hdfsFile hdfs 文件路径
+   * @param offset   开始读取的位置
+   * @return {@link InputStream}
+   */
+  public InputStream open(String hdfsFile, long offset) throws HdfsException {
+    FSDataInputStream in = (FSDataInputStream) open(hdfsFile);
+
+    try {
+      if (offset > 0) {
+        in.seek(offset);
+      }
+
+      return in;
+    } catch (IOException e) {
+      IOUtils.closeQuietly(in);
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 打开 hdfs 文件用于追加, 由调用者关闭
+   *
+   * @param hdfsFile hdfs 文件路径, 必须已经存在
+   * @return {@link OutputStream}
+   */
+  public OutputStream append(String hdfsFile) throws HdfsException {
+    try {
+      return fileSystem.append(new Path(hdfsFile));
+    } catch (IOException e) {
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 等待 hdfs 文件被关闭: 截断后最后一个块的恢复, 或者上次写入中断后租约的释放. 文件没有关闭时不能追加, 长度也可能还会变化 <p>
+   *
+   * 没有关闭时会先触发一次租约恢复, 正在写入这个文件的其它客户端会因此失败, 只能用于不会并发写入的文件.
+   *
+   * @param hdfsFile hdfs 文件路径
+   * @param timeout  最长等待时间, 单位: 毫秒
+   * @return 文件已经关闭或者不存在时为 true, 超时为 false
+   */
+  public boolean waitFileClosed(String hdfsFile, long timeout) throws HdfsException {
+    if (!(fileSystem instanceof DistributedFileSystem)) {
+      return true;
+    }
+
+    DistributedFileSystem dfs = (DistributedFileSystem) fileSystem;
+    Path path = new Path(hdfsFile);
+    long deadline = System.currentTimeMillis() + timeout;
+
+    try {
+      if (dfs.isFileClosed(path) || dfs.recoverLease(path)) {
+        return true;
+      }
+
+      while (System.currentTimeMillis() < deadline) {
+        Thread.sleep(500);
+
+        if (dfs.isFileClosed(path)) {
+          return true;
+        }
+      }
+
+      return false;
+    } catch (FileNotFoundException e) {
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (IOException e) {
+      LOGGER.error("Operator Hdfs exception", e);
+      throw new HdfsException("Operator Hdfs exception", e);
+    }
+  }
+
+  /**
+   * 将 hdfs 文件截断到指定的长度
+   *
+   * @param hdfsFile  hdfs 文件路径
+   * @param newLength 新的长度
+   * @return 为 true 时截断已经完成; 为 false 时最后一个块还在恢复中, 完成之前不能追加, 见 {@link #waitFileClosed(String, long)}
+   */
+  public boolean truncate(String hdfsFile, long newLength) throws HdfsException {
+    try {
+      return fileSystem.truncate(new Path(hdfsFile), newLength);
+    } catch (IOException e) {
+      LOGGER.error("Truncate file exception", e);
+      throw new HdfsException("Truncate file exception", e);
+    }
+  }
+
   /**
    * 判断路径是否是一个已经存在的文件
    *
@@ -266,6 +424,21 @@ public class HdfsClient implements Closeable {
     }
   }
 
+  /**
+   * 设置目录或文件的修改时间, 访问时间不变
+   *
+   * @param path  hdfs 目录和文件路径
+   * @param mtime 修改时间, 毫秒
+   */
+  public void setModificationTime(String path, long mtime) throws HdfsException {
+    try {
+      fileSystem.setTimes(new Path(path), mtime, -1);
+    } catch (IOException e) {
+      LOGGER.error("Set times exception", e);
+      throw new HdfsException("Set times exception", e);
+    }
+  }
+
   /**
    * 创建目录
    *
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.hadoop;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内的 hdfs 文件传输, 替代 hdfs dfs -get/-put 子进程 <p>
+ *
+ * 使用 {@link HdfsClient} 已有的 FileSystem, 大缓冲区流式拷贝, 多个文件在有界线程池中并发传输; hdfs 读取时校验块的 checksum,
+ * 传输完成后校验长度与源文件一致.
+ */
+public class HdfsTransfer {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(HdfsTransfer.class);
+
+  /**
+   * 默认的并发数
+   */
+  private static final int DEFAULT_PARALLELISM = 8;
+
+  /**
+   * 默认的缓冲区大小, 1M
+   */
+  private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * HdfsTransfer 实例
+   */
+  private static volatile HdfsTransfer instance;
+
+  /**
+   * 传输的线程池
+   */
+  private final ExecutorService executorService;
+
+  /**
+   * 缓冲区大小
+   */
+  private final int bufferSize;
+
+  public HdfsTransfer(int parallelism, int bufferSize) {
+    this.bufferSize = bufferSize;
+    this.executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "HdfsTransfer-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * 获取 HdfsTransfer 实例 (单例), 需要先初始化 {@link HdfsClient}
+   *
+   * @return {@link HdfsTransfer}
+   */
+  public static HdfsTransfer getInstance() {
+    if (instance == null) {
+      synchronized (HdfsTransfer.class) {
+        if (instance == null) {
+          instance = new HdfsTransfer(DEFAULT_PARALLELISM, DEFAULT_BUFFER_SIZE);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * 下载一个 hdfs 文件到本地, 在调用线程中执行
+   *
+   * @param hdfsFile  hdfs 文件路径
+   * @param localFile 本地文件, 已经存在时覆盖
+   */
+  public void download(String hdfsFile, File localFile) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+    FileStatus fileStatus = hdfsClient.getFileStatus(hdfsFile);
+
+    File parent = localFile.getParentFile();
+    if (parent != null) {
+      FileUtils.forceMkdir(parent);
+    }
+
+    try (InputStream in = hdfsClient.open(hdfsFile);
+         OutputStream out = new FileOutputStream(localFile)) {
+      copy(in, out);
+    }
+
+    verifyLength(hdfsFile, fileStatus.getLen(), localFile.getPath(), localFile.length());
+  }
+
+  /**
+   * 上传一个本地文件到 hdfs, 在调用线程中执行
+   *
+   * @param localFile 本地文件
+   * @param hdfsFile  hdfs 文件路径
+   * @param overwrite 目标文件已经存在时, 是否覆盖
+   */
+  public void upload(File localFile, String hdfsFile, boolean overwrite) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    try (InputStream in = new FileInputStream(localFile);
+         OutputStream out = hdfsClient.create(hdfsFile, overwrite)) {
+      copy(in, out);
+    }
+
+    verifyLength(localFile.getPath(), localFile.length(), hdfsFile, hdfsClient.getFileStatus(hdfsFile).getLen());
+  }
+
+  /**
+   * 将输入流直接写入 hdfs 文件, 不经过本地磁盘, 在调用线程中执行
+   *
+   * @param in       输入流, 不会关闭
+   * @param hdfsFile hdfs 文件路径
+   * @param append   为 true 时追加到已有文件的末尾, 否则创建或覆盖
+   * @return 写入的字节数
+   */
+  public long upload(InputStream in, String hdfsFile, boolean append) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    try (OutputStream out = append ? hdfsClient.append(hdfsFile) : hdfsClient.create(hdfsFile, true)) {
+      return IOUtils.copyLarge(in, out, new byte[bufferSize]);
+    }
+  }
+
+  /**
+   * 将 hdfs 文件的 [offset, offset + length) 直接写到输出流, 不经过本地磁盘, 在调用线程中执行
+   *
+   * @param hdfsFile hdfs 文件路径
+   * @param offset   开始的位置
+   * @param length   长度
+   * @param out      输出流, 不会关闭
+   */
+  public void download(String hdfsFile, long offset, long length, OutputStream out) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    try (InputStream in = hdfsClient.open(hdfsFile, offset)) {
+      long copied = IOUtils.copyLarge(in, out, 0, length, new byte[bufferSize]);
+      verifyLength(hdfsFile, length, "stream", copied);
+    }
+  }
+
+  /**
+   * 并发下载多个文件, 全部完成后返回, 任意一个失败则抛出异常
+   *
+   * @param files hdfs 文件路径 -> 本地文件
+   */
+  public void downloadAll(Map<String, File> files) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (final Map.Entry<String, File> entry : files.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          download(entry.getKey(), entry.getValue());
+          return null;
+        }
+      });
+    }
+    runAll(tasks);
+  }
+
+  /**
+   * 并发上传多个文件, 全部完成后返回, 任意一个失败则抛出异常
+   *
+   * @param files     本地文件 -> hdfs 文件路径
+   * @param overwrite 目标文件已经存在时, 是否覆盖
+   */
+  public void uploadAll(Map<File, String> files, final boolean overwrite) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (final Map.Entry<File, String> entry : files.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          upload(entry.getKey(), entry.getValue(), overwrite);
+          return null;
+        }
+      });
+    }
+    runAll(tasks);
+  }
+
+  /**
+   * 在传输线程池中并发执行多个任务, 全部完成后返回, 任意一个失败则抛出异常
+   *
+   * @param tasks 任务列表
+   */
+  public void runAll(List<? extends Callable<?>> tasks) throws IOException {
+    // 只有一个任务时直接在调用线程中执行
+    if (tasks.size() == 1) {
+      try {
+        tasks.get(0).call();
+      } catch (IOException | RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+      return;
+    }
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (Callable<?> task : tasks) {
+      futures.add(executorService.submit(task));
+    }
+
+    Throwable error = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (error == null) {
+          error = e.getCause();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (Future<?> f : futures) {
+          f.cancel(true);
+        }
+        throw new IOException("hdfs transfer interrupted", e);
+      }
+    }
+
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error != null) {
+      throw new IOException(error);
+    }
+  }
+
+  private void copy(InputStream in, OutputStream out) throws IOException {
+    IOUtils.copyLarge(in, out, new byte[bufferSize]);
+  }
+
+  /**
+   * 校验传输后的长度 <p>
+   */
+  private static void verifyLength(String src, long srcLen, String dst, long dstLen) throws IOException {
+    if (srcLen != dstLen) {
+      LOGGER.error("transfer {} -> {} length mismatch, {} != {}", src, dst, srcLen, dstLen);
+      throw new IOException(String.format("transfer %s -> %s length mismatch, %d != %d", src, dst, srcLen, dstLen));
+    }
+  }
+}
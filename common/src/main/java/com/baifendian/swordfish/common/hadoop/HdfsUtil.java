@@ -16,16 +16,18 @@
 package com.baifendian.swordfish.common.hadoop;
 
 import com.baifendian.swordfish.common.job.exception.ExecException;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FileStatus;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class HdfsUtil {
 
   /**
-   * 将 hdfs 上的文件或目录下载到本地
+   * 将 hdfs 上的文件或目录下载到本地, 目录下的文件并发下载
    *
    * @param src hdfs 上的文件或者是目录
    * @param dst 本地目录, 如果不存在会报错
@@ -34,31 +36,28 @@ public class HdfsUtil {
 
     File dstFile = new File(dst);
     if (!dstFile.isDirectory()) {
-      String msg = String.format("Destination: {} must be a dir.", dst);
+      String msg = String.format("Destination: %s must be a dir.", dst);
       throw new ExecException(msg);
     }
 
-    String cmd = "";
     HdfsClient hdfsClient = HdfsClient.getInstance();
     FileStatus fileStatus = hdfsClient.getFileStatus(src);
+    Map<String, File> files = new HashMap<>();
     if (fileStatus.isDirectory()) {
-      FileStatus[] fileStatuses = hdfsClient.listFileStatus(src);
-      if (fileStatuses.length > 0) {
-        cmd = String.format("hdfs dfs -get %s/* %s", src, dst);
+      for (FileStatus child : hdfsClient.listFileStatus(src)) {
+        if (child.isFile()) {
+          files.put(child.getPath().toString(), new File(dstFile, child.getPath().getName()));
+        } else {
+          // 子目录递归下载
+          File childDir = new File(dstFile, child.getPath().getName());
+          FileUtils.forceMkdir(childDir);
+          GetFile(child.getPath().toString(), childDir.getPath());
+        }
       }
     } else {
-      cmd = String.format("hdfs dfs -get %s %s", src, dst);
+      files.put(src, new File(dstFile, fileStatus.getPath().getName()));
     }
 
-    ProcessBuilder processBuilder = new ProcessBuilder();
-    processBuilder.command("sh", "-c", cmd);
-    processBuilder.redirectErrorStream(true);
-    Process process = processBuilder.start();
-
-    int ret = process.waitFor();
-    if (ret != 0) {
-      String msg = String.format("call cmd %s error, %s", cmd, IOUtils.toString(process.getInputStream(), "UTF-8"));
-      throw new ExecException(msg);
-    }
+    HdfsTransfer.getInstance().downloadAll(files);
   }
 }
@@ -35,7 +35,7 @@ public class ConnectionInfo {
     }
     if (other instanceof ConnectionInfo) {
       ConnectionInfo that = (ConnectionInfo) other;
-      return Objects.equal(this.user, that.user) && this.password == that.password && Objects.equal(this.uri, that.uri);
+      return Objects.equal(this.user, that.user) && Objects.equal(this.password, that.password) && Objects.equal(this.uri, that.uri);
     }
     return false;
   }
@@ -20,8 +20,21 @@ import org.apache.hive.jdbc.HiveConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Created by wenting on 9/8/16.
+ *
+ * 按用户 ({@link ConnectionInfo}) 保持预热的连接: 最近使用过的 key 至少保留 minIdlePerKey 个空闲连接, 借出后不足时异步补充;
+ * 借出时检测有效性, 连接异常时只清理对应的 key; 长时间没有使用的 key 整体清理. <p>
  */
 public class HiveConnectionClient {
 
@@ -45,9 +58,9 @@ public class HiveConnectionClient {
   private int maxIdle = 100;
 
   /**
-   * 连接池中最少空闲的连接数,默认为0
+   * 每个 key 保持的最少空闲连接数, 默认为1
    */
-  private int minIdle = 0;
+  private int minIdlePerKey = 1;
 
   /**
    * 当连接池资源耗尽时，调用者最大阻塞的时间
@@ -55,15 +68,72 @@ public class HiveConnectionClient {
   private int maxWait = 2000;
 
   /**
-   * 空闲链接”检测线程，检测的周期，毫秒数，默认位3min，-1表示关闭空闲检测
+   * 空闲链接”检测线程，检测的周期，毫秒数，默认位1min，-1表示关闭空闲检测
+   */
+  private int timeBetweenEvictionRunsMillis = 60000;
+
+  /**
+   * 连接空闲多久后可以被回收, 默认为10min
    */
-  private int timeBetweenEvictionRunsMillis = 180000;
+  private int minEvictableIdleTimeMillis = 600000;
 
   /**
    * 空闲时是否进行连接有效性验证，如果验证失败则移除，默认为true
    */
   private boolean testWhileIdle = true;
 
+  /**
+   * 借出时是否进行连接有效性验证, 默认为true
+   */
+  private boolean testOnBorrow = true;
+
+  /**
+   * key 多久没有使用后不再预热, 默认为30min
+   */
+  private long coldKeyMillis = 1800000;
+
+  /**
+   * {@link HiveConnectionPoolFactory}
+   */
+  private HiveConnectionPoolFactory clientFactory;
+
+  /**
+   * 最近使用的 key -> 最后借出时间
+   */
+  private final Map<ConnectionInfo, Long> hotKeys = new ConcurrentHashMap<>();
+
+  /**
+   * 预热和清理的线程
+   */
+  private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "HiveConnection-Maintainer");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * 借出的次数
+   */
+  private final AtomicLong borrowCount = new AtomicLong();
+
+  /**
+   * 借出的总耗时, 单位: 纳秒
+   */
+  private final AtomicLong borrowNanos = new AtomicLong();
+
+  /**
+   * 借出的最大耗时, 单位: 纳秒
+   */
+  private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+  /**
+   * 连接 -> 在该连接 (hive session) 上已经执行过的会话级语句, 如 add jar, create temporary function
+   */
+  private final Map<HiveConnection, Map<String, String>> sessionStatements = Collections.synchronizedMap(new WeakHashMap<HiveConnection, Map<String, String>>());
+
   private static HiveConnectionClient hiveConnectionClient;
 
   private HiveConnectionClient() {
@@ -72,6 +142,17 @@ public class HiveConnectionClient {
     } catch (Exception e) {
       System.out.print(e.getMessage());
     }
+
+    maintainer.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          cleanColdKeys();
+        } catch (Exception e) {
+          LOGGER.error("clean cold hive connection error", e);
+        }
+      }
+    }, 1, 1, TimeUnit.MINUTES);
   }
 
   public static HiveConnectionClient getInstance() {
@@ -90,16 +171,25 @@ public class HiveConnectionClient {
     GenericKeyedObjectPool.Config poolConfig = new GenericKeyedObjectPool.Config();
     poolConfig.maxActive = maxActive;
     poolConfig.maxIdle = maxIdle;
-    poolConfig.minIdle = minIdle;
+    poolConfig.minIdle = minIdlePerKey;
     poolConfig.maxWait = maxWait;
     poolConfig.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+    poolConfig.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
     poolConfig.testWhileIdle = testWhileIdle;
-    HiveConnectionPoolFactory clientFactory = new HiveConnectionPoolFactory();
+    poolConfig.testOnBorrow = testOnBorrow;
+    clientFactory = new HiveConnectionPoolFactory(timeout / 1000);
     return new GenericKeyedObjectPool(clientFactory, poolConfig);
   }
 
   public HiveConnection borrowClient(ConnectionInfo connectionInfo) throws Exception {
-    return (HiveConnection) pool.borrowObject(connectionInfo);
+    long start = System.nanoTime();
+    HiveConnection connection = (HiveConnection) pool.borrowObject(connectionInfo);
+    recordBorrow(System.nanoTime() - start);
+
+    hotKeys.put(connectionInfo, System.currentTimeMillis());
+    prefetch(connectionInfo);
+
+    return connection;
   }
 
   public void returnClient(ConnectionInfo connectionInfo, HiveConnection client) {
@@ -113,6 +203,9 @@ public class HiveConnectionClient {
   }
 
   public void invalidateObject(ConnectionInfo connectionInfo, HiveConnection client) {
+    if (client != null) {
+      sessionStatements.remove(client);
+    }
     try {
       pool.invalidateObject(connectionInfo, client);
     } catch (Exception e) {
@@ -120,7 +213,121 @@ public class HiveConnectionClient {
     }
   }
 
+  /**
+   * 获取连接上已经执行过的会话级语句, key 为语句的标识 (如函数名), value 为语句; 连接只会被一个使用者借出, 借出期间可以直接修改 <p>
+   */
+  public Map<String, String> getSessionStatements(HiveConnection client) {
+    synchronized (sessionStatements) {
+      Map<String, String> statements = sessionStatements.get(client);
+      if (statements == null) {
+        statements = new ConcurrentHashMap<>();
+        sessionStatements.put(client, statements);
+      }
+      return statements;
+    }
+  }
+
+  /**
+   * 清理某个 key 的所有空闲连接, 用于该 key 的连接出现网络异常时 <p>
+   */
+  public void clear(ConnectionInfo connectionInfo) {
+    pool.clear(connectionInfo);
+  }
+
   public void clear() {
     pool.clear();
   }
+
+  /**
+   * 借出的次数 <p>
+   */
+  public long getBorrowCount() {
+    return borrowCount.get();
+  }
+
+  /**
+   * 平均借出耗时, 单位: 毫秒 <p>
+   */
+  public double getAvgBorrowMillis() {
+    long count = borrowCount.get();
+    return count == 0 ? 0 : borrowNanos.get() / 1e6 / count;
+  }
+
+  /**
+   * 最大借出耗时, 单位: 毫秒 <p>
+   */
+  public double getMaxBorrowMillis() {
+    return maxBorrowNanos.get() / 1e6;
+  }
+
+  /**
+   * 与 HiveServer2 握手 (建立连接) 的次数 <p>
+   */
+  public long getHandshakeCount() {
+    return clientFactory.getHandshakeCount();
+  }
+
+  /**
+   * 有效性检测失败的次数 <p>
+   */
+  public long getValidationFailureCount() {
+    return clientFactory.getValidationFailureCount();
+  }
+
+  /**
+   * 预热的 key 数目 <p>
+   */
+  public int getHotKeyCount() {
+    return hotKeys.size();
+  }
+
+  private void recordBorrow(long nanos) {
+    borrowCount.incrementAndGet();
+    borrowNanos.addAndGet(nanos);
+
+    long max;
+    while (nanos > (max = maxBorrowNanos.get())) {
+      if (maxBorrowNanos.compareAndSet(max, nanos)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * 空闲连接不足时, 异步建立一个, 下一次借出不需要等待握手 <p>
+   */
+  private void prefetch(final ConnectionInfo connectionInfo) {
+    if (pool.getNumIdle(connectionInfo) >= minIdlePerKey) {
+      return;
+    }
+
+    maintainer.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (pool.getNumIdle(connectionInfo) < minIdlePerKey) {
+            pool.addObject(connectionInfo);
+          }
+        } catch (Exception e) {
+          LOGGER.warn("prefetch hive connection for user " + connectionInfo.getUser() + " error", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * 清理长时间没有使用的 key, 不再为它们保持空闲连接 <p>
+   */
+  private void cleanColdKeys() {
+    long now = System.currentTimeMillis();
+    for (Map.Entry<ConnectionInfo, Long> entry : hotKeys.entrySet()) {
+      if (now - entry.getValue() > coldKeyMillis && pool.getNumActive(entry.getKey()) == 0) {
+        hotKeys.remove(entry.getKey());
+        pool.clear(entry.getKey());
+      }
+    }
+
+    LOGGER.debug("hive connection pool, hot keys:{}, borrow:{}, avg borrow:{}ms, max borrow:{}ms, handshake:{}, validation failure:{}",
+        hotKeys.size(), getBorrowCount(), getAvgBorrowMillis(), getMaxBorrowMillis(), getHandshakeCount(), getValidationFailureCount());
+  }
 }
@@ -17,36 +17,60 @@ package com.baifendian.swordfish.common.hive;
 
 import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
 import org.apache.hive.jdbc.HiveConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by wenting on 9/8/16.
  */
 public class HiveConnectionPoolFactory extends BaseKeyedPoolableObjectFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HiveConnectionPoolFactory.class);
+
+  /**
+   * 有效性检测的超时时间, 单位: 秒
+   */
+  private final int validationTimeout;
+
+  /**
+   * 建立连接 (与 HiveServer2 握手) 的次数
+   */
+  private final AtomicLong handshakeCount = new AtomicLong();
+
+  /**
+   * 有效性检测失败的次数
+   */
+  private final AtomicLong validationFailureCount = new AtomicLong();
+
+  public HiveConnectionPoolFactory() {
+    this(3);
+  }
+
+  public HiveConnectionPoolFactory(int validationTimeout) {
+    this.validationTimeout = validationTimeout;
+  }
+
   /**
    * 生成对象
    */
   @Override
   public HiveConnection makeObject(Object object) throws Exception {
     // 生成client对象
-    if (object != null) {
-      ConnectionInfo connectionInfo = (ConnectionInfo) object;
-      java.util.Properties info = new java.util.Properties();
-      if (connectionInfo.getUser() != null) {
-        info.put("user", connectionInfo.getUser());
-      }
-      if (connectionInfo.getPassword() != null) {
-        info.put("password", connectionInfo.getPassword());
-      }
-      try {
-        HiveConnection connection = new HiveConnection(connectionInfo.getUri(), info);
-        return connection;
-      } catch (SQLException e) {
-        e.printStackTrace();
-      }
+    ConnectionInfo connectionInfo = (ConnectionInfo) object;
+    java.util.Properties info = new java.util.Properties();
+    if (connectionInfo.getUser() != null) {
+      info.put("user", connectionInfo.getUser());
+    }
+    if (connectionInfo.getPassword() != null) {
+      info.put("password", connectionInfo.getPassword());
     }
-    return null;
+    // 建立失败时抛出异常, 不能返回 null 给连接池
+    HiveConnection connection = new HiveConnection(connectionInfo.getUri(), info);
+    handshakeCount.incrementAndGet();
+    return connection;
   }
 
   /**
@@ -54,20 +78,31 @@ public class HiveConnectionPoolFactory extends BaseKeyedPoolableObjectFactory {
    */
   @Override
   public void destroyObject(Object key, Object obj) throws Exception {
-    HiveConnection hiveConnection = (HiveConnection) obj;
     ((HiveConnection) obj).close();
   }
 
+  /**
+   * 检测连接是否可用, isValid 只发一次 GetInfo 请求, 不会提交查询
+   */
   @Override
   public boolean validateObject(Object key, Object obj) {
     HiveConnection hiveConnection = (HiveConnection) obj;
     try {
-      boolean isClosed = hiveConnection.isClosed();
-      return !isClosed;
+      if (!hiveConnection.isClosed() && hiveConnection.isValid(validationTimeout)) {
+        return true;
+      }
     } catch (SQLException e) {
-      e.printStackTrace();
+      LOGGER.warn("validate hive connection error", e);
     }
+    validationFailureCount.incrementAndGet();
     return false;
   }
 
+  public long getHandshakeCount() {
+    return handshakeCount.get();
+  }
+
+  public long getValidationFailureCount() {
+    return validationFailureCount.get();
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.baifendian.swordfish.common.job;
 
+import com.baifendian.swordfish.common.job.logger.JobLogger;
+
 import org.slf4j.Logger;
 import java.io.IOException;
 import java.util.List;
@@ -113,6 +115,26 @@ public abstract class AbstractJob implements Job {
 
   public abstract void initJobParams() throws IOException;
 
+  /**
+   * 输出一行进程的输出, 作业日志使用异步批量写入 <p>
+   */
+  protected void logOutput(String line) {
+    if (logger instanceof JobLogger) {
+      ((JobLogger) logger).infoOutput(line);
+    } else {
+      logger.info("{}", line);
+    }
+  }
+
+  /**
+   * 等待进程的输出写完 <p>
+   */
+  protected void flushOutput() {
+    if (logger instanceof JobLogger) {
+      ((JobLogger) logger).flushOutput();
+    }
+  }
+
   public String getWorkingDirectory() {
     String workingDir = props.getWorkDir();
     if (workingDir == null) {
@@ -39,6 +39,11 @@ public abstract class AbstractProcessJob extends AbstractJob {
 
   protected final long KILL_TIME_MS = 5000;
 
+  /**
+   * 进程启动和结束的监听, 用于按 flow 统计子进程的资源
+   */
+  private static volatile ProcessListener processListener;
+
   /**
    * @param jobIdLog  生成的作业idLog
    * @param props  作业配置信息,各类作业根据此配置信息生成具体的作业
@@ -49,6 +54,13 @@ public abstract class AbstractProcessJob extends AbstractJob {
     completeLatch = new CountDownLatch(1);
   }
 
+  /**
+   * 设置进程启动和结束的监听 <p>
+   */
+  public static void setProcessListener(ProcessListener listener) {
+    processListener = listener;
+  }
+
   /**
    * 创建 ProcessBuilder <p>
    *
@@ -103,8 +115,19 @@ public abstract class AbstractProcessJob extends AbstractJob {
       // 打印 进程的启动命令行
       printCommand(processBuilder);
 
-      readProcessOutput();
-      exitCode = process.waitFor();
+      ProcessListener listener = processListener;
+      int processId = (listener != null) ? getProcessId(process) : 0;
+      if (processId != 0) {
+        listener.onStart(props, processId);
+      }
+      try {
+        readProcessOutput();
+        exitCode = process.waitFor();
+      } finally {
+        if (processId != 0) {
+          listener.onExit(props, processId);
+        }
+      }
 
       completeLatch.countDown();
     } catch (Exception e) {
@@ -227,10 +250,12 @@ public abstract class AbstractProcessJob extends AbstractJob {
           reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
           String line;
           while ((line = reader.readLine()) != null) {
-            logger.info("{}", line);
+            logOutput(line);
           }
         } catch (Exception e) {
           logger.error("{}", e.getMessage(), e);
+        } finally {
+          flushOutput();
         }
       }
     }, threadLoggerInfoName);
@@ -245,4 +270,19 @@ public abstract class AbstractProcessJob extends AbstractJob {
     }
   }
 
+  /**
+   * 进程启动和结束的监听 <p>
+   */
+  public interface ProcessListener {
+
+    /**
+     * 进程已启动
+     */
+    void onStart(JobProps props, int processId);
+
+    /**
+     * 进程已结束
+     */
+    void onExit(JobProps props, int processId);
+  }
 }
@@ -54,6 +54,31 @@ public class ExecResult {
    */
   private List<String> logs = new ArrayList<>();
 
+  /**
+   * 结果写入的文件, 为空表示结果在 values 中
+   */
+  private String resultFile;
+
+  /**
+   * 返回的行数
+   */
+  private int rowCount;
+
+  /**
+   * 结果是否因为超出限制被截断
+   */
+  private boolean truncated;
+
+  /**
+   * 结果文件行偏移索引的间隔, 0 表示没有索引
+   */
+  private int offsetInterval;
+
+  /**
+   * 结果文件中第 i * offsetInterval 行的字节偏移
+   */
+  private List<Long> offsets;
+
   /**
    * getter method
    *
@@ -161,4 +186,44 @@ public class ExecResult {
   public void setLogs(List<String> logs) {
     this.logs = logs;
   }
+
+  public String getResultFile() {
+    return resultFile;
+  }
+
+  public void setResultFile(String resultFile) {
+    this.resultFile = resultFile;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public void setRowCount(int rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+
+  public int getOffsetInterval() {
+    return offsetInterval;
+  }
+
+  public void setOffsetInterval(int offsetInterval) {
+    this.offsetInterval = offsetInterval;
+  }
+
+  public List<Long> getOffsets() {
+    return offsets;
+  }
+
+  public void setOffsets(List<Long> offsets) {
+    this.offsets = offsets;
+  }
 }
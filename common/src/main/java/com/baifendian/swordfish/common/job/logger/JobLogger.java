@@ -19,19 +19,68 @@ import com.baifendian.swordfish.common.utils.StructuredArguments;
 
 import org.slf4j.Logger;
 import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
 
+/**
+ * 作业的日志, 在每条日志前加上作业 id <p>
+ *
+ * 作业 id 的前缀和 marker 在构造时生成一次, 每次调用先判断日志级别, 级别未开启时不做任何拼接.
+ * 进程的输出行通过 {@link JobOutputAppender} 异步批量写入, 每个作业一个队列, 日志的线程名仍是读取输出的线程.
+ */
 public class JobLogger implements Logger {
 
-  private Logger logger;
-  private String jobIdLog;
+  private final Logger logger;
+
+  private final String jobIdLog;
+
+  /**
+   * 日志前缀, 如 "[jobId=xxx] "
+   */
+  private final String prefix;
+
+  /**
+   * 带作业 id 的 marker, 供按 marker 处理的 appender 使用
+   */
+  private final Marker marker;
+
+  /**
+   * 异步输出的队列, 第一次输出时由 {@link JobOutputAppender} 创建
+   */
+  volatile JobOutputAppender.JobOutput output;
 
   public JobLogger(String jobIdLog, Logger logger) {
     this.jobIdLog = jobIdLog;
     this.logger = logger;
+    this.prefix = StructuredArguments.jobValue(jobIdLog) + " ";
+    this.marker = MarkerFactory.getDetachedMarker(StructuredArguments.keyValue("jobId", jobIdLog));
+  }
+
+  public String getJobIdLog() {
+    return jobIdLog;
+  }
+
+  /**
+   * 异步输出一行进程的输出, 级别为 info <p>
+   */
+  public void infoOutput(String line) {
+    if (logger.isInfoEnabled(marker)) {
+      JobOutputAppender.getInstance().append(this, line);
+    }
+  }
+
+  /**
+   * 等待之前异步输出的行写完 <p>
+   */
+  public void flushOutput() {
+    JobOutputAppender.getInstance().flush(this);
   }
 
-  private String addJobId(String msg) {
-    return String.format("%s %s", StructuredArguments.jobValue(jobIdLog), msg);
+  /**
+   * 同步写入一行进程的输出, 由 {@link JobOutputAppender} 调用 <p>
+   */
+  void writeOutput(String line) {
+    // 输出行不作为格式串, 避免其中的 "{}" 被当作占位符
+    logger.info(marker, "{}{}", prefix, line);
   }
 
   @Override
@@ -41,243 +90,401 @@ public class JobLogger implements Logger {
 
   @Override
   public boolean isTraceEnabled() {
-    return logger.isTraceEnabled();
+    return logger.isTraceEnabled(marker);
   }
 
   @Override
   public void trace(String msg) {
-    logger.trace(addJobId(msg));
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void trace(String format, Object arg) {
-    logger.trace(addJobId(format), arg);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void trace(String format, Object arg1, Object arg2) {
-    logger.trace(addJobId(format), arg1, arg2);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void trace(String format, Object... arguments) {
-    logger.trace(addJobId(format), arguments);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void trace(String msg, Throwable t) {
-    logger.trace(addJobId(msg), t);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isTraceEnabled(Marker marker) {
     return logger.isTraceEnabled(marker);
   }
 
+  @Override
   public void trace(Marker marker, String msg) {
-    logger.trace(marker, addJobId(msg));
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void trace(Marker marker, String format, Object arg) {
-    logger.trace(marker, addJobId(format), arg);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void trace(Marker marker, String format, Object arg1, Object arg2) {
-    logger.trace(marker, addJobId(format), arg1, arg2);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arg1, arg2);
+    }
   }
 
-  public void trace(Marker marker, String format, Object... argArray) {
-    logger.trace(marker, addJobId(format), argArray);
+  @Override
+  public void trace(Marker marker, String format, Object... arguments) {
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void trace(Marker marker, String msg, Throwable t) {
-    logger.trace(marker, addJobId(msg), t);
+    if (logger.isTraceEnabled(marker)) {
+      logger.trace(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isDebugEnabled() {
-    return logger.isDebugEnabled();
+    return logger.isDebugEnabled(marker);
   }
 
+  @Override
   public void debug(String msg) {
-    logger.debug(addJobId(msg));
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void debug(String format, Object arg) {
-    logger.debug(addJobId(format), arg);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void debug(String format, Object arg1, Object arg2) {
-    logger.debug(addJobId(format), arg1, arg2);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void debug(String format, Object... arguments) {
-    logger.debug(addJobId(format), arguments);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void debug(String msg, Throwable t) {
-    logger.debug(addJobId(msg), t);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isDebugEnabled(Marker marker) {
-    return logger.isDebugEnabled();
+    return logger.isDebugEnabled(marker);
   }
 
+  @Override
   public void debug(Marker marker, String msg) {
-    logger.debug(marker, addJobId(msg));
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void debug(Marker marker, String format, Object arg) {
-    logger.debug(marker, addJobId(format), arg);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void debug(Marker marker, String format, Object arg1, Object arg2) {
-    logger.debug(marker, addJobId(format), arg1, arg2);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void debug(Marker marker, String format, Object... arguments) {
-    logger.debug(marker, addJobId(format), arguments);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void debug(Marker marker, String msg, Throwable t) {
-    logger.debug(marker, addJobId(msg), t);
+    if (logger.isDebugEnabled(marker)) {
+      logger.debug(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isInfoEnabled() {
-    return logger.isInfoEnabled();
+    return logger.isInfoEnabled(marker);
   }
 
+  @Override
   public void info(String msg) {
-    logger.info(addJobId(msg));
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void info(String format, Object arg) {
-    logger.info(addJobId(format), arg);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void info(String format, Object arg1, Object arg2) {
-    logger.info(addJobId(format), arg1, arg2);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void info(String format, Object... arguments) {
-    logger.info(addJobId(format), arguments);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void info(String msg, Throwable t) {
-    logger.info(addJobId(msg), t);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isInfoEnabled(Marker marker) {
-    return logger.isInfoEnabled();
+    return logger.isInfoEnabled(marker);
   }
 
+  @Override
   public void info(Marker marker, String msg) {
-    logger.info(marker, addJobId(msg));
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void info(Marker marker, String format, Object arg) {
-    logger.info(marker, addJobId(format), arg);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void info(Marker marker, String format, Object arg1, Object arg2) {
-    logger.info(marker, addJobId(format), arg1, arg2);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void info(Marker marker, String format, Object... arguments) {
-    logger.info(marker, addJobId(format), arguments);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void info(Marker marker, String msg, Throwable t) {
-    logger.info(marker, addJobId(msg), t);
+    if (logger.isInfoEnabled(marker)) {
+      logger.info(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isWarnEnabled() {
-    return logger.isWarnEnabled();
+    return logger.isWarnEnabled(marker);
   }
 
+  @Override
   public void warn(String msg) {
-    logger.warn(addJobId(msg));
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void warn(String format, Object arg) {
-    logger.warn(addJobId(format), arg);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void warn(String format, Object arg1, Object arg2) {
-    logger.warn(addJobId(format), arg1, arg2);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void warn(String format, Object... arguments) {
-    logger.warn(addJobId(format), arguments);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void warn(String msg, Throwable t) {
-    logger.warn(addJobId(msg), t);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isWarnEnabled(Marker marker) {
-    return logger.isWarnEnabled();
+    return logger.isWarnEnabled(marker);
   }
 
+  @Override
   public void warn(Marker marker, String msg) {
-    logger.warn(marker, addJobId(msg));
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void warn(Marker marker, String format, Object arg) {
-    logger.warn(marker, addJobId(format), arg);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void warn(Marker marker, String format, Object arg1, Object arg2) {
-    logger.warn(marker, addJobId(format), arg1, arg2);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void warn(Marker marker, String format, Object... arguments) {
-    logger.warn(marker, addJobId(format), arguments);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void warn(Marker marker, String msg, Throwable t) {
-    logger.warn(marker, addJobId(msg), t);
+    if (logger.isWarnEnabled(marker)) {
+      logger.warn(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isErrorEnabled() {
-    return logger.isErrorEnabled();
+    return logger.isErrorEnabled(marker);
   }
 
+  @Override
   public void error(String msg) {
-    logger.error(addJobId(msg));
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void error(String format, Object arg) {
-    logger.error(addJobId(format), arg);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void error(String format, Object arg1, Object arg2) {
-    logger.error(addJobId(format), arg1, arg2);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void error(String format, Object... arguments) {
-    logger.error(addJobId(format), arguments);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void error(String msg, Throwable t) {
-    logger.error(addJobId(msg), t);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + msg, t);
+    }
   }
 
+  @Override
   public boolean isErrorEnabled(Marker marker) {
-    return logger.isErrorEnabled();
+    return logger.isErrorEnabled(marker);
   }
 
+  @Override
   public void error(Marker marker, String msg) {
-    logger.error(marker, addJobId(msg));
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + msg);
+    }
   }
 
+  @Override
   public void error(Marker marker, String format, Object arg) {
-    logger.error(marker, addJobId(format), arg);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arg);
+    }
   }
 
+  @Override
   public void error(Marker marker, String format, Object arg1, Object arg2) {
-    logger.error(marker, addJobId(format), arg1, arg2);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arg1, arg2);
+    }
   }
 
+  @Override
   public void error(Marker marker, String format, Object... arguments) {
-    logger.error(marker, addJobId(format), arguments);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + format, arguments);
+    }
   }
 
+  @Override
   public void error(Marker marker, String msg, Throwable t) {
-    logger.error(marker, addJobId(msg), t);
+    if (logger.isErrorEnabled(marker)) {
+      logger.error(marker, prefix + msg, t);
+    }
   }
 }
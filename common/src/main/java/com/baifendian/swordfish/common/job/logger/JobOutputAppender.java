@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.job.logger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程输出的异步批量写入 <p>
+ *
+ * 每个作业有自己的有界队列, 读取进程输出的线程只把行放入该作业的队列, 由一个后台线程轮流从有输出的作业中各取一批写入日志.
+ * 某个作业的队列满时只有这个作业的读取线程等待 (其进程的输出随之阻塞), 不丢弃输出, 也不影响其它作业; 同一个作业的行保持顺序.
+ *
+ * 写入时后台线程临时使用读取线程的名字, 日志中的 %thread 仍然是作业的读取线程; %line 等调用位置是 {@link JobLogger}
+ * 中的位置, 与同步写入时一样, 没有更具体的调用位置.
+ */
+public class JobOutputAppender {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobOutputAppender.class);
+
+  /**
+   * 每个作业队列的容量
+   */
+  private static final int DEFAULT_CAPACITY = 10000;
+
+  /**
+   * 每个作业每批最多写入的行数
+   */
+  private static final int BATCH_SIZE = 512;
+
+  /**
+   * 等待写完的最长时间, 单位: 秒
+   */
+  private static final long FLUSH_TIMEOUT = 30;
+
+  private static final JobOutputAppender INSTANCE = new JobOutputAppender(DEFAULT_CAPACITY);
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+      @Override
+      public void run() {
+        INSTANCE.close();
+      }
+    }, "JobOutput-Shutdown"));
+  }
+
+  /**
+   * 每个作业队列的容量
+   */
+  private final int capacity;
+
+  /**
+   * 有待写入的行的作业, 每个作业最多出现一次
+   */
+  private final BlockingQueue<JobOutput> ready = new LinkedBlockingQueue<>();
+
+  /**
+   * 放入 ready 队列表示关闭
+   */
+  private final JobOutput closeSignal = new JobOutput(null, 1);
+
+  private final Thread thread;
+
+  private volatile boolean closed = false;
+
+  JobOutputAppender(int capacity) {
+    this.capacity = capacity;
+
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "JobOutput-Appender");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public static JobOutputAppender getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * 追加一行, 该作业的队列满时等待, 关闭之后同步写入 <p>
+   */
+  public void append(JobLogger logger, String line) {
+    JobOutput output = outputOf(logger);
+    if (closed) {
+      logger.writeOutput(line);
+      return;
+    }
+
+    output.threadName = Thread.currentThread().getName();
+    try {
+      if (!output.lines.offer(line)) {
+        output.blocked.incrementAndGet();
+        schedule(output);
+        while (!output.lines.offer(line, 1, TimeUnit.SECONDS)) {
+          // 等待期间关闭了, 不会再有后台线程写入
+          if (closed) {
+            logger.writeOutput(line);
+            return;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.writeOutput(line);
+      return;
+    }
+    output.appended.incrementAndGet();
+    schedule(output);
+  }
+
+  /**
+   * 等待该作业之前追加的行都已写入 <p>
+   */
+  public void flush(JobLogger logger) {
+    JobOutput output = outputOf(logger);
+    long target = output.appended.get();
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT);
+    synchronized (output) {
+      try {
+        while (output.written < target) {
+          long remain = deadline - System.currentTimeMillis();
+          if (remain <= 0) {
+            LOGGER.warn("flush output of job {} timeout", logger.getJobIdLog());
+            break;
+          }
+          output.wait(remain);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    long blocked = output.blocked.getAndSet(0);
+    if (blocked > 0) {
+      LOGGER.info("output of job {} waited for a full queue {} times", logger.getJobIdLog(), blocked);
+    }
+  }
+
+  /**
+   * 写完所有作业的输出并停止后台线程, 之后追加的行同步写入 <p>
+   */
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    ready.offer(closeSignal);
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 当前等待写入的作业队列中的行数, 不包括正在写入的一批 <p>
+   */
+  public int size() {
+    int size = 0;
+    for (JobOutput output : ready) {
+      if (output != closeSignal) {
+        size += output.lines.size();
+      }
+    }
+    return size;
+  }
+
+  private JobOutput outputOf(JobLogger logger) {
+    JobOutput output = logger.output;
+    if (output == null) {
+      synchronized (logger) {
+        output = logger.output;
+        if (output == null) {
+          output = new JobOutput(logger, capacity);
+          logger.output = output;
+        }
+      }
+    }
+    return output;
+  }
+
+  private void schedule(JobOutput output) {
+    if (output.scheduled.compareAndSet(false, true)) {
+      ready.offer(output);
+    }
+  }
+
+  private void drain() {
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    boolean closing = false;
+    while (true) {
+      JobOutput output;
+      if (closing) {
+        // 关闭时写完剩余的行
+        output = ready.poll();
+        if (output == null) {
+          return;
+        }
+      } else {
+        try {
+          output = ready.take();
+        } catch (InterruptedException e) {
+          LOGGER.warn("job output appender interrupted", e);
+          return;
+        }
+      }
+      if (output == closeSignal) {
+        closing = true;
+        continue;
+      }
+
+      output.lines.drainTo(batch, BATCH_SIZE);
+      write(output, batch);
+      batch.clear();
+
+      // 还有剩余的行时排到队尾, 让其它作业先写
+      output.scheduled.set(false);
+      if (!output.lines.isEmpty()) {
+        schedule(output);
+      }
+    }
+  }
+
+  private void write(JobOutput output, List<String> batch) {
+    Thread current = Thread.currentThread();
+    String name = current.getName();
+    String threadName = output.threadName;
+    if (threadName != null) {
+      current.setName(threadName);
+    }
+    try {
+      for (String line : batch) {
+        try {
+          output.logger.writeOutput(line);
+        } catch (Throwable e) {
+          LOGGER.error("write job output error", e);
+        }
+      }
+    } finally {
+      if (threadName != null) {
+        current.setName(name);
+      }
+    }
+
+    synchronized (output) {
+      output.written += batch.size();
+      output.notifyAll();
+    }
+  }
+
+  /**
+   * 一个作业的输出队列 <p>
+   */
+  static class JobOutput {
+
+    private final JobLogger logger;
+
+    private final BlockingQueue<String> lines;
+
+    /**
+     * 是否已经在 ready 队列中
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 追加的行数
+     */
+    private final AtomicLong appended = new AtomicLong();
+
+    /**
+     * 队列满而等待的次数
+     */
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * 已写入的行数, 在 this 上同步
+     */
+    private long written;
+
+    /**
+     * 最近一次追加的线程名
+     */
+    private volatile String threadName;
+
+    JobOutput(JobLogger logger, int capacity) {
+      this.logger = logger;
+      this.lines = new LinkedBlockingQueue<>(capacity);
+    }
+  }
+}
@@ -61,17 +61,21 @@ public abstract class AbstractYarnJob extends AbstractProcessJob {
         if(logLinks == null){
           logLinks = findLogLinks(line);
           if(logLinks != null){
-            ExecutionNode executionNode = flowDao.queryExecutionNode(props.getExecId(), props.getNodeName());
+            // 只更新日志链接, 不需要先查询节点
+            ExecutionNode executionNode = new ExecutionNode();
+            executionNode.setExecId((int) props.getExecId());
+            executionNode.setName(props.getNodeName());
             executionNode.setLogLinks(logLinks);
             flowDao.updateExecutionNode(executionNode);
           }
         }
         // jobContext.appendLog(line);
-        logger.info(line);
+        logOutput(line);
       }
     } catch (IOException e) {
       logger.error(e.getMessage(), e);
     } finally {
+      flushOutput();
       IOUtils.closeQuietly(inputStream);
     }
   }
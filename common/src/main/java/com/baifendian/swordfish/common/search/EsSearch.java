@@ -147,9 +147,35 @@ public class EsSearch {
         .setFrom(from)
         .setSize(size)
         .addSort("nanoTime", SortOrder.DESC)
-        .setExplain(true)
         .get();
 
     return response;
   }
+
+  /**
+   * 按游标搜索 job 的日志, 按时间正序, 不需要像 from/size 一样跳过之前的记录 <p>
+   *
+   * 排序值为 (nanoTime, _uid), _uid 保证相同时间的记录也有确定的顺序.
+   *
+   * @param searchAfter 从这个排序值之后开始, 为 null 时从第一条开始
+   * @param size        返回的最大条数
+   * @param jobId
+   */
+  public SearchResponse searchAfter(Object[] searchAfter, int size, String jobId) {
+    QueryBuilder queryBuilder = QueryBuilders.termQuery("jobId", jobId.toLowerCase());
+
+    SearchRequestBuilder builder = client.prepareSearch(endpoint)
+        .setQuery(queryBuilder)
+        .setTimeout(TimeValue.timeValueMillis(esMaxRetryTimeoutMillis))
+        .setSize(size)
+        .setFetchSource(new String[]{"nest_msg"}, null)
+        .addSort("nanoTime", SortOrder.ASC)
+        .addSort("_uid", SortOrder.ASC);
+
+    if (searchAfter != null) {
+      builder.searchAfter(searchAfter);
+    }
+
+    return builder.get();
+  }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的占位符模板 <p>
+ *
+ * 文本只解析一次, 得到文本片段, 参数 ${} 和时间 $[] 组成的片段列表, 渲染时一趟完成所有替换, 结果与按字典依次调用
+ * {@link PlaceholderUtil#resolvePlaceholders(String, Map, boolean)} (非严格) 再调用
+ * {@link TimePlaceholderUtil#resolvePlaceholders(String, Date, boolean)} (非严格) 一致: 参数的值中的占位符会继续替换,
+ * 没有值的参数和计算失败的时间表达式原样保留, 循环引用抛出 {@link IllegalArgumentException}. <p>
+ *
+ * 编译结果按文本缓存, 模板本身不可变, 可以在多个线程中共用.
+ */
+public class PlaceholderTemplate {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaceholderTemplate.class);
+
+  /**
+   * 缓存的模板的最大数目
+   */
+  private static final int MAX_CACHED_TEMPLATES = 512;
+
+  /**
+   * 估算结果长度时, 每个占位符预留的长度
+   */
+  private static final int PLACEHOLDER_LENGTH_HINT = 16;
+
+  /**
+   * 文本 -> 模板, LRU
+   */
+  private static final Map<String, PlaceholderTemplate> CACHE = new LinkedHashMap<String, PlaceholderTemplate>(64, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, PlaceholderTemplate> eldest) {
+      return size() > MAX_CACHED_TEMPLATES;
+    }
+  };
+
+  /**
+   * 片段类型
+   */
+  private static final int LITERAL = 0;
+  private static final int PARAM = 1;
+  private static final int TIME = 2;
+
+  /**
+   * 片段类型
+   */
+  private final int[] types;
+
+  /**
+   * 文本片段为文本本身, 占位符片段为占位符中的名称或表达式
+   */
+  private final String[] values;
+
+  /**
+   * 占位符中的名称或表达式本身还包含占位符时, 为其编译后的模板, 否则为 null
+   */
+  private final PlaceholderTemplate[] nested;
+
+  /**
+   * 结果长度的估算值
+   */
+  private final int lengthHint;
+
+  /**
+   * 是否不包含任何占位符
+   */
+  private final boolean literal;
+
+  private PlaceholderTemplate(List<Integer> types, List<String> values, List<PlaceholderTemplate> nested, int lengthHint) {
+    int size = types.size();
+    this.types = new int[size];
+    this.values = values.toArray(new String[size]);
+    this.nested = nested.toArray(new PlaceholderTemplate[size]);
+    boolean literal = true;
+    for (int i = 0; i < size; i++) {
+      this.types[i] = types.get(i);
+      literal &= (this.types[i] == LITERAL);
+    }
+    this.lengthHint = lengthHint;
+    this.literal = literal;
+  }
+
+  /**
+   * 获取文本的模板, 优先从缓存中获取 <p>
+   */
+  public static PlaceholderTemplate compile(String text) {
+    PlaceholderTemplate template;
+    synchronized (CACHE) {
+      template = CACHE.get(text);
+    }
+    if (template == null) {
+      template = parse(text);
+      synchronized (CACHE) {
+        CACHE.put(text, template);
+      }
+    }
+    return template;
+  }
+
+  /**
+   * 是否不包含任何占位符 <p>
+   */
+  public boolean isLiteral() {
+    return literal;
+  }
+
+  /**
+   * 渲染模板 <p>
+   *
+   * @param paramMaps 参数的数据字典, 按顺序查找, 前面的优先
+   * @param date      时间占位符的基准时间, 为 null 时时间占位符原样保留
+   * @return 替换后的字符串
+   */
+  public String render(List<Map<String, String>> paramMaps, Date date) {
+    StringBuilder sb = new StringBuilder(lengthHint);
+    render(sb, paramMaps, date, new HashSet<String>());
+    return sb.toString();
+  }
+
+  private void render(StringBuilder sb, List<Map<String, String>> paramMaps, Date date, Set<String> visiting) {
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case LITERAL:
+          sb.append(values[i]);
+          break;
+        case PARAM:
+          if (!renderParam(sb, resolveName(i, paramMaps, date, visiting), paramMaps, date, visiting)) {
+            // 没有值时与逐个替换一样保留原文, 其中的时间占位符仍然替换
+            sb.append(PlaceholderUtil.PLACEHOLDER_PREFIX);
+            if (nested[i] == null) {
+              sb.append(values[i]);
+            } else {
+              nested[i].render(sb, Collections.<Map<String, String>>emptyList(), date, visiting);
+            }
+            sb.append(PlaceholderUtil.PLACEHOLDER_SUFFIX);
+          }
+          break;
+        default:
+          renderTime(sb, resolveName(i, paramMaps, date, visiting), date);
+          break;
+      }
+    }
+  }
+
+  /**
+   * 占位符的名称, 名称中有占位符时先替换 <p>
+   */
+  private String resolveName(int i, List<Map<String, String>> paramMaps, Date date, Set<String> visiting) {
+    if (nested[i] == null) {
+      return values[i];
+    }
+    StringBuilder sb = new StringBuilder(values[i].length());
+    nested[i].render(sb, paramMaps, date, visiting);
+    return sb.toString();
+  }
+
+  /**
+   * 替换参数, 没有值时返回 false <p>
+   */
+  private static boolean renderParam(StringBuilder sb, String name, List<Map<String, String>> paramMaps, Date date, Set<String> visiting) {
+    String value = null;
+    int level = 0;
+    for (; level < paramMaps.size(); level++) {
+      value = paramMaps.get(level).get(name);
+      if (value != null) {
+        break;
+      }
+    }
+
+    if (value == null) {
+      return false;
+    }
+
+    // 参数的值中可能还有占位符, 与逐个替换一样, 只使用该字典及其之后的字典
+    PlaceholderTemplate valueTemplate = compile(value);
+    if (valueTemplate.isLiteral()) {
+      sb.append(value);
+      return true;
+    }
+    if (!visiting.add(name)) {
+      throw new IllegalArgumentException("Circular placeholder reference '" + name + "' in property definitions");
+    }
+    valueTemplate.render(sb, paramMaps.subList(level, paramMaps.size()), date, visiting);
+    visiting.remove(name);
+    return true;
+  }
+
+  private static void renderTime(StringBuilder sb, String expr, Date date) {
+    if (date != null) {
+      try {
+        sb.append(TimePlaceholderUtil.customTime(expr, date));
+        return;
+      } catch (Exception e) {
+        LOGGER.error("Could not resolve time placeholder '" + expr + "'", e);
+      }
+    }
+    sb.append(TimePlaceholderUtil.PLACEHOLDER_PREFIX).append(expr).append(TimePlaceholderUtil.PLACEHOLDER_SUFFIX);
+  }
+
+  /**
+   * 解析文本, 占位符的结束位置的查找与 spring 的 PropertyPlaceholderHelper 相同 (支持嵌套) <p>
+   */
+  private static PlaceholderTemplate parse(String text) {
+    List<Integer> types = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    List<PlaceholderTemplate> nested = new ArrayList<>();
+    int placeholders = 0;
+
+    // 某种占位符没有找到结束位置时, 与逐个替换一样, 之后不再处理这种占位符
+    boolean paramEnabled = true;
+    boolean timeEnabled = true;
+
+    StringBuilder literal = new StringBuilder();
+    int start = 0;
+    int index = 0;
+    int length = text.length();
+    while (index < length - 1) {
+      int type;
+      if (text.charAt(index) != '$') {
+        index++;
+        continue;
+      } else if (paramEnabled && text.startsWith(PlaceholderUtil.PLACEHOLDER_PREFIX, index)) {
+        type = PARAM;
+      } else if (timeEnabled && text.startsWith(TimePlaceholderUtil.PLACEHOLDER_PREFIX, index)) {
+        type = TIME;
+      } else {
+        index++;
+        continue;
+      }
+
+      int endIndex = (type == PARAM) ? findEndIndex(text, index + 2, '{', '}') : findEndIndex(text, index + 2, '[', ']');
+      if (endIndex == -1) {
+        if (type == PARAM) {
+          paramEnabled = false;
+        } else {
+          timeEnabled = false;
+        }
+        continue;
+      }
+
+      literal.append(text, start, index);
+      if (literal.length() > 0) {
+        types.add(LITERAL);
+        values.add(literal.toString());
+        nested.add(null);
+        literal.setLength(0);
+      }
+
+      String name = text.substring(index + 2, endIndex);
+      PlaceholderTemplate nameTemplate = compile(name);
+      types.add(type);
+      values.add(name);
+      nested.add(nameTemplate.isLiteral() ? null : nameTemplate);
+      placeholders++;
+
+      index = endIndex + 1;
+      start = index;
+    }
+
+    literal.append(text, start, length);
+    if (literal.length() > 0) {
+      types.add(LITERAL);
+      values.add(literal.toString());
+      nested.add(null);
+    }
+
+    return new PlaceholderTemplate(types, values, nested, length + placeholders * PLACEHOLDER_LENGTH_HINT);
+  }
+
+  /**
+   * 查找占位符的结束位置, 嵌套的开始符号需要对应的结束符号 <p>
+   *
+   * @return 结束位置, 没有找到时为 -1
+   */
+  private static int findEndIndex(String text, int from, char open, char close) {
+    int depth = 0;
+    for (int i = from; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == close) {
+        if (depth == 0) {
+          return i;
+        }
+        depth--;
+      } else if (c == open) {
+        depth++;
+      }
+    }
+    return -1;
+  }
+}
@@ -177,11 +177,11 @@ public class TimePlaceholderUtil {
   }
 
   /**
-   * 计算自定义时间 <p>
+   * 计算自定义时间, 也用于 {@link PlaceholderTemplate} <p>
    *
    * @return 自定义的时间
    */
-  private static String customTime(String expr, Date date) {
+  static String customTime(String expr, Date date) {
     // 后N年：$[add_months(yyyyMMdd,12*N)],前N月：$[add_months(yyyyMMdd,-N)]
     // 等
     String value;
@@ -0,0 +1,473 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不可变的紧凑 DAG, 构造完成后只读 <p>
+ *
+ * 顶点用 int 编号, 编号即拓扑排序的顺序; 前驱和后继以 CSR 的形式保存在 int 数组中, 入度预先计算.
+ * 所有字段在构造时确定且不再修改, 多线程并发读不需要加锁, 读操作也不会分配新的对象. <p>
+ *
+ * 适用于构造一次, 之后频繁遍历的场景, 例如 workflow 的调度; 需要增删顶点或边时使用 {@link Graph}.
+ */
+public final class CompactDag<VK, VD> {
+
+  /**
+   * 顶点 key 到编号的映射
+   */
+  private final Map<VK, Integer> index;
+
+  /**
+   * 顶点的 key, 按照拓扑排序
+   */
+  private final Object[] keys;
+
+  /**
+   * 顶点的属性, 与 keys 对应
+   */
+  private final Object[] vertices;
+
+  /**
+   * 顶点 i 的后继为 successors[successorOffsets[i], successorOffsets[i + 1])
+   */
+  private final int[] successorOffsets;
+
+  private final int[] successors;
+
+  /**
+   * 顶点 i 的前驱为 predecessors[predecessorOffsets[i], predecessorOffsets[i + 1])
+   */
+  private final int[] predecessorOffsets;
+
+  private final int[] predecessors;
+
+  private CompactDag(Map<VK, Integer> index, Object[] keys, Object[] vertices,
+                     int[] successorOffsets, int[] successors,
+                     int[] predecessorOffsets, int[] predecessors) {
+    this.index = index;
+    this.keys = keys;
+    this.vertices = vertices;
+    this.successorOffsets = successorOffsets;
+    this.successors = successors;
+    this.predecessorOffsets = predecessorOffsets;
+    this.predecessors = predecessors;
+  }
+
+  /**
+   * 从 {@link Graph} 构造, 边的属性会被丢弃 <p>
+   *
+   * @param graph 图
+   * @return 紧凑 DAG
+   * @throws Exception 图中存在环
+   */
+  public static <VK, VD> CompactDag<VK, VD> of(Graph<VK, VD, ?> graph) throws Exception {
+    Builder<VK, VD> builder = new Builder<>();
+
+    synchronized (graph) {
+      for (Map.Entry<VK, VD> vertex : graph.getVertices().entrySet()) {
+        builder.addVertex(vertex.getKey(), vertex.getValue());
+      }
+
+      for (VK key : graph.getVertices().keySet()) {
+        for (VK postKey : graph.getPostNode(key)) {
+          builder.addEdge(key, postKey);
+        }
+      }
+    }
+
+    return builder.build();
+  }
+
+  public static <VK, VD> Builder<VK, VD> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * 顶点数目
+   *
+   * @return
+   */
+  public int size() {
+    return keys.length;
+  }
+
+  /**
+   * 边的数目
+   *
+   * @return
+   */
+  public int getEdgeNumber() {
+    return successors.length;
+  }
+
+  /**
+   * 获取顶点编号
+   *
+   * @param key 顶点的 key
+   * @return 编号, 不存在时返回 -1
+   */
+  public int indexOf(VK key) {
+    Integer id = index.get(key);
+    return (id == null) ? -1 : id;
+  }
+
+  /**
+   * 是否包含顶点
+   *
+   * @param key 待检测顶点
+   * @return
+   */
+  public boolean containsVertex(VK key) {
+    return index.containsKey(key);
+  }
+
+  /**
+   * 获取顶点的 key
+   *
+   * @param id 顶点编号
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public VK getKey(int id) {
+    return (VK) keys[id];
+  }
+
+  /**
+   * 获取顶点属性
+   *
+   * @param id 顶点编号
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public VD getVertex(int id) {
+    return (VD) vertices[id];
+  }
+
+  /**
+   * 获取顶点属性
+   *
+   * @param key 顶点的 key
+   * @return 不存在时返回 null
+   */
+  public VD getVertex(VK key) {
+    Integer id = index.get(key);
+    return (id == null) ? null : getVertex(id);
+  }
+
+  /**
+   * 顶点的入度
+   *
+   * @param id 顶点编号
+   * @return
+   */
+  public int getIndegree(int id) {
+    return predecessorOffsets[id + 1] - predecessorOffsets[id];
+  }
+
+  /**
+   * 顶点的出度
+   *
+   * @param id 顶点编号
+   * @return
+   */
+  public int getOutdegree(int id) {
+    return successorOffsets[id + 1] - successorOffsets[id];
+  }
+
+  /**
+   * 顶点的第 i 个前驱, 0 <= i < {@link #getIndegree(int)}
+   *
+   * @param id 顶点编号
+   * @param i  下标
+   * @return 前驱的编号
+   */
+  public int getPredecessor(int id, int i) {
+    return predecessors[predecessorOffsets[id] + i];
+  }
+
+  /**
+   * 顶点的第 i 个后继, 0 <= i < {@link #getOutdegree(int)}
+   *
+   * @param id 顶点编号
+   * @param i  下标
+   * @return 后继的编号
+   */
+  public int getSuccessor(int id, int i) {
+    return successors[successorOffsets[id] + i];
+  }
+
+  /**
+   * 所有顶点入度的拷贝, 调用方可以修改, 用于按入度计数的调度
+   *
+   * @return
+   */
+  public int[] copyIndegrees() {
+    int[] indegrees = new int[keys.length];
+
+    for (int i = 0; i < indegrees.length; ++i) {
+      indegrees[i] = getIndegree(i);
+    }
+
+    return indegrees;
+  }
+
+  /**
+   * 拓扑排序, 即按编号排列的顶点 key
+   *
+   * @return 只读列表
+   */
+  @SuppressWarnings("unchecked")
+  public List<VK> topologicalSort() {
+    return (List<VK>) Collections.unmodifiableList(Arrays.asList(keys));
+  }
+
+  /**
+   * 构造 {@link CompactDag}, 非线程安全 <p>
+   *
+   * 与 {@link Graph#addEdge(Object, Object)} 一致, 起点或终点不存在的边, 以及自己到自己的边会被忽略, 重复的边只保留一条.
+   */
+  public static final class Builder<VK, VD> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactDag.class);
+
+    private final Map<VK, Integer> index = new HashMap<>();
+
+    private Object[] keys = new Object[16];
+
+    private Object[] vertices = new Object[16];
+
+    private int vertexNumber = 0;
+
+    /**
+     * 边的起点和终点, 为构造时的编号
+     */
+    private int[] starts = new int[16];
+
+    private int[] ends = new int[16];
+
+    private int edgeNumber = 0;
+
+    private Builder() {
+    }
+
+    /**
+     * 增加顶点, 已经存在时更新属性
+     *
+     * @param key    顶点的 key
+     * @param vertex 顶点的属性
+     * @return
+     */
+    public Builder<VK, VD> addVertex(VK key, VD vertex) {
+      Integer id = index.get(key);
+
+      if (id != null) {
+        vertices[id] = vertex;
+        return this;
+      }
+
+      if (vertexNumber == keys.length) {
+        keys = Arrays.copyOf(keys, vertexNumber * 2);
+        vertices = Arrays.copyOf(vertices, vertexNumber * 2);
+      }
+
+      index.put(key, vertexNumber);
+      keys[vertexNumber] = key;
+      vertices[vertexNumber] = vertex;
+      vertexNumber++;
+
+      return this;
+    }
+
+    /**
+     * 增加边, 起点和终点需要已经加入
+     *
+     * @param start 边的起点
+     * @param end   边的终点
+     * @return
+     */
+    public Builder<VK, VD> addEdge(VK start, VK end) {
+      Integer startId = index.get(start);
+      Integer endId = index.get(end);
+
+      if (startId == null || endId == null || startId.equals(endId)) {
+        LOG.error("Edge {} -> {} is invalid, ignore it.", start, end);
+        return this;
+      }
+
+      if (edgeNumber == starts.length) {
+        starts = Arrays.copyOf(starts, edgeNumber * 2);
+        ends = Arrays.copyOf(ends, edgeNumber * 2);
+      }
+
+      starts[edgeNumber] = startId;
+      ends[edgeNumber] = endId;
+      edgeNumber++;
+
+      return this;
+    }
+
+    /**
+     * 生成 {@link CompactDag}, 之后 builder 不应再使用
+     *
+     * @return
+     * @throws Exception 图中存在环
+     */
+    public CompactDag<VK, VD> build() throws Exception {
+      int n = vertexNumber;
+
+      // 按构造时的编号生成后继的 CSR, 并去掉重复的边
+      int[] offsets = new int[n + 1];
+      int[] posts = csr(starts, ends, edgeNumber, n, offsets);
+      int m = dedup(posts, offsets, n);
+
+      // 拓扑排序, order[i] 为第 i 个顶点的原编号
+      int[] indegrees = new int[n];
+      for (int e = 0; e < m; ++e) {
+        indegrees[posts[e]]++;
+      }
+
+      int[] order = new int[n];
+      int head = 0;
+      int tail = 0;
+
+      for (int i = 0; i < n; ++i) {
+        if (indegrees[i] == 0) {
+          order[tail++] = i;
+        }
+      }
+
+      while (head < tail) {
+        int v = order[head++];
+
+        for (int e = offsets[v]; e < offsets[v + 1]; ++e) {
+          if (--indegrees[posts[e]] == 0) {
+            order[tail++] = posts[e];
+          }
+        }
+      }
+
+      if (tail != n) {
+        throw new Exception("Graph has a cycle, can't compute topological sort.");
+      }
+
+      // 按照拓扑排序重新编号
+      int[] rank = new int[n];
+      for (int i = 0; i < n; ++i) {
+        rank[order[i]] = i;
+      }
+
+      Map<VK, Integer> newIndex = new HashMap<>(n * 2);
+      Object[] newKeys = new Object[n];
+      Object[] newVertices = new Object[n];
+
+      for (int i = 0; i < n; ++i) {
+        newKeys[i] = keys[order[i]];
+        newVertices[i] = vertices[order[i]];
+        newIndex.put(getKey(newKeys[i]), i);
+      }
+
+      int[] edgeStarts = new int[m];
+      int[] edgeEnds = new int[m];
+      int e = 0;
+
+      for (int v = 0; v < n; ++v) {
+        for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+          edgeStarts[e] = rank[v];
+          edgeEnds[e] = rank[posts[k]];
+          e++;
+        }
+      }
+
+      int[] successorOffsets = new int[n + 1];
+      int[] successors = csr(edgeStarts, edgeEnds, m, n, successorOffsets);
+
+      int[] predecessorOffsets = new int[n + 1];
+      int[] predecessors = csr(edgeEnds, edgeStarts, m, n, predecessorOffsets);
+
+      return new CompactDag<>(newIndex, newKeys, newVertices, successorOffsets, successors, predecessorOffsets, predecessors);
+    }
+
+    @SuppressWarnings("unchecked")
+    private VK getKey(Object key) {
+      return (VK) key;
+    }
+
+    /**
+     * 由边的列表生成 CSR
+     *
+     * @param from    起点
+     * @param to      终点
+     * @param m       边的数目
+     * @param n       顶点数目
+     * @param offsets 输出, 长度为 n + 1
+     * @return 邻接数组
+     */
+    private static int[] csr(int[] from, int[] to, int m, int n, int[] offsets) {
+      for (int e = 0; e < m; ++e) {
+        offsets[from[e] + 1]++;
+      }
+
+      for (int i = 0; i < n; ++i) {
+        offsets[i + 1] += offsets[i];
+      }
+
+      int[] cursor = Arrays.copyOf(offsets, n);
+      int[] adjacency = new int[m];
+
+      for (int e = 0; e < m; ++e) {
+        adjacency[cursor[from[e]]++] = to[e];
+      }
+
+      return adjacency;
+    }
+
+    /**
+     * 去掉每个顶点邻接中重复的边, 原地修改
+     *
+     * @return 去重后的边数
+     */
+    private static int dedup(int[] adjacency, int[] offsets, int n) {
+      int m = 0;
+      int start = 0;
+
+      for (int v = 0; v < n; ++v) {
+        int end = offsets[v + 1];
+        Arrays.sort(adjacency, start, end);
+
+        offsets[v] = m;
+        for (int k = start; k < end; ++k) {
+          if (k == start || adjacency[k] != adjacency[k - 1]) {
+            adjacency[m++] = adjacency[k];
+          }
+        }
+
+        start = end;
+      }
+
+      offsets[n] = m;
+      return m;
+    }
+  }
+}
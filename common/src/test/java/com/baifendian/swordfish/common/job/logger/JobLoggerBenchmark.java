@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.job.logger;
+
+import com.baifendian.swordfish.common.utils.StructuredArguments;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟输出量很大的作业 (如 spark/mr 客户端), 对比每次 String.format 加前缀的旧方式与 {@link JobLogger} <p>
+ *
+ * 每次调用输出 {@link #LINES} 行, appender 只格式化消息不落盘. 运行: 在 common 目录下 mvn test-compile 后,
+ * 以 test classpath 执行本类的 main 方法.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobLoggerBenchmark {
+
+  /**
+   * 每次调用输出的行数
+   */
+  private static final int LINES = 10000;
+
+  private static final String JOB_ID = "JOB-1-2-3";
+
+  private static final String LINE = "17/05/01 10:00:00 INFO mapreduce.Job:  map 42% reduce 0%";
+
+  private org.slf4j.Logger infoLogger;
+
+  private org.slf4j.Logger warnLogger;
+
+  private JobLogger jobLogger;
+
+  private JobLogger warnJobLogger;
+
+  @Setup
+  public void setup() {
+    LoggerContext context = new LoggerContext();
+    AppenderBase<ILoggingEvent> appender = new AppenderBase<ILoggingEvent>() {
+      @Override
+      protected void append(ILoggingEvent event) {
+        event.getFormattedMessage();
+      }
+    };
+    appender.setContext(context);
+    appender.start();
+
+    ch.qos.logback.classic.Logger info = context.getLogger("bench.info");
+    info.setLevel(Level.INFO);
+    info.setAdditive(false);
+    info.addAppender(appender);
+
+    ch.qos.logback.classic.Logger warn = context.getLogger("bench.warn");
+    warn.setLevel(Level.WARN);
+    warn.setAdditive(false);
+    warn.addAppender(appender);
+
+    infoLogger = info;
+    warnLogger = warn;
+    jobLogger = new JobLogger(JOB_ID, info);
+    warnJobLogger = new JobLogger(JOB_ID, warn);
+  }
+
+  /**
+   * 旧的方式: 不管级别是否开启, 每次都格式化前缀
+   */
+  private static String legacyAddJobId(String msg) {
+    return String.format("%s %s", StructuredArguments.jobValue(JOB_ID), msg);
+  }
+
+  @Benchmark
+  public void legacyInfo() {
+    for (int i = 0; i < LINES; i++) {
+      infoLogger.info(legacyAddJobId(LINE));
+    }
+  }
+
+  @Benchmark
+  public void jobLoggerInfo() {
+    for (int i = 0; i < LINES; i++) {
+      jobLogger.info(LINE);
+    }
+  }
+
+  @Benchmark
+  public void jobLoggerAsyncOutput() {
+    for (int i = 0; i < LINES; i++) {
+      jobLogger.infoOutput(LINE);
+    }
+    jobLogger.flushOutput();
+  }
+
+  @Benchmark
+  public void legacyDisabled() {
+    for (int i = 0; i < LINES; i++) {
+      warnLogger.info(legacyAddJobId(LINE));
+    }
+  }
+
+  @Benchmark
+  public void jobLoggerDisabled() {
+    for (int i = 0; i < LINES; i++) {
+      warnJobLogger.info(LINE);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JobLoggerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
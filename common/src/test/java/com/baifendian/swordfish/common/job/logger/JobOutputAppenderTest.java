@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.job.logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JobOutputAppenderTest {
+
+  private JobOutputAppender appender;
+
+  @Before
+  public void setUp() {
+    appender = new JobOutputAppender(4);
+  }
+
+  @After
+  public void tearDown() {
+    appender.close();
+  }
+
+  @Test
+  public void testOrderPerJob() throws Exception {
+    final RecordingLogger job1 = new RecordingLogger("JOB-1", null);
+    final RecordingLogger job2 = new RecordingLogger("JOB-2", null);
+
+    Thread reader1 = reader(job1, 1000, "LoggerInfo-JOB-1");
+    Thread reader2 = reader(job2, 1000, "LoggerInfo-JOB-2");
+    reader1.start();
+    reader2.start();
+    reader1.join();
+    reader2.join();
+
+    assertSequence(job1.lines, 1000);
+    assertSequence(job2.lines, 1000);
+    // 日志的线程名是读取输出的线程
+    assertEquals(Collections.singleton("LoggerInfo-JOB-1"), new HashSet<>(job1.threads));
+    assertEquals(Collections.singleton("LoggerInfo-JOB-2"), new HashSet<>(job2.threads));
+  }
+
+  @Test
+  public void testFlushOnClose() {
+    RecordingLogger job = new RecordingLogger("JOB-1", null);
+    for (int i = 0; i < 3; i++) {
+      appender.append(job, String.valueOf(i));
+    }
+    appender.close();
+    assertSequence(job.lines, 3);
+
+    // 关闭后同步写入
+    appender.append(job, "3");
+    assertSequence(job.lines, 4);
+  }
+
+  @Test
+  public void testQueueFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    final RecordingLogger slow = new RecordingLogger("JOB-SLOW", release);
+    final RecordingLogger other = new RecordingLogger("JOB-OTHER", null);
+
+    Thread slowReader = reader(slow, 10, "LoggerInfo-JOB-SLOW");
+    try {
+      // 第一行被后台线程取出后阻塞在写入, 之后队列 (容量 4) 被填满, 读取线程等待
+      slowReader.start();
+      slowReader.join(500);
+      assertTrue(slowReader.isAlive());
+
+      // 其它作业的追加不受影响
+      for (int i = 0; i < 4; i++) {
+        appender.append(other, String.valueOf(i));
+      }
+    } finally {
+      release.countDown();
+    }
+    slowReader.join();
+    appender.flush(other);
+
+    // 不丢弃输出
+    assertSequence(slow.lines, 10);
+    assertSequence(other.lines, 4);
+  }
+
+  private Thread reader(final RecordingLogger logger, final int lines, String name) {
+    return new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < lines; i++) {
+          appender.append(logger, String.valueOf(i));
+        }
+        appender.flush(logger);
+      }
+    }, name);
+  }
+
+  private static void assertSequence(List<String> lines, int count) {
+    synchronized (lines) {
+      assertEquals(count, lines.size());
+      for (int i = 0; i < count; i++) {
+        assertEquals(String.valueOf(i), lines.get(i));
+      }
+    }
+  }
+
+  /**
+   * 记录写入的行和线程名, release 不为 null 时第一行等待 release
+   */
+  private static class RecordingLogger extends JobLogger {
+
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+    private final CountDownLatch release;
+
+    RecordingLogger(String jobIdLog, CountDownLatch release) {
+      super(jobIdLog, LoggerFactory.getLogger(JobOutputAppenderTest.class));
+      this.release = release;
+    }
+
+    @Override
+    void writeOutput(String line) {
+      if (release != null && lines.isEmpty()) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      lines.add(line);
+      threads.add(Thread.currentThread().getName());
+    }
+  }
+}
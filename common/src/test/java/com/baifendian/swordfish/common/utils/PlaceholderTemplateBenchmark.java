@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预编译模板与逐个替换的性能对比 <p>
+ *
+ * 运行: 在 common 目录下 mvn test-compile 后, 以 test classpath 执行本类的 main 方法.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderTemplateBenchmark {
+
+  /**
+   * 脚本中重复的 sql 语句数
+   */
+  @Param({"10", "1000"})
+  private int statements;
+
+  private String text;
+
+  private Map<String, String> systemParams;
+
+  private Map<String, String> customParams;
+
+  private List<Map<String, String>> paramMaps;
+
+  private Date date;
+
+  @Setup
+  public void setup() {
+    systemParams = new HashMap<>();
+    systemParams.put("sf.system.bizdate", "20170101");
+    systemParams.put("sf.system.cyctime", "20170102000000");
+
+    customParams = new HashMap<>();
+    customParams.put("day", "$[yyyyMMdd-1]");
+    customParams.put("db", "dw");
+
+    paramMaps = Arrays.asList(systemParams, customParams);
+    date = new Date(1483286400000L);
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < statements; i++) {
+      sb.append("insert overwrite table ${db}.t_").append(i).append(" partition(dt='${day}')\n")
+          .append("select a, b, '$[yyyyMMdd]' as biz, '$[add_months(yyyyMMdd,-1)]' as last_month\n")
+          .append("from ${db}.s_").append(i).append(" where dt = '${sf.system.bizdate}' and c > 0;\n");
+    }
+    text = sb.toString();
+  }
+
+  @Benchmark
+  public String sequentialResolve() {
+    String result = PlaceholderUtil.resolvePlaceholders(text, systemParams, true);
+    result = PlaceholderUtil.resolvePlaceholders(result, customParams, true);
+    return TimePlaceholderUtil.resolvePlaceholders(result, date, true);
+  }
+
+  @Benchmark
+  public String compiledTemplate() {
+    return PlaceholderTemplate.compile(text).render(paramMaps, date);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PlaceholderTemplateBenchmark.class.getSimpleName()).build()).run();
+  }
+}
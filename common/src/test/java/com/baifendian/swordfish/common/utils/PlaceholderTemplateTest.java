@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceholderTemplateTest {
+
+  private Map<String, String> systemParams;
+
+  private Map<String, String> customParams;
+
+  private Date date;
+
+  @Before
+  public void setup() {
+    systemParams = new HashMap<>();
+    systemParams.put("sf.system.bizdate", "20170101");
+    systemParams.put("sf.system.cyctime", "20170102000000");
+
+    customParams = new HashMap<>();
+    customParams.put("day", "$[yyyyMMdd-1]");
+    customParams.put("table", "t_${sf.system.bizdate}");
+    customParams.put("name", "table");
+    customParams.put("sf.system.bizdate", "ignored");
+
+    date = new Date(1483286400000L);
+  }
+
+  @Test
+  public void testLiteral() {
+    PlaceholderTemplate template = PlaceholderTemplate.compile("select 1 from t where a = '$'");
+    assertTrue(template.isLiteral());
+    assertEquals("select 1 from t where a = '$'", render(template));
+  }
+
+  @Test
+  public void testSameAsSequentialResolve() {
+    String[] texts = {
+        "select * from ${table} where day = '${day}' and biz = ${sf.system.bizdate}",
+        "insert overwrite table x partition(dt='$[yyyyMMdd]') select '$[add_months(yyyyMMdd,-1)]'",
+        "${unknown} ${${name}} ${a${name}} $[yyyy${unknown}] $[bad(expr]",
+        "echo ${day} ${table",
+        "echo $[yyyy $[yyyy]] ${day}",
+        "$[month_begin(yyyyMMdd,0)],$[timestamp(week_end(yyyyMMdd,-1))]",
+        "$$ $ ${} $[]",
+        "${a${b}",
+        "$[x ${name}]"
+    };
+
+    for (String text : texts) {
+      assertEquals(text, sequentialResolve(text), render(PlaceholderTemplate.compile(text)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCircularReference() {
+    customParams.put("a", "${b}");
+    customParams.put("b", "${a}");
+    render(PlaceholderTemplate.compile("${a}"));
+  }
+
+  @Test
+  public void testWithoutDate() {
+    PlaceholderTemplate template = PlaceholderTemplate.compile("${table} $[yyyyMMdd]");
+    assertFalse(template.isLiteral());
+    assertEquals("t_ignored $[yyyyMMdd]", template.render(Arrays.asList(systemParams, customParams), null));
+  }
+
+  private String render(PlaceholderTemplate template) {
+    return template.render(Arrays.asList(systemParams, customParams), date);
+  }
+
+  private String sequentialResolve(String text) {
+    text = PlaceholderUtil.resolvePlaceholders(text, systemParams, true);
+    text = PlaceholderUtil.resolvePlaceholders(text, customParams, true);
+    return TimePlaceholderUtil.resolvePlaceholders(text, date, true);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils.graph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DAGGraph} 与 {@link CompactDag} 的遍历和并发读性能对比 <p>
+ *
+ * 运行: 在 common 目录下 mvn test-compile 后, 以 test classpath 执行本类的 main 方法.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactDagBenchmark {
+
+  /**
+   * 每层的节点数, 共 100 层
+   */
+  @Param({"100"})
+  private int width;
+
+  /**
+   * 每个节点依赖上一层的节点数
+   */
+  @Param({"3"})
+  private int fanIn;
+
+  private static final int LAYERS = 100;
+
+  private DAGGraph<String, String, String> dagGraph;
+
+  private CompactDag<String, String> compactDag;
+
+  private String[] keys;
+
+  @Setup
+  public void setup() throws Exception {
+    dagGraph = new DAGGraph<>();
+    keys = new String[LAYERS * width];
+
+    for (int l = 0; l < LAYERS; ++l) {
+      for (int w = 0; w < width; ++w) {
+        keys[l * width + w] = l + "_" + w;
+        dagGraph.addVertex(keys[l * width + w], keys[l * width + w]);
+      }
+    }
+
+    for (int l = 1; l < LAYERS; ++l) {
+      for (int w = 0; w < width; ++w) {
+        for (int f = 0; f < fanIn; ++f) {
+          dagGraph.addEdge(keys[(l - 1) * width + (w + f) % width], keys[l * width + w]);
+        }
+      }
+    }
+
+    compactDag = CompactDag.of(dagGraph);
+  }
+
+  /**
+   * 按入度计数依次"执行"所有节点
+   */
+  @Benchmark
+  public int dagGraphSchedule() {
+    Map<String, Integer> indegrees = new HashMap<>();
+    Queue<String> ready = new ArrayDeque<>();
+
+    for (String key : dagGraph.getVertices().keySet()) {
+      int indegree = dagGraph.getIndegree(key);
+      indegrees.put(key, indegree);
+      if (indegree == 0) {
+        ready.add(key);
+      }
+    }
+
+    int finished = 0;
+    while (!ready.isEmpty()) {
+      String key = ready.poll();
+      finished++;
+
+      for (String post : dagGraph.getPostNode(key)) {
+        int indegree = indegrees.get(post) - 1;
+        indegrees.put(post, indegree);
+        if (indegree == 0) {
+          ready.add(post);
+        }
+      }
+    }
+
+    return finished;
+  }
+
+  @Benchmark
+  public int compactDagSchedule() {
+    int[] indegrees = compactDag.copyIndegrees();
+    int[] ready = new int[compactDag.size()];
+    int head = 0;
+    int tail = 0;
+
+    for (int id = 0; id < indegrees.length; ++id) {
+      if (indegrees[id] == 0) {
+        ready[tail++] = id;
+      }
+    }
+
+    while (head < tail) {
+      int id = ready[head++];
+
+      for (int i = 0, outdegree = compactDag.getOutdegree(id); i < outdegree; ++i) {
+        int post = compactDag.getSuccessor(id, i);
+        if (--indegrees[post] == 0) {
+          ready[tail++] = post;
+        }
+      }
+    }
+
+    return head;
+  }
+
+  /**
+   * 多线程随机读取节点属性和入度
+   */
+  @Benchmark
+  @Threads(4)
+  public int dagGraphConcurrentRead() {
+    String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    return dagGraph.getVertex(key).length() + dagGraph.getIndegree(key);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int compactDagConcurrentRead() {
+    String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    int id = compactDag.indexOf(key);
+    return compactDag.getVertex(id).length() + compactDag.getIndegree(id);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CompactDagBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.common.utils.graph;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompactDagTest {
+
+  /**
+   * 1->2,3,4, 2->5, 3->5, 5->7, 10->4, 4->6, 6->7, 8, 9
+   */
+  private Graph<Integer, String, String> graph() {
+    Graph<Integer, String, String> graph = new DAGGraph<>();
+
+    for (int i = 1; i <= 10; ++i) {
+      graph.addVertex(i, "v_" + i);
+    }
+
+    graph.addEdge(1, 2);
+    graph.addEdge(1, 3);
+    graph.addEdge(1, 4);
+    graph.addEdge(2, 5);
+    graph.addEdge(3, 5);
+    graph.addEdge(5, 7);
+    graph.addEdge(10, 4);
+    graph.addEdge(4, 6);
+    graph.addEdge(6, 7);
+
+    return graph;
+  }
+
+  private Set<Integer> postNodes(CompactDag<Integer, String> dag, int key) {
+    Set<Integer> posts = new HashSet<>();
+    int id = dag.indexOf(key);
+    for (int i = 0; i < dag.getOutdegree(id); ++i) {
+      posts.add(dag.getKey(dag.getSuccessor(id, i)));
+    }
+    return posts;
+  }
+
+  private Set<Integer> preNodes(CompactDag<Integer, String> dag, int key) {
+    Set<Integer> pres = new HashSet<>();
+    int id = dag.indexOf(key);
+    for (int i = 0; i < dag.getIndegree(id); ++i) {
+      pres.add(dag.getKey(dag.getPredecessor(id, i)));
+    }
+    return pres;
+  }
+
+  @Test
+  public void testOfGraph() throws Exception {
+    Graph<Integer, String, String> graph = graph();
+    CompactDag<Integer, String> dag = CompactDag.of(graph);
+
+    assertEquals(graph.getVertexNumber(), dag.size());
+    assertEquals(graph.getEdgeNumber(), dag.getEdgeNumber());
+
+    for (int key = 1; key <= 10; ++key) {
+      assertTrue(dag.containsVertex(key));
+      assertEquals("v_" + key, dag.getVertex(key));
+      assertEquals(graph.getIndegree(key), dag.getIndegree(dag.indexOf(key)));
+      assertEquals(graph.getOutdegree(key), dag.getOutdegree(dag.indexOf(key)));
+      assertEquals(graph.getPostNode(key), postNodes(dag, key));
+      assertEquals(graph.getPreNode(key), preNodes(dag, key));
+    }
+
+    assertFalse(dag.containsVertex(11));
+    assertEquals(-1, dag.indexOf(11));
+    assertNull(dag.getVertex(11));
+  }
+
+  @Test
+  public void testTopologicalSort() throws Exception {
+    CompactDag<Integer, String> dag = CompactDag.of(graph());
+    List<Integer> sort = dag.topologicalSort();
+
+    assertEquals(10, sort.size());
+
+    // 编号即拓扑排序的顺序, 每条边的起点编号都小于终点编号
+    for (int id = 0; id < dag.size(); ++id) {
+      assertEquals(sort.get(id), dag.getKey(id));
+      for (int i = 0; i < dag.getOutdegree(id); ++i) {
+        assertTrue(id < dag.getSuccessor(id, i));
+      }
+    }
+  }
+
+  @Test
+  public void testBuilder() throws Exception {
+    CompactDag<String, String> dag = CompactDag.<String, String>builder()
+        .addVertex("a", "1")
+        .addVertex("b", "2")
+        .addVertex("c", "3")
+        .addVertex("a", "4")
+        .addEdge("a", "b")
+        .addEdge("a", "b")
+        .addEdge("b", "c")
+        .addEdge("a", "a")
+        .addEdge("a", "d")
+        .build();
+
+    assertEquals(3, dag.size());
+    assertEquals(2, dag.getEdgeNumber());
+    assertEquals("4", dag.getVertex("a"));
+    assertEquals(Arrays.asList("a", "b", "c"), dag.topologicalSort());
+    assertEquals(Arrays.asList(0, 1, 1), toList(dag.copyIndegrees()));
+
+    // 拷贝的入度可以修改
+    dag.copyIndegrees()[1] = 100;
+    assertEquals(1, dag.getIndegree(1));
+  }
+
+  @Test
+  public void testCycle() {
+    try {
+      CompactDag.<String, String>builder()
+          .addVertex("a", null)
+          .addVertex("b", null)
+          .addVertex("c", null)
+          .addEdge("a", "b")
+          .addEdge("b", "c")
+          .addEdge("c", "a")
+          .build();
+      fail("cycle should be detected");
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    CompactDag<String, String> dag = CompactDag.<String, String>builder().build();
+
+    assertEquals(0, dag.size());
+    assertTrue(dag.topologicalSort().isEmpty());
+  }
+
+  private List<Integer> toList(int[] values) {
+    List<Integer> list = new ArrayList<>();
+    for (int value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+}
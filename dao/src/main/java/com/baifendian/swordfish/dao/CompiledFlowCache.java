@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao;
+
+import com.baifendian.swordfish.dao.model.FlowNode;
+import com.baifendian.swordfish.dao.model.FlowNodeRelation;
+import com.baifendian.swordfish.dao.model.flow.FlowDag;
+import com.baifendian.swordfish.dao.utils.json.JsonUtil;
+
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * 编译后的工作流缓存 <p>
+ *
+ * 以 (flowId, modifyTime) 为版本, 保存校验过的 DAG, 拓扑排序以及序列化后的 workflowData. 工作流修改时 modifyTime 会变化,
+ * 其他进程 (如 web-server) 的修改也能通过版本发现; 同一进程内的修改会直接失效对应的缓存. <p>
+ *
+ * modifyTime 只精确到秒, 为防止同一秒内的两次修改读到旧的版本, 缓存项在 {@link #maxAge} 之后会重新加载.
+ */
+class CompiledFlowCache {
+
+  /**
+   * 最多缓存的工作流数目
+   */
+  private final int maxSize;
+
+  /**
+   * 缓存项的最长有效时间, 单位: 毫秒
+   */
+  private final long maxAge;
+
+  /**
+   * flowId -> 编译后的工作流, 按访问顺序淘汰
+   */
+  private final Map<Integer, CompiledFlow> flows;
+
+  CompiledFlowCache(int maxSize, long maxAge) {
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+    this.flows = new LinkedHashMap<Integer, CompiledFlow>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CompiledFlow> eldest) {
+        return size() > CompiledFlowCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * 获取指定版本的工作流 <p>
+   *
+   * @return 版本不一致或者已经过期时返回 null
+   */
+  synchronized CompiledFlow get(int flowId, Date modifyTime) {
+    CompiledFlow flow = flows.get(flowId);
+
+    if (flow == null) {
+      return null;
+    }
+
+    if (flow.modifyTime != time(modifyTime) || System.currentTimeMillis() - flow.compileTime > maxAge) {
+      flows.remove(flowId);
+      return null;
+    }
+
+    return flow;
+  }
+
+  synchronized void put(CompiledFlow flow) {
+    flows.put(flow.flowId, flow);
+  }
+
+  synchronized void invalidate(int flowId) {
+    flows.remove(flowId);
+  }
+
+  synchronized int size() {
+    return flows.size();
+  }
+
+  private static long time(Date date) {
+    return (date == null) ? 0 : date.getTime();
+  }
+
+  /**
+   * 编译工作流: 由节点的依赖生成 DAG, 校验无环, 计算拓扑排序并序列化 <p>
+   *
+   * @param flowId     工作流 id
+   * @param modifyTime 工作流的修改时间
+   * @param flowNodes  工作流的节点
+   * @return 编译后的工作流
+   * @throws Exception DAG 中存在环
+   */
+  static CompiledFlow compile(int flowId, Date modifyTime, List<FlowNode> flowNodes) throws Exception {
+    Map<String, Integer> indegrees = new HashMap<>();
+    Map<String, List<String>> postNodes = new HashMap<>();
+    List<FlowNodeRelation> flowNodeRelations = new ArrayList<>();
+
+    for (FlowNode flowNode : flowNodes) {
+      indegrees.put(flowNode.getName(), 0);
+      postNodes.put(flowNode.getName(), new ArrayList<>());
+    }
+
+    for (FlowNode flowNode : flowNodes) {
+      List<String> depList = flowNode.getDepList();
+      if (CollectionUtils.isEmpty(depList)) {
+        continue;
+      }
+
+      for (String depNode : depList) {
+        flowNodeRelations.add(new FlowNodeRelation(flowId, depNode, flowNode.getName()));
+
+        // 依赖的节点不存在时, 保留这条边, 和执行时一样忽略它
+        if (!postNodes.containsKey(depNode)) {
+          continue;
+        }
+
+        postNodes.get(depNode).add(flowNode.getName());
+        indegrees.put(flowNode.getName(), indegrees.get(flowNode.getName()) + 1);
+      }
+    }
+
+    // 拓扑排序, 同时校验无环
+    List<String> topologicalOrder = new ArrayList<>(flowNodes.size());
+    Queue<String> zeroVertex = new ArrayDeque<>();
+
+    for (FlowNode flowNode : flowNodes) {
+      if (indegrees.get(flowNode.getName()) == 0) {
+        zeroVertex.add(flowNode.getName());
+      }
+    }
+
+    while (!zeroVertex.isEmpty()) {
+      String name = zeroVertex.poll();
+      topologicalOrder.add(name);
+
+      for (String postNode : postNodes.get(name)) {
+        int indegree = indegrees.get(postNode) - 1;
+        indegrees.put(postNode, indegree);
+        if (indegree == 0) {
+          zeroVertex.add(postNode);
+        }
+      }
+    }
+
+    if (topologicalOrder.size() != indegrees.size()) {
+      throw new Exception(String.format("flow %d has a cycle", flowId));
+    }
+
+    FlowDag flowDag = new FlowDag();
+    flowDag.setNodes(Collections.unmodifiableList(new ArrayList<>(flowNodes)));
+    flowDag.setEdges(Collections.unmodifiableList(flowNodeRelations));
+
+    return new CompiledFlow(flowId, time(modifyTime), flowDag, Collections.unmodifiableList(topologicalOrder), JsonUtil.toJsonString(flowDag));
+  }
+
+  /**
+   * 编译后的工作流, 只读 <p>
+   */
+  static class CompiledFlow {
+
+    private final int flowId;
+
+    private final long modifyTime;
+
+    private final long compileTime = System.currentTimeMillis();
+
+    /**
+     * 完整的 DAG, 不要修改
+     */
+    private final FlowDag flowDag;
+
+    private final List<String> topologicalOrder;
+
+    /**
+     * 完整 DAG 序列化后的结果
+     */
+    private final String workflowData;
+
+    CompiledFlow(int flowId, long modifyTime, FlowDag flowDag, List<String> topologicalOrder, String workflowData) {
+      this.flowId = flowId;
+      this.modifyTime = modifyTime;
+      this.flowDag = flowDag;
+      this.topologicalOrder = topologicalOrder;
+      this.workflowData = workflowData;
+    }
+
+    int getFlowId() {
+      return flowId;
+    }
+
+    FlowDag getFlowDag() {
+      return flowDag;
+    }
+
+    List<String> getTopologicalOrder() {
+      return topologicalOrder;
+    }
+
+    String getWorkflowData() {
+      return workflowData;
+    }
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao;
+
+import com.baifendian.swordfish.dao.model.ExecutionNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * execution_nodes 的写缓冲 <p>
+ *
+ * 同一个节点 (execId, name) 的多次写合并成一次, 由后台线程按间隔批量写入; <p>
+ * 结束状态的写在调用线程中同步写入数据库, 失败时把异常抛给调用者, 不会被缓冲或丢弃; <p>
+ * 插入 (以及带有完整字段的结束状态的更新) 以 upsert 的方式写入, 重试时不会主键冲突, 行不存在时也不会更新 0 行; <p>
+ * 缓冲的插入永远不会被丢弃, 多次失败后按指数退避单独重试, 不影响其他节点的写入; <p>
+ * 第一次写入时注册 JVM 退出时的刷新, 不依赖使用者显式调用 {@link #destroy()}.
+ */
+abstract class ExecutionNodeBuffer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionNodeBuffer.class);
+
+  /**
+   * 非结束状态的写入失败的最大重试次数, 超过后更新被丢弃, 插入改为退避后单独重试, 避免一直阻塞其他节点的写入
+   */
+  private static final int MAX_WRITE_FAILURES = 3;
+
+  /**
+   * 插入单独重试的最大间隔, 单位: 毫秒
+   */
+  private static final long MAX_RETRY_BACKOFF = 60 * 1000;
+
+  /**
+   * 刷新的间隔, 单位: 毫秒
+   */
+  private final long flushInterval;
+
+  /**
+   * 待写入的节点, 按写入顺序
+   */
+  private final Map<String, PendingNode> pendings = new LinkedHashMap<>();
+
+  /**
+   * 保证同时只有一个线程在写数据库
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * 后台刷新线程, 第一次写入时启动
+   */
+  private ScheduledExecutorService flusher;
+
+  /**
+   * 是否已经注册了 JVM 退出时的刷新
+   */
+  private boolean shutdownHookAdded = false;
+
+  ExecutionNodeBuffer(long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+   * 缓冲一次插入, 结束状态的插入同步写入 <p>
+   */
+  void insert(ExecutionNode executionNode) {
+    add(executionNode, true);
+  }
+
+  /**
+   * 缓冲一次更新, 只有非空的字段会被更新, 结束状态的更新同步写入 <p>
+   */
+  void update(ExecutionNode executionNode) {
+    add(executionNode, false);
+  }
+
+  /**
+   * 把缓冲的写入数据库 <p>
+   */
+  void flush() {
+    synchronized (flushLock) {
+      List<PendingNode> batch = new ArrayList<>();
+      List<PendingNode> retries = new ArrayList<>();
+      synchronized (pendings) {
+        if (pendings.isEmpty()) {
+          return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<PendingNode> iterator = pendings.values().iterator();
+        while (iterator.hasNext()) {
+          PendingNode pending = iterator.next();
+          if (pending.failures < MAX_WRITE_FAILURES) {
+            batch.add(pending);
+            iterator.remove();
+          } else if (pending.retryTime <= now) {
+            retries.add(pending);
+            iterator.remove();
+          }
+        }
+      }
+
+      if (!batch.isEmpty()) {
+        try {
+          write(batch);
+        } catch (Exception e) {
+          LOGGER.error("write execution nodes error, size:" + batch.size(), e);
+          // 放回缓冲, 下次重试, 期间新的写合并在其后
+          restore(batch);
+        }
+      }
+
+      // 多次失败的插入每个单独写入, 一个写不进去的节点不会拖累其他节点
+      for (PendingNode pending : retries) {
+        try {
+          write(Collections.singletonList(pending));
+        } catch (Exception e) {
+          LOGGER.error("retry execution node exec id:" + pending.node.getExecId() + ", name:" + pending.node.getName()
+              + " error, failures:" + pending.failures, e);
+          restore(Collections.singletonList(pending));
+        }
+      }
+    }
+  }
+
+  /**
+   * 停止后台线程, 并写入剩余的数据 <p>
+   */
+  void destroy() {
+    synchronized (this) {
+      if (flusher != null) {
+        flusher.shutdownNow();
+        flusher = null;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * 待写入的数目 <p>
+   */
+  int size() {
+    synchronized (pendings) {
+      return pendings.size();
+    }
+  }
+
+  /**
+   * 批量写入数据库, 先插入后更新, 插入需要以 upsert 的方式写入 (行已存在时按更新处理) <p>
+   */
+  protected abstract void write(List<ExecutionNode> inserts, List<ExecutionNode> updates);
+
+  private void add(ExecutionNode executionNode, boolean insert) {
+    if (executionNode.getStatus() != null && executionNode.getStatus().typeIsFinished()) {
+      writeFinished(executionNode, insert);
+      return;
+    }
+
+    String key = genKey(executionNode);
+    synchronized (pendings) {
+      PendingNode pending = pendings.get(key);
+      if (pending == null) {
+        pendings.put(key, new PendingNode(copy(executionNode), insert));
+      } else {
+        combine(pending, executionNode, insert);
+      }
+    }
+
+    startFlusher();
+  }
+
+  /**
+   * 同步写入结束状态, 连同缓冲中的其他写一起; 失败时其他写放回缓冲, 结束状态的写把异常抛给调用者 <p>
+   */
+  private void writeFinished(ExecutionNode executionNode, boolean insert) {
+    synchronized (flushLock) {
+      PendingNode finished;
+      List<PendingNode> batch;
+      synchronized (pendings) {
+        // 该节点之前缓冲的写 (比如还没写入的插入) 与结束状态合并
+        finished = pendings.remove(genKey(executionNode));
+        if (finished == null) {
+          finished = new PendingNode(copy(executionNode), insert);
+        } else {
+          combine(finished, executionNode, insert);
+        }
+        // 字段完整的结束状态以 upsert 写入, 即使之前的插入没有写进去, 节点也不会从 execution_nodes 中消失
+        if (!finished.insert && isComplete(finished.node)) {
+          finished.insert = true;
+        }
+        // 多次失败的插入留在缓冲中单独重试, 不和结束状态一起写, 避免结束状态因为其他节点而写入失败
+        batch = new ArrayList<>();
+        Iterator<PendingNode> iterator = pendings.values().iterator();
+        while (iterator.hasNext()) {
+          PendingNode pending = iterator.next();
+          if (pending.failures < MAX_WRITE_FAILURES) {
+            batch.add(pending);
+            iterator.remove();
+          }
+        }
+      }
+      batch.add(finished);
+
+      try {
+        write(batch);
+      } catch (RuntimeException e) {
+        batch.remove(finished);
+        restore(batch);
+        throw e;
+      }
+    }
+  }
+
+  private void write(List<PendingNode> batch) {
+    List<ExecutionNode> inserts = new ArrayList<>();
+    List<ExecutionNode> updates = new ArrayList<>();
+    for (PendingNode pending : batch) {
+      if (pending.insert) {
+        inserts.add(pending.node);
+      } else {
+        updates.add(pending.node);
+      }
+    }
+    write(inserts, updates);
+  }
+
+  private void restore(List<PendingNode> batch) {
+    synchronized (pendings) {
+      Map<String, PendingNode> newer = new LinkedHashMap<>(pendings);
+      pendings.clear();
+      long now = System.currentTimeMillis();
+      for (PendingNode pending : batch) {
+        ++pending.failures;
+        if (pending.insert) {
+          // 插入不丢弃, 否则之后的更新都匹配不到行, 节点会从 execution_nodes 中消失
+          if (pending.failures >= MAX_WRITE_FAILURES) {
+            pending.retryTime = now + backoff(pending.failures - MAX_WRITE_FAILURES);
+          }
+        } else if (pending.failures > MAX_WRITE_FAILURES) {
+          LOGGER.error("drop execution node exec id:{}, name:{}, status:{}", pending.node.getExecId(), pending.node.getName(), pending.node.getStatus());
+          continue;
+        }
+        pendings.put(genKey(pending.node), pending);
+      }
+      for (Map.Entry<String, PendingNode> entry : newer.entrySet()) {
+        PendingNode older = pendings.get(entry.getKey());
+        PendingNode pending = entry.getValue();
+        if (older == null || pending.insert) {
+          pendings.put(entry.getKey(), pending);
+        } else {
+          merge(older.node, pending.node);
+        }
+      }
+    }
+  }
+
+  private synchronized void startFlusher() {
+    if (flusher != null) {
+      return;
+    }
+    if (!shutdownHookAdded) {
+      try {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+          @Override
+          public void run() {
+            destroy();
+          }
+        }, "ExecutionNode-Shutdown"));
+        shutdownHookAdded = true;
+      } catch (IllegalStateException e) {
+        // JVM 正在退出, 不能再注册
+        LOGGER.warn("add execution node shutdown hook error", e);
+      }
+    }
+    flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "ExecutionNode-Flusher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    flusher.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        } catch (Exception e) {
+          LOGGER.error("flush execution nodes error", e);
+        }
+      }
+    }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 第 n 次单独重试前的等待时间 <p>
+   */
+  private long backoff(int retries) {
+    long delay = Math.max(flushInterval, 1) << Math.min(retries, 16);
+    return Math.min(delay, MAX_RETRY_BACKOFF);
+  }
+
+  /**
+   * 是否有插入需要的全部非空字段, 有的话可以 upsert <p>
+   */
+  private static boolean isComplete(ExecutionNode executionNode) {
+    return executionNode.getStartTime() != null && executionNode.getAttempt() != null
+        && executionNode.getJobId() != null && executionNode.getStatus() != null;
+  }
+
+  private static String genKey(ExecutionNode executionNode) {
+    return executionNode.getExecId() + "_" + executionNode.getName();
+  }
+
+  /**
+   * 把一次写合并到该节点已缓冲的写 <p>
+   */
+  private static void combine(PendingNode pending, ExecutionNode executionNode, boolean insert) {
+    if (insert) {
+      // 插入会写所有的字段, 覆盖之前的更新
+      pending.node = copy(executionNode);
+      pending.insert = true;
+    } else {
+      merge(pending.node, executionNode);
+    }
+  }
+
+  /**
+   * 复制一份, 调用者之后对节点的修改不影响缓冲 <p>
+   */
+  private static ExecutionNode copy(ExecutionNode executionNode) {
+    ExecutionNode node = new ExecutionNode();
+    node.setExecId(executionNode.getExecId());
+    node.setName(executionNode.getName());
+    node.setStatus(executionNode.getStatus());
+    node.setStartTime(executionNode.getStartTime());
+    node.setEndTime(executionNode.getEndTime());
+    node.setAttempt(executionNode.getAttempt());
+    node.setJobId(executionNode.getJobId());
+    if (executionNode.getLogLinks() != null) {
+      node.setLogLinks(executionNode.getLogLinks());
+    }
+    return node;
+  }
+
+  /**
+   * 把 from 中非空的字段合并到 to, 与依次执行 update 的效果相同 <p>
+   */
+  private static void merge(ExecutionNode to, ExecutionNode from) {
+    if (from.getStatus() != null) {
+      to.setStatus(from.getStatus());
+    }
+    if (from.getStartTime() != null) {
+      to.setStartTime(from.getStartTime());
+    }
+    if (from.getEndTime() != null) {
+      to.setEndTime(from.getEndTime());
+    }
+    if (from.getAttempt() != null) {
+      to.setAttempt(from.getAttempt());
+    }
+    if (from.getJobId() != null) {
+      to.setJobId(from.getJobId());
+    }
+    if (from.getLogLinks() != null) {
+      to.setLogLinks(from.getLogLinks());
+    }
+  }
+
+  private static class PendingNode {
+    ExecutionNode node;
+
+    boolean insert;
+
+    int failures = 0;
+
+    /**
+     * 多次失败的插入下次单独重试的时间 (ms)
+     */
+    long retryTime = 0;
+
+    PendingNode(ExecutionNode node, boolean insert) {
+      this.node = node;
+      this.insert = insert;
+    }
+  }
+}
@@ -23,17 +23,35 @@ import com.baifendian.swordfish.dao.model.flow.FlowDag;
 import com.baifendian.swordfish.dao.utils.DagHelper;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class FlowDao extends BaseDao {
+
+  private static Logger logger = LoggerFactory.getLogger(FlowDao.class.getName());
+
   @Autowired
   private ExecutionFlowMapper executionFlowMapper;
 
@@ -49,6 +67,69 @@ public class FlowDao extends BaseDao {
   @Autowired
   private ExecutionNodeMapper executionNodeMapper;
 
+  @Autowired
+  private ExecutionStatMapper executionStatMapper;
+
+  /**
+   * execution_nodes 写缓冲的刷新间隔, 单位: 毫秒
+   */
+  private static final long EXECUTION_NODE_FLUSH_INTERVAL = 1000;
+
+  /**
+   * execution_nodes 的写缓冲, 批量写入数据库
+   */
+  private final ExecutionNodeBuffer executionNodeBuffer = new ExecutionNodeBuffer(EXECUTION_NODE_FLUSH_INTERVAL) {
+    @Override
+    protected void write(List<ExecutionNode> inserts, List<ExecutionNode> updates) {
+      writeExecutionNodes(inserts, updates);
+    }
+  };
+
+  /**
+   * 最多缓存的编译后工作流数目
+   */
+  private static final int COMPILED_FLOW_CACHE_SIZE = 1024;
+
+  /**
+   * 编译后工作流的最长缓存时间, 单位: 毫秒
+   */
+  private static final long COMPILED_FLOW_MAX_AGE = 10 * 60 * 1000;
+
+  /**
+   * 编译后的工作流, 调度触发时不需要每次都重新加载节点和生成 DAG
+   */
+  private final CompiledFlowCache compiledFlowCache = new CompiledFlowCache(COMPILED_FLOW_CACHE_SIZE, COMPILED_FLOW_MAX_AGE);
+
+  /**
+   * 最多记录的统计失败的执行数, 超出后只能通过重建修正
+   */
+  private static final int MAX_FAILED_STAT_EXECS = 10000;
+
+  /**
+   * 计入统计失败的次数
+   */
+  private final AtomicLong statFailures = new AtomicLong();
+
+  /**
+   * 计入统计失败的执行, 由后台线程重试; 只在内存中, 重启后丢失, 见 {@link #recordExecutionStat(int)}
+   */
+  private final Set<Integer> failedStatExecs = ConcurrentHashMap.newKeySet();
+
+  /**
+   * 每次重试的最大执行数
+   */
+  private static final int STAT_RETRY_BATCH = 100;
+
+  /**
+   * 重试的间隔, 单位: 毫秒
+   */
+  private static final long STAT_RETRY_INTERVAL = 60 * 1000;
+
+  /**
+   * 统计重试线程, 第一次统计失败时启动
+   */
+  private ScheduledExecutorService statRetrier;
+
   @Override
   protected void init() {
     executionFlowMapper = ConnectionFactory.getSqlSession().getMapper(ExecutionFlowMapper.class);
@@ -56,6 +137,7 @@ public class FlowDao extends BaseDao {
     flowNodeMapper = ConnectionFactory.getSqlSession().getMapper(FlowNodeMapper.class);
     scheduleMapper = ConnectionFactory.getSqlSession().getMapper(ScheduleMapper.class);
     executionNodeMapper = ConnectionFactory.getSqlSession().getMapper(ExecutionNodeMapper.class);
+    executionStatMapper = ConnectionFactory.getSqlSession().getMapper(ExecutionStatMapper.class);
   }
 
   public FlowNode queryNodeInfo(Integer nodeId) {
@@ -64,12 +146,18 @@ public class FlowDao extends BaseDao {
   }
 
   /**
-   * 获取 flow 执行详情 <p>
+   * 获取 flow 执行详情, 不在在线表时查询归档表 <p>
    *
    * @return {@link ExecutionFlow}
    */
   public ExecutionFlow queryExecutionFlow(int execId) {
-    return executionFlowMapper.selectByExecId(execId);
+    ExecutionFlow executionFlow = executionFlowMapper.selectByExecId(execId);
+
+    if (executionFlow == null) {
+      executionFlow = executionFlowMapper.selectArchiveByExecId(execId);
+    }
+
+    return executionFlow;
   }
 
   /**
@@ -92,7 +180,29 @@ public class FlowDao extends BaseDao {
    * @return List<{@link ExecutionFlow}>
    */
   public List<ExecutionFlow> queryFlowLastStatus(Integer flowId, Date startDate, Date endDate) {
-    return executionFlowMapper.selectByFlowIdAndTimes(flowId, startDate, endDate);
+    List<ExecutionFlow> executionFlows = executionFlowMapper.selectByFlowIdAndTimes(flowId, startDate, endDate);
+    List<ExecutionFlow> archivedFlows = executionFlowMapper.selectArchiveByFlowIdAndTimes(flowId, startDate, endDate);
+
+    if (archivedFlows.isEmpty()) {
+      return executionFlows;
+    }
+
+    if (executionFlows.isEmpty()) {
+      return archivedFlows;
+    }
+
+    // 两个表中各自最早的调度时间, 取更早的那个, 相同时合并
+    int cmp = archivedFlows.get(0).getScheduleTime().compareTo(executionFlows.get(0).getScheduleTime());
+
+    if (cmp < 0) {
+      return archivedFlows;
+    }
+
+    if (cmp == 0) {
+      executionFlows.addAll(archivedFlows);
+    }
+
+    return executionFlows;
   }
 
   /**
@@ -101,7 +211,10 @@ public class FlowDao extends BaseDao {
    * @return List<{@link ExecutionFlow}>
    */
   public List<ExecutionFlow> queryFlowLastStatus(int flowId, Date scheduleTime) {
-    return executionFlowMapper.selectByFlowIdAndTime(flowId, scheduleTime);
+    List<ExecutionFlow> executionFlows = executionFlowMapper.selectByFlowIdAndTime(flowId, scheduleTime);
+    executionFlows.addAll(executionFlowMapper.selectArchiveByFlowIdAndTime(flowId, scheduleTime));
+
+    return executionFlows;
   }
 
   /**
@@ -119,7 +232,7 @@ public class FlowDao extends BaseDao {
       executionFlow.setEndTime(new Date());
     }
 
-    return executionFlowMapper.update(executionFlow) > 0;
+    return updateExecutionFlow(executionFlow);
   }
 
   public boolean updateExecutionFlowStatus(int execId, FlowStatus status, String worker) {
@@ -132,16 +245,189 @@ public class FlowDao extends BaseDao {
       executionFlow.setEndTime(new Date());
     }
 
-    return executionFlowMapper.update(executionFlow) > 0;
+    return updateExecutionFlow(executionFlow);
   }
 
   /**
-   * 更新 flow 执行详情 <p>
+   * 更新 flow 执行详情, 到达结束状态时计入执行统计 <p>
    *
    * @return 是否成功
    */
   public boolean updateExecutionFlow(ExecutionFlow executionFlow) {
-    return executionFlowMapper.update(executionFlow) > 0;
+    boolean updated = executionFlowMapper.update(executionFlow) > 0;
+
+    if (updated && executionFlow.getStatus() != null && executionFlow.getStatus().typeIsFinished()) {
+      recordExecutionStat(executionFlow.getId());
+    }
+
+    return updated;
+  }
+
+  /**
+   * 把结束的执行计入统计, 同一个执行重复调用只会计入一次, 结束状态变化时会修正统计 <p>
+   *
+   * 统计失败不影响执行状态的更新: 失败的执行会被记录下来, 由后台线程每分钟最多重试 {@link #STAT_RETRY_BATCH} 个,
+   * 不占用更新状态的线程; 失败次数见 {@link #getStatFailures()}. <p>
+   *
+   * 失败的执行只记录在内存中, 记录满了之后的失败, 以及进程重启时还没有重试成功的, 都不会再计入,
+   * 需要通过 {@link #rebuildExecutionStats(int, Date, Date)} (POST /statistic/rebuild) 修正.
+   *
+   * @param execId
+   */
+  public void recordExecutionStat(int execId) {
+    tryRecordExecutionStat(execId);
+  }
+
+  /**
+   * 计入统计失败的总次数 <p>
+   */
+  public long getStatFailures() {
+    return statFailures.get();
+  }
+
+  /**
+   * 等待重试的统计失败的执行数 <p>
+   */
+  public int getFailedStatExecCount() {
+    return failedStatExecs.size();
+  }
+
+  private boolean tryRecordExecutionStat(int execId) {
+    try {
+      doRecordExecutionStat(execId);
+      return true;
+    } catch (Exception e) {
+      long failures = statFailures.incrementAndGet();
+
+      if (failedStatExecs.size() < MAX_FAILED_STAT_EXECS) {
+        failedStatExecs.add(execId);
+        startStatRetrier();
+        logger.error("Record execution stat of exec {} error, failures: {}, waiting for retry: {}", execId, failures, failedStatExecs.size(), e);
+      } else {
+        logger.error("Record execution stat of exec {} error, failures: {}, too many waiting for retry, rebuild the stats of the project to fix it",
+            execId, failures, e);
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * 重试一批统计失败的执行, 遇到失败时停止, 等下一次再试 <p>
+   */
+  private void retryFailedStats() {
+    int count = 0;
+    for (Integer execId : failedStatExecs) {
+      if (count++ >= STAT_RETRY_BATCH) {
+        break;
+      }
+      if (failedStatExecs.remove(execId) && !tryRecordExecutionStat(execId)) {
+        break;
+      }
+    }
+  }
+
+  private synchronized void startStatRetrier() {
+    if (statRetrier != null) {
+      return;
+    }
+
+    statRetrier = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "ExecutionStat-Retry");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    statRetrier.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          retryFailedStats();
+        } catch (Exception e) {
+          logger.error("Retry execution stats error", e);
+        }
+      }
+    }, STAT_RETRY_INTERVAL, STAT_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  private void doRecordExecutionStat(int execId) {
+    ExecutionFlow executionFlow = executionFlowMapper.selectByExecId(execId);
+    ExecutionStatRecord record = (executionFlow == null) ? null : ExecutionStatRecord.of(executionFlow);
+
+    if (record == null) {
+      return;
+    }
+
+    SqlSession sqlSession = ConnectionFactory.getSqlSessionFactory().openSession(false);
+    try {
+      ExecutionStatMapper mapper = sqlSession.getMapper(ExecutionStatMapper.class);
+
+      if (mapper.insertRecordIgnore(record) > 0) {
+        mapper.increaseStat(record);
+      } else {
+        ExecutionStatRecord old = mapper.selectRecordForUpdate(execId);
+
+        if (!record.sameStat(old)) {
+          if (old != null) {
+            mapper.decreaseStat(old);
+          }
+
+          mapper.updateRecord(record);
+
+          // 扣除的可能是最大耗时, 从统计记录重新计算
+          if (old != null) {
+            mapper.updateMaxConsume(old);
+          }
+
+          mapper.increaseStat(record);
+        }
+      }
+
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  /**
+   * 从 execution_flows 重建项目在 [startDate, endDate) 的执行统计, 按天截断, 每天一个事务 <p>
+   *
+   * @param projectId
+   * @param startDate
+   * @param endDate
+   * @return 重建的统计记录数
+   */
+  public int rebuildExecutionStats(int projectId, Date startDate, Date endDate) {
+    Calendar calendar = Calendar.getInstance();
+
+    calendar.setTime(ExecutionStatRecord.truncateToHour(startDate));
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+
+    int count = 0;
+
+    while (calendar.getTime().before(endDate)) {
+      Date dayStart = calendar.getTime();
+      calendar.add(Calendar.DAY_OF_MONTH, 1);
+      Date dayEnd = calendar.getTime();
+
+      SqlSession sqlSession = ConnectionFactory.getSqlSessionFactory().openSession(false);
+      try {
+        ExecutionStatMapper mapper = sqlSession.getMapper(ExecutionStatMapper.class);
+
+        mapper.deleteStats(projectId, dayStart, dayEnd);
+        mapper.deleteRecords(projectId, dayStart, dayEnd);
+        count += mapper.rebuildRecords(projectId, dayStart, dayEnd);
+        mapper.rebuildStats(projectId, dayStart, dayEnd);
+
+        sqlSession.commit();
+      } finally {
+        sqlSession.close();
+      }
+    }
+
+    return count;
   }
 
   /**
@@ -151,22 +437,32 @@ public class FlowDao extends BaseDao {
    */
   public ExecutionFlow scheduleFlowToExecution(Integer projectId, Integer workflowId, int submitUser, Date scheduleTime, ExecType runType,
                                                Integer maxTryTimes, String nodeName, NodeDepType nodeDep, NotifyType notifyType, List<String> mails, int timeout) throws Exception {
-    List<FlowNode> flowNodes = flowNodeMapper.selectByFlowId(workflowId); // 节点信息
-    List<FlowNodeRelation> flowNodeRelations = new ArrayList<>();
-
-    for (FlowNode flowNode : flowNodes) {
-      String dep = flowNode.getDep();
-      if (StringUtils.isNotEmpty(dep)) {
-        List<String> depList = JsonUtil.parseObjectList(dep, String.class);
-        for (String depNode : depList) {
-          flowNodeRelations.add(new FlowNodeRelation(workflowId, depNode, flowNode.getName()));
-        }
-      }
+    ProjectFlow projectFlow = projectFlowMapper.findById(workflowId);
+
+    if (projectFlow == null) {
+      throw new Exception(String.format("flow %d not found", workflowId));
     }
 
-    ProjectFlow projectFlow = projectFlowMapper.findById(workflowId);
+    return scheduleFlowToExecution(projectFlow, submitUser, scheduleTime, runType, maxTryTimes, nodeName, nodeDep, notifyType, mails, timeout);
+  }
+
+  /**
+   * 调度 workflow 时，插入执行信息（调度或者补数据）, 工作流信息已经查询过 <p>
+   *
+   * DAG 取自编译后的缓存, 工作流没有修改时只需要插入一条执行记录.
+   *
+   * @param projectFlow 工作流, 可以不包含节点信息, 见 {@link #queryProjectFlow(int)}
+   * @return {@link ExecutionFlow}
+   */
+  public ExecutionFlow scheduleFlowToExecution(ProjectFlow projectFlow, int submitUser, Date scheduleTime, ExecType runType,
+                                               Integer maxTryTimes, String nodeName, NodeDepType nodeDep, NotifyType notifyType, List<String> mails, int timeout) throws Exception {
+    int workflowId = projectFlow.getId();
+    CompiledFlowCache.CompiledFlow compiledFlow = getCompiledFlow(projectFlow);
+    List<FlowNode> flowNodes = compiledFlow.getFlowDag().getNodes();
+
+    // 缓存的 DAG 是共享的, 需要修改时使用拷贝
     FlowDag flowDag = new FlowDag();
-    flowDag.setEdges(flowNodeRelations);
+    flowDag.setEdges(compiledFlow.getFlowDag().getEdges());
     flowDag.setNodes(flowNodes);
 
     // TODO:: 处理邮件的字段信息, 以及工作流节点的信息
@@ -197,7 +493,7 @@ public class FlowDao extends BaseDao {
         throw new Exception(String.format("node %s not found in flow %d", nodeName, workflowId));
       }
     }
-    executionFlow.setWorkflowData(JsonUtil.toJsonString(flowDag));
+    executionFlow.setWorkflowData((nodeName == null) ? compiledFlow.getWorkflowData() : JsonUtil.toJsonString(flowDag));
     executionFlow.setUserDefinedParams(projectFlow.getUserDefinedParams());
     executionFlow.setType(runType);
     executionFlow.setMaxTryTimes(maxTryTimes);
@@ -212,6 +508,30 @@ public class FlowDao extends BaseDao {
     return executionFlow;
   }
 
+  /**
+   * 获取编译后的工作流, 版本 (modifyTime) 变化时重新加载节点并编译 <p>
+   */
+  private CompiledFlowCache.CompiledFlow getCompiledFlow(ProjectFlow projectFlow) throws Exception {
+    CompiledFlowCache.CompiledFlow compiledFlow = compiledFlowCache.get(projectFlow.getId(), projectFlow.getModifyTime());
+
+    if (compiledFlow == null) {
+      List<FlowNode> flowNodes = flowNodeMapper.selectByFlowId(projectFlow.getId()); // 节点信息
+      compiledFlow = CompiledFlowCache.compile(projectFlow.getId(), projectFlow.getModifyTime(), flowNodes);
+      compiledFlowCache.put(compiledFlow);
+    }
+
+    return compiledFlow;
+  }
+
+  /**
+   * 工作流修改或删除后, 使编译后的缓存失效 <p>
+   *
+   * @param workflowId
+   */
+  public void invalidateCompiledFlow(int workflowId) {
+    compiledFlowCache.invalidate(workflowId);
+  }
+
   /**
    * 创建工作流 创建的工作流已有发布时间
    *
@@ -240,6 +560,7 @@ public class FlowDao extends BaseDao {
   public void deleteWorkflow(int workflowId) {
     projectFlowMapper.deleteById(workflowId);
     flowNodeMapper.deleteByFlowId(workflowId);
+    invalidateCompiledFlow(workflowId);
     // flowNodePubMapper.deleteByFlowId(workflowId);
     // scheduleMapper.deleteByFlowId(workflowId);
   }
@@ -308,25 +629,146 @@ public class FlowDao extends BaseDao {
   */
 
   /**
-   * 插入 ExecutionNode <p>
+   * 插入 ExecutionNode, 写入缓冲, 由后台批量写入数据库 <p>
    */
   public void insertExecutionNode(ExecutionNode executionNode) {
-    // 插入执行节点信息
-    executionNodeMapper.insert(executionNode);
+    executionNodeBuffer.insert(executionNode);
   }
 
   /**
-   * 更新 ExecutionNode <p>
+   * 更新 ExecutionNode, 同一个节点的多次更新会合并, 结束状态同步写入数据库, 失败时抛出异常 <p>
    */
   public void updateExecutionNode(ExecutionNode executionNode) {
-    // 更新执行节点信息
-    executionNodeMapper.update(executionNode);
+    executionNodeBuffer.update(executionNode);
+  }
+
+  /**
+   * 把缓冲的 ExecutionNode 写入数据库 <p>
+   */
+  public void flushExecutionNodes() {
+    executionNodeBuffer.flush();
+  }
+
+  /**
+   * 停止 ExecutionNode 的后台写入线程, 并写入剩余的数据 <p>
+   * Spring 容器关闭时调用; 非 Spring 创建的实例由缓冲注册的 JVM 退出刷新保证
+   */
+  @PreDestroy
+  public void destroyExecutionNodeBuffer() {
+    executionNodeBuffer.destroy();
   }
 
   public ExecutionNode queryExecutionNode(long execId, String nodeName) {
+    executionNodeBuffer.flush();
     return executionNodeMapper.selectExecNode(execId, nodeName);
   }
 
+  /**
+   * 在一个 batch 的 session 中写入 ExecutionNode <p>
+   */
+  private void writeExecutionNodes(List<ExecutionNode> inserts, List<ExecutionNode> updates) {
+    SqlSession sqlSession = ConnectionFactory.getSqlSessionFactory().openSession(ExecutorType.BATCH, false);
+    try {
+      ExecutionNodeMapper mapper = sqlSession.getMapper(ExecutionNodeMapper.class);
+      for (ExecutionNode executionNode : inserts) {
+        mapper.upsert(executionNode);
+      }
+      for (ExecutionNode executionNode : updates) {
+        mapper.update(executionNode);
+      }
+      for (BatchResult result : sqlSession.flushStatements()) {
+        // 没有完整字段而不能 upsert 的更新, 匹配不到行时至少要留下记录
+        int[] updateCounts = result.getUpdateCounts();
+        for (int i = 0; i < updateCounts.length; ++i) {
+          if (updateCounts[i] == 0 && result.getSql().trim().toUpperCase().startsWith("UPDATE")) {
+            ExecutionNode executionNode = (ExecutionNode) ((Map<?, ?>) result.getParameterObjects().get(i)).get("executionNode");
+            logger.error("Update of execution node matched no row, exec id: {}, name: {}, status: {}",
+                executionNode.getExecId(), executionNode.getName(), executionNode.getStatus());
+          }
+        }
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  /**
+   * 查询一个 flow 执行的所有节点信息 <p>
+   *
+   * @return List<{@link ExecutionNode}>
+   */
+  public List<ExecutionNode> queryExecutionNodes(int execId) {
+    executionNodeBuffer.flush();
+    List<ExecutionNode> executionNodes = executionNodeMapper.selectExecNodeById(execId);
+
+    if (executionNodes.isEmpty()) {
+      executionNodes = executionNodeMapper.selectArchiveExecNodeById(execId);
+    }
+
+    return executionNodes;
+  }
+
+  /**
+   * 根据 job id 查询节点, 不在在线表时查询归档表 <p>
+   *
+   * @return {@link ExecutionNode}
+   */
+  public ExecutionNode queryExecutionNodeByJobId(String jobId) {
+    executionNodeBuffer.flush();
+    ExecutionNode executionNode = executionNodeMapper.selectExecNodeByJobId(jobId);
+
+    if (executionNode == null) {
+      executionNode = executionNodeMapper.selectArchiveExecNodeByJobId(jobId);
+    }
+
+    return executionNode;
+  }
+
+  /**
+   * 把结束时间早于 before 的执行及其节点移到归档表, 每批一个事务 <p>
+   *
+   * 先拷贝再删除, 拷贝时忽略已经存在的记录, 中断后再次执行是安全的.
+   *
+   * @param before    结束时间早于该时间的执行会被归档
+   * @param batchSize 每批的执行数
+   * @return 归档的执行数
+   */
+  public int archiveExecutionFlows(Date before, int batchSize) {
+    int count = 0;
+
+    while (true) {
+      List<Integer> execIds = executionFlowMapper.selectArchivableIds(before, batchSize);
+
+      if (execIds.isEmpty()) {
+        break;
+      }
+
+      SqlSession sqlSession = ConnectionFactory.getSqlSessionFactory().openSession(false);
+      try {
+        ExecutionFlowMapper flowMapper = sqlSession.getMapper(ExecutionFlowMapper.class);
+        ExecutionNodeMapper nodeMapper = sqlSession.getMapper(ExecutionNodeMapper.class);
+
+        nodeMapper.archiveByExecIds(execIds);
+        flowMapper.archiveByIds(execIds);
+        nodeMapper.deleteByExecIds(execIds);
+        flowMapper.deleteByIds(execIds);
+
+        sqlSession.commit();
+      } finally {
+        sqlSession.close();
+      }
+
+      count += execIds.size();
+
+      if (execIds.size() < batchSize) {
+        break;
+      }
+    }
+
+    return count;
+  }
+
   /**
    * 查询 Schedule <p>
    *
@@ -353,6 +795,16 @@ public class FlowDao extends BaseDao {
     return projectFlow;
   }
 
+  /**
+   * 根据Id获取工作流, 不包含节点信息
+   *
+   * @param id
+   * @return
+   */
+  public ProjectFlow queryProjectFlow(int id) {
+    return projectFlowMapper.findById(id);
+  }
+
   /**
    * 根据Id获取一个workflow
    *
@@ -397,6 +849,7 @@ public class FlowDao extends BaseDao {
       flowNodeMapper.insert(flowNode);
     }
     projectFlowMapper.updateById(projectFlow);
+    invalidateCompiledFlow(projectFlow.getId());
   }
 
   /**
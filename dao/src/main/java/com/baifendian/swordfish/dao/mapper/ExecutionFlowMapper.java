@@ -19,8 +19,6 @@ import com.baifendian.swordfish.dao.enums.ExecType;
 import com.baifendian.swordfish.dao.enums.FlowStatus;
 import com.baifendian.swordfish.dao.enums.NotifyType;
 import com.baifendian.swordfish.dao.model.ExecutionFlow;
-import com.baifendian.swordfish.dao.model.ExecutionFlowError;
-import com.baifendian.swordfish.dao.model.ExecutionState;
 import com.baifendian.swordfish.dao.model.MaintainQuery;
 
 import org.apache.ibatis.annotations.*;
@@ -105,6 +103,37 @@ public interface ExecutionFlowMapper {
   @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectByExecId")
   ExecutionFlow selectByExecId(@Param("execId") Integer execId);
 
+  /**
+   * 从归档表查询执行详情 <p>
+   */
+  @Results(value = {@Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "projectId", column = "project_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "projectName", column = "project_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, javaType = FlowStatus.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "submitUserId", column = "submit_user_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "submitUser", column = "submit_user_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "owner", column = "owner_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "proxyUser", column = "proxy_user", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "submitTime", column = "submit_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "workflowData", column = "workflow_data", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, javaType = ExecType.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "flowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "queue", column = "queue", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "userDefinedParams", column = "user_defined_params", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "extras", column = "extras", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "maxTryTimes", column = "max_try_times", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "timeout", column = "timeout", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "notifyType", column = "notify_type", typeHandler = EnumOrdinalTypeHandler.class, javaType = NotifyType.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "notifyMails", column = "notify_mails", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+  })
+  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectArchiveByExecId")
+  ExecutionFlow selectArchiveByExecId(@Param("execId") Integer execId);
+
   @Results(value = {@Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
           @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
           @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
@@ -124,11 +153,24 @@ public interface ExecutionFlowMapper {
           @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
           @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
           @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
-          @Result(property = "scheduleTime", column = "schedule_time", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
           @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),})
   @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectByFlowIdAndTimes")
   List<ExecutionFlow> selectByFlowIdAndTimes(@Param("flowId") Integer flowId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
+  /**
+   * 从归档表按时间段查询 flow 的最早一次调度 <p>
+   */
+  @Results(value = {
+          @Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),})
+  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectArchiveByFlowIdAndTimes")
+  List<ExecutionFlow> selectArchiveByFlowIdAndTimes(@Param("flowId") Integer flowId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
   @Results(value = {
           @Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
           @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
@@ -147,6 +189,27 @@ public interface ExecutionFlowMapper {
   @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectByFlowIdAndTimesAndStatusLimit")
   List<ExecutionFlow> selectByFlowIdAndTimesAndStatusLimit(@Param("projectName") String projectName,@Param("workflowList") List<String> workflowList, @Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("start") int start, @Param("limit") int limit, @Param("status")List<FlowStatus> statuses);
 
+  /**
+   * 按游标查询执行列表, 游标为上一页最后一条的 (schedule_time, id), cursorTime 为 null 时从第一条开始 <p>
+   */
+  @Results(value = {
+          @Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "flowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "projectName", column = "project_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "submitTime", column = "submit_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "submitUserId", column = "schedule_user", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "submitUser", column = "submit_user_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),})
+  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectByFlowIdAndTimesAndStatusAfter")
+  List<ExecutionFlow> selectByFlowIdAndTimesAndStatusAfter(@Param("projectName") String projectName, @Param("workflowList") List<String> workflowList, @Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("cursorTime") Date cursorTime, @Param("cursorId") int cursorId, @Param("limit") int limit, @Param("status") List<FlowStatus> statuses);
+
   @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "sumByFlowIdAndTimesAndStatus")
   int sumByFlowIdAndTimesAndStatus(@Param("projectName") String projectName,@Param("workflowList") List<String> workflowList,@Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("status")List<FlowStatus> statuses);
 
@@ -160,6 +223,19 @@ public interface ExecutionFlowMapper {
   @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectByFlowIdAndTime")
   List<ExecutionFlow> selectByFlowIdAndTime(@Param("flowId") Integer flowId, @Param("scheduleTime") Date scheduleTime);
 
+  /**
+   * 从归档表按调度时间查询 flow 的执行 <p>
+   */
+  @Results(value = {
+          @Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),})
+  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectArchiveByFlowIdAndTime")
+  List<ExecutionFlow> selectArchiveByFlowIdAndTime(@Param("flowId") Integer flowId, @Param("scheduleTime") Date scheduleTime);
+
   @Results(value = {
           @Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
           @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
@@ -172,62 +248,17 @@ public interface ExecutionFlowMapper {
   int deleteByExecId(@Param("execId") int execId);
 
   /**
-   * 统计出一段时间内，某个项目下各种状态下的任务数（天为单位）
-   * @return
+   * 查询结束时间早于 before 的已结束执行, 最多 limit 个 <p>
    */
-  @Results(value = {
-          @Result(property = "day", column = "day", id = true, javaType = Date.class, jdbcType = JdbcType.DATE),
-          @Result(property = "init", column = "INIT", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "waitingDep", column = "WAITING_DEP", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "waitingRes", column = "WAITING_RES", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "running", column = "RUNNING", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "success", column = "SUCCESS", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "kill", column = "KILL", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "failed", column = "FAILED", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "depFailed", column = "DEP_FAILED", javaType = int.class, jdbcType = JdbcType.INTEGER),
-  })
-  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectStateByProject")
-  List<ExecutionState> selectStateByProject(@Param("projectId") int projectId,@Param("startDate") Date startDate,@Param("endDate") Date endDate);
+  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectArchivableIds")
+  List<Integer> selectArchivableIds(@Param("before") Date before, @Param("limit") int limit);
 
   /**
-   * 统计某天的工作流耗时TOP
-   * @param projectId
-   * @param top
-   * @param date
-   * @return
+   * 把执行拷贝到归档表 <p>
    */
-  @Results(value = {@Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "flowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "projectName", column = "project_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
-          @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
-          @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
-          @Result(property = "submitTime", column = "submit_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
-          @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
-          @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
-          @Result(property = "submitUserId", column = "schedule_user", javaType = int.class, jdbcType = JdbcType.INTEGER),
-          @Result(property = "submitUser", column = "submit_user_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, jdbcType = JdbcType.TINYINT),
-          @Result(property = "consume", column = "consume", javaType = int.class, jdbcType = JdbcType.INTEGER),
-  })
-  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectConsumesByProject")
-  List<ExecutionFlow> selectConsumesByProject(@Param("projectId") int projectId,@Param("top") int top,@Param("date") Date date);
+  @InsertProvider(type = ExecutionFlowMapperProvider.class, method = "archiveByIds")
+  int archiveByIds(@Param("ids") List<Integer> ids);
 
-  /**
-   * 统计某天的工作流异常数TOP
-   * @param projectId
-   * @param top
-   * @param date
-   * @return
-   */
-  @Results(value = {
-          @Result(property = "workflowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "projectName", column = "project_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "owner", column = "owner_name",javaType = String.class, jdbcType = JdbcType.VARCHAR),
-          @Result(property = "times", column = "times", javaType = int.class, jdbcType = JdbcType.INTEGER),
-  })
-  @SelectProvider(type = ExecutionFlowMapperProvider.class, method = "selectErrorsByProject")
-  List<ExecutionFlowError> selectErrorsByProject(@Param("projectId") int projectId, @Param("top") int top, @Param("date") Date date);
+  @DeleteProvider(type = ExecutionFlowMapperProvider.class, method = "deleteByIds")
+  int deleteByIds(@Param("ids") List<Integer> ids);
 }
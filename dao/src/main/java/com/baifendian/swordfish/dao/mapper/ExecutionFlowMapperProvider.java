@@ -47,6 +47,14 @@ public class ExecutionFlowMapperProvider {
 
   public static final String TABLE_NAME = "execution_flows";
 
+  /**
+   * 归档表, 结构和 execution_flows 相同, 保存超过保留期限的已结束执行
+   */
+  public static final String ARCHIVE_TABLE_NAME = "execution_flows_archive";
+
+  private static final String FINISHED_STATUS = FlowStatus.SUCCESS.getType() + "," + FlowStatus.KILL.getType() + ","
+      + FlowStatus.FAILED.getType() + "," + FlowStatus.DEP_FAILED.getType();
+
   List<Integer> flowTypes = new ArrayList<>();
 
   List<Integer> flowTypesNoLong = new ArrayList<>();
@@ -233,6 +241,14 @@ public class ExecutionFlowMapperProvider {
   }
 
   public String selectByExecId(Map<String, Object> parameter) {
+    return selectByExecId(TABLE_NAME);
+  }
+
+  public String selectArchiveByExecId(Map<String, Object> parameter) {
+    return selectByExecId(ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectByExecId(String table) {
     String sql = new SQL() {
       {
         SELECT("a.*");
@@ -241,7 +257,7 @@ public class ExecutionFlowMapperProvider {
         SELECT("b.owner as owner_id");
         SELECT("c.name as project_name");
         SELECT("u.name as submit_user_name");
-        FROM("execution_flows a");
+        FROM(table + " a");
         INNER_JOIN("project_flows b on a.flow_id = b.id");
         INNER_JOIN("project c on b.project_id = c.id");
         INNER_JOIN("user u on a.submit_user = u.id");
@@ -260,10 +276,18 @@ public class ExecutionFlowMapperProvider {
   }
 
   public String selectByFlowIdAndTimes(Map<String, Object> parameter) {
+    return selectByFlowIdAndTimes(TABLE_NAME);
+  }
+
+  public String selectArchiveByFlowIdAndTimes(Map<String, Object> parameter) {
+    return selectByFlowIdAndTimes(ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectByFlowIdAndTimes(String table) {
     StringBuilder sb = new StringBuilder();
     String inExpr = "(" + ExecType.DIRECT.ordinal() + "," + ExecType.COMPLEMENT_DATA.ordinal() + ")";
-    sb.append("SELECT id, flow_id, worker, type, status, schedule_time FROM execution_flows WHERE flow_id = #{flowId} AND type IN " + inExpr + " AND ");
-    sb.append("schedule_time = (SELECT MIN(schedule_time) FROM execution_flows WHERE flow_id = #{flowId} AND type IN" + inExpr
+    sb.append("SELECT id, flow_id, worker, type, status, schedule_time FROM " + table + " WHERE flow_id = #{flowId} AND type IN " + inExpr + " AND ");
+    sb.append("schedule_time = (SELECT MIN(schedule_time) FROM " + table + " WHERE flow_id = #{flowId} AND type IN" + inExpr
             + " AND schedule_time >= #{startDate} AND schedule_time < #{endDate})");
 
     return sb.toString();
@@ -274,31 +298,71 @@ public class ExecutionFlowMapperProvider {
 
     List<String> workflowList = (List<String>) parameter.get("workflowList");
 
-    List<String> workflowList2 = new ArrayList<>();
+    List<String> workflowList2 = quoteNames(workflowList);
 
-    if (CollectionUtils.isNotEmpty(workflowList)){
-      for (String workflow:workflowList){
-        workflowList2.add("\""+workflow+"\"");
-      }
-    }
+    String where = joinStatus(flowStatuses);
 
+    // 同时查询在线表和归档表, 每个表最多取到当前页的末尾, 再合并排序
+    String armLimit = " order by e_f.schedule_time DESC limit " + ((int) parameter.get("start") + (int) parameter.get("limit"));
 
-    List<String> flowStatusStrList = new ArrayList<>();
-    if (CollectionUtils.isNotEmpty(flowStatuses)) {
-      for (FlowStatus status : flowStatuses) {
-        flowStatusStrList.add(status.getType().toString());
+    String sql = "(" + selectByFlowIdAndTimesAndStatus(TABLE_NAME, workflowList, workflowList2, flowStatuses, where) + armLimit + ") UNION ALL ("
+        + selectByFlowIdAndTimesAndStatus(ARCHIVE_TABLE_NAME, workflowList, workflowList2, flowStatuses, where) + armLimit + ")";
+
+    String sql2 = new SQL() {
+      {
+        SELECT("e_f.*");
+        SELECT("u.name as submit_user_name");
+        FROM("(" + sql + ") e_f");
+        JOIN("user u on e_f.submit_user = u.id");
       }
-    }
+    }.toString()+" order by schedule_time DESC limit #{start},#{limit}";
+    return sql2;
+  }
 
-    String where = String.join(",", flowStatusStrList);
+  /**
+   * 按游标翻页, 取排序在 (cursorTime, cursorId) 之后的执行, 游标为空时从第一条开始 <p>
+   *
+   * 排序为 schedule_time DESC, id DESC. 过滤条件是项目 (和工作流), 执行表上对应的访问路径是
+   * flow_schedule_time_id (flow_id, schedule_time, id) 索引: 从 project, project_flows 得到工作流之后,
+   * 每个工作流在索引上从游标处到 startDate 范围扫描, 读取的行数只和该项目在范围内的执行数有关, 和整个表的大小无关.
+   * 只有一个工作流时索引的顺序就是结果的顺序, 取满 limit 行即停止; 多个工作流时需要对范围内的行排序. <p>
+   *
+   * 不指定连接顺序和索引, 由优化器根据项目的大小选择; 这里的访问路径还没有在 MySQL 上用 EXPLAIN 验证过.
+   */
+  public String selectByFlowIdAndTimesAndStatusAfter(Map<String, Object> parameter) {
+    List<FlowStatus> flowStatuses = (List<FlowStatus>) parameter.get("status");
 
-    String sql = new SQL() {
+    List<String> workflowList = (List<String>) parameter.get("workflowList");
+
+    List<String> workflowList2 = quoteNames(workflowList);
+
+    String where = joinStatus(flowStatuses);
+
+    boolean after = parameter.get("cursorTime") != null;
+
+    String armLimit = " order by e_f.schedule_time DESC, e_f.id DESC limit #{limit}";
+
+    String sql = "(" + selectByFlowIdAndTimesAndStatusAfter(TABLE_NAME, workflowList, workflowList2, flowStatuses, where, after) + armLimit + ") UNION ALL ("
+        + selectByFlowIdAndTimesAndStatusAfter(ARCHIVE_TABLE_NAME, workflowList, workflowList2, flowStatuses, where, after) + armLimit + ")";
+
+    return new SQL() {
+      {
+        SELECT("e_f.*");
+        SELECT("u.name as submit_user_name");
+        FROM("(" + sql + ") e_f");
+        JOIN("user u on e_f.submit_user = u.id");
+      }
+    }.toString() + " order by e_f.schedule_time DESC, e_f.id DESC limit #{limit}";
+  }
+
+  private String selectByFlowIdAndTimesAndStatus(String table, List<String> workflowList, List<String> workflowList2, List<FlowStatus> flowStatuses, String where) {
+    return new SQL() {
       {
         SELECT("e_f.*");
         SELECT("p_f.name as flow_name");
         SELECT("p.name as project_name");
         SELECT("u.name as owner");
-        FROM("execution_flows e_f");
+        FROM(table + " e_f");
         JOIN("project_flows p_f on e_f.flow_id = p_f.id");
         JOIN("project p on p_f.project_id = p.id");
         JOIN("user u on p_f.owner = u.id");
@@ -315,16 +379,35 @@ public class ExecutionFlowMapperProvider {
 
       }
     }.toString();
+  }
 
-    String sql2 = new SQL() {
+  private String selectByFlowIdAndTimesAndStatusAfter(String table, List<String> workflowList, List<String> workflowList2, List<FlowStatus> flowStatuses, String where, boolean after) {
+    return new SQL() {
       {
         SELECT("e_f.*");
-        SELECT("u.name as submit_user_name");
-        FROM("(" + sql + ") e_f");
-        JOIN("user u on e_f.submit_user = u.id");
+        SELECT("p_f.name as flow_name");
+        SELECT("p.name as project_name");
+        SELECT("u.name as owner");
+        FROM(table + " e_f");
+        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
+        JOIN("project p on p_f.project_id = p.id");
+        JOIN("user u on p_f.owner = u.id");
+        WHERE("p.name = #{projectName}");
+        if (CollectionUtils.isNotEmpty(workflowList)) {
+          WHERE("p_f.name in (" + String.join(",", workflowList2) + ")");
+        }
+        WHERE("e_f.schedule_time >= #{startDate}");
+        WHERE("e_f.schedule_time <= #{endDate}");
+        if (CollectionUtils.isNotEmpty(flowStatuses)) {
+          WHERE("e_f.`status` in (" + where + ")");
+        }
+        if (after) {
+          // 先给出 schedule_time 的上界, 让索引的范围从游标处开始, 同一时刻的再按 id 过滤
+          WHERE("e_f.schedule_time <= #{cursorTime}");
+          WHERE("(e_f.schedule_time < #{cursorTime} OR e_f.id < #{cursorId})");
+        }
       }
-    }.toString()+" order by schedule_time DESC limit #{start},#{limit}";
-    return sql2;
+    }.toString();
   }
 
   public String sumByFlowIdAndTimesAndStatus(Map<String, Object> parameter) {
@@ -332,28 +415,19 @@ public class ExecutionFlowMapperProvider {
 
     List<String> workflowList = (List<String>) parameter.get("workflowList");
 
-    List<String> workflowList2 = new ArrayList<>();
-
-    if (CollectionUtils.isNotEmpty(workflowList)){
-      for (String workflow:workflowList){
-        workflowList2.add("\""+workflow+"\"");
-      }
-    }
-
+    List<String> workflowList2 = quoteNames(workflowList);
 
-    List<String> flowStatusStrList = new ArrayList<>();
-    if (CollectionUtils.isNotEmpty(flowStatuses)) {
-      for (FlowStatus status : flowStatuses) {
-        flowStatusStrList.add(status.getType().toString());
-      }
-    }
+    String where = joinStatus(flowStatuses);
 
-    String where = String.join(",", flowStatusStrList);
+    return "SELECT (" + sumByFlowIdAndTimesAndStatus(TABLE_NAME, workflowList, workflowList2, flowStatuses, where) + ") + ("
+        + sumByFlowIdAndTimesAndStatus(ARCHIVE_TABLE_NAME, workflowList, workflowList2, flowStatuses, where) + ")";
+  }
 
+  private String sumByFlowIdAndTimesAndStatus(String table, List<String> workflowList, List<String> workflowList2, List<FlowStatus> flowStatuses, String where) {
     return new SQL() {
       {
         SELECT("count(0)");
-        FROM("execution_flows e_f");
+        FROM(table + " e_f");
         JOIN("project_flows p_f on e_f.flow_id = p_f.id");
         JOIN("project p on p_f.project_id = p.id");
         WHERE("p.name = #{projectName}");
@@ -371,10 +445,44 @@ public class ExecutionFlowMapperProvider {
     }.toString();
   }
 
+  /**
+   * 工作流名称加上引号, 用于 in 条件
+   */
+  static List<String> quoteNames(List<String> workflowList) {
+    List<String> workflowList2 = new ArrayList<>();
+
+    if (CollectionUtils.isNotEmpty(workflowList)){
+      for (String workflow:workflowList){
+        workflowList2.add("\""+workflow+"\"");
+      }
+    }
+
+    return workflowList2;
+  }
+
+  static String joinStatus(List<FlowStatus> flowStatuses) {
+    List<String> flowStatusStrList = new ArrayList<>();
+    if (CollectionUtils.isNotEmpty(flowStatuses)) {
+      for (FlowStatus status : flowStatuses) {
+        flowStatusStrList.add(status.getType().toString());
+      }
+    }
+
+    return String.join(",", flowStatusStrList);
+  }
+
   public String selectByFlowIdAndTime(Map<String, Object> parameter) {
+    return selectByFlowIdAndTime(TABLE_NAME);
+  }
+
+  public String selectArchiveByFlowIdAndTime(Map<String, Object> parameter) {
+    return selectByFlowIdAndTime(ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectByFlowIdAndTime(String table) {
     StringBuilder sb = new StringBuilder();
     String inExpr = "(" + ExecType.DIRECT.ordinal() + "," + ExecType.COMPLEMENT_DATA.ordinal() + ")";
-    sb.append("SELECT id, flow_id, worker, type, status, schedule_time FROM execution_flows WHERE flow_id = #{flowId} AND type IN " + inExpr + " AND ");
+    sb.append("SELECT id, flow_id, worker, type, status, schedule_time FROM " + table + " WHERE flow_id = #{flowId} AND type IN " + inExpr + " AND ");
     sb.append("schedule_time = #{scheduleTime}");
 
     return sb.toString();
@@ -396,6 +504,38 @@ public class ExecutionFlowMapperProvider {
     return sb.toString();
   }
 
+  /**
+   * 结束时间早于 before 的执行, 按 id 排序, 用于分批归档
+   */
+  public String selectArchivableIds(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("id");
+        FROM(TABLE_NAME);
+        WHERE("end_time < #{before}");
+        WHERE("status in (" + FINISHED_STATUS + ")");
+        ORDER_BY("id");
+      }
+    }.toString() + " limit #{limit}";
+  }
+
+  /**
+   * 把执行拷贝到归档表, 已经存在的忽略, 保证中断后可以重做
+   */
+  public String archiveByIds(Map<String, Object> parameter) {
+    return "INSERT IGNORE INTO " + ARCHIVE_TABLE_NAME + " SELECT * FROM " + TABLE_NAME
+        + " WHERE id in (" + StringUtils.join((List<Integer>) parameter.get("ids"), ",") + ")";
+  }
+
+  public String deleteByIds(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        DELETE_FROM(TABLE_NAME);
+        WHERE("id in (" + StringUtils.join((List<Integer>) parameter.get("ids"), ",") + ")");
+      }
+    }.toString();
+  }
+
   public String deleteByExecId(Map<String, Object> parameter) {
     return new SQL() {
       {
@@ -547,60 +687,4 @@ public class ExecutionFlowMapperProvider {
     String sql = String.format("%s LIMIT 0, #{num}", sqlTemp);
     return sql;
   }
-
-  public String selectStateByProject(Map<String,Object> parameter) {
-    return new SQL(){
-      {
-        SELECT("str_to_date(DATE_FORMAT(e_f.schedule_time,'%Y%m%d'),'%Y%m%d') as day,\n" +
-                "SUM(case e_f.status when 0 then 1 else 0 end) as INIT,\n" +
-                "SUM(case e_f.status when 1 then 1 else 0 end) as WAITING_DEP,\n" +
-                "SUM(case e_f.status when 2 then 1 else 0 end) as WAITING_RES,\n" +
-                "SUM(case e_f.status when 3 then 1 else 0 end) as RUNNING,\n" +
-                "SUM(case e_f.status when 4 then 1 else 0 end) as SUCCESS,\n" +
-                "SUM(case e_f.status when 5 then 1 else 0 end) as `KILL`,\n" +
-                "SUM(case e_f.status when 6 then 1 else 0 end) as `FAILED`,\n" +
-                "SUM(case e_f.status when 7 then 1 else 0 end) as `DEP_FAILED`");
-        FROM("execution_flows e_f");
-        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
-        WHERE("e_f.schedule_time >= #{startDate} AND e_f.schedule_time <= #{endDate}");
-        WHERE("p_f.project_id = #{projectId}");
-        GROUP_BY("day");
-      }
-    }.toString();
-  }
-
-  public String selectConsumesByProject(Map<String,Object> parameter) {
-    return new SQL(){
-      {
-        SELECT("timestampdiff(SECOND,start_time,end_time) as consume");
-        SELECT("e_f.*");
-        SELECT("p_f.name as flow_name");
-        SELECT("u.name as owner_name");
-        FROM("execution_flows e_f");
-        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
-        JOIN("user u on p_f.owner = u.id");
-        WHERE("str_to_date(DATE_FORMAT(e_f.schedule_time,'%Y%m%d'),'%Y%m%d') = #{date}");
-        ORDER_BY("consume DESC");
-      }
-    }.toString()+" limit #{top}";
-  }
-
-  public String selectErrorsByProject(Map<String,Object> parameter) {
-    return new SQL(){
-      {
-        SELECT("count(0) as times");
-        SELECT("p_f.name as flow_name");
-        SELECT("u.name as owner_name");
-        SELECT("p.name as projectName");
-        FROM("execution_flows e_f");
-        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
-        JOIN("user u on p_f.owner = u.id");
-        JOIN("project p on p_f.project_id = p.id");
-        WHERE("str_to_date(DATE_FORMAT(e_f.schedule_time,'%Y%m%d'),'%Y%m%d') = #{date}");
-        WHERE("e_f.status in ("+FlowStatus.FAILED.getType()+","+FlowStatus.DEP_FAILED.getType()+")");
-        GROUP_BY("e_f.flow_id");
-        ORDER_BY("times DESC");
-      }
-    }.toString()+" limit #{top}";
-  }
 }
@@ -39,6 +39,14 @@ public interface ExecutionNodeMapper {
   @InsertProvider(type = ExecutionNodeMapperProvider.class, method = "insert")
   int insert(@Param("executionNode") ExecutionNode executionNode);
 
+  /**
+   * 插入记录, 记录已经存在时更新 <p>
+   *
+   * @return 影响的记录数
+   */
+  @InsertProvider(type = ExecutionNodeMapperProvider.class, method = "upsert")
+  int upsert(@Param("executionNode") ExecutionNode executionNode);
+
   /**
    * workflow 执执行的节点的信息更新 <p>
    *
@@ -78,6 +86,22 @@ public interface ExecutionNodeMapper {
   @SelectProvider(type = ExecutionNodeMapperProvider.class, method = "selectExecNodeById")
   List<ExecutionNode> selectExecNodeById(@Param("execId") int execId);
 
+  /**
+   * 从归档表查询 <p>
+   */
+  @Results(value = {
+          @Result(property = "execId", column = "exec_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "name", column = "name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, javaType = FlowStatus.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "attempt", column = "attempt", javaType = int.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "logLinks", column = "log_links", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "jobId", column = "job_id", javaType = String.class, jdbcType = JdbcType.VARCHAR)
+  })
+  @SelectProvider(type = ExecutionNodeMapperProvider.class, method = "selectArchiveExecNodeById")
+  List<ExecutionNode> selectArchiveExecNodeById(@Param("execId") int execId);
+
   /**
    * 根据jobId查询
    * @param jobId
@@ -96,6 +120,31 @@ public interface ExecutionNodeMapper {
   @SelectProvider(type = ExecutionNodeMapperProvider.class, method = "selectExecNodeByJobId")
   ExecutionNode selectExecNodeByJobId(@Param("jobId") String jobId);
 
+  /**
+   * 从归档表查询 <p>
+   */
+  @Results(value = {
+          @Result(property = "execId", column = "exec_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+          @Result(property = "name", column = "name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, javaType = FlowStatus.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+          @Result(property = "attempt", column = "attempt", javaType = int.class, jdbcType = JdbcType.TINYINT),
+          @Result(property = "logLinks", column = "log_links", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+          @Result(property = "jobId", column = "job_id", javaType = String.class, jdbcType = JdbcType.VARCHAR)
+  })
+  @SelectProvider(type = ExecutionNodeMapperProvider.class, method = "selectArchiveExecNodeByJobId")
+  ExecutionNode selectArchiveExecNodeByJobId(@Param("jobId") String jobId);
+
   @DeleteProvider(type = ExecutionNodeMapperProvider.class, method = "deleteByExecId")
   int deleteByExecId(@Param("execId") Long execId);
+
+  /**
+   * 把执行的节点拷贝到归档表 <p>
+   */
+  @InsertProvider(type = ExecutionNodeMapperProvider.class, method = "archiveByExecIds")
+  int archiveByExecIds(@Param("execIds") List<Integer> execIds);
+
+  @DeleteProvider(type = ExecutionNodeMapperProvider.class, method = "deleteByExecIds")
+  int deleteByExecIds(@Param("execIds") List<Integer> execIds);
 }
@@ -37,6 +37,11 @@ public class ExecutionNodeMapperProvider {
 
   public static final String TABLE_NAME = "execution_nodes";
 
+  /**
+   * 归档表, 结构和 execution_nodes 相同
+   */
+  public static final String ARCHIVE_TABLE_NAME = "execution_nodes_archive";
+
   List<Integer> flowTypes = new ArrayList<>();
 
   public ExecutionNodeMapperProvider() {
@@ -61,6 +66,32 @@ public class ExecutionNodeMapperProvider {
     }.toString();
   }
 
+  /**
+   * 插入, 行已经存在时按 update 的规则更新, 写缓冲重试插入时不会主键冲突 <p>
+   */
+  public String upsert(Map<String, Object> parameter) {
+    ExecutionNode executionNode = (ExecutionNode) parameter.get("executionNode");
+
+    List<String> sets = new ArrayList<>();
+    if (executionNode.getAttempt() != null) {
+      sets.add("attempt = #{executionNode.attempt}");
+    }
+    if (executionNode.getEndTime() != null) {
+      sets.add("end_time = #{executionNode.endTime}");
+    }
+    if (executionNode.getStatus() != null) {
+      sets.add("status = " + EnumFieldUtil.genFieldStr("executionNode.status", FlowStatus.class));
+    }
+    if (executionNode.getLogLinks() != null) {
+      sets.add("log_links = #{executionNode.logLinks}");
+    }
+    if (sets.isEmpty()) {
+      sets.add("exec_id = exec_id");
+    }
+
+    return insert(parameter) + " ON DUPLICATE KEY UPDATE " + String.join(", ", sets);
+  }
+
   public String update(Map<String, Object> parameter) {
     ExecutionNode executionNode = (ExecutionNode) parameter.get("executionNode");
     return new SQL() {
@@ -97,20 +128,36 @@ public class ExecutionNodeMapperProvider {
   }
 
   public String selectExecNodeById(Map<String, Object> parameter){
+    return selectExecNodeById(TABLE_NAME);
+  }
+
+  public String selectArchiveExecNodeById(Map<String, Object> parameter){
+    return selectExecNodeById(ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectExecNodeById(String table){
     return new SQL() {
       {
         SELECT("*");
-        FROM(TABLE_NAME);
+        FROM(table);
         WHERE("exec_id = #{execId}");
       }
     }.toString();
   }
 
   public String selectExecNodeByJobId(Map<String, Object> parameter){
+    return selectExecNodeByJobId(TABLE_NAME);
+  }
+
+  public String selectArchiveExecNodeByJobId(Map<String, Object> parameter){
+    return selectExecNodeByJobId(ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectExecNodeByJobId(String table){
     return new SQL() {
       {
         SELECT("*");
-        FROM(TABLE_NAME);
+        FROM(table);
         WHERE("job_id = #{jobId}");
       }
     }.toString();
@@ -127,6 +174,23 @@ public class ExecutionNodeMapperProvider {
     }.toString();
   }
 
+  /**
+   * 把执行的节点拷贝到归档表, 已经存在的忽略
+   */
+  public String archiveByExecIds(Map<String, Object> parameter) {
+    return "INSERT IGNORE INTO " + ARCHIVE_TABLE_NAME + " SELECT * FROM " + TABLE_NAME
+        + " WHERE exec_id in (" + StringUtils.join((List<Integer>) parameter.get("execIds"), ",") + ")";
+  }
+
+  public String deleteByExecIds(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        DELETE_FROM(TABLE_NAME);
+        WHERE("exec_id in (" + StringUtils.join((List<Integer>) parameter.get("execIds"), ",") + ")");
+      }
+    }.toString();
+  }
+
   public String deleteByExecId(Map<String, Object> parameter) {
     return new SQL() {
       {
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao.mapper;
+
+import com.baifendian.swordfish.dao.enums.ExecType;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import com.baifendian.swordfish.dao.model.ExecutionFlowError;
+import com.baifendian.swordfish.dao.model.ExecutionStatRecord;
+import com.baifendian.swordfish.dao.model.ExecutionState;
+import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.type.EnumOrdinalTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.mybatis.spring.annotation.MapperScan;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 执行统计的汇总信息, 执行结束时增量更新, 统计查询只读汇总表 <p>
+ */
+@MapperScan
+public interface ExecutionStatMapper {
+
+  /**
+   * 查询并锁定一次执行的统计记录, 需要在事务中使用
+   *
+   * @param execId
+   * @return
+   */
+  @Results(value = {
+      @Result(property = "execId", column = "exec_id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "projectId", column = "project_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "statTime", column = "stat_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, javaType = FlowStatus.class, jdbcType = JdbcType.TINYINT),
+      @Result(property = "consume", column = "consume", javaType = int.class, jdbcType = JdbcType.INTEGER),
+  })
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "selectRecordForUpdate")
+  ExecutionStatRecord selectRecordForUpdate(@Param("execId") int execId);
+
+  /**
+   * 插入统计记录, 已经存在时返回 0
+   *
+   * @param record
+   * @return
+   */
+  @InsertProvider(type = ExecutionStatMapperProvider.class, method = "insertRecordIgnore")
+  int insertRecordIgnore(@Param("record") ExecutionStatRecord record);
+
+  @UpdateProvider(type = ExecutionStatMapperProvider.class, method = "updateRecord")
+  int updateRecord(@Param("record") ExecutionStatRecord record);
+
+  @InsertProvider(type = ExecutionStatMapperProvider.class, method = "increaseStat")
+  int increaseStat(@Param("record") ExecutionStatRecord record);
+
+  @UpdateProvider(type = ExecutionStatMapperProvider.class, method = "decreaseStat")
+  int decreaseStat(@Param("record") ExecutionStatRecord record);
+
+  /**
+   * 从统计记录重新计算汇总行的最大耗时, 需要在事务中, 更新统计记录之后使用
+   *
+   * @param record 汇总行的 (项目, 小时, 工作流)
+   * @return
+   */
+  @UpdateProvider(type = ExecutionStatMapperProvider.class, method = "updateMaxConsume")
+  int updateMaxConsume(@Param("record") ExecutionStatRecord record);
+
+  /**
+   * 统计出一段时间内, 某个项目下各种结束状态的执行数, format 决定按天还是按小时
+   *
+   * @param projectId
+   * @param startDate
+   * @param endDate
+   * @param format    {@link ExecutionStatMapperProvider#DAY_FORMAT} 或者 {@link ExecutionStatMapperProvider#HOUR_FORMAT}
+   * @return
+   */
+  @Results(value = {
+      @Result(property = "day", column = "day", id = true, javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "success", column = "SUCCESS", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "kill", column = "KILL", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "failed", column = "FAILED", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "depFailed", column = "DEP_FAILED", javaType = int.class, jdbcType = JdbcType.INTEGER),
+  })
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "selectStateByProject")
+  List<ExecutionState> selectStateByProject(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("format") String format);
+
+  /**
+   * 统计出一段时间内, 某个项目下还没有结束的执行数, format 决定按天还是按小时
+   *
+   * @param projectId
+   * @param startDate
+   * @param endDate
+   * @param format
+   * @return
+   */
+  @Results(value = {
+      @Result(property = "day", column = "day", id = true, javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "init", column = "INIT", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "waitingDep", column = "WAITING_DEP", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "waitingRes", column = "WAITING_RES", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "running", column = "RUNNING", javaType = int.class, jdbcType = JdbcType.INTEGER),
+  })
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "selectLiveStateByProject")
+  List<ExecutionState> selectLiveStateByProject(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("format") String format);
+
+  /**
+   * 估计一段时间内某些工作流的执行数, 结束的执行按小时汇总, 不需要扫描执行记录
+   *
+   * @param projectId
+   * @param workflowList 为空时不过滤工作流
+   * @param startDate    按小时截断的开始时间
+   * @param endDate
+   * @param statuses     为空时不过滤状态
+   * @return
+   */
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "countByFlowsAndTimesAndStatus")
+  int countByFlowsAndTimesAndStatus(@Param("projectId") int projectId, @Param("workflowList") List<String> workflowList, @Param("startDate") Date startDate, @Param("endDate") Date endDate, @Param("status") List<FlowStatus> statuses);
+
+  /**
+   * 统计 [startDate, endDate) 的工作流耗时 TOP
+   *
+   * @param projectId
+   * @param top
+   * @param startDate
+   * @param endDate
+   * @return
+   */
+  @Results(value = {@Result(property = "id", column = "id", id = true, javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "flowId", column = "flow_id", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "flowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "worker", column = "worker", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "status", column = "status", typeHandler = EnumOrdinalTypeHandler.class, javaType = FlowStatus.class, jdbcType = JdbcType.TINYINT),
+      @Result(property = "scheduleTime", column = "schedule_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "submitTime", column = "submit_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "startTime", column = "start_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "endTime", column = "end_time", javaType = Date.class, jdbcType = JdbcType.TIMESTAMP),
+      @Result(property = "submitUserId", column = "submit_user", javaType = int.class, jdbcType = JdbcType.INTEGER),
+      @Result(property = "owner", column = "owner_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "type", column = "type", typeHandler = EnumOrdinalTypeHandler.class, javaType = ExecType.class, jdbcType = JdbcType.TINYINT),
+      @Result(property = "consume", column = "consume", javaType = int.class, jdbcType = JdbcType.INTEGER),
+  })
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "selectConsumesByProject")
+  List<ExecutionFlow> selectConsumesByProject(@Param("projectId") int projectId, @Param("top") int top, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  /**
+   * 统计 [startDate, endDate) 的工作流异常数 TOP
+   *
+   * @param projectId
+   * @param top
+   * @param startDate
+   * @param endDate
+   * @return
+   */
+  @Results(value = {
+      @Result(property = "workflowName", column = "flow_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "projectName", column = "project_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "owner", column = "owner_name", javaType = String.class, jdbcType = JdbcType.VARCHAR),
+      @Result(property = "times", column = "times", javaType = int.class, jdbcType = JdbcType.INTEGER),
+  })
+  @SelectProvider(type = ExecutionStatMapperProvider.class, method = "selectErrorsByProject")
+  List<ExecutionFlowError> selectErrorsByProject(@Param("projectId") int projectId, @Param("top") int top, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  @DeleteProvider(type = ExecutionStatMapperProvider.class, method = "deleteStats")
+  int deleteStats(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  @DeleteProvider(type = ExecutionStatMapperProvider.class, method = "deleteRecords")
+  int deleteRecords(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  @InsertProvider(type = ExecutionStatMapperProvider.class, method = "rebuildRecords")
+  int rebuildRecords(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+  @InsertProvider(type = ExecutionStatMapperProvider.class, method = "rebuildStats")
+  int rebuildStats(@Param("projectId") int projectId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+}
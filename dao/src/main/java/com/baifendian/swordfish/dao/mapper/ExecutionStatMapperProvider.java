@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao.mapper;
+
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.mapper.utils.EnumFieldUtil;
+import com.baifendian.swordfish.dao.model.ExecutionStatRecord;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.ibatis.jdbc.SQL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行统计的汇总信息, execution_stats 按 (项目, 小时, 工作流) 汇总结束的执行, execution_stat_records 记录已经计入统计的执行 <p>
+ */
+public class ExecutionStatMapperProvider {
+
+  public static final String TABLE_NAME = "execution_stats";
+
+  public static final String RECORD_TABLE_NAME = "execution_stat_records";
+
+  /**
+   * 按天汇总时的时间格式
+   */
+  public static final String DAY_FORMAT = "%Y-%m-%d";
+
+  /**
+   * 按小时汇总时的时间格式
+   */
+  public static final String HOUR_FORMAT = "%Y-%m-%d %H";
+
+  private static final String FINISHED_STATUS = FlowStatus.SUCCESS.getType() + "," + FlowStatus.KILL.getType() + ","
+      + FlowStatus.FAILED.getType() + "," + FlowStatus.DEP_FAILED.getType();
+
+  /**
+   * 结束状态对应的统计字段
+   */
+  static String statusColumn(FlowStatus status) {
+    switch (status) {
+      case SUCCESS:
+        return "success";
+      case KILL:
+        return "`kill`";
+      case FAILED:
+        return "failed";
+      case DEP_FAILED:
+        return "dep_failed";
+      default:
+        throw new IllegalArgumentException("Status is not finished: " + status);
+    }
+  }
+
+  public String selectRecordForUpdate(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("*");
+        FROM(RECORD_TABLE_NAME);
+        WHERE("exec_id = #{execId}");
+      }
+    }.toString() + " FOR UPDATE";
+  }
+
+  public String insertRecordIgnore(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        INSERT_INTO(RECORD_TABLE_NAME);
+        VALUES("exec_id", "#{record.execId}");
+        VALUES("project_id", "#{record.projectId}");
+        VALUES("flow_id", "#{record.flowId}");
+        VALUES("stat_time", "#{record.statTime}");
+        VALUES("status", EnumFieldUtil.genFieldStr("record.status", FlowStatus.class));
+        VALUES("consume", "#{record.consume}");
+      }
+    }.toString().replaceFirst("INSERT INTO", "INSERT IGNORE INTO");
+  }
+
+  public String updateRecord(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        UPDATE(RECORD_TABLE_NAME);
+        SET("project_id = #{record.projectId}");
+        SET("flow_id = #{record.flowId}");
+        SET("stat_time = #{record.statTime}");
+        SET("status = " + EnumFieldUtil.genFieldStr("record.status", FlowStatus.class));
+        SET("consume = #{record.consume}");
+        WHERE("exec_id = #{record.execId}");
+      }
+    }.toString();
+  }
+
+  /**
+   * 把一次执行计入统计, 最大耗时只会增加, 扣除后由 {@link #updateMaxConsume(Map)} 修正
+   */
+  public String increaseStat(Map<String, Object> parameter) {
+    String column = statusColumn(((ExecutionStatRecord) parameter.get("record")).getStatus());
+
+    // max_consume_exec_id 必须在 max_consume 之前更新
+    return new SQL() {
+      {
+        INSERT_INTO(TABLE_NAME);
+        VALUES("project_id", "#{record.projectId}");
+        VALUES("flow_id", "#{record.flowId}");
+        VALUES("stat_time", "#{record.statTime}");
+        VALUES(column, "1");
+        VALUES("consume", "#{record.consume}");
+        VALUES("max_consume", "#{record.consume}");
+        VALUES("max_consume_exec_id", "#{record.execId}");
+      }
+    }.toString() + " ON DUPLICATE KEY UPDATE " +
+        column + " = " + column + " + 1, " +
+        "consume = consume + VALUES(consume), " +
+        "max_consume_exec_id = IF(VALUES(max_consume) > max_consume, VALUES(max_consume_exec_id), max_consume_exec_id), " +
+        "max_consume = GREATEST(max_consume, VALUES(max_consume))";
+  }
+
+  /**
+   * 从统计中扣除一次执行
+   */
+  public String decreaseStat(Map<String, Object> parameter) {
+    String column = statusColumn(((ExecutionStatRecord) parameter.get("record")).getStatus());
+
+    return new SQL() {
+      {
+        UPDATE(TABLE_NAME);
+        SET(column + " = GREATEST(" + column + " - 1, 0)");
+        SET("consume = GREATEST(consume - #{record.consume}, 0)");
+        WHERE("project_id = #{record.projectId}");
+        WHERE("stat_time = #{record.statTime}");
+        WHERE("flow_id = #{record.flowId}");
+      }
+    }.toString();
+  }
+
+  /**
+   * 从统计记录重新计算一个汇总行的最大耗时, 在扣除并更新统计记录之后, 同一个事务中调用
+   */
+  public String updateMaxConsume(Map<String, Object> parameter) {
+    String records = " FROM " + RECORD_TABLE_NAME + " r WHERE r.project_id = #{record.projectId}"
+        + " AND r.stat_time = #{record.statTime} AND r.flow_id = #{record.flowId}";
+
+    return new SQL() {
+      {
+        UPDATE(TABLE_NAME);
+        SET("max_consume = IFNULL((SELECT MAX(r.consume)" + records + "), 0)");
+        SET("max_consume_exec_id = (SELECT r.exec_id" + records + " ORDER BY r.consume DESC LIMIT 1)");
+        WHERE("project_id = #{record.projectId}");
+        WHERE("stat_time = #{record.statTime}");
+        WHERE("flow_id = #{record.flowId}");
+      }
+    }.toString();
+  }
+
+  /**
+   * 按天或者小时汇总各个状态的执行数, 只扫描项目在时间范围内的汇总行
+   */
+  public String selectStateByProject(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("str_to_date(DATE_FORMAT(stat_time, #{format}), #{format}) as day");
+        SELECT("SUM(success) as SUCCESS");
+        SELECT("SUM(`kill`) as `KILL`");
+        SELECT("SUM(failed) as FAILED");
+        SELECT("SUM(dep_failed) as DEP_FAILED");
+        FROM(TABLE_NAME);
+        WHERE("project_id = #{projectId}");
+        WHERE("stat_time >= #{startDate}");
+        WHERE("stat_time <= #{endDate}");
+        GROUP_BY("day");
+      }
+    }.toString();
+  }
+
+  /**
+   * 汇总还没有结束的执行, 依赖 execution_flows 上 status 的索引, 只会扫描未结束的执行
+   */
+  public String selectLiveStateByProject(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("str_to_date(DATE_FORMAT(e_f.schedule_time, #{format}), #{format}) as day");
+        SELECT("SUM(case e_f.status when " + FlowStatus.INIT.getType() + " then 1 else 0 end) as INIT");
+        SELECT("SUM(case e_f.status when " + FlowStatus.WAITING_DEP.getType() + " then 1 else 0 end) as WAITING_DEP");
+        SELECT("SUM(case e_f.status when " + FlowStatus.WAITING_RES.getType() + " then 1 else 0 end) as WAITING_RES");
+        SELECT("SUM(case e_f.status when " + FlowStatus.RUNNING.getType() + " then 1 else 0 end) as RUNNING");
+        FROM("execution_flows e_f");
+        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
+        WHERE("e_f.status <= " + FlowStatus.RUNNING.getType());
+        WHERE("e_f.schedule_time >= #{startDate} AND e_f.schedule_time <= #{endDate}");
+        WHERE("p_f.project_id = #{projectId}");
+        GROUP_BY("day");
+      }
+    }.toString();
+  }
+
+  /**
+   * 执行数的估计值, 结束的执行从按小时的汇总表读取, 未结束的执行依赖 execution_flows 上 status 的索引 <p>
+   *
+   * 汇总表以小时为单位, 调用方传入按小时截断的 startDate, 边界所在小时的执行会全部计入.
+   */
+  public String countByFlowsAndTimesAndStatus(Map<String, Object> parameter) {
+    List<FlowStatus> flowStatuses = (List<FlowStatus>) parameter.get("status");
+
+    List<String> workflowList = (List<String>) parameter.get("workflowList");
+
+    List<String> workflowList2 = ExecutionFlowMapperProvider.quoteNames(workflowList);
+
+    List<String> finishedColumns = new ArrayList<>();
+    List<FlowStatus> liveStatuses = new ArrayList<>();
+
+    for (FlowStatus status : FlowStatus.values()) {
+      if (CollectionUtils.isNotEmpty(flowStatuses) && !flowStatuses.contains(status)) {
+        continue;
+      }
+
+      if (status.typeIsFinished()) {
+        finishedColumns.add("s." + statusColumn(status));
+      } else {
+        liveStatuses.add(status);
+      }
+    }
+
+    String finished = finishedColumns.isEmpty() ? "0" : "IFNULL((" + new SQL() {
+      {
+        SELECT("SUM(" + String.join(" + ", finishedColumns) + ")");
+        FROM(TABLE_NAME + " s");
+        JOIN("project_flows p_f on s.flow_id = p_f.id");
+        WHERE("s.project_id = #{projectId}");
+        if (CollectionUtils.isNotEmpty(workflowList)) {
+          WHERE("p_f.name in (" + String.join(",", workflowList2) + ")");
+        }
+        WHERE("s.stat_time >= #{startDate}");
+        WHERE("s.stat_time <= #{endDate}");
+      }
+    }.toString() + "), 0)";
+
+    String live = liveStatuses.isEmpty() ? "0" : "(" + new SQL() {
+      {
+        SELECT("count(0)");
+        FROM("execution_flows e_f");
+        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
+        WHERE("e_f.status in (" + ExecutionFlowMapperProvider.joinStatus(liveStatuses) + ")");
+        WHERE("p_f.project_id = #{projectId}");
+        if (CollectionUtils.isNotEmpty(workflowList)) {
+          WHERE("p_f.name in (" + String.join(",", workflowList2) + ")");
+        }
+        WHERE("e_f.schedule_time >= #{startDate}");
+        WHERE("e_f.schedule_time <= #{endDate}");
+      }
+    }.toString() + ")";
+
+    return "SELECT " + finished + " + " + live;
+  }
+
+  /**
+   * 耗时最长的执行可能已经被归档, 从在线表和归档表中取的字段
+   */
+  private static final String[] CONSUME_EXEC_COLUMNS = {"id", "flow_id", "worker", "status", "schedule_time",
+      "submit_time", "start_time", "end_time", "submit_user", "type"};
+
+  /**
+   * 某天耗时最长的执行, 每个 (小时, 工作流) 取耗时最长的一次 <p>
+   *
+   * 执行可能在在线表, 也可能已经被归档, 两个表都按主键关联, 取存在的那一个.
+   */
+  public String selectConsumesByProject(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("s.max_consume as consume");
+        for (String column : CONSUME_EXEC_COLUMNS) {
+          SELECT("IFNULL(e_f." + column + ", a_f." + column + ") as " + column);
+        }
+        SELECT("p_f.name as flow_name");
+        SELECT("u.name as owner_name");
+        FROM(TABLE_NAME + " s");
+        LEFT_OUTER_JOIN(ExecutionFlowMapperProvider.TABLE_NAME + " e_f on s.max_consume_exec_id = e_f.id");
+        LEFT_OUTER_JOIN(ExecutionFlowMapperProvider.ARCHIVE_TABLE_NAME + " a_f on s.max_consume_exec_id = a_f.id");
+        JOIN("project_flows p_f on s.flow_id = p_f.id");
+        JOIN("user u on p_f.owner = u.id");
+        WHERE("s.project_id = #{projectId}");
+        WHERE("s.stat_time >= #{startDate}");
+        WHERE("s.stat_time < #{endDate}");
+        WHERE("(e_f.id is not null or a_f.id is not null)");
+        ORDER_BY("consume DESC");
+      }
+    }.toString() + " limit #{top}";
+  }
+
+  /**
+   * 某天失败次数最多的工作流
+   */
+  public String selectErrorsByProject(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        SELECT("SUM(s.failed + s.dep_failed) as times");
+        SELECT("p_f.name as flow_name");
+        SELECT("u.name as owner_name");
+        SELECT("p.name as project_name");
+        FROM(TABLE_NAME + " s");
+        JOIN("project_flows p_f on s.flow_id = p_f.id");
+        JOIN("user u on p_f.owner = u.id");
+        JOIN("project p on s.project_id = p.id");
+        WHERE("s.project_id = #{projectId}");
+        WHERE("s.stat_time >= #{startDate}");
+        WHERE("s.stat_time < #{endDate}");
+        GROUP_BY("s.flow_id");
+        HAVING("times > 0");
+        ORDER_BY("times DESC");
+      }
+    }.toString() + " limit #{top}";
+  }
+
+  public String deleteStats(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        DELETE_FROM(TABLE_NAME);
+        WHERE("project_id = #{projectId}");
+        WHERE("stat_time >= #{startDate}");
+        WHERE("stat_time < #{endDate}");
+      }
+    }.toString();
+  }
+
+  public String deleteRecords(Map<String, Object> parameter) {
+    return new SQL() {
+      {
+        DELETE_FROM(RECORD_TABLE_NAME);
+        WHERE("project_id = #{projectId}");
+        WHERE("stat_time >= #{startDate}");
+        WHERE("stat_time < #{endDate}");
+      }
+    }.toString();
+  }
+
+  /**
+   * 从 execution_flows 和归档表重新生成统计记录
+   */
+  public String rebuildRecords(Map<String, Object> parameter) {
+    return "INSERT IGNORE INTO " + RECORD_TABLE_NAME + " (exec_id, project_id, flow_id, stat_time, status, consume) "
+        + selectFinishedExecs(ExecutionFlowMapperProvider.TABLE_NAME) + " UNION ALL "
+        + selectFinishedExecs(ExecutionFlowMapperProvider.ARCHIVE_TABLE_NAME);
+  }
+
+  private String selectFinishedExecs(String table) {
+    return new SQL() {
+      {
+        SELECT("e_f.id, p_f.project_id, e_f.flow_id");
+        SELECT("DATE_FORMAT(e_f.schedule_time, '%Y-%m-%d %H:00:00')");
+        SELECT("e_f.status");
+        SELECT("IFNULL(GREATEST(timestampdiff(SECOND, e_f.start_time, e_f.end_time), 0), 0)");
+        FROM(table + " e_f");
+        JOIN("project_flows p_f on e_f.flow_id = p_f.id");
+        WHERE("p_f.project_id = #{projectId}");
+        WHERE("e_f.schedule_time >= #{startDate}");
+        WHERE("e_f.schedule_time < #{endDate}");
+        WHERE("e_f.status in (" + FINISHED_STATUS + ")");
+      }
+    }.toString();
+  }
+
+  /**
+   * 从统计记录重新生成汇总信息
+   */
+  public String rebuildStats(Map<String, Object> parameter) {
+    String select = new SQL() {
+      {
+        SELECT("project_id, flow_id, stat_time");
+        SELECT("SUM(status = " + FlowStatus.SUCCESS.getType() + ")");
+        SELECT("SUM(status = " + FlowStatus.KILL.getType() + ")");
+        SELECT("SUM(status = " + FlowStatus.FAILED.getType() + ")");
+        SELECT("SUM(status = " + FlowStatus.DEP_FAILED.getType() + ")");
+        SELECT("SUM(consume), MAX(consume)");
+        SELECT("CAST(SUBSTRING_INDEX(GROUP_CONCAT(exec_id ORDER BY consume DESC), ',', 1) AS UNSIGNED)");
+        FROM(RECORD_TABLE_NAME);
+        WHERE("project_id = #{projectId}");
+        WHERE("stat_time >= #{startDate}");
+        WHERE("stat_time < #{endDate}");
+        GROUP_BY("project_id, stat_time, flow_id");
+      }
+    }.toString();
+
+    return "INSERT INTO " + TABLE_NAME + " (project_id, flow_id, stat_time, success, `kill`, failed, dep_failed, consume, max_consume, max_consume_exec_id) " + select;
+  }
+}
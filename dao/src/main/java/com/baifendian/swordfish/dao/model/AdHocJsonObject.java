@@ -29,6 +29,31 @@ public class AdHocJsonObject {
    */
   private List<List<String>> values = new ArrayList<>();
 
+  /**
+   * 结果文件 (hdfs), 为空时结果就在 values 中
+   */
+  private String resultFile;
+
+  /**
+   * 结果的总行数
+   */
+  private int rowCount;
+
+  /**
+   * 结果是否因为超出限制被截断
+   */
+  private boolean truncated;
+
+  /**
+   * 结果文件行偏移索引的间隔, 0 表示没有索引
+   */
+  private int offsetInterval;
+
+  /**
+   * 结果文件中第 i * offsetInterval 行的字节偏移
+   */
+  private List<Long> offsets;
+
   /**
    * getter method
    *
@@ -68,4 +93,44 @@ public class AdHocJsonObject {
   public void setValues(List<List<String>> values) {
     this.values = values;
   }
+
+  public String getResultFile() {
+    return resultFile;
+  }
+
+  public void setResultFile(String resultFile) {
+    this.resultFile = resultFile;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public void setRowCount(int rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+
+  public int getOffsetInterval() {
+    return offsetInterval;
+  }
+
+  public void setOffsetInterval(int offsetInterval) {
+    this.offsetInterval = offsetInterval;
+  }
+
+  public List<Long> getOffsets() {
+    return offsets;
+  }
+
+  public void setOffsets(List<Long> offsets) {
+    this.offsets = offsets;
+  }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao.model;
+
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * 已经计入统计的一次执行, 用于保证统计的幂等, 状态变化时可以从旧的统计中扣除 <p>
+ */
+public class ExecutionStatRecord {
+
+  /**
+   * 执行 id
+   */
+  private int execId;
+
+  /**
+   * 项目 id
+   */
+  private int projectId;
+
+  /**
+   * 工作流 id
+   */
+  private int flowId;
+
+  /**
+   * 统计时间, 调度时间截断到小时
+   */
+  private Date statTime;
+
+  /**
+   * 计入统计的结束状态
+   */
+  private FlowStatus status;
+
+  /**
+   * 耗时, 单位: 秒
+   */
+  private int consume;
+
+  /**
+   * 根据执行信息生成统计记录, 没有结束或者没有调度时间的执行不计入统计 <p>
+   *
+   * @param executionFlow 需要包含 projectId
+   * @return 统计记录, 不需要统计时返回 null
+   */
+  public static ExecutionStatRecord of(ExecutionFlow executionFlow) {
+    FlowStatus status = executionFlow.getStatus();
+
+    if (status == null || !status.typeIsFinished() || executionFlow.getScheduleTime() == null) {
+      return null;
+    }
+
+    ExecutionStatRecord record = new ExecutionStatRecord();
+
+    record.setExecId(executionFlow.getId());
+    record.setProjectId(executionFlow.getProjectId());
+    record.setFlowId(executionFlow.getFlowId());
+    record.setStatTime(truncateToHour(executionFlow.getScheduleTime()));
+    record.setStatus(status);
+
+    Date startTime = executionFlow.getStartTime();
+    Date endTime = executionFlow.getEndTime();
+
+    if (startTime != null && endTime != null && endTime.after(startTime)) {
+      record.setConsume((int) ((endTime.getTime() - startTime.getTime()) / 1000));
+    }
+
+    return record;
+  }
+
+  /**
+   * 截断到小时
+   */
+  public static Date truncateToHour(Date date) {
+    Calendar calendar = Calendar.getInstance();
+
+    calendar.setTime(date);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+
+    return calendar.getTime();
+  }
+
+  /**
+   * 是否和另一条记录计入相同的统计
+   */
+  public boolean sameStat(ExecutionStatRecord other) {
+    return other != null
+        && projectId == other.projectId
+        && flowId == other.flowId
+        && statTime.equals(other.statTime)
+        && status == other.status
+        && consume == other.consume;
+  }
+
+  public int getExecId() {
+    return execId;
+  }
+
+  public void setExecId(int execId) {
+    this.execId = execId;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(int projectId) {
+    this.projectId = projectId;
+  }
+
+  public int getFlowId() {
+    return flowId;
+  }
+
+  public void setFlowId(int flowId) {
+    this.flowId = flowId;
+  }
+
+  public Date getStatTime() {
+    return statTime;
+  }
+
+  public void setStatTime(Date statTime) {
+    this.statTime = statTime;
+  }
+
+  public FlowStatus getStatus() {
+    return status;
+  }
+
+  public void setStatus(FlowStatus status) {
+    this.status = status;
+  }
+
+  public int getConsume() {
+    return consume;
+  }
+
+  public void setConsume(int consume) {
+    this.consume = consume;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao;
+
+import com.baifendian.swordfish.dao.model.FlowNode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompiledFlowCacheTest {
+
+  private FlowNode genNode(String name, String... deps) throws Exception {
+    FlowNode flowNode = new FlowNode();
+    flowNode.setName(name);
+    flowNode.setType("SHELL");
+    flowNode.setDepList(Arrays.asList(deps));
+    return flowNode;
+  }
+
+  /**
+   * a -> b -> d, a -> c -> d
+   */
+  private List<FlowNode> diamond() throws Exception {
+    return Arrays.asList(genNode("d", "b", "c"), genNode("b", "a"), genNode("c", "a"), genNode("a"));
+  }
+
+  @Test
+  public void testCompile() throws Exception {
+    CompiledFlowCache.CompiledFlow flow = CompiledFlowCache.compile(1, new Date(), diamond());
+
+    assertEquals(4, flow.getFlowDag().getNodes().size());
+    assertEquals(4, flow.getFlowDag().getEdges().size());
+    assertEquals(Arrays.asList("a", "b", "c", "d"), flow.getTopologicalOrder());
+    assertNotNull(flow.getWorkflowData());
+  }
+
+  @Test
+  public void testCompileCycle() throws Exception {
+    try {
+      CompiledFlowCache.compile(1, new Date(), Arrays.asList(genNode("a", "b"), genNode("b", "a")));
+      fail("cycle should be detected");
+    } catch (Exception e) {
+      assertTrue(e.getMessage().contains("cycle"));
+    }
+  }
+
+  @Test
+  public void testMissingDep() throws Exception {
+    CompiledFlowCache.CompiledFlow flow = CompiledFlowCache.compile(1, new Date(), Arrays.asList(genNode("a", "x")));
+
+    // 依赖不存在的节点时保留这条边, 由执行时忽略
+    assertEquals(1, flow.getFlowDag().getEdges().size());
+    assertEquals(Arrays.asList("a"), flow.getTopologicalOrder());
+  }
+
+  @Test
+  public void testVersion() throws Exception {
+    CompiledFlowCache cache = new CompiledFlowCache(10, 60 * 1000);
+    Date modifyTime = new Date(1000);
+
+    CompiledFlowCache.CompiledFlow flow = CompiledFlowCache.compile(1, modifyTime, diamond());
+    cache.put(flow);
+
+    assertSame(flow, cache.get(1, new Date(1000)));
+    assertNull(cache.get(2, modifyTime));
+
+    // 修改时间变化, 旧的版本失效
+    assertNull(cache.get(1, new Date(2000)));
+    assertEquals(0, cache.size());
+
+    cache.put(flow);
+    cache.invalidate(1);
+    assertNull(cache.get(1, modifyTime));
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    CompiledFlowCache cache = new CompiledFlowCache(10, -1);
+    Date modifyTime = new Date(1000);
+
+    cache.put(CompiledFlowCache.compile(1, modifyTime, diamond()));
+    assertNull(cache.get(1, modifyTime));
+  }
+
+  @Test
+  public void testEvict() throws Exception {
+    CompiledFlowCache cache = new CompiledFlowCache(2, 60 * 1000);
+    Date modifyTime = new Date(1000);
+
+    for (int i = 1; i <= 3; ++i) {
+      cache.put(CompiledFlowCache.compile(i, modifyTime, diamond()));
+    }
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get(1, modifyTime));
+    assertNotNull(cache.get(3, modifyTime));
+  }
+}
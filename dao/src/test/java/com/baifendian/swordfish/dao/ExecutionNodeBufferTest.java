@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao;
+
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.model.ExecutionNode;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ExecutionNodeBufferTest {
+
+  private final List<ExecutionNode> inserted = new ArrayList<>();
+
+  private final List<ExecutionNode> updated = new ArrayList<>();
+
+  private boolean failWrites = false;
+
+  private final ExecutionNodeBuffer buffer = new ExecutionNodeBuffer(60 * 1000) {
+    @Override
+    protected void write(List<ExecutionNode> inserts, List<ExecutionNode> updates) {
+      if (failWrites) {
+        throw new IllegalStateException("db down");
+      }
+      inserted.addAll(inserts);
+      updated.addAll(updates);
+    }
+  };
+
+  @Test
+  public void testCoalesceUpdates() {
+    ExecutionNode node = genNode(FlowStatus.INIT);
+    buffer.update(node);
+
+    ExecutionNode logNode = new ExecutionNode();
+    logNode.setExecId(1);
+    logNode.setName("node");
+    logNode.setLogLinks("http://yarn/app_1");
+    buffer.update(logNode);
+
+    assertEquals(1, buffer.size());
+    buffer.flush();
+
+    assertEquals(0, inserted.size());
+    assertEquals(1, updated.size());
+    assertEquals(FlowStatus.INIT, updated.get(0).getStatus());
+    assertEquals("http://yarn/app_1", updated.get(0).getLogLinks());
+  }
+
+  @Test
+  public void testUpdateMergedIntoInsert() {
+    ExecutionNode node = genNode(FlowStatus.INIT);
+    buffer.insert(node);
+
+    // 调用者之后修改节点, 不影响缓冲的内容
+    node.setAttempt(1);
+    buffer.update(genNode(FlowStatus.RUNNING));
+
+    buffer.flush();
+    assertEquals(1, inserted.size());
+    assertEquals(0, updated.size());
+    assertEquals(FlowStatus.RUNNING, inserted.get(0).getStatus());
+    assertEquals(Integer.valueOf(0), inserted.get(0).getAttempt());
+  }
+
+  @Test
+  public void testFinishedStatusFlushImmediately() {
+    buffer.insert(genNode(FlowStatus.INIT));
+    buffer.update(genNode(FlowStatus.SUCCESS));
+
+    assertEquals(0, buffer.size());
+    assertEquals(1, inserted.size());
+    assertEquals(FlowStatus.SUCCESS, inserted.get(0).getStatus());
+    assertNull(inserted.get(0).getEndTime());
+  }
+
+  @Test
+  public void testFinishedStatusFailureThrown() {
+    buffer.update(genNode(2, FlowStatus.RUNNING));
+
+    failWrites = true;
+    try {
+      buffer.update(genNode(FlowStatus.FAILED));
+      fail("finished status write error should be thrown");
+    } catch (IllegalStateException e) {
+      // 期望的异常
+    }
+
+    // 结束状态不留在缓冲, 其他节点的写放回缓冲
+    assertEquals(1, buffer.size());
+
+    failWrites = false;
+    buffer.flush();
+    assertEquals(1, updated.size());
+    assertEquals("node2", updated.get(0).getName());
+  }
+
+  @Test
+  public void testFinishedStatusNeverDropped() {
+    failWrites = true;
+    buffer.update(genNode(FlowStatus.RUNNING));
+    for (int i = 0; i < 10; ++i) {
+      buffer.flush();
+    }
+    // 进度更新多次失败后丢弃
+    assertEquals(0, buffer.size());
+
+    for (int i = 0; i < 10; ++i) {
+      try {
+        buffer.update(genNode(FlowStatus.SUCCESS));
+        fail("finished status write error should be thrown");
+      } catch (IllegalStateException e) {
+        // 每次都同步写入, 每次都抛出
+      }
+    }
+
+    failWrites = false;
+    buffer.update(genNode(FlowStatus.SUCCESS));
+    assertEquals(1, updated.size());
+    assertEquals(FlowStatus.SUCCESS, updated.get(0).getStatus());
+  }
+
+  @Test
+  public void testInsertNeverDropped() {
+    failWrites = true;
+    buffer.insert(genNode(FlowStatus.INIT));
+    for (int i = 0; i < 10; ++i) {
+      buffer.flush();
+    }
+    // 插入多次失败后也不丢弃, 改为退避后单独重试
+    assertEquals(1, buffer.size());
+
+    failWrites = false;
+    buffer.update(genNode(2, FlowStatus.RUNNING));
+    buffer.flush();
+    // 退避期间不影响其他节点的写入
+    assertEquals(1, updated.size());
+    assertEquals(1, buffer.size());
+    assertEquals(0, inserted.size());
+  }
+
+  @Test
+  public void testFinishedStatusUpsert() {
+    ExecutionNode node = genNode(FlowStatus.SUCCESS);
+    node.setStartTime(new Date());
+    node.setJobId("FLOW-1-node");
+    buffer.update(node);
+
+    // 字段完整的结束状态以 upsert 写入, 行不存在时也会写进去
+    assertEquals(1, inserted.size());
+    assertEquals(0, updated.size());
+    assertEquals(FlowStatus.SUCCESS, inserted.get(0).getStatus());
+  }
+
+  private ExecutionNode genNode(FlowStatus status) {
+    return genNode(1, status);
+  }
+
+  private ExecutionNode genNode(int execId, FlowStatus status) {
+    ExecutionNode node = new ExecutionNode();
+    node.setExecId(execId);
+    node.setName(execId == 1 ? "node" : "node" + execId);
+    node.setAttempt(0);
+    node.setStatus(status);
+    return node;
+  }
+}
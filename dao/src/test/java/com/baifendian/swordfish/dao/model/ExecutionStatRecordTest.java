@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.dao.model;
+
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionStatRecordTest {
+
+  private static Date time(int hour, int minute, int second) {
+    Calendar calendar = Calendar.getInstance();
+
+    calendar.clear();
+    calendar.set(2017, Calendar.MAY, 1, hour, minute, second);
+
+    return calendar.getTime();
+  }
+
+  private static ExecutionFlow executionFlow(FlowStatus status) {
+    ExecutionFlow executionFlow = new ExecutionFlow();
+
+    executionFlow.setId(10);
+    executionFlow.setProjectId(1);
+    executionFlow.setFlowId(2);
+    executionFlow.setStatus(status);
+    executionFlow.setScheduleTime(time(13, 25, 40));
+    executionFlow.setStartTime(time(13, 30, 0));
+    executionFlow.setEndTime(time(13, 32, 5));
+
+    return executionFlow;
+  }
+
+  @Test
+  public void testOf() {
+    ExecutionStatRecord record = ExecutionStatRecord.of(executionFlow(FlowStatus.FAILED));
+
+    assertEquals(10, record.getExecId());
+    assertEquals(1, record.getProjectId());
+    assertEquals(2, record.getFlowId());
+    assertEquals(time(13, 0, 0), record.getStatTime());
+    assertEquals(FlowStatus.FAILED, record.getStatus());
+    assertEquals(125, record.getConsume());
+  }
+
+  @Test
+  public void testOfNotFinished() {
+    assertNull(ExecutionStatRecord.of(executionFlow(FlowStatus.RUNNING)));
+
+    ExecutionFlow executionFlow = executionFlow(FlowStatus.SUCCESS);
+    executionFlow.setScheduleTime(null);
+
+    assertNull(ExecutionStatRecord.of(executionFlow));
+  }
+
+  @Test
+  public void testOfWithoutEndTime() {
+    ExecutionFlow executionFlow = executionFlow(FlowStatus.KILL);
+    executionFlow.setEndTime(null);
+
+    assertEquals(0, ExecutionStatRecord.of(executionFlow).getConsume());
+  }
+
+  @Test
+  public void testSameStat() {
+    ExecutionStatRecord record = ExecutionStatRecord.of(executionFlow(FlowStatus.FAILED));
+
+    assertTrue(record.sameStat(ExecutionStatRecord.of(executionFlow(FlowStatus.FAILED))));
+    assertFalse(record.sameStat(ExecutionStatRecord.of(executionFlow(FlowStatus.SUCCESS))));
+    assertFalse(record.sameStat(null));
+  }
+}
@@ -22,8 +22,15 @@ public class Constants {
 
   public static final String EXECUTOR_HEARTBEAT_INTERVAL="executor.heartbeat.interval";
 
+  public static final String EXECUTOR_METRICS_SAMPLE_INTERVAL="executor.metrics.sample.interval";
+
   public static final String EXECUTOR_ADHOCRUNNER_THREADS="executor.adhocrunner.threads";
+  public static final String EXECUTOR_ADHOC_RESULT_RETENTION_DAYS="executor.adhoc.result.retention.days";
 
   public static final String EXECUTOR_FLOWRUNNER_THREADS="executor.flowrunner.threads";
   public static final String EXECUTOR_NODERUNNER_THREADS="executor.noderunner.threads";
+
+  public static final String EXECUTOR_RESOURCE_CACHE_DIR="executor.resource.cache.dir";
+  public static final String EXECUTOR_RESOURCE_CACHE_SIZE="executor.resource.cache.size";
+  public static final String EXECUTOR_RESOURCE_CACHE_EXTRACT="executor.resource.cache.extract";
 }
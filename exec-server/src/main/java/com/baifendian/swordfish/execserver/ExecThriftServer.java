@@ -19,7 +19,9 @@ import com.baifendian.swordfish.common.hadoop.HdfsClient;
 import com.baifendian.swordfish.common.job.exception.ExecException;
 import com.baifendian.swordfish.dao.DaoFactory;
 import com.baifendian.swordfish.dao.MasterDao;
-import com.baifendian.swordfish.execserver.utils.OsUtil;
+import com.baifendian.swordfish.execserver.adhoc.AdHocResultCleaner;
+import com.baifendian.swordfish.execserver.utils.HostMetrics;
+import com.baifendian.swordfish.execserver.utils.ResourceCache;
 import com.baifendian.swordfish.common.hadoop.ConfigurationUtil;
 import com.baifendian.swordfish.dao.model.MasterServer;
 import com.baifendian.swordfish.execserver.service.ExecServiceImpl;
@@ -38,9 +40,11 @@ import org.apache.thrift.transport.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -103,8 +107,10 @@ public class ExecThriftServer {
     port = conf.getInt(Constants.EXECUTOR_PORT, 10000);
   }
 
-  public void run() throws UnknownHostException, TTransportException {
+  public void run() throws IOException, TTransportException {
     HdfsClient.init(ConfigurationUtil.getConfiguration());
+    ResourceCache.init(conf);
+    HostMetrics.init(conf);
 
     masterClient = new MasterClient(masterServer.getHost(), masterServer.getPort(), THRIFT_RPC_RETRIES);
     host = InetAddress.getLocalHost().getHostAddress();
@@ -121,9 +127,14 @@ public class ExecThriftServer {
     Runnable heartBeatThread = getHeartBeatThread();
     executorService.scheduleAtFixedRate(heartBeatThread, 10, heartBeatInterval, TimeUnit.SECONDS);
 
+    int adHocResultRetentionDays = conf.getInt(Constants.EXECUTOR_ADHOC_RESULT_RETENTION_DAYS, 7);
+    if (adHocResultRetentionDays > 0) {
+      executorService.scheduleWithFixedDelay(new AdHocResultCleaner(adHocResultRetentionDays), 10, 60, TimeUnit.MINUTES);
+    }
+
     TProtocolFactory protocolFactory = new TBinaryProtocol.Factory();
     TTransportFactory tTransportFactory = new TTransportFactory();
-    workerService = new ExecServiceImpl(host, port, conf);
+    workerService = new ExecServiceImpl(host, port, conf, masterClient);
     TProcessor tProcessor = new WorkerService.Processor(workerService);
     inetSocketAddress = new InetSocketAddress(host, port);
     server = getTThreadPoolServer(protocolFactory, tProcessor, tTransportFactory, inetSocketAddress, 50, 200);
@@ -169,10 +180,18 @@ public class ExecThriftServer {
           MasterServer masterServer = masterDao.getMasterServer();
           HeartBeatData heartBeatData = new HeartBeatData();
           heartBeatData.setReportDate(System.currentTimeMillis());
-          heartBeatData.setCpuUsed(OsUtil.cpuUsage());
-          heartBeatData.setMemUsed(OsUtil.memoryUsage());
+          // 使用后台采样的最近值, 不阻塞心跳
+          HostMetrics hostMetrics = HostMetrics.getInstance();
+          heartBeatData.setCpuUsed(hostMetrics.getCpuUsage());
+          heartBeatData.setMemUsed(hostMetrics.getMemUsage());
+          // 汇报正在运行的 workflow, master 依据它选择 executor
+          if (workerService != null) {
+            heartBeatData.setExecIds(workerService.getRunningExecIds());
+          } else {
+            heartBeatData.setExecIds(new ArrayList<Integer>());
+          }
           MasterClient client = new MasterClient(masterServer.getHost(), masterServer.getPort(), THRIFT_RPC_RETRIES);
-          logger.debug("executor report heartbeat:{}", heartBeatData);
+          logger.debug("executor report heartbeat:{}, load average:{}, disk usage:{}", heartBeatData, hostMetrics.getLoadAvg1(), hostMetrics.getDiskUsage());
           boolean result = client.executorReport(host, port, heartBeatData);
           if (!result) {
             logger.warn("heart beat time out");
@@ -200,7 +219,7 @@ public class ExecThriftServer {
     }
   }
 
-  public static void main(String[] args) throws TTransportException, UnknownHostException {
+  public static void main(String[] args) throws TTransportException, IOException {
     ExecThriftServer execThriftServer = new ExecThriftServer();
     execThriftServer.run();
   }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.adhoc;
+
+import com.baifendian.swordfish.common.config.BaseConfig;
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 清理过期的即席查询结果文件 <p>
+ *
+ * 结果文件在 hdfs 的 {base}/{projectId}/adhoc/{execId}/ 下, 按执行目录的修改时间整体删除.
+ */
+public class AdHocResultCleaner implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(AdHocResultCleaner.class);
+
+  /**
+   * 保留天数
+   */
+  private final int retentionDays;
+
+  public AdHocResultCleaner(int retentionDays) {
+    this.retentionDays = retentionDays;
+  }
+
+  @Override
+  public void run() {
+    long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+
+    try {
+      HdfsClient hdfsClient = HdfsClient.getInstance();
+      int count = 0;
+
+      for (FileStatus project : hdfsClient.listFileStatus(BaseConfig.getHdfsDataBasePath())) {
+        String projectId = project.getPath().getName();
+        if (!project.isDirectory() || !StringUtils.isNumeric(projectId)) {
+          continue;
+        }
+
+        String adHocDir = BaseConfig.getHdfsAdHocDir(Integer.parseInt(projectId));
+        if (!hdfsClient.exists(adHocDir)) {
+          continue;
+        }
+
+        for (FileStatus exec : hdfsClient.listFileStatus(adHocDir)) {
+          if (exec.getModificationTime() < before) {
+            hdfsClient.delete(exec.getPath().toString(), true);
+            count++;
+          }
+        }
+      }
+
+      if (count > 0) {
+        logger.info("clean {} adhoc results modified before {} days", count, retentionDays);
+      }
+    } catch (Exception e) {
+      logger.error("clean adhoc results get error", e);
+    }
+  }
+}
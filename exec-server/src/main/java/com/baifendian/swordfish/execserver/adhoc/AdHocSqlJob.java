@@ -17,6 +17,7 @@ package com.baifendian.swordfish.execserver.adhoc;
 
 import com.baifendian.swordfish.common.adhoc.AdHocParam;
 import com.baifendian.swordfish.common.config.BaseConfig;
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
 import com.baifendian.swordfish.common.job.ExecResult;
 import com.baifendian.swordfish.common.job.JobProps;
 import com.baifendian.swordfish.common.utils.CommonUtil;
@@ -32,6 +33,7 @@ import com.baifendian.swordfish.execserver.job.hive.ResultCallback;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.List;
 
@@ -76,15 +78,31 @@ public class AdHocSqlJob {
           adHocResult.setStm(execResult.getStm());
           adHocResult.setIndex(execResult.getIndex());
           adHocResult.setStatus(execResult.getStatus());
+          // 结果写在文件中时, 数据库中只保存文件的位置和摘要
           AdHocJsonObject adHocJsonObject = new AdHocJsonObject();
           adHocJsonObject.setTitles(execResult.getTitles());
-          adHocJsonObject.setValues(execResult.getValues());
+          if (execResult.getValues() != null) {
+            adHocJsonObject.setValues(execResult.getValues());
+          }
+          adHocJsonObject.setResultFile(execResult.getResultFile());
+          adHocJsonObject.setRowCount(execResult.getRowCount());
+          adHocJsonObject.setTruncated(execResult.isTruncated());
+          adHocJsonObject.setOffsetInterval(execResult.getOffsetInterval());
+          adHocJsonObject.setOffsets(execResult.getOffsets());
           adHocResult.setResult(JsonUtil.toJsonString(adHocJsonObject));
           adHocResult.setStartTime(startTime);
           adHocResult.setEndTime(endTime);
 
           adHocDao.updateAdHocResult(adHocResult); // 更新结果到数据库中
         }
+
+        @Override
+        public OutputStream openResultStream(ExecResult execResult) throws IOException {
+          String resultFile = BaseConfig.getHdfsAdHocResultFilename(props.getProjectId(), props.getAdHocId(), execResult.getIndex());
+          OutputStream out = HdfsClient.getInstance().create(resultFile, true);
+          execResult.setResultFile(resultFile);
+          return out;
+        }
       };
       HiveSqlExec hiveSqlExec = new HiveSqlExec(funcs, execSqls, props.getProxyUser(), null, true, resultCallback, param.getLimit(), logger);
       adHocDao.initAdHocResult(props.getAdHocId(), execSqls);
@@ -92,6 +110,8 @@ public class AdHocSqlJob {
     } catch (Exception e){
       logger.error("ad hoc job run error", e);
       throw e;
+    } finally {
+      FunctionUtil.release(jobIdLog);
     }
   }
 
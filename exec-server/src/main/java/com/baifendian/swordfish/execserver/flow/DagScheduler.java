@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.flow;
+
+import com.baifendian.swordfish.common.utils.graph.CompactDag;
+import com.baifendian.swordfish.common.utils.graph.Graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * 基于入度计数的 DAG 调度器 <p>
+ *
+ * 使用 {@link CompactDag} 中预先计算好的后继和入度, 之后每个节点完成时只更新其后继节点的入度,
+ * 入度减为 0 的节点进入就绪队列, 单次完成的代价只与该节点的出度相关, 与 DAG 的规模无关. <p>
+ *
+ * 非线程安全, 由 {@link FlowRunner} 的主线程驱动.
+ */
+public class DagScheduler {
+
+  /**
+   * 节点状态
+   */
+  private static final byte PENDING = 0;
+  private static final byte RUNNING = 1;
+  private static final byte SUCCESS = 2;
+  private static final byte FAILED = 3;
+  private static final byte SKIPPED = 4;
+
+  /**
+   * DAG, 节点编号即拓扑排序的顺序
+   */
+  private final CompactDag<String, ?> dag;
+
+  /**
+   * 每个节点剩余未成功的前驱数目
+   */
+  private final int[] indegrees;
+
+  /**
+   * 每个节点的状态
+   */
+  private final byte[] states;
+
+  /**
+   * 就绪队列
+   */
+  private final Queue<Integer> readyQueue = new ArrayDeque<>();
+
+  /**
+   * 正在运行的节点数目
+   */
+  private int runningCount = 0;
+
+  /**
+   * 已经结束(成功, 失败或跳过)的节点数目
+   */
+  private int finishedCount = 0;
+
+  /**
+   * 执行成功的节点数目
+   */
+  private int successCount = 0;
+
+  /**
+   * @param dagGraph DAG
+   * @throws Exception DAG 中存在环
+   */
+  public DagScheduler(Graph<String, ?, ?> dagGraph) throws Exception {
+    this(CompactDag.of(dagGraph));
+  }
+
+  /**
+   * @param dag DAG
+   */
+  public DagScheduler(CompactDag<String, ?> dag) {
+    this.dag = dag;
+    indegrees = dag.copyIndegrees();
+    states = new byte[dag.size()];
+
+    for (int i = 0; i < indegrees.length; ++i) {
+      if (indegrees[i] == 0) {
+        readyQueue.add(i);
+      }
+    }
+  }
+
+  /**
+   * 是否存在可以提交的节点 <p>
+   */
+  public boolean hasReady() {
+    while (!readyQueue.isEmpty()) {
+      if (states[readyQueue.peek()] == PENDING) {
+        return true;
+      }
+      // 恢复时已经成功或者已经跳过的节点
+      readyQueue.poll();
+    }
+    return false;
+  }
+
+  /**
+   * 取出一个可以提交的节点, 并标记为正在运行 <p>
+   *
+   * @return 节点名称, 没有时返回 null
+   */
+  public String pollReady() {
+    if (!hasReady()) {
+      return null;
+    }
+    int index = readyQueue.poll();
+    states[index] = RUNNING;
+    runningCount++;
+    return dag.getKey(index);
+  }
+
+  /**
+   * 节点执行成功, 更新后继节点的入度 <p>
+   *
+   * 对于恢复时已经成功的节点, 可以在提交之前直接调用
+   *
+   * @param nodeName 节点名称
+   */
+  public void markSuccess(String nodeName) {
+    int index = dag.indexOf(nodeName);
+    if (!finish(index, SUCCESS)) {
+      return;
+    }
+    successCount++;
+
+    for (int i = 0, outdegree = dag.getOutdegree(index); i < outdegree; ++i) {
+      int post = dag.getSuccessor(index, i);
+      if (--indegrees[post] == 0 && states[post] == PENDING) {
+        readyQueue.add(post);
+      }
+    }
+  }
+
+  /**
+   * 节点执行失败(已经达到重试次数), 跳过所有还没有执行的后续节点 <p>
+   *
+   * @param nodeName 节点名称
+   * @return 被跳过的节点
+   */
+  public List<String> markFailed(String nodeName) {
+    int index = dag.indexOf(nodeName);
+    if (!finish(index, FAILED)) {
+      return Collections.emptyList();
+    }
+
+    List<String> skipped = new ArrayList<>();
+    Queue<Integer> queue = new ArrayDeque<>();
+    queue.add(index);
+
+    while (!queue.isEmpty()) {
+      int current = queue.poll();
+      for (int i = 0, outdegree = dag.getOutdegree(current); i < outdegree; ++i) {
+        int post = dag.getSuccessor(current, i);
+        if (states[post] == PENDING) {
+          finish(post, SKIPPED);
+          skipped.add(dag.getKey(post));
+          queue.add(post);
+        }
+      }
+    }
+
+    return skipped;
+  }
+
+  /**
+   * 将节点从 PENDING/RUNNING 状态转到结束状态 <p>
+   *
+   * @return 是否发生了状态转换
+   */
+  private boolean finish(int index, byte state) {
+    byte oldState = states[index];
+    if (oldState != PENDING && oldState != RUNNING) {
+      return false;
+    }
+    if (oldState == RUNNING) {
+      runningCount--;
+    }
+    states[index] = state;
+    finishedCount++;
+    return true;
+  }
+
+  /**
+   * 是否包含节点 <p>
+   */
+  public boolean containsNode(String nodeName) {
+    return dag.containsVertex(nodeName);
+  }
+
+  /**
+   * 是否全部结束 <p>
+   */
+  public boolean isAllFinished() {
+    return finishedCount == states.length;
+  }
+
+  /**
+   * 是否全部执行成功 <p>
+   */
+  public boolean isAllSuccess() {
+    return successCount == states.length;
+  }
+
+  /**
+   * 正在运行的节点数目 <p>
+   */
+  public int getRunningCount() {
+    return runningCount;
+  }
+
+  /**
+   * 节点数目 <p>
+   */
+  public int size() {
+    return states.length;
+  }
+}
@@ -17,12 +17,10 @@ package com.baifendian.swordfish.execserver.flow;
 
 import com.baifendian.swordfish.common.config.BaseConfig;
 import com.baifendian.swordfish.common.hadoop.HdfsClient;
-import com.baifendian.swordfish.common.hadoop.HdfsUtil;
 import com.baifendian.swordfish.common.job.Job;
 import com.baifendian.swordfish.common.job.JobProps;
 import com.baifendian.swordfish.common.mail.EmailManager;
-import com.baifendian.swordfish.common.utils.graph.DAGGraph;
-import com.baifendian.swordfish.common.utils.graph.Graph;
+import com.baifendian.swordfish.common.utils.graph.CompactDag;
 import com.baifendian.swordfish.dao.DaoFactory;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.enums.FailurePolicyType;
@@ -35,24 +33,25 @@ import com.baifendian.swordfish.execserver.exception.ExecTimeoutException;
 import com.baifendian.swordfish.execserver.job.JobTypeManager;
 import com.baifendian.swordfish.execserver.node.NodeRunner;
 import com.baifendian.swordfish.execserver.utils.LoggerUtil;
+import com.baifendian.swordfish.execserver.utils.HostMetrics;
 import com.baifendian.swordfish.execserver.utils.OsUtil;
+import com.baifendian.swordfish.execserver.utils.ResourceCache;
+import com.baifendian.swordfish.rpc.client.MasterClient;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
-import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * flow 执行器 <p>
@@ -142,6 +141,11 @@ public class FlowRunner implements Runnable {
    */
   private final Object synObject = new Object();
 
+  /**
+   * 执行完成的 nodeRunner, 由 nodeRunner 放入, flow runner 线程取出处理
+   */
+  private final BlockingQueue<NodeRunner> completionQueue = new LinkedBlockingQueue<>();
+
   /**
    * workflow 是否执行成功
    */
@@ -216,44 +220,44 @@ public class FlowRunner implements Runnable {
       // 下载workflow的资源文件到本地exec目录
       String workflowHdfsFile = BaseConfig.getHdfsWorkflowFilename(executionFlow.getProjectId(), executionFlow.getFlowName());
       HdfsClient hdfsClient = HdfsClient.getInstance();
+      ResourceCache resourceCache = ResourceCache.getInstance();
+      // 本次执行的缓存命中数和获取的文件数
+      int cacheHits = 0;
+      int cacheFetches = 0;
       if (hdfsClient.exists(workflowHdfsFile)) {
         LOGGER.debug("get hdfs workflow file:{}",workflowHdfsFile);
-        HdfsUtil.GetFile(workflowHdfsFile, execLocalPath);
-        // 资源文件解压缩处理 workflow下的文件为 workflowName.zip
-        File zipFile = new File(execLocalPath, executionFlow.getFlowName() + ".zip");
-        if (zipFile.exists()) {
-          String cmd = String.format("unzip -o %s -d %s", zipFile.getPath(), execLocalPath);
-          LOGGER.info("call cmd:" + cmd);
-          Process process = Runtime.getRuntime().exec(cmd);
-          int ret = process.waitFor();
-          if (ret != 0) {
-            LOGGER.error("run cmd:" + cmd + " error");
-            LOGGER.error(IOUtils.toString(process.getErrorStream(), Charset.forName("UTF-8")));
-          }
-        } else {
-          LOGGER.error("can't found workflow zip file:" + zipFile.getPath());
+        // 资源文件解压缩处理 workflow下的文件为 workflowName.zip, 直接解压到 exec 目录
+        if (resourceCache.fetchExtracted(workflowHdfsFile, execLocalPathFile)) {
+          cacheHits++;
         }
+        cacheFetches++;
       } else {
         LOGGER.debug("hdfs workflow file:{} not exists",workflowHdfsFile);
       }
 
       // 解析作业参数获取需要的项目级资源文件清单
       List<String> projectRes = genProjectResFiles(flowDag);
+      Map<String, File> resFiles = new HashMap<>();
       for (String res : projectRes) {
         File resFile = new File(execLocalPath, res);
         if (!resFile.exists()) {
           String resHdfsPath = BaseConfig.getHdfsResourcesFilename(executionFlow.getProjectId(), res);
           LOGGER.info("get project file:{}", resHdfsPath);
-          HdfsUtil.GetFile(resHdfsPath, execLocalPath);
+          resFiles.put(resHdfsPath, resFile);
         } else {
           LOGGER.info("file:{} exists, ignore", resFile.getName());
         }
       }
+      // 并发获取所有的资源文件
+      cacheHits += resourceCache.fetchAll(resFiles);
+      cacheFetches += resFiles.size();
+
+      LOGGER.info("exec id:{} resource cache hit:{}, miss:{}", executionFlow.getId(), cacheHits, cacheFetches - cacheHits);
 
       // 生成具体 Dag
-      Graph<String, FlowNode, FlowNodeRelation> dagGraph = genDagGraph(flowDag);
+      CompactDag<String, FlowNode> dag = genDag(flowDag);
       // 执行 flow
-      status = runFlow(dagGraph);
+      status = runFlow(dag);
 
       // 更新 ExecutionFlow
       updateExecutionFlow(status);
@@ -264,36 +268,60 @@ public class FlowRunner implements Runnable {
     } catch (Throwable e) {
       LOGGER.error("run exec id:"+executionFlow.getId(), e);
     } finally {
-      if (status == null) { // 执行失败
-        updateExecutionFlow(FlowStatus.FAILED);
+      try {
+        if (status == null) { // 执行失败
+          status = FlowStatus.FAILED;
+          updateExecutionFlow(status);
+        }
+        // 后置处理
+        after();
+      } finally {
+        // 子进程的资源统计
+        HostMetrics hostMetrics = HostMetrics.getInstance();
+        HostMetrics.FlowUsage flowUsage = (hostMetrics != null) ? hostMetrics.removeFlow(getExecId()) : null;
+        if (flowUsage != null) {
+          LOGGER.info("exec id:{} process cpu time:{}ms, peak rss:{}MB", getExecId(), flowUsage.getCpuMillis(), flowUsage.getPeakRssBytes() / 1024 / 1024);
+        }
+
+        // 通知结束, 从运行列表中注销
+        FlowFinishListener finishListener = context.getFinishListener();
+        if (finishListener != null) {
+          finishListener.onFlowFinished(this, status);
+        }
       }
-      // 后置处理
-      after();
     }
 
   }
 
+  /**
+   * 获取执行 id <p>
+   */
+  public int getExecId() {
+    return executionFlow.getId();
+  }
+
   /**
    * 生成flow的 DAG <p>
    *
    * @return DAG
+   * @throws Exception DAG 中存在环
    */
-  private Graph<String, FlowNode, FlowNodeRelation> genDagGraph(FlowDag flowDag) {
-    Graph<String, FlowNode, FlowNodeRelation> dagGraph = new DAGGraph<>();
+  private CompactDag<String, FlowNode> genDag(FlowDag flowDag) throws Exception {
+    CompactDag.Builder<String, FlowNode> builder = CompactDag.builder();
 
     flowNodes = flowDag.getNodes();
     if (CollectionUtils.isNotEmpty(flowDag.getNodes())) {
       for (FlowNode node : flowDag.getNodes()) {
-        dagGraph.addVertex(node.getName(), node);
+        builder.addVertex(node.getName(), node);
       }
     }
     if (CollectionUtils.isNotEmpty(flowDag.getEdges())) {
       for (FlowNodeRelation edge : flowDag.getEdges()) {
-        dagGraph.addEdge(edge.getStartNode(), edge.getEndNode());
+        builder.addEdge(edge.getStartNode(), edge.getEndNode());
       }
     }
 
-    return dagGraph;
+    return builder.build();
   }
 
   private List<String> genProjectResFiles(FlowDag flowDag) throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
@@ -317,186 +345,135 @@ public class FlowRunner implements Runnable {
   }
 
   /**
-   * 执行单个节点 <p>
+   * 执行 workflow <p>
    *
    * @return {@link FlowStatus}
    */
-  private FlowStatus runNode(FlowNode flowNode) {
-    // 判断是否为空
-    if (flowNode == null) {
-      LOGGER.error("节点为空");
-      return FlowStatus.FAILED;
+  private FlowStatus runFlow(CompactDag<String, FlowNode> dag) {
+    DagScheduler scheduler = new DagScheduler(dag);
+
+    // 支持恢复处理, 一次性取回已有的节点执行记录,
+    // 当在恢复处理时该节点有可能已经运行成功了, 此时跳过该节点处理, 其他情况，重新调度
+    Map<String, ExecutionNode> executionNodeLogs = new HashMap<>();
+    for (ExecutionNode executionNodeLog : flowDao.queryExecutionNodes(executionFlow.getId())) {
+      String nodeName = executionNodeLog.getName();
+      if (!scheduler.containsNode(nodeName)) {
+        continue;
+      }
+      executionNodeLogs.put(nodeName, executionNodeLog);
+      if (executionNodeLog.getStatus().typeIsSuccess()) {
+        finishedExecutionNodes.add(executionNodeLog);
+        scheduler.markSuccess(nodeName);
+      }
     }
 
-    // 是否全部执行完成
-    boolean isAllFinished = false;
-    synchronized (synObject) {
-      // 插入执行节点信息
-      ExecutionNode executionNode = new ExecutionNode();
-      executionNode.setExecId(executionFlow.getId());
-      executionNode.setName(flowNode.getName());
-      executionNode.setAttempt(0);
-      executionNode.setStartTime(new Date());
-      executionNode.setStatus(FlowStatus.INIT);
-      executionNode.setJobId(LoggerUtil.genJobId(JOB_PREFIX, executionFlow.getId(), flowNode.getName()));
+    while (!scheduler.isAllFinished()) {
+      synchronized (synObject) {
+        if (flowKilled) {
+          return FlowStatus.KILL;
+        }
 
-      flowDao.insertExecutionNode(executionNode);
+        // 提交所有入度为 0 的节点
+        String nodeName;
+        while ((nodeName = scheduler.pollReady()) != null) {
+          // 插入执行节点信息
+          FlowNode node = dag.getVertex(nodeName);
+          ExecutionNode executionNode = new ExecutionNode();
+          executionNode.setExecId(executionFlow.getId());
+          executionNode.setName(node.getName());
+          executionNode.setAttempt(0);
+          executionNode.setStartTime(new Date());
+          executionNode.setStatus(FlowStatus.INIT);
+          executionNode.setJobId(LoggerUtil.genJobId(JOB_PREFIX, executionFlow.getId(), node.getName()));
+          // 如果是在恢复或者是长作业时，execution_nodes表中会存在记录，这里进行更新处理
+          if (executionNodeLogs.containsKey(nodeName)) {
+            flowDao.updateExecutionNode(executionNode);
+          } else {
+            flowDao.insertExecutionNode(executionNode);
+          }
+          // 插入执行队列
+          executionNodes.add(executionNode);
+
+          // 提交 jobrunner
+          submitNodeRunner(node, executionNode);
+        }
+      }
 
-      // 插入执行队列
-      executionNodes.add(executionNode);
+      // 既没有可执行的节点, 也没有正在运行的节点, 正常的 DAG 不会出现
+      if (scheduler.getRunningCount() == 0) {
+        LOGGER.error("exec id:{} has no runnable node, but not all finished", executionFlow.getId());
+        return FlowStatus.FAILED;
+      }
 
-      // 提交 jobrunner
-      submitNodeRunner(flowNode, executionNode);
+      // 等待任意一个节点执行完成
+      NodeRunner nodeRunner;
+      try {
+        nodeRunner = completionQueue.take();
+      } catch (InterruptedException e) {
+        // 线程被中断 (shutdownNow 等), 保留中断标志, 停止正在运行的节点后退出
+        LOGGER.warn("exec id:{} interrupted while waiting for nodes, kill it", executionFlow.getId());
+        Thread.currentThread().interrupt();
+        kill();
+        return FlowStatus.KILL;
+      }
 
-      while (!isAllFinished) {
-        // 执行失败，直接结束
-        if (!isSuccess) {
-          break;
+      synchronized (synObject) {
+        activeNodeRunners.remove(nodeRunner);
+        if (flowKilled) {
+          return FlowStatus.KILL;
         }
 
-        // 判断是否执行完毕
-        try {
-          isAllFinished = isFinished(flowNode);
-        } catch (Exception e) {
-          LOGGER.error(e.getMessage(), e);
-        }
+        handleNodeFinished(scheduler, dag, nodeRunner.getExecutionNode());
 
         // 执行失败，直接结束
         if (!isSuccess) {
           break;
         }
-
-        // 如果没有执行完成，等待
-        if (!isAllFinished) {
-          try {
-            synObject.wait(); // 等待执行完成
-          } catch (InterruptedException e) {
-            LOGGER.error(e.getMessage(), e);
-          }
-        }
       }
     }
 
-    // 执行成功并且节点的数目和执行完成的节点数目相同
-    if (isSuccess) {
+    // 执行成功并且所有节点都执行成功
+    if (isSuccess && scheduler.isAllSuccess()) {
       return FlowStatus.SUCCESS;
     }
     return FlowStatus.FAILED;
   }
 
   /**
-   * 执行 workflow <p>
-   *
-   * @return {@link FlowStatus}
+   * 处理一个执行完成的节点, 成功则释放后继节点, 失败则重试或者跳过后续节点 <p>
    */
-  private FlowStatus runFlow(Graph<String, FlowNode, FlowNodeRelation> dagGraph) {
-    // 获取拓扑排序列表
-    List<String> topologicalSort = null;
-    try {
-      topologicalSort = dagGraph.topologicalSort();
-    } catch (Exception e) {// DAG 中存在环
-      LOGGER.error(e.getMessage(), e);
-      return FlowStatus.FAILED;
-    }
-
-    // 节点数目
-    int nodeSize = topologicalSort.isEmpty() ? 0 : topologicalSort.size();
-    // 是否全部执行完成
-    boolean isAllFinished = false;
-    synchronized (synObject) {
-      // 当存在节点未提交或者没有全部执行完成时，循环检测
-      while (!topologicalSort.isEmpty() || !isAllFinished) {
-        // 遍历一遍节点，找出可执行节点
-        Iterator<String> iterator = topologicalSort.iterator();
-        while (iterator.hasNext()) {
-          String nodeName = iterator.next();
-          // 支持恢复处理，
-          // 当在恢复处理时该节点有可能已经运行成功了,此时跳过该节点处理
-          // 其他情况，重新调度
-          ExecutionNode executionNodeLog = flowDao.queryExecutionNode(executionFlow.getId(), nodeName);
-          if (executionNodeLog != null && executionNodeLog.getStatus().typeIsSuccess()) {
-            iterator.remove();
-            finishedExecutionNodes.add(executionNodeLog);
-            continue;
-          }
-
-          // 找到当前节点的所有前驱节点
-          Set<String> preNodes = dagGraph.getPreNode(nodeName);
-          boolean preNodesAllSuccess = isPreNodesAllSuccess(preNodes);
-          if (preNodesAllSuccess) { // 全部执行成功
-            // 插入执行节点信息
-            FlowNode node = dagGraph.getVertex(nodeName);
-            ExecutionNode executionNode = new ExecutionNode();
-            executionNode.setExecId(executionFlow.getId());
-            executionNode.setName(node.getName());
-            executionNode.setAttempt(0);
-            executionNode.setStartTime(new Date());
-            executionNode.setStatus(FlowStatus.INIT);
-            executionNode.setJobId(LoggerUtil.genJobId(JOB_PREFIX, executionFlow.getId(), node.getName()));
-            // 如果是在恢复或者是长作业时，execution_nodes表中会存在记录，这里进行更新处理
-            if(executionNodeLog != null){
-              flowDao.updateExecutionNode(executionNode);
-            } else {
-              flowDao.insertExecutionNode(executionNode);
-            }
-            // 插入执行队列
-            executionNodes.add(executionNode);
-
-            // 提交 jobrunner
-            submitNodeRunner(node, executionNode);
-
-            // 删除当前元素
-            iterator.remove();
-          } else { // 没有全部成功，看看是否已经有前驱节点失败（这里是指重试后仍失败）或者跳过
-            boolean preNodesHasFailed = isPreNodesHasFailed(preNodes);
-            // 如果前驱节点已经失败
-            if (preNodesHasFailed) {
-              // 如果失败的测试是结束 DAG ,那么设置状态是失败，并跳出当前循环
-              if (failurePolicyType == FailurePolicyType.END) {
-                isSuccess = false;
-                break;
-              } else { // 继续执行
-                // 删除当前元素,节点加入跳过的队列
-                iterator.remove();
-                skipNodes.add(nodeName);
-              }
-            }
-          }
-        }
-
-        // 执行失败，直接结束
-        if (!isSuccess) {
-          break;
-        }
-
-        // 判断是否执行完毕
-        try {
-          isAllFinished = isAllFinished(dagGraph);
-        } catch (Exception e) {
-          LOGGER.error(e.getMessage(), e);
-        }
-
-        // 执行失败，直接结束
-        if (!isSuccess) {
-          break;
-        }
+  private void handleNodeFinished(DagScheduler scheduler, CompactDag<String, FlowNode> dag, ExecutionNode executionNode) {
+    executionNodes.remove(executionNode);
 
-        // 如果没有执行完成，等待
-        if (!isAllFinished) {
-          try {
-            synObject.wait(); // 等待执行完成
-          } catch (InterruptedException e) {
-            LOGGER.error(e.getMessage(), e);
-          }
-        }
-      }
+    if (executionNode.getStatus().typeIsSuccess()) {
+      // 执行成功的情况：插入完成队列，后继节点入度减一
+      finishedExecutionNodes.add(executionNode);
+      scheduler.markSuccess(executionNode.getName());
+      return;
     }
 
-    // 执行成功并且节点的数目和执行完成的节点数目相同
-    if (isSuccess && nodeSize == finishedExecutionNodes.size()) {
-      return FlowStatus.SUCCESS;
+    FlowNode node = dag.getVertex(executionNode.getName());
+    if (JobTypeManager.isLongJob(node.getType())) {
+      // 长任务处理
+      // 报错发送邮件，避免出现程序问题，一直重复调度
+      LOGGER.debug("exec id:{}, node:{} retry", executionNode.getExecId(), executionNode.getName());
+      EmailManager.sendEmail(executionFlow, executionNode);
+      reSubmitNodeRunner(node, executionNode);
+    } else if (executionNode.getAttempt() < maxTryTimes) {
+      // 失败的情况：没有到达重试次数，提交一个重试的 jobrunner
+      reSubmitNodeRunner(node, executionNode);
+    } else {
+      LOGGER.debug("exec id:{}, node:{} fetch max try times {}", executionNode.getExecId(), executionNode.getName(), maxTryTimes);
+      // 达到最大重试次数，认为已经失败：插入完成队列
+      finishedExecutionNodes.add(executionNode);
+
+      // 如果失败后的策略是停止执行 DAG，那么修改 isSuccess, 否则跳过所有后续节点
+      if (failurePolicyType == FailurePolicyType.END) {
+        isSuccess = false;
+      } else {
+        skipNodes.addAll(scheduler.markFailed(executionNode.getName()));
+      }
     }
-    return FlowStatus.FAILED;
   }
 
   /**
@@ -507,9 +484,9 @@ public class FlowRunner implements Runnable {
     if(!JobTypeManager.isLongJob(flowNode.getType())) {
       nowTimeout = calcNodeTimeout(); // 重新计算超时时间
     }
-    NodeRunner nodeRunner = new NodeRunner(executionFlow, executionNode, flowNode, jobExecutorService, synObject, nowTimeout, systemParamMap, customParamMap);
-    Future<?> future = executorService.submit(nodeRunner);
+    NodeRunner nodeRunner = new NodeRunner(executionFlow, executionNode, flowNode, jobExecutorService, completionQueue, nowTimeout, systemParamMap, customParamMap);
     activeNodeRunners.add(nodeRunner);
+    executorService.submit(nodeRunner);
   }
 
   /**
@@ -526,60 +503,6 @@ public class FlowRunner implements Runnable {
     return timeout - usedTime;
   }
 
-  /**
-   * 判断是否全部执行完成 <p>
-   *
-   * @return 是否全部执行完成
-   */
-  private boolean isAllFinished(Graph<String, FlowNode, FlowNodeRelation> dagGraph) {
-    boolean isAllFinished = true; // 是否全部执行完成
-    for (ExecutionNode executionNode : executionNodes) {
-      FlowStatus status = executionNode.getStatus();
-      if (status.typeIsSuccess()) {
-        // 执行成功的情况：从执行队列删除，插入完成队列
-        executionNodes.remove(executionNode);
-        finishedExecutionNodes.add(executionNode);
-      } else if (status.typeIsFinished()) {
-        FlowNode node = dagGraph.getVertex(executionNode.getName());
-        if(JobTypeManager.isLongJob(node.getType())){
-          // 长任务处理
-          // 报错发送邮件，避免出现程序问题，一直重复调度
-          LOGGER.debug("exec id:{}, node:{} retry", executionNode.getExecId(), executionNode.getName());
-          EmailManager.sendEmail(executionFlow, executionNode);
-          executionNodes.remove(executionNode);
-          reSubmitNodeRunner(node, executionNode);
-
-          isAllFinished = false;
-        } else {
-          // 失败的情况：判断是否到达重试次数
-          if (executionNode.getAttempt() < maxTryTimes) {
-            // 从执行队列中删除
-            // 插入一个重试的节点，提交一个重试的 jobrunner
-            executionNodes.remove(executionNode);
-            reSubmitNodeRunner(node, executionNode);
-
-            isAllFinished = false;
-          } else {
-            LOGGER.debug("exec id:{}, node:{} fetch max try times {}", executionNode.getExecId(), executionNode.getName(), maxTryTimes);
-            // 达到最大重试次数，认为已经失败：从执行队列删除，插入完成队列
-            executionNodes.remove(executionNode);
-            finishedExecutionNodes.add(executionNode);
-
-            // 如果失败后的策略是停止执行 DAG，那么修改 isSuccess
-            if (failurePolicyType == FailurePolicyType.END) {
-              isSuccess = false;
-            }
-          }
-        }
-      } else {
-        // 没执行完成
-        isAllFinished = false;
-      }
-    }
-
-    return isAllFinished;
-  }
-
   private void reSubmitNodeRunner(FlowNode node, ExecutionNode executionNode){
     ExecutionNode retryExecutionNode = new ExecutionNode();
     retryExecutionNode.setExecId(executionNode.getExecId());
@@ -596,114 +519,6 @@ public class FlowRunner implements Runnable {
     submitNodeRunner(node, retryExecutionNode);
   }
 
-  /**
-   * 判断是否执行完成(单节点执行) <p>
-   *
-   * @return 是否全部执行完成
-   */
-  private boolean isFinished(FlowNode flowNode) {
-    boolean isAllFinished = true; // 是否全部执行完成
-    for (ExecutionNode executionNode : executionNodes) {
-      FlowStatus status = executionNode.getStatus();
-      if (status.typeIsSuccess()) {
-        // 执行成功的情况：从执行队列删除，插入完成队列
-        executionNodes.remove(executionNode);
-        finishedExecutionNodes.add(executionNode);
-      } else if (status.typeIsFinished()) {
-        // 失败的情况：判断是否到达重试次数
-        if (executionNode.getAttempt() < maxTryTimes) {
-          // 从执行队列中删除
-          // 插入一个重试的节点，提交一个重试的 jobrunner
-          executionNodes.remove(executionNode);
-
-          ExecutionNode retryExecutionNode = new ExecutionNode();
-          retryExecutionNode.setExecId(executionNode.getExecId());
-          retryExecutionNode.setName(executionNode.getName());
-          retryExecutionNode.setAttempt(executionNode.getAttempt() + 1);
-          retryExecutionNode.setStartTime(new Date());
-          retryExecutionNode.setStatus(FlowStatus.INIT);
-          retryExecutionNode.setJobId(LoggerUtil.genJobId(JOB_PREFIX, executionFlow.getId(), executionNode.getName()));
-          flowDao.updateExecutionNode(retryExecutionNode);
-          executionNodes.add(retryExecutionNode);
-
-          submitNodeRunner(flowNode, retryExecutionNode);
-
-          isAllFinished = false;
-        } else {
-          // 达到最大重试次数，认为已经失败：从执行队列删除，插入完成队列
-          executionNodes.remove(executionNode);
-          finishedExecutionNodes.add(executionNode);
-
-          // 如果失败后的策略是停止执行 DAG，那么修改 isSuccess
-          if (failurePolicyType == FailurePolicyType.END) {
-            isSuccess = false;
-          }
-        }
-      } else {
-        // 没执行完成
-        isAllFinished = false;
-      }
-    }
-
-    return isAllFinished;
-  }
-
-  /**
-   * 判断前驱节点是否已经存在执行失败的情况 <p>
-   *
-   * @return 是否存在失败
-   */
-  private boolean isPreNodesHasFailed(Set<String> preNodes) {
-    for (String nodeName : preNodes) {
-      // 节点已经跳过执行的情况
-      if (skipNodes.contains(nodeName)) {
-        return true;
-      }
-      ExecutionNode preFinishedNode = retrieveFinishedExecutionNode(nodeName);
-      // 执行完成，并且失败的情况
-      if (preFinishedNode != null && !preFinishedNode.getStatus().typeIsSuccess()) {
-        return true;
-      }
-    }
-
-    return false;
-  }
-
-  /**
-   * 判断前驱节点是否都执行成功 <p>
-   *
-   * @return 是否全部成功
-   */
-  private boolean isPreNodesAllSuccess(Set<String> preNodes) {
-    // 没有前驱节点，认为全部执行成功
-    if (CollectionUtils.isEmpty(preNodes)) {
-      return true;
-    }
-    for (String nodeName : preNodes) {
-      ExecutionNode preFinishedNode = retrieveFinishedExecutionNode(nodeName);
-      // 未执行完成或者执行失败的情况
-      if (preFinishedNode == null || !preFinishedNode.getStatus().typeIsSuccess()) {
-        return false;
-      }
-    }
-
-    return true;
-  }
-
-  /**
-   * 取回节点执行完成的执行信息(缓存) <p>
-   *
-   * @return {@link ExecutionNode}
-   */
-  private ExecutionNode retrieveFinishedExecutionNode(String nodeName) {
-    for (ExecutionNode executionNode : finishedExecutionNodes) {
-      if (ObjectUtils.equals(nodeName, executionNode.getName())) {
-        return executionNode;
-      }
-    }
-    return null;
-  }
-
   /**
    * 更新 ExecutionFlow <p>
    */
@@ -711,6 +526,12 @@ public class FlowRunner implements Runnable {
     executionFlow.setEndTime(new Date());
     executionFlow.setStatus(status);
     flowDao.updateExecutionFlow(executionFlow);
+
+    // 通知 master, 唤醒等待该 workflow 的任务
+    MasterClient masterClient = context.getMasterClient();
+    if (masterClient != null) {
+      masterClient.reportFlowStatus(executionFlow.getId(), status.getType());
+    }
   }
 
   /**
@@ -779,11 +600,13 @@ public class FlowRunner implements Runnable {
     }
   }
 
+  /**
+   * 取消执行, 状态由 runFlow 返回 KILL 后统一更新并通知 master, 这里不重复更新 <p>
+   */
   public void kill(String user) {
     synchronized (synObject) {
       LOGGER.info("Flow killed by " + user);
       kill();
-      updateExecutionFlow(FlowStatus.KILL);
     }
   }
 
@@ -801,4 +624,18 @@ public class FlowRunner implements Runnable {
 
   }
 
+  /**
+   * workflow 执行结束的回调 <p>
+   */
+  public interface FlowFinishListener {
+
+    /**
+     * workflow 执行结束, 包括后置处理 <p>
+     *
+     * @param flowRunner 结束的 {@link FlowRunner}
+     * @param status     最终的状态
+     */
+    void onFlowFinished(FlowRunner flowRunner, FlowStatus status);
+  }
+
 }
@@ -18,6 +18,7 @@ package com.baifendian.swordfish.execserver.flow;
 import com.baifendian.swordfish.dao.enums.FailurePolicyType;
 import com.baifendian.swordfish.dao.model.ExecutionFlow;
 import com.baifendian.swordfish.dao.model.Schedule;
+import com.baifendian.swordfish.rpc.client.MasterClient;
 
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -26,6 +27,16 @@ import java.util.concurrent.ExecutorService;
  * workflow 执行的上下文 <p>
  */
 public class FlowRunnerContext {
+  /**
+   * {@link MasterClient}, 用于汇报 workflow 的状态
+   */
+  private MasterClient masterClient;
+
+  /**
+   * workflow 执行结束的回调
+   */
+  private FlowRunner.FlowFinishListener finishListener;
+
   /**
    * {@link ExecutionFlow}
    */
@@ -251,4 +262,44 @@ public class FlowRunnerContext {
     this.customParamMap = customParamMap;
   }
 
+
+  /**
+   * getter method
+   *
+   * @return the masterClient
+   * @see FlowRunnerContext#masterClient
+   */
+  public MasterClient getMasterClient() {
+    return masterClient;
+  }
+
+  /**
+   * setter method
+   *
+   * @param masterClient the masterClient to set
+   * @see FlowRunnerContext#masterClient
+   */
+  public void setMasterClient(MasterClient masterClient) {
+    this.masterClient = masterClient;
+  }
+
+  /**
+   * getter method
+   *
+   * @return the finishListener
+   * @see FlowRunnerContext#finishListener
+   */
+  public FlowRunner.FlowFinishListener getFinishListener() {
+    return finishListener;
+  }
+
+  /**
+   * setter method
+   *
+   * @param finishListener the finishListener to set
+   * @see FlowRunnerContext#finishListener
+   */
+  public void setFinishListener(FlowRunner.FlowFinishListener finishListener) {
+    this.finishListener = finishListener;
+  }
 }
@@ -28,14 +28,15 @@ import com.baifendian.swordfish.dao.model.Schedule;
 import com.baifendian.swordfish.execserver.Constants;
 import com.baifendian.swordfish.execserver.parameter.CustomParamManager;
 import com.baifendian.swordfish.execserver.parameter.SystemParamManager;
+import com.baifendian.swordfish.rpc.client.MasterClient;
 
 import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -91,17 +92,26 @@ public class FlowRunnerManager {
    */
   private final FailurePolicyType defaultFailurePolicyType = FailurePolicyType.END;
 
-  private final Map<Integer, FlowRunner> runningFlows = new ConcurrentHashMap<>();
+  /**
+   * 正在运行的 workflow
+   */
+  private final RunningFlowRegistry runningFlows = new RunningFlowRegistry();
 
   private final Configuration conf;
 
+  /**
+   * {@link MasterClient}
+   */
+  private final MasterClient masterClient;
+
   /**
    * constructor
    */
-  public FlowRunnerManager(Configuration conf) {
+  public FlowRunnerManager(Configuration conf, MasterClient masterClient) {
     this.flowDao = DaoFactory.getDaoInstance(FlowDao.class);
     this.executionNodeMapper = ConnectionFactory.getSqlSession().getMapper(ExecutionNodeMapper.class);
     this.conf = conf;
+    this.masterClient = masterClient;
 
     int flowThreads = conf.getInt(Constants.EXECUTOR_FLOWRUNNER_THREADS, 20);
     ThreadFactory flowThreadFactory = new ThreadFactoryBuilder().setNameFormat("Exec-Worker-FlowRunner").build();
@@ -114,22 +124,6 @@ public class FlowRunnerManager {
     ThreadFactory jobThreadFactory = new ThreadFactoryBuilder().setNameFormat("Exec-Worker-Job").build();
     jobExecutorService = Executors.newCachedThreadPool(jobThreadFactory);
 
-    Thread cleanThread = new Thread(new Runnable() {
-      @Override
-      public void run() {
-        while(true) {
-          try {
-            cleanFinishedFlows();
-            Thread.sleep(5000);
-          } catch (Exception e){
-            LOGGER.error("clean thread error ", e);
-          }
-        }
-      }
-    });
-    cleanThread.setDaemon(true);
-    cleanThread.setName("finishedFlowClean");
-    cleanThread.start();
   }
 
   /**
@@ -159,10 +153,12 @@ public class FlowRunnerManager {
     context.setFailurePolicyType(defaultFailurePolicyType);
     context.setSystemParamMap(systemParamMap);
     context.setCustomParamMap(customParamMap);
+    context.setMasterClient(masterClient);
+    context.setFinishListener(runningFlows);
 
     FlowRunner flowRunner = new FlowRunner(context);
 
-    runningFlows.put(executionFlow.getId(), flowRunner);
+    runningFlows.register(flowRunner);
     flowExecutorService.submit(flowRunner);
   }
 
@@ -196,19 +192,21 @@ public class FlowRunnerManager {
     context.setFailurePolicyType(failurePolicy);
     context.setSystemParamMap(systemParamMap);
     context.setCustomParamMap(customParamMap);
+    context.setMasterClient(masterClient);
+    context.setFinishListener(runningFlows);
     FlowRunner flowRunner = new FlowRunner(context);
 
-    runningFlows.put(executionFlow.getId(), flowRunner);
+    runningFlows.register(flowRunner);
     flowExecutorService.submit(flowRunner);
   }
 
-  private void cleanFinishedFlows(){
-    for(Map.Entry<Integer, FlowRunner> entry: runningFlows.entrySet()){
-      ExecutionFlow executionFlow = flowDao.queryExecutionFlow(entry.getKey());
-      if(executionFlow.getStatus().typeIsFinished()){
-        runningFlows.remove(entry.getKey());
-      }
-    }
+  /**
+   * 获取正在运行的 workflow 的 execId 列表 <p>
+   *
+   * @return execId 列表
+   */
+  public List<Integer> getRunningExecIds() {
+    return runningFlows.getRunningExecIds();
   }
 
   /**
@@ -236,7 +234,7 @@ public class FlowRunnerManager {
       }
     }
 
-    for (FlowRunner flowRunner : runningFlows.values()) {
+    for (FlowRunner flowRunner : runningFlows.getRunningFlows()) {
       flowRunner.kill();
     }
 
@@ -256,6 +254,8 @@ public class FlowRunnerManager {
       e.printStackTrace();
     }
 
+    // 写入缓冲中剩余的节点信息
+    flowDao.destroyExecutionNodeBuffer();
   }
 
   public void cancelFlow(int execId, String user) {
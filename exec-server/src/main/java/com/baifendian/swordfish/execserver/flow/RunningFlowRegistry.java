@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.flow;
+
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地正在运行的 workflow 登记 <p>
+ *
+ * 提交时登记, {@link FlowRunner} 结束时通过回调注销, 不需要查询数据库; 心跳中的 execIds 也取自这里.
+ */
+public class RunningFlowRegistry implements FlowRunner.FlowFinishListener {
+
+  /**
+   * LOGGER
+   */
+  private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+  /**
+   * execId -> {@link FlowRunner}
+   */
+  private final Map<Integer, FlowRunner> runningFlows = new ConcurrentHashMap<>();
+
+  /**
+   * 登记一个提交执行的 workflow <p>
+   */
+  public void register(FlowRunner flowRunner) {
+    runningFlows.put(flowRunner.getExecId(), flowRunner);
+  }
+
+  /**
+   * 注销一个 workflow <p>
+   *
+   * @return 注销的 {@link FlowRunner}, 不存在时返回 null
+   */
+  public FlowRunner remove(int execId) {
+    return runningFlows.remove(execId);
+  }
+
+  public FlowRunner get(int execId) {
+    return runningFlows.get(execId);
+  }
+
+  /**
+   * 获取正在运行的 workflow 的 execId 列表 <p>
+   */
+  public List<Integer> getRunningExecIds() {
+    return new ArrayList<>(runningFlows.keySet());
+  }
+
+  public Collection<FlowRunner> getRunningFlows() {
+    return new ArrayList<>(runningFlows.values());
+  }
+
+  public int size() {
+    return runningFlows.size();
+  }
+
+  @Override
+  public void onFlowFinished(FlowRunner flowRunner, FlowStatus status) {
+    // 只注销自己, 避免同一个 execId 重新提交后被误删
+    if (runningFlows.remove(flowRunner.getExecId(), flowRunner)) {
+      LOGGER.debug("exec id:{} finished, status:{}, running flows:{}", flowRunner.getExecId(), status, runningFlows.size());
+    }
+  }
+}
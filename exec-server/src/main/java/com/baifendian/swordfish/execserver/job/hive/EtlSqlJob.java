@@ -50,12 +50,16 @@ public class EtlSqlJob extends AbstractJob {
   public void process() throws Exception {
     String sqls = param.getSql();
     sqls = ParamHelper.resolvePlaceholders(sqls, definedParamMap);
-    List<String> funcs = FunctionUtil.createFuncs(param.getUdfs(), jobIdLog, getWorkingDirectory(), false);
-    logger.info("exec sql:{}, funcs:{}", sqls, funcs);
-    List<String> execSqls = CommonUtil.sqlSplit(sqls);
-    HiveSqlExec hiveSqlExec = new HiveSqlExec(funcs, execSqls, getProxyUser(), null, false, null, null, logger);
-    hiveSqlExec.run();
-    results = hiveSqlExec.getResults();
+    try {
+      List<String> funcs = FunctionUtil.createFuncs(param.getUdfs(), jobIdLog, getWorkingDirectory(), false);
+      logger.info("exec sql:{}, funcs:{}", sqls, funcs);
+      List<String> execSqls = CommonUtil.sqlSplit(sqls);
+      HiveSqlExec hiveSqlExec = new HiveSqlExec(funcs, execSqls, getProxyUser(), null, false, null, null, logger);
+      hiveSqlExec.run();
+      results = hiveSqlExec.getResults();
+    } finally {
+      FunctionUtil.release(jobIdLog);
+    }
   }
 
   @Override
@@ -16,7 +16,6 @@
 package com.baifendian.swordfish.execserver.job.hive;
 
 import com.baifendian.swordfish.common.config.BaseConfig;
-import com.baifendian.swordfish.common.hadoop.HdfsClient;
 import com.baifendian.swordfish.common.job.ResourceInfo;
 import com.baifendian.swordfish.common.job.UdfsInfo;
 import com.baifendian.swordfish.common.job.exception.ExecException;
@@ -25,17 +24,16 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class FunctionUtil {
@@ -51,6 +49,9 @@ public class FunctionUtil {
 
   private static Configuration conf;
 
+  /**
+   * 生成 add jar 和创建临时函数的语句, udf jar 放入按内容寻址的 {@link UdfJarStore}, 作业结束后需要调用 {@link #release(String)} <p>
+   */
   public static List<String> createFuncs(List<UdfsInfo> udfsInfos, String jobIdLog, String srcDir, boolean isHdfsFile) throws IOException, InterruptedException {
     List<String> funcList = new ArrayList<>();
     if (CollectionUtils.isNotEmpty(udfsInfos)) {
@@ -61,22 +62,23 @@ public class FunctionUtil {
           throw new ExecException("Hive udf jar base path not defined ");
         }
 
-        String uploadPath = hiveUdfJarBasePath + "/" + jobIdLog;
-
-        // adHoc查询时直接通过复制hdfs上文件的方式来处理
-        if(isHdfsFile){
-          copyJars(resources, uploadPath, srcDir);
-        } else {
-          uploadUdfJars(resources, uploadPath, srcDir);
-        }
+        // adHoc查询时资源在 hdfs 上, 内容相同的 jar 只上传或复制一次
+        Map<String, String> jarPaths = UdfJarStore.getInstance().stage(jobIdLog, resources, srcDir, isHdfsFile);
 
-        addJarSql(funcList, resources, uploadPath);
+        addJarSql(funcList, jarPaths);
       }
     }
     addTempFuncSql(funcList, udfsInfos);
     return funcList;
   }
 
+  /**
+   * 释放作业对 udf jar 的引用 <p>
+   */
+  public static void release(String jobIdLog) {
+    UdfJarStore.getInstance().release(jobIdLog);
+  }
+
   /**
    * 获取所有函数的资源 <p>
    *
@@ -93,55 +95,15 @@ public class FunctionUtil {
     return resources;
   }
 
-  private static void uploadUdfJars(Set<String> resources, String tarDir, String srcDir) throws IOException, InterruptedException {
-    HdfsClient hdfsClient = HdfsClient.getInstance();
-    if (!hdfsClient.exists(tarDir)) {
-      hdfsClient.mkdir(tarDir);
-    }
-    for (String res : resources) {
-      String cmd = String.format("hdfs dfs -put %s/%s %s", srcDir, res, tarDir);
-      logger.debug("cmd:{}", cmd);
-      Process process = Runtime.getRuntime().exec(cmd);
-      int ret = process.waitFor();
-      if (ret != 0) {
-        logger.error("run cmd:" + cmd + " error");
-        String msg = IOUtils.toString(process.getErrorStream(), Charset.forName("UTF-8"));
-        logger.error(msg);
-        throw new ExecException(msg);
-      }
-    }
-  }
-
-  /**
-   * 复制资源文件到目标目录
-   * @param resources
-   * @param tarDir
-   * @param srcDir
-   * @throws IOException
-   * @throws InterruptedException
-   */
-  private static void copyJars(Set<String> resources, String tarDir, String srcDir) throws IOException, InterruptedException {
-    HdfsClient hdfsClient = HdfsClient.getInstance();
-    if (!hdfsClient.exists(tarDir)) {
-      hdfsClient.mkdir(tarDir);
-    }
-    for (String res : resources) {
-      logger.debug("create symlink {}/{} -> {}/{}", tarDir, res, srcDir, res);
-      hdfsClient.copy(String.format("%s/%s", srcDir, res), String.format("%s/%s", tarDir, res), false, false);
-    }
-  }
-
-
   /**
    * 添加 jar <p>
    */
-  private static void addJarSql(List<String> sqls, Set<String> resources, String uploadPath) {
-    if (!uploadPath.startsWith("hdfs:")) {
-      uploadPath = "hdfs://" + uploadPath;
-    }
-    for (String resource : resources) {
-      //sqls.add("add jar " + ResourceHelper.getResourceHdfsUrl(resourceId, isPub));
-      sqls.add(String.format("add jar %s/%s", uploadPath, resource));
+  private static void addJarSql(List<String> sqls, Map<String, String> jarPaths) {
+    for (String jarPath : jarPaths.values()) {
+      if (!jarPath.startsWith("hdfs:")) {
+        jarPath = "hdfs://" + jarPath;
+      }
+      sqls.add(String.format("add jar %s", jarPath));
     }
   }
 
@@ -32,6 +32,7 @@ import org.apache.hive.jdbc.HiveConnection;
 import org.apache.hive.jdbc.HiveStatement;
 import org.slf4j.Logger;
 
+import java.io.OutputStream;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
@@ -39,6 +40,9 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Hive sql执行 <p>
@@ -55,6 +59,21 @@ public class HiveSqlExec {
    */
   private static int defualtQueryLimit = 1000;
 
+  /**
+   * 流式写入时, 单个语句结果的最大字节数, 默认 64M
+   */
+  private static long defaultMaxResultBytes = 64 * 1024 * 1024;
+
+  /**
+   * 创建临时函数的语句, 用于取出函数名
+   */
+  private static final Pattern CREATE_FUNCTION_PATTERN = Pattern.compile("^\\s*create\\s+temporary\\s+function\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * 会改变会话中函数和 jar 的语句, 执行后不能再认为之前的会话级语句仍然有效
+   */
+  private static final Pattern SESSION_RESET_PATTERN = Pattern.compile("^\\s*(drop\\s+temporary\\s+function|delete\\s+jars?|reset)\\b", Pattern.CASE_INSENSITIVE);
+
   /**
    * LOGGER
    */
@@ -90,6 +109,11 @@ public class HiveSqlExec {
    */
   private final Integer queryLimit;
 
+  /**
+   * 流式写入时, 单个语句结果的最大字节数
+   */
+  private long maxResultBytes = defaultMaxResultBytes;
+
   /**
    * 查询数据库名
    */
@@ -147,10 +171,28 @@ public class HiveSqlExec {
     this.LOGGER = logger;
   }
 
+  /**
+   * 设置流式写入时, 单个语句结果的最大字节数 <p>
+   */
+  public void setMaxResultBytes(long maxResultBytes) {
+    this.maxResultBytes = maxResultBytes;
+  }
+
   public void run() throws Exception {
     results = executeQuerys(createFuncs, sqls, isContinue);
   }
 
+  /**
+   * 会话级语句的标识, 临时函数按函数名, 其它按语句本身 <p>
+   */
+  private static String sessionKey(String statement) {
+    Matcher matcher = CREATE_FUNCTION_PATTERN.matcher(statement);
+    if (matcher.find()) {
+      return "function:" + matcher.group(1).toLowerCase();
+    }
+    return statement.trim();
+  }
+
   /**
    * 执行多个sql 语句 并返回查询的语句 <p>
    */
@@ -170,11 +212,18 @@ public class HiveSqlExec {
       logThread.setDaemon(true);
       logThread.start();
 
-      // 创建临时 function
+      // 创建临时 function, 池化的连接上已经执行过的相同语句不再执行
+      Map<String, String> sessionStatements = hiveConnectionClient.getSessionStatements(hiveConnection);
       if (createFuncs != null) {
         for (String createFunc : createFuncs) {
+          String key = sessionKey(createFunc);
+          if (createFunc.equals(sessionStatements.get(key))) {
+            LOGGER.debug("hive create function sql already executed in session : {}", createFunc);
+            continue;
+          }
           LOGGER.info("hive create function sql : {}", createFunc);
           sta.execute(createFunc);
+          sessionStatements.put(key, createFunc);
         }
       }
 
@@ -190,6 +239,9 @@ public class HiveSqlExec {
 
         FlowStatus status = FlowStatus.FAILED; // 执行结果的状态，默认失败
         try {
+          if (SESSION_RESET_PATTERN.matcher(sql).find()) {
+            sessionStatements.clear();
+          }
           if (hiveJdbcExec.isTokQuery(sql) || isLikeShowStm(sql)) {
             sta.setMaxRows(queryLimit);
             ResultSet res = sta.executeQuery(sql);
@@ -205,16 +257,23 @@ public class HiveSqlExec {
             }
             execResult.setTitles(colums);
 
-            List<List<String>> datas = new ArrayList<>();
-            while (res.next()) {
-              List<String> values = new ArrayList<>();
-              for (int i = 1; i <= count; i++) {
-                values.add(res.getString(i));
+            OutputStream resultStream = (resultCallback != null) ? resultCallback.openResultStream(execResult) : null;
+            if (resultStream != null) {
+              // 流式写入结果文件, 不在内存中保存
+              writeResult(res, count, resultStream, execResult);
+            } else {
+              List<List<String>> datas = new ArrayList<>();
+              while (res.next()) {
+                List<String> values = new ArrayList<>();
+                for (int i = 1; i <= count; i++) {
+                  values.add(res.getString(i));
+                }
+                datas.add(values);
               }
-              datas.add(values);
-            }
 
-            execResult.setValues(datas);
+              execResult.setValues(datas);
+              execResult.setRowCount(datas.size());
+            }
 
           } else {
             sta.execute(sql);
@@ -236,8 +295,11 @@ public class HiveSqlExec {
             throw new Exception(e);
           }
           if (e.toString().contains("SocketException")) {
-            LOGGER.error("SocketException clear pool", e);
-            hiveConnectionClient.clear();
+            // 只清理当前用户的连接, 不影响其他用户的预热连接
+            LOGGER.error("SocketException clear pool of user " + connectionInfo.getUser(), e);
+            hiveConnectionClient.invalidateObject(connectionInfo, hiveConnection);
+            hiveConnection = null;
+            hiveConnectionClient.clear(connectionInfo);
             throw new Exception(e);
           }
           LOGGER.error("executeQuery Exception", e);
@@ -286,6 +348,32 @@ public class HiveSqlExec {
     return execResults;
   }
 
+  /**
+   * 把查询结果按行写入输出流, 受行数和字节数限制 <p>
+   */
+  private void writeResult(ResultSet res, int count, OutputStream resultStream, ExecResult execResult) throws Exception {
+    try (ResultFileWriter writer = new ResultFileWriter(resultStream, queryLimit, maxResultBytes)) {
+      List<String> values = new ArrayList<>(count);
+      while (res.next()) {
+        values.clear();
+        for (int i = 1; i <= count; i++) {
+          values.add(res.getString(i));
+        }
+        if (!writer.write(values)) {
+          break;
+        }
+      }
+
+      execResult.setRowCount(writer.getRowCount());
+      execResult.setTruncated(writer.isTruncated());
+      execResult.setOffsetInterval(writer.getOffsetInterval());
+      execResult.setOffsets(writer.getOffsets());
+      if (writer.isTruncated()) {
+        LOGGER.info("result truncated at {} rows, {} bytes", writer.getRowCount(), writer.getBytes());
+      }
+    }
+  }
+
   /**
    * 是否类似于 show 语句的查询（show/desc/describe） <p>
    *
@@ -17,6 +17,8 @@ package com.baifendian.swordfish.execserver.job.hive;
 
 import com.baifendian.swordfish.common.job.ExecResult;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 
 /**
@@ -28,4 +30,13 @@ public interface ResultCallback {
    * 处理执行结果 <p>
    */
   void handleResult(ExecResult execResult, Date startTime, Date endTime);
+
+  /**
+   * 打开查询结果的输出, 结果按行流式写入, 不再保存在 {@link ExecResult#getValues()} 中 <p>
+   *
+   * @return 输出流, 返回 null 表示结果保存在内存中
+   */
+  default OutputStream openResultStream(ExecResult execResult) throws IOException {
+    return null;
+  }
 }
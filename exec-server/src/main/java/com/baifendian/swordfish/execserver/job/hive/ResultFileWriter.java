@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.job.hive;
+
+import com.baifendian.swordfish.dao.utils.json.JsonUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询结果的流式写入 <p>
+ *
+ * 每行一个 json 数组, 按行数和字节数限制, 超出字节限制时不再写入并标记为截断; <p>
+ * 每隔 offsetInterval 行记录一次行首的字节偏移, 读取时可以直接 seek 到附近的行, 不需要从头扫描.
+ */
+public class ResultFileWriter implements Closeable {
+
+  /**
+   * 行分隔符
+   */
+  private static final byte NEW_LINE = '\n';
+
+  /**
+   * 默认的行偏移索引间隔
+   */
+  public static final int OFFSET_INTERVAL = 1000;
+
+  private final OutputStream out;
+
+  /**
+   * 最大行数
+   */
+  private final int maxRows;
+
+  /**
+   * 最大字节数
+   */
+  private final long maxBytes;
+
+  /**
+   * 行偏移索引的间隔
+   */
+  private final int offsetInterval;
+
+  /**
+   * 第 i * offsetInterval 行的字节偏移
+   */
+  private final List<Long> offsets = new ArrayList<>();
+
+  private int rowCount = 0;
+
+  private long bytes = 0;
+
+  private boolean truncated = false;
+
+  public ResultFileWriter(OutputStream out, int maxRows, long maxBytes) {
+    this(out, maxRows, maxBytes, OFFSET_INTERVAL);
+  }
+
+  public ResultFileWriter(OutputStream out, int maxRows, long maxBytes, int offsetInterval) {
+    this.out = new BufferedOutputStream(out);
+    this.maxRows = maxRows;
+    this.maxBytes = maxBytes;
+    this.offsetInterval = offsetInterval;
+  }
+
+  /**
+   * 写入一行 <p>
+   *
+   * @return 是否还可以继续写入
+   */
+  public boolean write(List<String> row) throws IOException {
+    if (truncated || rowCount >= maxRows) {
+      return false;
+    }
+
+    byte[] line = JsonUtil.toJsonString(row).getBytes(StandardCharsets.UTF_8);
+    if (bytes + line.length + 1 > maxBytes) {
+      truncated = true;
+      return false;
+    }
+
+    if (rowCount % offsetInterval == 0) {
+      offsets.add(bytes);
+    }
+    out.write(line);
+    out.write(NEW_LINE);
+    bytes += line.length + 1;
+    rowCount++;
+
+    return rowCount < maxRows;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public int getOffsetInterval() {
+    return offsetInterval;
+  }
+
+  public List<Long> getOffsets() {
+    return offsets;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
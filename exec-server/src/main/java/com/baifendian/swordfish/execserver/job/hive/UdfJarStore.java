@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.job.hive;
+
+import com.baifendian.swordfish.common.config.BaseConfig;
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import com.baifendian.swordfish.common.hadoop.HdfsTransfer;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按内容寻址的 udf jar 存储 <p>
+ *
+ * jar 存放在 {basePath}/store/{sha1}/{jar 名} 下, 内容相同的 jar 在所有作业和即席查询之间共用同一个 hdfs 路径, 只上传一次,
+ * hive 的 add jar 对同一个路径也只需要本地化一次. <p>
+ *
+ * 每次使用时按作业登记引用, 作业结束后释放; 没有引用且超过保留时间没有被使用 (目录的修改时间) 的条目会被清理.
+ * 登记引用和清理时的检查加删除在同一个锁中, 本进程内不会删除正在登记的条目. <p>
+ *
+ * 多个 exec-server 共用一个存储时, 引用只在本进程内有效, 修改时间就是跨进程的租约: 使用中的条目每个小时至少续约一次,
+ * 清理在删除前重新读取修改时间, 刚被其他 exec-server 续约的条目不会被删除.
+ */
+public class UdfJarStore {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(UdfJarStore.class);
+
+  /**
+   * 存储的子目录
+   */
+  private static final String STORE_DIR = "store";
+
+  /**
+   * 临时文件的后缀
+   */
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /**
+   * 续约的最小间隔, 1 小时
+   */
+  private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * 没有引用的条目的保留时间, 7 天
+   */
+  private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+  /**
+   * 缓存的文件摘要的最大数目
+   */
+  private static final int MAX_DIGESTS = 1024;
+
+  /**
+   * UdfJarStore 实例
+   */
+  private static volatile UdfJarStore instance;
+
+  /**
+   * 存储的根目录
+   */
+  private final String storeDir;
+
+  /**
+   * 源文件 (路径, 修改时间, 长度) -> sha1, 避免每次都重新读取计算
+   */
+  private final Map<String, String> digests = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_DIGESTS;
+    }
+  };
+
+  /**
+   * 已经确认存在的 jar (完整的目标路径 {store}/{sha1}/{jar 名}) -> 最后一次续约的时间 <p>
+   * 同一个内容可能以不同的 jar 名存放, 所以不能只按 sha1 记录
+   */
+  private final Map<String, Long> staged = new ConcurrentHashMap<>();
+
+  /**
+   * 条目 -> 引用数, 修改和清理时的检查都在 refs 上同步
+   */
+  private final Map<String, AtomicInteger> refs = new ConcurrentHashMap<>();
+
+  /**
+   * 作业 -> 引用的条目
+   */
+  private final Map<String, List<String>> owners = new ConcurrentHashMap<>();
+
+  /**
+   * 清理线程
+   */
+  private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "UdfJarStore-Cleaner");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  UdfJarStore(String basePath) {
+    this.storeDir = basePath + "/" + STORE_DIR;
+
+    cleaner.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          clean();
+        } catch (Exception e) {
+          LOGGER.error("clean udf jar store error", e);
+        }
+      }
+    }, 1, 1, TimeUnit.HOURS);
+  }
+
+  public static UdfJarStore getInstance() {
+    if (instance == null) {
+      synchronized (UdfJarStore.class) {
+        if (instance == null) {
+          instance = new UdfJarStore(BaseConfig.getJobHiveUdfJarBasePath());
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * 把资源放入存储并登记引用, 已经存在的内容不会再次上传 <p>
+   *
+   * @param owner      引用者, 一般为作业的 jobIdLog
+   * @param resources  资源文件名
+   * @param srcDir     资源所在的目录
+   * @param isHdfsFile 资源是否在 hdfs 上
+   * @return 资源文件名 -> 存储中的 hdfs 路径
+   */
+  public Map<String, String> stage(String owner, Collection<String> resources, String srcDir, boolean isHdfsFile) throws IOException {
+    Map<String, String> paths = new HashMap<>();
+    List<String> keys = new ArrayList<>();
+    List<Callable<Void>> uploads = new ArrayList<>();
+
+    try {
+      for (String res : resources) {
+        String srcPath = String.format("%s/%s", srcDir, res);
+        String key = isHdfsFile ? hdfsDigest(srcPath) : localDigest(new File(srcDir, res));
+        String target = String.format("%s/%s/%s", storeDir, key, new File(res).getName());
+
+        // 先登记引用, 避免上传的过程中被清理; 和清理互斥, 登记之后 touch 看到的 jar 不会再被本进程删除
+        synchronized (refs) {
+          refs.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+        keys.add(key);
+        paths.put(res, target);
+
+        if (!touch(key, target)) {
+          uploads.add(newUpload(srcPath, target, isHdfsFile));
+        }
+      }
+
+      HdfsTransfer.getInstance().runAll(uploads);
+    } catch (IOException | RuntimeException e) {
+      release(keys);
+      throw e;
+    }
+
+    owners.computeIfAbsent(owner, k -> new ArrayList<>()).addAll(keys);
+    LOGGER.debug("stage udf jars:{}, uploaded:{}", paths, uploads.size());
+
+    return paths;
+  }
+
+  /**
+   * 释放作业登记的所有引用 <p>
+   */
+  public void release(String owner) {
+    List<String> keys = owners.remove(owner);
+    if (keys != null) {
+      release(keys);
+    }
+  }
+
+  private void release(List<String> keys) {
+    synchronized (refs) {
+      for (String key : keys) {
+        AtomicInteger count = refs.get(key);
+        if (count != null && count.decrementAndGet() <= 0) {
+          refs.remove(key, count);
+        }
+      }
+    }
+  }
+
+  /**
+   * 目标 jar 存在时续约条目 (每个小时最多一次), 返回目标 jar 是否存在 <p>
+   */
+  private boolean touch(String key, String target) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+    long now = System.currentTimeMillis();
+    Long lastTouch = staged.get(target);
+
+    if (lastTouch == null) {
+      if (!hdfsClient.exists(target)) {
+        return false;
+      }
+    } else if (now - lastTouch < TOUCH_INTERVAL_MILLIS) {
+      return true;
+    }
+
+    try {
+      hdfsClient.setModificationTime(String.format("%s/%s", storeDir, key), now);
+    } catch (Exception e) {
+      // 可能刚被其他 exec-server 清理, 重新上传
+      staged.remove(target);
+      return false;
+    }
+    staged.put(target, now);
+    return true;
+  }
+
+  /**
+   * 上传到临时文件后改名, 并发上传同一个内容时只保留一份 <p>
+   */
+  private Callable<Void> newUpload(final String srcPath, final String target, final boolean isHdfsFile) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        HdfsClient hdfsClient = HdfsClient.getInstance();
+        String tmp = target + "." + UUID.randomUUID() + TMP_SUFFIX;
+        try {
+          if (isHdfsFile) {
+            hdfsClient.copy(srcPath, tmp, false, true);
+          } else {
+            HdfsTransfer.getInstance().upload(new File(srcPath), tmp, true);
+          }
+
+          if (!hdfsClient.rename(tmp, target) && !hdfsClient.exists(target)) {
+            throw new IOException("stage udf jar " + srcPath + " to " + target + " failed");
+          }
+        } finally {
+          if (hdfsClient.exists(tmp)) {
+            hdfsClient.delete(tmp, false);
+          }
+        }
+
+        staged.put(target, System.currentTimeMillis());
+        LOGGER.info("stage udf jar {} to {}", srcPath, target);
+        return null;
+      }
+    };
+  }
+
+  private String localDigest(File file) throws IOException {
+    String id = String.format("%s|%d|%d", file.getAbsolutePath(), file.lastModified(), file.length());
+    String digest = getDigest(id);
+    if (digest == null) {
+      try (InputStream in = new FileInputStream(file)) {
+        digest = DigestUtils.sha1Hex(in);
+      }
+      putDigest(id, digest);
+    }
+    return digest;
+  }
+
+  private String hdfsDigest(String hdfsFile) throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+    FileStatus fileStatus = hdfsClient.getFileStatus(hdfsFile);
+    String id = String.format("%s|%d|%d", hdfsFile, fileStatus.getModificationTime(), fileStatus.getLen());
+    String digest = getDigest(id);
+    if (digest == null) {
+      try (InputStream in = hdfsClient.open(hdfsFile)) {
+        digest = DigestUtils.sha1Hex(in);
+      }
+      putDigest(id, digest);
+    }
+    return digest;
+  }
+
+  private String getDigest(String id) {
+    synchronized (digests) {
+      return digests.get(id);
+    }
+  }
+
+  private void putDigest(String id, String digest) {
+    synchronized (digests) {
+      digests.put(id, digest);
+    }
+  }
+
+  /**
+   * 清理没有引用且超过保留时间的条目 <p>
+   */
+  void clean() throws IOException {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+    if (!hdfsClient.exists(storeDir)) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    int count = 0;
+    for (FileStatus fileStatus : hdfsClient.listFileStatus(storeDir)) {
+      String key = fileStatus.getPath().getName();
+      if (refs.containsKey(key) || now - fileStatus.getModificationTime() < RETENTION_MILLIS) {
+        continue;
+      }
+
+      String path = fileStatus.getPath().toString();
+      synchronized (refs) {
+        // 列目录之后可能被本进程登记了引用
+        if (refs.containsKey(key)) {
+          continue;
+        }
+
+        // 列目录之后可能被其他 exec-server 续约了, 删除前重新读取修改时间
+        FileStatus current;
+        try {
+          current = hdfsClient.getFileStatus(path);
+        } catch (Exception e) {
+          continue;
+        }
+        if (current == null || System.currentTimeMillis() - current.getModificationTime() < RETENTION_MILLIS) {
+          continue;
+        }
+
+        final String prefix = String.format("%s/%s/", storeDir, key);
+        staged.keySet().removeIf(target -> target.startsWith(prefix));
+        hdfsClient.delete(path, true);
+      }
+      count++;
+    }
+
+    LOGGER.info("clean udf jar store, removed:{}, referenced:{}", count, refs.size());
+  }
+}
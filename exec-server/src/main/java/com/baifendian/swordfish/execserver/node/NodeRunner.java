@@ -29,7 +29,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 节点执行器 <p>
@@ -72,9 +74,9 @@ public class NodeRunner implements Runnable {
   private final ExecutorService executorService;
 
   /**
-   * 同步对象
+   * 执行完成的队列, 用于通知 flow runner
    */
-  private final Object synObject;
+  private final BlockingQueue<NodeRunner> completionQueue;
 
   /**
    * 系统参数
@@ -86,7 +88,12 @@ public class NodeRunner implements Runnable {
    */
   private final Map<String, String> customParamMap;
 
-  private boolean killed = false;
+  private volatile boolean killed = false;
+
+  /**
+   * 是否已经开始执行, 和 kill 竞争, 只有一方能把它从 false 置为 true
+   */
+  private final AtomicBoolean started = new AtomicBoolean(false);
 
   private JobHandler jobHandler;
 
@@ -95,19 +102,19 @@ public class NodeRunner implements Runnable {
    * @param executionNode
    * @param node
    * @param executorService
-   * @param synObject
+   * @param completionQueue
    * @param timeout
    * @param customParamMap
    * @param systemParamMap
    */
-  public NodeRunner(ExecutionFlow executionFlow, ExecutionNode executionNode, FlowNode node, ExecutorService executorService, Object synObject, int timeout,
+  public NodeRunner(ExecutionFlow executionFlow, ExecutionNode executionNode, FlowNode node, ExecutorService executorService, BlockingQueue<NodeRunner> completionQueue, int timeout,
                     Map<String, String> systemParamMap, Map<String, String> customParamMap) {
     this.flowDao = DaoFactory.getDaoInstance(FlowDao.class);
     this.executionFlow = executionFlow;
     this.executionNode = executionNode;
     this.node = node;
     this.executorService = executorService;
-    this.synObject = synObject;
+    this.completionQueue = completionQueue;
     this.timeout = timeout;
     this.systemParamMap = systemParamMap;
     this.customParamMap = customParamMap;
@@ -117,6 +124,12 @@ public class NodeRunner implements Runnable {
 
   @Override
   public void run() {
+    // 还没开始就被 kill 了, kill 时已经更新了状态并通知了 flow runner
+    if (!started.compareAndSet(false, true)) {
+      LOGGER.info("node:{} killed before start, skip it", executionNode.getName());
+      return;
+    }
+
     FlowStatus status = null;
     try {
       // 具体执行
@@ -151,9 +164,17 @@ public class NodeRunner implements Runnable {
    * 唤醒 flow runner 线程 <p>
    */
   private void notifyFlowRunner() {
-    synchronized (synObject) {
-      synObject.notifyAll();
-    }
+    completionQueue.offer(this);
+  }
+
+  /**
+   * getter method
+   *
+   * @return the executionNode
+   * @see NodeRunner#executionNode
+   */
+  public ExecutionNode getExecutionNode() {
+    return executionNode;
   }
 
   public void kill() {
@@ -164,6 +185,14 @@ public class NodeRunner implements Runnable {
     }
     killed = true;
 
+    // 已经提交但还没开始执行的节点, 不会再执行, 这里直接置为 KILL 并通知 flow runner, 否则 flow runner 会一直等它
+    if (started.compareAndSet(false, true)) {
+      LOGGER.info("node:{} hasn't started, mark it killed", executionNode.getName());
+      updateExecutionNode(FlowStatus.KILL);
+      notifyFlowRunner();
+      return;
+    }
+
     Job job = jobHandler.getJob();
     if (job == null) {
       LOGGER.info("Job hasn't started");
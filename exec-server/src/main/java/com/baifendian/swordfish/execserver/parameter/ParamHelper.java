@@ -15,8 +15,7 @@
  */
 package com.baifendian.swordfish.execserver.parameter;
 
-import com.baifendian.swordfish.common.utils.PlaceholderUtil;
-import com.baifendian.swordfish.common.utils.TimePlaceholderUtil;
+import com.baifendian.swordfish.common.utils.PlaceholderTemplate;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
@@ -24,7 +23,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,7 +39,12 @@ public class ParamHelper {
   private static final Logger LOGGER = LoggerFactory.getLogger(ParamHelper.class);
 
   /**
-   * 替换参数的占位符 <p>
+   * 最近一次解析的 cyctime, 同一次调度的所有节点使用相同的 cyctime
+   */
+  private static volatile CycTime lastCycTime;
+
+  /**
+   * 替换参数的占位符, 系统参数优先于自定义参数 <p>
    *
    * @return 替换后的文本
    */
@@ -46,25 +53,7 @@ public class ParamHelper {
       return text;
     }
 
-    // 获取 dw.system.cyctime
-    Date cycTime = null;
-    String cycTimeStr = systemParamMap.get(SystemParamManager.CYC_TIME);
-    if (StringUtils.isNotEmpty(cycTimeStr)) {
-      try {
-        cycTime = DateUtils.parseDate(cycTimeStr, new String[]{SystemParamManager.TIME_FORMAT});
-      } catch (ParseException e) {
-        LOGGER.error(e.getMessage(), e);
-      }
-    } else {
-      cycTime = new Date();
-    }
-
-    text = PlaceholderUtil.resolvePlaceholders(text, systemParamMap, true);
-    text = PlaceholderUtil.resolvePlaceholders(text, customParamMap, true);
-    if (cycTime != null) {
-      text = TimePlaceholderUtil.resolvePlaceholders(text, cycTime, true);
-    }
-    return text;
+    return resolvePlaceholders(text, Arrays.asList(systemParamMap, customParamMap), systemParamMap.get(SystemParamManager.CYC_TIME));
   }
 
   /**
@@ -77,23 +66,55 @@ public class ParamHelper {
       return text;
     }
 
-    // 获取 dw.system.cyctime
-    Date cycTime = null;
-    String cycTimeStr = paramMap.get(SystemParamManager.CYC_TIME);
-    if (StringUtils.isNotEmpty(cycTimeStr)) {
+    return resolvePlaceholders(text, Collections.singletonList(paramMap), paramMap.get(SystemParamManager.CYC_TIME));
+  }
+
+  /**
+   * 使用预编译的模板一趟替换参数和时间占位符 <p>
+   */
+  private static String resolvePlaceholders(String text, List<Map<String, String>> paramMaps, String cycTimeStr) {
+    PlaceholderTemplate template = PlaceholderTemplate.compile(text);
+    if (template.isLiteral()) {
+      return text;
+    }
+
+    return template.render(paramMaps, getCycTime(cycTimeStr));
+  }
+
+  /**
+   * 获取 dw.system.cyctime, 没有设置时为当前时间, 解析失败时为 null <p>
+   */
+  private static Date getCycTime(String cycTimeStr) {
+    if (StringUtils.isEmpty(cycTimeStr)) {
+      return new Date();
+    }
+
+    CycTime cycTime = lastCycTime;
+    if (cycTime == null || !cycTime.text.equals(cycTimeStr)) {
       try {
-        cycTime = DateUtils.parseDate(cycTimeStr, new String[]{SystemParamManager.TIME_FORMAT});
+        cycTime = new CycTime(cycTimeStr, DateUtils.parseDate(cycTimeStr, new String[]{SystemParamManager.TIME_FORMAT}).getTime());
       } catch (ParseException e) {
         LOGGER.error(e.getMessage(), e);
+        return null;
       }
-    } else {
-      cycTime = new Date();
+      lastCycTime = cycTime;
     }
 
-    text = PlaceholderUtil.resolvePlaceholders(text, paramMap, true);
-    if (cycTime != null) {
-      text = TimePlaceholderUtil.resolvePlaceholders(text, cycTime, true);
+    return new Date(cycTime.millis);
+  }
+
+  /**
+   * 解析过的 cyctime <p>
+   */
+  private static class CycTime {
+
+    private final String text;
+
+    private final long millis;
+
+    CycTime(String text, long millis) {
+      this.text = text;
+      this.millis = millis;
     }
-    return text;
   }
 }
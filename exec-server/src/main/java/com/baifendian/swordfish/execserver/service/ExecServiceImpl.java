@@ -27,6 +27,7 @@ import com.baifendian.swordfish.execserver.flow.FlowRunnerManager;
 import com.baifendian.swordfish.execserver.utils.ResultHelper;
 import com.baifendian.swordfish.rpc.WorkerService.Iface;
 import com.baifendian.swordfish.rpc.RetInfo;
+import com.baifendian.swordfish.rpc.client.MasterClient;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
@@ -35,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * ExecService 实现 <p>
@@ -69,10 +71,10 @@ public class ExecServiceImpl implements Iface {
   /**
    * constructor
    */
-  public ExecServiceImpl(String host, int port, Configuration conf) {
+  public ExecServiceImpl(String host, int port, Configuration conf, MasterClient masterClient) {
     this.flowDao = DaoFactory.getDaoInstance(FlowDao.class);
     this.adHocDao = DaoFactory.getDaoInstance(AdHocDao.class);
-    this.flowRunnerManager = new FlowRunnerManager(conf);
+    this.flowRunnerManager = new FlowRunnerManager(conf, masterClient);
     this.adHocRunnerManager = new AdHocRunnerManager(conf);
     this.host = host;
     this.port = port;
@@ -140,6 +142,13 @@ public class ExecServiceImpl implements Iface {
     return ResultHelper.SUCCESS;
   }
 
+  /**
+   * 获取正在运行的 workflow 的 execId 列表, 用于心跳汇报 <p>
+   */
+  public List<Integer> getRunningExecIds() {
+    return flowRunnerManager.getRunningExecIds();
+  }
+
   /**
    * 销毁资源 <p>
    */
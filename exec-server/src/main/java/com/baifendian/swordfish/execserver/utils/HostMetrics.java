@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import com.baifendian.swordfish.common.config.BaseConfig;
+import com.baifendian.swordfish.common.job.AbstractProcessJob;
+import com.baifendian.swordfish.common.job.JobProps;
+import com.baifendian.swordfish.execserver.Constants;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台采样的主机指标 <p>
+ *
+ * 采样线程周期性读取 /proc 和 cgroup 文件, 结果保存在 volatile 字段中, 心跳等读取方直接获取最近一次的值, 不需要等待.
+ * 同时按 flow 统计其启动的子进程 (包括子孙进程) 的 cpu 时间和内存.
+ *
+ * 进程的 cpu 时间只能在采样时从 /proc/[pid]/stat 读取, 进程退出后立即被 jvm 回收, 无法在退出时再读取, 所以只统计到最后一次采样的值,
+ * 在一个采样间隔内启动并结束的进程计为 0. flow 的 cpu 时间是一个下限, 短进程很多的 flow 偏差较大, 需要时可以调小采样间隔.
+ */
+public class HostMetrics implements AbstractProcessJob.ProcessListener {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(HostMetrics.class);
+
+  /**
+   * /proc 中时间的单位, USER_HZ
+   */
+  private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+  /**
+   * 内存页大小
+   */
+  private static final long PAGE_SIZE = 4096;
+
+  /**
+   * 读取 /proc 文件的缓冲区大小, /proc/stat 只需要第一行
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * HostMetrics 实例
+   */
+  private static volatile HostMetrics instance;
+
+  /**
+   * 采样间隔, 单位: 秒
+   */
+  private final int sampleInterval;
+
+  /**
+   * 统计磁盘使用率的目录
+   */
+  private final File diskDir;
+
+  /**
+   * proc 文件系统的根目录, 测试时可以指向样例文件
+   */
+  private final File procRoot;
+
+  /**
+   * cgroup 文件系统的根目录, 测试时可以指向样例文件
+   */
+  private final File cgroupRoot;
+
+  /**
+   * 采样线程
+   */
+  private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "HostMetrics-Sampler");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * 读取文件的缓冲区, 只在采样线程中使用
+   */
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /**
+   * 解析的位置, 只在采样线程中使用
+   */
+  private int pos;
+
+  /**
+   * 上一次采样的 cpu 总时间和空闲时间, 只在采样线程中使用
+   */
+  private long lastCpuTotal;
+  private long lastCpuIdle;
+
+  /**
+   * 最近一个采样周期的 cpu 使用率
+   */
+  private volatile double cpuUsage;
+
+  /**
+   * 内存使用率, cgroup 的内存限制小于物理内存时按 cgroup 计算
+   */
+  private volatile double memUsage;
+
+  /**
+   * 1, 5, 15 分钟的平均负载
+   */
+  private volatile double loadAvg1;
+  private volatile double loadAvg5;
+  private volatile double loadAvg15;
+
+  /**
+   * 执行目录所在磁盘的使用率
+   */
+  private volatile double diskUsage;
+
+  /**
+   * cgroup 的内存限制, 单位: 字节, 0 表示没有限制
+   */
+  private volatile long cgroupMemLimit;
+
+  /**
+   * cgroup 的 cpu 限制, 单位: 核, 0 表示没有限制
+   */
+  private volatile double cgroupCpuLimit;
+
+  /**
+   * 最近一次采样的时间
+   */
+  private volatile long sampleTime;
+
+  /**
+   * flow 的执行 id -> 资源统计
+   */
+  private final Map<Long, FlowUsage> flows = new ConcurrentHashMap<>();
+
+  private HostMetrics(int sampleInterval, File diskDir) {
+    this(sampleInterval, diskDir, new File("/proc"), new File("/sys/fs/cgroup"));
+  }
+
+  HostMetrics(int sampleInterval, File diskDir, File procRoot, File cgroupRoot) {
+    this.sampleInterval = sampleInterval;
+    this.diskDir = diskDir;
+    this.procRoot = procRoot;
+    this.cgroupRoot = cgroupRoot;
+  }
+
+  /**
+   * 初始化并启动采样 <p>
+   */
+  public static void init(Configuration conf) {
+    if (instance == null) {
+      synchronized (HostMetrics.class) {
+        if (instance == null) {
+          int interval = conf.getInt(Constants.EXECUTOR_METRICS_SAMPLE_INTERVAL, 5);
+          String execBasePath = BaseConfig.getLocalExecBasePath();
+          HostMetrics hostMetrics = new HostMetrics(interval, new File(StringUtils.isEmpty(execBasePath) ? "/" : execBasePath));
+          hostMetrics.start();
+          AbstractProcessJob.setProcessListener(hostMetrics);
+          instance = hostMetrics;
+        }
+      }
+    }
+  }
+
+  public static HostMetrics getInstance() {
+    return instance;
+  }
+
+  private void start() {
+    // 先采样一次, 之后的 cpu 使用率按采样间隔计算
+    sample();
+    sampler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        sample();
+      }
+    }, sampleInterval, sampleInterval, TimeUnit.SECONDS);
+  }
+
+  public void destroy() {
+    sampler.shutdownNow();
+    AbstractProcessJob.setProcessListener(null);
+  }
+
+  public double getCpuUsage() {
+    return cpuUsage;
+  }
+
+  public double getMemUsage() {
+    return memUsage;
+  }
+
+  public double getLoadAvg1() {
+    return loadAvg1;
+  }
+
+  public double getLoadAvg5() {
+    return loadAvg5;
+  }
+
+  public double getLoadAvg15() {
+    return loadAvg15;
+  }
+
+  public double getDiskUsage() {
+    return diskUsage;
+  }
+
+  public long getCgroupMemLimit() {
+    return cgroupMemLimit;
+  }
+
+  public double getCgroupCpuLimit() {
+    return cgroupCpuLimit;
+  }
+
+  public long getSampleTime() {
+    return sampleTime;
+  }
+
+  @Override
+  public void onStart(JobProps props, int processId) {
+    FlowUsage flowUsage = flows.get(props.getExecId());
+    if (flowUsage == null) {
+      flows.putIfAbsent(props.getExecId(), new FlowUsage());
+      flowUsage = flows.get(props.getExecId());
+    }
+    flowUsage.processes.put(processId, 0L);
+  }
+
+  /**
+   * 进程退出时已经被回收, 这里只能累加最后一次采样的 cpu 时间, 没有被采样到的进程计为 0 <p>
+   */
+  @Override
+  public void onExit(JobProps props, int processId) {
+    FlowUsage flowUsage = flows.get(props.getExecId());
+    if (flowUsage != null) {
+      Long ticks = flowUsage.processes.remove(processId);
+      if (ticks != null) {
+        flowUsage.exitedTicks.addAndGet(ticks);
+      }
+    }
+  }
+
+  /**
+   * 结束 flow 的统计, 返回统计结果 <p>
+   *
+   * @return 资源统计, 没有启动过进程时为 null
+   */
+  public FlowUsage removeFlow(long execId) {
+    return flows.remove(execId);
+  }
+
+  /**
+   * 采样一次, 单项出错不影响其它项 <p>
+   */
+  void sample() {
+    try {
+      sampleCpu();
+    } catch (Exception e) {
+      LOGGER.debug("sample cpu error", e);
+    }
+    try {
+      sampleCgroup();
+      sampleMemory();
+    } catch (Exception e) {
+      LOGGER.debug("sample memory error", e);
+    }
+    try {
+      sampleLoadAvg();
+    } catch (Exception e) {
+      LOGGER.debug("sample load average error", e);
+    }
+    long total = diskDir.getTotalSpace();
+    diskUsage = (total == 0) ? 0 : 1 - (double) diskDir.getUsableSpace() / total;
+    try {
+      if (!flows.isEmpty()) {
+        sampleFlows();
+      }
+    } catch (Exception e) {
+      LOGGER.debug("sample flow processes error", e);
+    }
+    sampleTime = System.currentTimeMillis();
+  }
+
+  /**
+   * /proc/stat 的第一行: cpu user nice system idle iowait irq softirq steal ... <p>
+   */
+  private void sampleCpu() throws IOException {
+    int length = read(proc("stat"));
+    pos = 3;
+    long total = 0;
+    long idle = 0;
+    for (int i = 0; i < 8 && pos < length && buffer[pos] != '\n'; i++) {
+      long value = nextLong(length);
+      total += value;
+      // idle 和 iowait
+      if (i == 3 || i == 4) {
+        idle += value;
+      }
+    }
+
+    long totalDelta = total - lastCpuTotal;
+    if (lastCpuTotal != 0 && totalDelta > 0) {
+      cpuUsage = (double) (totalDelta - (idle - lastCpuIdle)) / totalDelta;
+    }
+    lastCpuTotal = total;
+    lastCpuIdle = idle;
+  }
+
+  /**
+   * /proc/meminfo, 优先使用 MemAvailable <p>
+   */
+  private void sampleMemory() throws IOException {
+    int length = read(proc("meminfo"));
+    long memTotal = -1, memFree = -1, memAvailable = -1, buffers = -1, cached = -1;
+    pos = 0;
+    while (pos < length) {
+      if (startsWith("MemTotal:", length)) {
+        memTotal = nextLong(length);
+      } else if (startsWith("MemFree:", length)) {
+        memFree = nextLong(length);
+      } else if (startsWith("MemAvailable:", length)) {
+        memAvailable = nextLong(length);
+      } else if (startsWith("Buffers:", length)) {
+        buffers = nextLong(length);
+      } else if (startsWith("Cached:", length)) {
+        cached = nextLong(length);
+      }
+      skipLine(length);
+    }
+    if (memTotal <= 0) {
+      return;
+    }
+
+    long memTotalBytes = memTotal * 1024;
+    long limit = cgroupMemLimit;
+    if (limit > 0 && limit < memTotalBytes) {
+      long used = readCgroupLong(cgroup("memory.current"), cgroup("memory/memory.usage_in_bytes"));
+      if (used >= 0) {
+        memUsage = (double) used / limit;
+        return;
+      }
+    }
+
+    long used = (memAvailable >= 0) ? memTotal - memAvailable : memTotal - memFree - buffers - cached;
+    memUsage = (double) used / memTotal;
+  }
+
+  /**
+   * /proc/loadavg <p>
+   */
+  private void sampleLoadAvg() throws IOException {
+    String[] values = StringUtils.split(new String(buffer, 0, read(proc("loadavg")), "US-ASCII"));
+    loadAvg1 = Double.parseDouble(values[0]);
+    loadAvg5 = Double.parseDouble(values[1]);
+    loadAvg15 = Double.parseDouble(values[2]);
+  }
+
+  /**
+   * cgroup v2 和 v1 的内存和 cpu 限制 <p>
+   */
+  private void sampleCgroup() {
+    long memLimit = readCgroupLong(cgroup("memory.max"), cgroup("memory/memory.limit_in_bytes"));
+    // v1 没有限制时是一个接近 Long.MAX_VALUE 的值
+    cgroupMemLimit = (memLimit > 0 && memLimit < Long.MAX_VALUE / 2) ? memLimit : 0;
+
+    double cpuLimit = 0;
+    String cpuMax = readString(cgroup("cpu.max"));
+    if (cpuMax != null) {
+      String[] values = StringUtils.split(cpuMax);
+      if (values.length == 2 && !"max".equals(values[0])) {
+        cpuLimit = Double.parseDouble(values[0]) / Double.parseDouble(values[1]);
+      }
+    } else {
+      String quota = readString(cgroup("cpu/cpu.cfs_quota_us"));
+      String period = readString(cgroup("cpu/cpu.cfs_period_us"));
+      if (quota != null && period != null && Long.parseLong(quota) > 0) {
+        cpuLimit = Double.parseDouble(quota) / Double.parseDouble(period);
+      }
+    }
+    cgroupCpuLimit = cpuLimit;
+  }
+
+  /**
+   * 扫描 /proc 得到进程树, 统计每个 flow 的进程及其子孙进程 <p>
+   */
+  private void sampleFlows() {
+    String[] pids = procRoot.list();
+    if (pids == null) {
+      return;
+    }
+
+    // pid -> {ppid, cpu ticks, rss bytes}
+    Map<Integer, long[]> stats = new HashMap<>(pids.length * 2);
+    Map<Integer, List<Integer>> children = new HashMap<>();
+    for (String name : pids) {
+      if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+        continue;
+      }
+      long[] stat = readProcessStat(name);
+      if (stat == null) {
+        continue;
+      }
+      int pid = Integer.parseInt(name);
+      stats.put(pid, stat);
+      List<Integer> list = children.get((int) stat[0]);
+      if (list == null) {
+        list = new ArrayList<>();
+        children.put((int) stat[0], list);
+      }
+      list.add(pid);
+    }
+
+    for (FlowUsage flowUsage : flows.values()) {
+      long rss = 0;
+      for (Integer root : flowUsage.processes.keySet()) {
+        long[] total = new long[2];
+        sumTree(root, stats, children, total);
+        // 进程刚好结束时不再更新, 保留最后一次的值
+        flowUsage.processes.replace(root, total[0]);
+        rss += total[1];
+      }
+      flowUsage.rssBytes = rss;
+      if (rss > flowUsage.peakRssBytes) {
+        flowUsage.peakRssBytes = rss;
+      }
+    }
+  }
+
+  private static void sumTree(int pid, Map<Integer, long[]> stats, Map<Integer, List<Integer>> children, long[] total) {
+    long[] stat = stats.get(pid);
+    if (stat == null) {
+      return;
+    }
+    total[0] += stat[1];
+    total[1] += stat[2];
+    List<Integer> list = children.get(pid);
+    if (list != null) {
+      for (int child : list) {
+        sumTree(child, stats, children, total);
+      }
+    }
+  }
+
+  /**
+   * /proc/[pid]/stat, 进程名可能包含空格, 从最后一个 ')' 之后开始解析 <p>
+   *
+   * @return {ppid, utime + stime + cutime + cstime, rss 字节数}, 进程已结束时为 null
+   */
+  private long[] readProcessStat(String pid) {
+    int length;
+    try {
+      length = read(proc(pid + "/stat"));
+    } catch (IOException e) {
+      return null;
+    }
+
+    pos = length - 1;
+    while (pos >= 0 && buffer[pos] != ')') {
+      pos--;
+    }
+    if (pos < 0) {
+      return null;
+    }
+    // 跳过 ") " 和 state
+    pos += 4;
+
+    long[] stat = new long[3];
+    // 从 ppid (第 4 项) 到 rss (第 24 项)
+    for (int field = 4; field <= 24; field++) {
+      long value = nextLong(length);
+      if (field == 4) {
+        stat[0] = value;
+      } else if (field >= 14 && field <= 17) {
+        stat[1] += value;
+      } else if (field == 24) {
+        stat[2] = value * PAGE_SIZE;
+      }
+    }
+    return stat;
+  }
+
+  private String proc(String name) {
+    return new File(procRoot, name).getPath();
+  }
+
+  private String cgroup(String name) {
+    return new File(cgroupRoot, name).getPath();
+  }
+
+  private long readCgroupLong(String v2Path, String v1Path) {
+    String value = readString(v2Path);
+    if (value == null) {
+      value = readString(v1Path);
+    }
+    if (value == null || "max".equals(value)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * 读取小文件的内容, 文件不存在时返回 null <p>
+   */
+  private String readString(String path) {
+    if (!new File(path).exists()) {
+      return null;
+    }
+    try {
+      return new String(buffer, 0, read(path), "US-ASCII").trim();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 读取文件到缓冲区, 最多读取缓冲区大小 <p>
+   *
+   * @return 读取的长度
+   */
+  private int read(String path) throws IOException {
+    try (InputStream in = new FileInputStream(path)) {
+      int length = 0;
+      int n;
+      while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) > 0) {
+        length += n;
+      }
+      return length;
+    }
+  }
+
+  /**
+   * 跳过非数字字符, 解析下一个非负整数 <p>
+   */
+  private long nextLong(int length) {
+    while (pos < length && (buffer[pos] < '0' || buffer[pos] > '9') && buffer[pos] != '-') {
+      pos++;
+    }
+    boolean negative = false;
+    if (pos < length && buffer[pos] == '-') {
+      negative = true;
+      pos++;
+    }
+    long value = 0;
+    while (pos < length && buffer[pos] >= '0' && buffer[pos] <= '9') {
+      value = value * 10 + (buffer[pos++] - '0');
+    }
+    return negative ? -value : value;
+  }
+
+  private boolean startsWith(String prefix, int length) {
+    if (pos + prefix.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (buffer[pos + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    pos += prefix.length();
+    return true;
+  }
+
+  private void skipLine(int length) {
+    while (pos < length && buffer[pos] != '\n') {
+      pos++;
+    }
+    pos++;
+  }
+
+  /**
+   * 一个 flow 启动的子进程的资源统计 <p>
+   */
+  public static class FlowUsage {
+
+    /**
+     * 正在运行的进程 -> 最近一次采样的进程树的 cpu 时间
+     */
+    private final Map<Integer, Long> processes = new ConcurrentHashMap<>();
+
+    /**
+     * 已经结束的进程树的 cpu 时间
+     */
+    private final AtomicLong exitedTicks = new AtomicLong();
+
+    /**
+     * 当前的内存
+     */
+    private volatile long rssBytes;
+
+    /**
+     * 内存的峰值
+     */
+    private volatile long peakRssBytes;
+
+    /**
+     * cpu 时间, 单位: 毫秒 <p>
+     */
+    public long getCpuMillis() {
+      long ticks = exitedTicks.get();
+      for (long value : processes.values()) {
+        ticks += value;
+      }
+      return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+    }
+
+    public long getRssBytes() {
+      return rssBytes;
+    }
+
+    public long getPeakRssBytes() {
+      return peakRssBytes;
+    }
+  }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import com.baifendian.swordfish.common.hadoop.HdfsTransfer;
+import com.baifendian.swordfish.execserver.Constants;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * exec-server 本地的 hdfs 文件缓存 <p>
+ *
+ * 以 hdfs 路径 + 修改时间 + 长度的摘要为 key, 文件内容相同则只下载一次; 执行目录中的文件从缓存拷贝得到, <p>
+ * 作业可以随意修改自己的文件, 不会影响缓存 (硬链接共享 inode, 作业 chmod 后写入会破坏缓存). <p>
+ * 命中时校验缓存文件的长度, 不一致则重新下载. 按总大小做 LRU 淘汰, 被淘汰的文件在释放全局锁之后, 持有该 key 的锁时删除.
+ * workflow 的 zip 包可以解压一次后缓存整个目录, 每个执行得到目录的一份可写拷贝, 保留 zip 中的可执行权限.
+ */
+public class ResourceCache {
+
+  /**
+   * LOGGER
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResourceCache.class);
+
+  /**
+   * 下载中的临时文件的后缀
+   */
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /**
+   * 解压后的缓存目录的后缀
+   */
+  private static final String EXTRACTED_SUFFIX = ".d";
+
+  /**
+   * 解压目录中的文件数超过该值时并发拷贝
+   */
+  private static final int PARALLEL_COPY_THRESHOLD = 64;
+
+  /**
+   * key 锁的分段数
+   */
+  private static final int LOCK_STRIPES = 256;
+
+  /**
+   * ResourceCache 实例
+   */
+  private static volatile ResourceCache instance;
+
+  /**
+   * 缓存目录
+   */
+  private final File cacheDir;
+
+  /**
+   * 缓存的最大字节数
+   */
+  private final long maxBytes;
+
+  /**
+   * 压缩包是否解压一次后缓存, 否则每次直接从 hdfs 流式解压到执行目录
+   */
+  private final boolean extractCache;
+
+  /**
+   * key -> 文件大小, 按访问顺序排列
+   */
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * 当前缓存的字节数
+   */
+  private long totalBytes = 0;
+
+  /**
+   * key 的分段锁, 同一个 key 的下载, 拷贝和删除互斥; 固定数目, 不会因为淘汰出现同一个 key 两把锁
+   */
+  private final Object[] keyLocks = new Object[LOCK_STRIPES];
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  ResourceCache(File cacheDir, long maxBytes, boolean extractCache) throws IOException {
+    this.cacheDir = cacheDir;
+    this.maxBytes = maxBytes;
+    this.extractCache = extractCache;
+
+    for (int i = 0; i < keyLocks.length; ++i) {
+      keyLocks[i] = new Object();
+    }
+
+    FileUtils.forceMkdir(cacheDir);
+    load();
+  }
+
+  /**
+   * 初始化，仅需调用一次 <p>
+   */
+  public static void init(Configuration conf) throws IOException {
+    if (instance == null) {
+      synchronized (ResourceCache.class) {
+        if (instance == null) {
+          String dir = conf.getString(Constants.EXECUTOR_RESOURCE_CACHE_DIR,
+              System.getProperty("java.io.tmpdir") + File.separator + "swordfish-resource-cache");
+          long maxBytes = conf.getLong(Constants.EXECUTOR_RESOURCE_CACHE_SIZE, 10 * 1024L) * 1024 * 1024;
+          boolean extractCache = conf.getBoolean(Constants.EXECUTOR_RESOURCE_CACHE_EXTRACT, true);
+          instance = new ResourceCache(new File(dir), maxBytes, extractCache);
+        }
+      }
+    }
+  }
+
+  /**
+   * 获取 ResourceCache 实例 (单例) <p>
+   */
+  public static ResourceCache getInstance() {
+    if (instance == null) {
+      throw new IllegalStateException("ResourceCache is not initialized, please call init(Configuration conf) first");
+    }
+    return instance;
+  }
+
+  /**
+   * 把 hdfs 文件放到本地, 命中缓存时不需要下载 <p>
+   *
+   * @param hdfsFile  hdfs 文件路径
+   * @param localFile 本地文件路径, 已经存在时覆盖
+   * @return 是否命中缓存
+   */
+  public boolean fetch(String hdfsFile, File localFile) throws IOException {
+    String key = genKey(hdfsFile);
+    File cacheFile = new File(cacheDir, key);
+
+    boolean hit;
+    List<String> evicted = Collections.emptyList();
+    synchronized (getLock(key)) {
+      Long size = touch(key);
+      hit = size != null && cacheFile.isFile() && cacheFile.length() == size;
+      if (hit) {
+        hitCount.incrementAndGet();
+        LOGGER.debug("resource cache hit, file:{}, key:{}", hdfsFile, key);
+      } else {
+        missCount.incrementAndGet();
+        LOGGER.info("resource cache miss, download file:{}, key:{}", hdfsFile, key);
+        download(hdfsFile, cacheFile);
+        evicted = add(key, cacheFile.length());
+      }
+
+      copy(cacheFile, localFile);
+    }
+
+    evict(evicted);
+    return hit;
+  }
+
+  /**
+   * 把 hdfs 上的 zip 包解压到本地目录, 不落地 zip 文件 <p>
+   *
+   * 开启解压缓存时, 同一个 zip 只解压一次到缓存中, 目标目录中的文件从缓存拷贝得到; 否则直接从 hdfs 解压到目标目录.
+   *
+   * @param hdfsZip hdfs 上的 zip 文件
+   * @param destDir 目标目录
+   * @return 是否命中缓存
+   */
+  public boolean fetchExtracted(String hdfsZip, File destDir) throws IOException {
+    if (!extractCache) {
+      int count = ZipExtractor.extract(openZip(hdfsZip), destDir);
+      LOGGER.info("extract {} to {}, files:{}", hdfsZip, destDir, count);
+      return false;
+    }
+
+    String key = genKey(hdfsZip) + EXTRACTED_SUFFIX;
+    File cacheEntry = new File(cacheDir, key);
+
+    boolean hit;
+    List<String> evicted = Collections.emptyList();
+    synchronized (getLock(key)) {
+      Long size = touch(key);
+      hit = size != null && cacheEntry.isDirectory() && FileUtils.sizeOfDirectory(cacheEntry) == size;
+      if (hit) {
+        hitCount.incrementAndGet();
+        LOGGER.debug("resource cache hit, zip:{}, key:{}", hdfsZip, key);
+      } else {
+        missCount.incrementAndGet();
+        LOGGER.info("resource cache miss, extract zip:{}, key:{}", hdfsZip, key);
+        extract(hdfsZip, cacheEntry);
+        evicted = add(key, FileUtils.sizeOfDirectory(cacheEntry));
+      }
+
+      copyTree(cacheEntry, destDir);
+    }
+
+    evict(evicted);
+    return hit;
+  }
+
+  /**
+   * 并发获取多个 hdfs 文件, 全部完成后返回 <p>
+   *
+   * @param files hdfs 文件路径 -> 本地文件
+   * @return 命中缓存的文件数
+   */
+  public int fetchAll(Map<String, File> files) throws IOException {
+    final AtomicInteger hits = new AtomicInteger();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (final Map.Entry<String, File> entry : files.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          if (fetch(entry.getKey(), entry.getValue())) {
+            hits.incrementAndGet();
+          }
+          return null;
+        }
+      });
+    }
+    HdfsTransfer.getInstance().runAll(tasks);
+    return hits.get();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * 生成缓存的 key: hdfs 路径 + 修改时间 + 长度的摘要 <p>
+   */
+  String genKey(String hdfsFile) throws IOException {
+    FileStatus fileStatus = HdfsClient.getInstance().getFileStatus(hdfsFile);
+    return genKey(hdfsFile, fileStatus.getModificationTime(), fileStatus.getLen());
+  }
+
+  static String genKey(String file, long modificationTime, long length) {
+    return DigestUtils.sha1Hex(file + "\n" + modificationTime + "\n" + length);
+  }
+
+  /**
+   * 从 hdfs 下载到本地文件 <p>
+   */
+  void transfer(String hdfsFile, File localFile) throws IOException {
+    HdfsTransfer.getInstance().download(hdfsFile, localFile);
+  }
+
+  /**
+   * 打开 hdfs 上的 zip 文件, 随机读取 <p>
+   */
+  SeekableByteChannel openZip(String hdfsZip) throws IOException {
+    return HdfsClient.getInstance().openChannel(hdfsZip);
+  }
+
+  /**
+   * 下载到临时文件后再改名, 不会出现不完整的缓存文件 <p>
+   */
+  private void download(String hdfsFile, File cacheFile) throws IOException {
+    File tmpFile = new File(cacheDir, cacheFile.getName() + "." + UUID.randomUUID() + TMP_SUFFIX);
+    try {
+      transfer(hdfsFile, tmpFile);
+      tmpFile.setWritable(false, false);
+      Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      FileUtils.deleteQuietly(tmpFile);
+    }
+  }
+
+  /**
+   * 获取 key 的锁 <p>
+   */
+  private Object getLock(String key) {
+    return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % keyLocks.length];
+  }
+
+  /**
+   * 从 hdfs 解压到临时目录, 设置只读 (保留可执行权限) 后再改名 <p>
+   */
+  private void extract(String hdfsZip, File cacheEntry) throws IOException {
+    File tmpDir = new File(cacheDir, cacheEntry.getName() + "." + UUID.randomUUID() + TMP_SUFFIX);
+    try {
+      int count = ZipExtractor.extract(openZip(hdfsZip), tmpDir);
+      for (File file : FileUtils.listFiles(tmpDir, null, true)) {
+        file.setWritable(false, false);
+      }
+      FileUtils.deleteQuietly(cacheEntry);
+      Files.move(tmpDir.toPath(), cacheEntry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      LOGGER.info("extract {} to cache, files:{}", hdfsZip, count);
+    } finally {
+      FileUtils.deleteQuietly(tmpDir);
+    }
+  }
+
+  /**
+   * 在目标目录中重建缓存目录的结构, 目录新建, 文件拷贝; 文件较多时并发拷贝 <p>
+   */
+  private void copyTree(File srcDir, File destDir) throws IOException {
+    final Path srcPath = srcDir.toPath();
+    final Path destPath = destDir.toPath();
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(srcPath)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        final Path target = destPath.resolve(srcPath.relativize(path));
+        if (Files.isDirectory(path)) {
+          Files.createDirectories(target);
+        } else {
+          final File cacheFile = path.toFile();
+          tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              copy(cacheFile, target.toFile());
+              return null;
+            }
+          });
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    if (tasks.size() > PARALLEL_COPY_THRESHOLD) {
+      HdfsTransfer.getInstance().runAll(tasks);
+    } else {
+      for (Callable<Void> task : tasks) {
+        try {
+          task.call();
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * 从缓存拷贝到执行目录, 保留可执行权限, 目标文件可写 <p>
+   */
+  private void copy(File cacheFile, File localFile) throws IOException {
+    FileUtils.forceMkdir(localFile.getParentFile());
+    Files.copy(cacheFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    localFile.setWritable(true);
+  }
+
+  /**
+   * 访问一个 key, 更新 LRU 顺序 <p>
+   *
+   * @return 缓存的大小, 不存在时为 null
+   */
+  private synchronized Long touch(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * 加入一个缓存文件, 超出大小时淘汰最久没有访问的文件 <p>
+   *
+   * @return 被淘汰的 key, 由调用者在释放自己的 key 锁之后调用 {@link #evict(List)} 删除
+   */
+  private synchronized List<String> add(String key, long size) {
+    Long old = entries.put(key, size);
+    totalBytes += size - (old == null ? 0 : old);
+
+    List<String> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Long> entry = iterator.next();
+      if (entry.getKey().equals(key)) {
+        continue;
+      }
+      iterator.remove();
+      totalBytes -= entry.getValue();
+      evictionCount.incrementAndGet();
+      evicted.add(entry.getKey());
+      LOGGER.info("resource cache evict key:{}, size:{}", entry.getKey(), entry.getValue());
+    }
+    return evicted;
+  }
+
+  /**
+   * 删除被淘汰的缓存文件, 每次只持有一个 key 的锁; 删除前已经被重新加入的不删除 <p>
+   */
+  private void evict(List<String> keys) {
+    for (String key : keys) {
+      synchronized (getLock(key)) {
+        if (!contains(key)) {
+          FileUtils.deleteQuietly(new File(cacheDir, key));
+        }
+      }
+    }
+  }
+
+  /**
+   * 启动时加载已有的缓存文件, 按修改时间作为访问顺序, 清理残留的临时文件 <p>
+   */
+  private void load() {
+    File[] files = cacheDir.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    List<File> cacheFiles = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().endsWith(TMP_SUFFIX)) {
+        FileUtils.deleteQuietly(file);
+      } else if (file.isFile() || file.getName().endsWith(EXTRACTED_SUFFIX)) {
+        cacheFiles.add(file);
+      }
+    }
+
+    cacheFiles.sort(Comparator.comparingLong(File::lastModified));
+    for (File file : cacheFiles) {
+      evict(add(file.getName(), file.isDirectory() ? FileUtils.sizeOfDirectory(file) : file.length()));
+    }
+
+    LOGGER.info("resource cache dir:{}, files:{}, bytes:{}", cacheDir, entries.size(), totalBytes);
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import com.baifendian.swordfish.common.hadoop.HdfsTransfer;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * zip 包的解压, 通过 {@link SeekableByteChannel} 随机读取, 不需要先把 zip 文件落地, 也不需要启动 unzip 进程 <p>
+ *
+ * 拒绝解压到目标目录之外的条目 (zip slip). 按 zip 中央目录里的 unix 权限设置文件的权限;
+ * 没有 unix 权限 (比如在 windows 上打包) 时, 以 "#!" 开头的文件设置为可执行. 符号链接条目会被忽略.
+ */
+public class ZipExtractor {
+
+  /**
+   * 缓冲区大小
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * 文件数超过该值时并发解压
+   */
+  private static final int PARALLEL_EXTRACT_THRESHOLD = 64;
+
+  /**
+   * 解压后的大小超过该值时并发解压, 64M
+   */
+  private static final long PARALLEL_EXTRACT_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * unix 权限位, 从高位到低位: rwxrwxrwx
+   */
+  private static final PosixFilePermission[] PERMISSIONS = {
+      PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE,
+      PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE,
+      PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE
+  };
+
+  private ZipExtractor() {
+  }
+
+  /**
+   * 解压 zip 到目录, 已经存在的文件会被覆盖 <p>
+   *
+   * 先按中央目录检查所有条目并建好目录, 再解压文件; 文件数或者解压后的大小超过阈值时, 在 {@link HdfsTransfer} 的线程池中并发解压.
+   * 对 channel 的读在 {@link ZipFile} 内部是串行的, 并发的是解压缩和写本地文件.
+   *
+   * @param channel zip 文件, 解压后关闭
+   * @param destDir 目标目录
+   * @return 解压的文件数
+   */
+  public static int extract(SeekableByteChannel channel, File destDir) throws IOException {
+    FileUtils.forceMkdir(destDir);
+    String destPath = destDir.getCanonicalPath() + File.separator;
+
+    try (final ZipFile zipFile = new ZipFile(channel)) {
+      // 同名的条目以最后一个为准, 和依次解压覆盖的结果相同, 也避免并发写同一个文件
+      Map<String, ZipArchiveEntry> files = new LinkedHashMap<>();
+      long totalSize = 0;
+
+      Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+      while (entries.hasMoreElements()) {
+        ZipArchiveEntry entry = entries.nextElement();
+        File file = new File(destDir, entry.getName());
+        String path = file.getCanonicalPath();
+        if (!path.startsWith(destPath)) {
+          throw new IOException("zip entry is outside of the target dir: " + entry.getName());
+        }
+
+        if (entry.isDirectory()) {
+          FileUtils.forceMkdir(file);
+          continue;
+        }
+        if (entry.isUnixSymlink()) {
+          continue;
+        }
+
+        FileUtils.forceMkdir(file.getParentFile());
+        files.remove(path);
+        files.put(path, entry);
+        totalSize += Math.max(entry.getSize(), 0);
+      }
+
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (final Map.Entry<String, ZipArchiveEntry> entry : files.entrySet()) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            extractEntry(zipFile, entry.getValue(), new File(entry.getKey()));
+            return null;
+          }
+        });
+      }
+
+      if (tasks.size() > PARALLEL_EXTRACT_THRESHOLD || (tasks.size() > 1 && totalSize > PARALLEL_EXTRACT_BYTES)) {
+        HdfsTransfer.getInstance().runAll(tasks);
+      } else {
+        for (Callable<Void> task : tasks) {
+          try {
+            task.call();
+          } catch (IOException | RuntimeException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new IOException(e);
+          }
+        }
+      }
+
+      return tasks.size();
+    }
+  }
+
+  /**
+   * 解压一个文件条目, 并设置权限 <p>
+   */
+  private static void extractEntry(ZipFile zipFile, ZipArchiveEntry entry, File file) throws IOException {
+    // 先删除再写, 已经存在的只读文件也可以覆盖
+    Files.deleteIfExists(file.toPath());
+    boolean script = false;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = zipFile.getInputStream(entry);
+         OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+      boolean first = true;
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        if (first) {
+          script = n >= 2 && buffer[0] == '#' && buffer[1] == '!';
+          first = false;
+        }
+        out.write(buffer, 0, n);
+      }
+    }
+
+    int mode = entry.getUnixMode() & 0777;
+    if (entry.getPlatform() == ZipArchiveEntry.PLATFORM_UNIX && mode != 0) {
+      setMode(file, mode);
+    } else if (script) {
+      file.setExecutable(true, false);
+    }
+  }
+
+  /**
+   * 设置 unix 权限, 始终保留所有者的读写权限, 不支持 posix 权限的文件系统只设置可执行 <p>
+   */
+  private static void setMode(File file, int mode) throws IOException {
+    Set<PosixFilePermission> permissions = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+    for (int i = 0; i < PERMISSIONS.length; ++i) {
+      if ((mode & (1 << (PERMISSIONS.length - 1 - i))) != 0) {
+        permissions.add(PERMISSIONS[i]);
+      }
+    }
+
+    try {
+      Files.setPosixFilePermissions(file.toPath(), permissions);
+    } catch (UnsupportedOperationException e) {
+      if ((mode & 0111) != 0) {
+        file.setExecutable(true, false);
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.flow;
+
+import com.baifendian.swordfish.common.utils.graph.CompactDag;
+import com.baifendian.swordfish.common.utils.graph.DAGGraph;
+import com.baifendian.swordfish.common.utils.graph.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DagScheduler} 从头到尾调度一个分层 DAG 的耗时, 每次完成的平均耗时不应该随着 DAG 的规模增长 <p>
+ *
+ * 运行: 在 exec-server 目录下 mvn test-compile 后, 以 test classpath 执行本类的 main 方法.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DagSchedulerBenchmark {
+
+  /**
+   * 层数, 每层 50 个节点, 每个节点依赖上一层的 3 个节点
+   */
+  @Param({"10", "100", "1000"})
+  private int layers;
+
+  private static final int WIDTH = 50;
+
+  private static final int FAN_IN = 3;
+
+  private CompactDag<String, String> dag;
+
+  @Setup
+  public void setup() throws Exception {
+    Graph<String, String, String> graph = new DAGGraph<>();
+
+    for (int l = 0; l < layers; ++l) {
+      for (int w = 0; w < WIDTH; ++w) {
+        graph.addVertex(l + "_" + w, null);
+      }
+    }
+
+    for (int l = 1; l < layers; ++l) {
+      for (int w = 0; w < WIDTH; ++w) {
+        for (int f = 0; f < FAN_IN; ++f) {
+          graph.addEdge((l - 1) + "_" + ((w + f) % WIDTH), l + "_" + w);
+        }
+      }
+    }
+
+    dag = CompactDag.of(graph);
+  }
+
+  @Benchmark
+  public int runToEnd() {
+    DagScheduler scheduler = new DagScheduler(dag);
+
+    int completions = 0;
+    String node;
+    while ((node = scheduler.pollReady()) != null) {
+      scheduler.markSuccess(node);
+      completions++;
+    }
+
+    return completions;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DagSchedulerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.flow;
+
+import com.baifendian.swordfish.common.utils.graph.DAGGraph;
+import com.baifendian.swordfish.common.utils.graph.Graph;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DagSchedulerTest {
+
+  /**
+   * a -> b -> d, a -> c -> d, c -> e
+   */
+  private Graph<String, String, String> diamond() {
+    Graph<String, String, String> graph = new DAGGraph<>();
+    for (String node : Arrays.asList("a", "b", "c", "d", "e")) {
+      graph.addVertex(node, node);
+    }
+    graph.addEdge("a", "b");
+    graph.addEdge("a", "c");
+    graph.addEdge("b", "d");
+    graph.addEdge("c", "d");
+    graph.addEdge("c", "e");
+    return graph;
+  }
+
+  /**
+   * 分层的 DAG, 每层 width 个节点, 每个节点依赖上一层的 fanIn 个节点
+   */
+  private Graph<String, String, String> layered(int layers, int width, int fanIn) {
+    Graph<String, String, String> graph = new DAGGraph<>();
+    for (int l = 0; l < layers; ++l) {
+      for (int w = 0; w < width; ++w) {
+        graph.addVertex(l + "_" + w, null);
+      }
+    }
+    for (int l = 1; l < layers; ++l) {
+      for (int w = 0; w < width; ++w) {
+        for (int f = 0; f < fanIn; ++f) {
+          graph.addEdge((l - 1) + "_" + ((w + f) % width), l + "_" + w);
+        }
+      }
+    }
+    return graph;
+  }
+
+  private List<String> drain(DagScheduler scheduler) {
+    List<String> ready = new ArrayList<>();
+    String node;
+    while ((node = scheduler.pollReady()) != null) {
+      ready.add(node);
+    }
+    return ready;
+  }
+
+  @Test
+  public void testRunAllSuccess() throws Exception {
+    DagScheduler scheduler = new DagScheduler(diamond());
+
+    assertEquals(Arrays.asList("a"), drain(scheduler));
+    assertEquals(1, scheduler.getRunningCount());
+
+    scheduler.markSuccess("a");
+    assertEquals(new HashSet<>(Arrays.asList("b", "c")), new HashSet<>(drain(scheduler)));
+
+    scheduler.markSuccess("b");
+    // d 还依赖 c
+    assertNull(scheduler.pollReady());
+
+    scheduler.markSuccess("c");
+    assertEquals(new HashSet<>(Arrays.asList("d", "e")), new HashSet<>(drain(scheduler)));
+
+    scheduler.markSuccess("d");
+    scheduler.markSuccess("e");
+
+    assertTrue(scheduler.isAllFinished());
+    assertTrue(scheduler.isAllSuccess());
+    assertEquals(0, scheduler.getRunningCount());
+  }
+
+  @Test
+  public void testFailedSkipsDescendants() throws Exception {
+    DagScheduler scheduler = new DagScheduler(diamond());
+
+    drain(scheduler);
+    scheduler.markSuccess("a");
+    drain(scheduler);
+
+    assertEquals(new HashSet<>(Arrays.asList("d", "e")), new HashSet<>(scheduler.markFailed("c")));
+
+    // b 成功后, d 已经跳过, 不会再就绪
+    scheduler.markSuccess("b");
+    assertNull(scheduler.pollReady());
+
+    assertTrue(scheduler.isAllFinished());
+    assertFalse(scheduler.isAllSuccess());
+  }
+
+  @Test
+  public void testRecoverSuccessNodes() throws Exception {
+    DagScheduler scheduler = new DagScheduler(diamond());
+
+    // 恢复时 a, c 已经成功
+    scheduler.markSuccess("a");
+    scheduler.markSuccess("c");
+
+    assertEquals(Arrays.asList("b", "e"), drain(scheduler));
+
+    scheduler.markSuccess("b");
+    assertEquals(Arrays.asList("d"), drain(scheduler));
+  }
+
+  @Test(expected = Exception.class)
+  public void testCycle() throws Exception {
+    Graph<String, String, String> graph = new Graph<>();
+    graph.addVertex("a", null);
+    graph.addVertex("b", null);
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "a");
+
+    new DagScheduler(graph);
+  }
+
+  /**
+   * 分层的 DAG 逐个完成, 所有节点都会且只会就绪一次, 性能见 {@link DagSchedulerBenchmark}
+   */
+  @Test
+  public void testLayeredRunToEnd() throws Exception {
+    DagScheduler scheduler = new DagScheduler(layered(100, 50, 3));
+
+    assertEquals(100 * 50, runToEnd(scheduler));
+    assertTrue(scheduler.isAllFinished());
+    assertTrue(scheduler.isAllSuccess());
+  }
+
+  private int runToEnd(DagScheduler scheduler) {
+    int completions = 0;
+    String node;
+    while ((node = scheduler.pollReady()) != null) {
+      scheduler.markSuccess(node);
+      completions++;
+    }
+    return completions;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.job.hive;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultFileWriterTest {
+
+  @Test
+  public void testWriteRows() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ResultFileWriter writer = new ResultFileWriter(out, 10, 1024)) {
+      assertTrue(writer.write(Arrays.asList("a", "1")));
+      assertTrue(writer.write(Arrays.asList("b", null)));
+      assertEquals(2, writer.getRowCount());
+      assertFalse(writer.isTruncated());
+    }
+
+    assertEquals("[\"a\",\"1\"]\n[\"b\",null]\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRowLimit() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ResultFileWriter writer = new ResultFileWriter(out, 1, 1024)) {
+      assertFalse(writer.write(Arrays.asList("a")));
+      assertFalse(writer.write(Arrays.asList("b")));
+      assertEquals(1, writer.getRowCount());
+      assertFalse(writer.isTruncated());
+    }
+  }
+
+  @Test
+  public void testByteLimit() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ResultFileWriter writer = new ResultFileWriter(out, 10, 10)) {
+      assertTrue(writer.write(Arrays.asList("a")));
+      assertFalse(writer.write(Arrays.asList("bbbbbbbb")));
+      assertEquals(1, writer.getRowCount());
+      assertTrue(writer.isTruncated());
+    }
+
+    assertEquals("[\"a\"]\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testOffsets() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ResultFileWriter writer = new ResultFileWriter(out, 10, 1024, 2)) {
+      for (int i = 0; i < 5; ++i) {
+        writer.write(Arrays.asList("r" + i));
+      }
+      // 每行 7 个字节: ["rN"]\n, 记录第 0, 2, 4 行的偏移
+      assertEquals(Arrays.asList(0L, 14L, 28L), writer.getOffsets());
+    }
+
+    String content = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(content.substring(28).startsWith("[\"r4\"]"));
+  }
+}
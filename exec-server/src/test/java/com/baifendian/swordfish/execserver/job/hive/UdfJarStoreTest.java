@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.job.hive;
+
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用本地文件系统代替 hdfs 测试 udf jar 存储
+ */
+public class UdfJarStoreTest {
+
+  private File baseDir;
+
+  private File srcDir;
+
+  private UdfJarStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new Configuration();
+    conf.set("fs.defaultFS", "file:///");
+    HdfsClient.init(conf);
+
+    baseDir = Files.createTempDirectory("udf-jar-store").toFile();
+    srcDir = new File(baseDir, "src");
+    store = new UdfJarStore(new File(baseDir, "udf").getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir);
+  }
+
+  @Test
+  public void testStage() throws Exception {
+    jar("lib/upper.jar", "upper");
+
+    Map<String, String> paths = store.stage("job_1", Collections.singletonList("lib/upper.jar"), srcDir.getAbsolutePath(), false);
+
+    String target = paths.get("lib/upper.jar");
+    assertTrue(target.startsWith(new File(baseDir, "udf/store").getAbsolutePath() + "/"));
+    assertTrue(target.endsWith("/upper.jar"));
+    assertEquals("upper", FileUtils.readFileToString(new File(target), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSameContentUploadOnce() throws Exception {
+    jar("upper.jar", "upper");
+    jar("other/upper.jar", "upper");
+
+    String first = store.stage("job_1", Collections.singletonList("upper.jar"), srcDir.getAbsolutePath(), false).get("upper.jar");
+    // 已经存在的条目不再上传, 用标记内容验证
+    FileUtils.writeStringToFile(new File(first), "staged", StandardCharsets.UTF_8);
+
+    String second = store.stage("job_2", Collections.singletonList("other/upper.jar"), srcDir.getAbsolutePath(), false).get("other/upper.jar");
+    assertEquals(first, second);
+    assertEquals("staged", FileUtils.readFileToString(new File(second), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSameContentDifferentName() throws Exception {
+    jar("upper.jar", "upper");
+    jar("upper-copy.jar", "upper");
+
+    Map<String, String> paths = store.stage("job_1", Arrays.asList("upper.jar"), srcDir.getAbsolutePath(), false);
+    // 同一个内容换一个 jar 名, 目标路径不同, 必须也放入存储
+    Map<String, String> renamed = store.stage("job_2", Arrays.asList("upper-copy.jar"), srcDir.getAbsolutePath(), false);
+
+    String target = paths.get("upper.jar");
+    String renamedTarget = renamed.get("upper-copy.jar");
+    assertNotEquals(target, renamedTarget);
+    assertEquals(new File(target).getParent(), new File(renamedTarget).getParent());
+    assertEquals("upper", FileUtils.readFileToString(new File(renamedTarget), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCleanUnreferenced() throws Exception {
+    jar("a.jar", "a");
+    jar("b.jar", "b");
+
+    File a = new File(store.stage("job_a", Collections.singletonList("a.jar"), srcDir.getAbsolutePath(), false).get("a.jar"));
+    File b = new File(store.stage("job_b", Collections.singletonList("b.jar"), srcDir.getAbsolutePath(), false).get("b.jar"));
+    store.release("job_a");
+
+    // 超过保留时间
+    long old = System.currentTimeMillis() - 30L * 24 * 3600 * 1000;
+    HdfsClient.getInstance().setModificationTime(a.getParent(), old);
+    HdfsClient.getInstance().setModificationTime(b.getParent(), old);
+
+    store.clean();
+
+    // 没有引用的被清理, 还在使用的保留
+    assertFalse(a.getParentFile().exists());
+    assertTrue(b.exists());
+
+    // 清理之后再次使用会重新上传
+    File again = new File(store.stage("job_c", Collections.singletonList("a.jar"), srcDir.getAbsolutePath(), false).get("a.jar"));
+    assertEquals(a, again);
+    assertTrue(again.exists());
+  }
+
+  @Test
+  public void testCleanKeepsEntryUsedByOtherServer() throws Exception {
+    jar("a.jar", "a");
+
+    File a = new File(store.stage("job_a", Collections.singletonList("a.jar"), srcDir.getAbsolutePath(), false).get("a.jar"));
+    store.release("job_a");
+    HdfsClient.getInstance().setModificationTime(a.getParent(), System.currentTimeMillis() - 30L * 24 * 3600 * 1000);
+
+    // 另一个 exec-server 共用同一个存储, 它的引用本进程看不到, 只能靠续约的修改时间
+    UdfJarStore other = new UdfJarStore(new File(baseDir, "udf").getAbsolutePath());
+    other.stage("job_other", Collections.singletonList("a.jar"), srcDir.getAbsolutePath(), false);
+
+    store.clean();
+    assertTrue(a.exists());
+  }
+
+  private void jar(String name, String content) throws IOException {
+    FileUtils.writeStringToFile(new File(srcDir, name), content, StandardCharsets.UTF_8);
+  }
+}
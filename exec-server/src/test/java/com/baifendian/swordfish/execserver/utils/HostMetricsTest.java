@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import com.baifendian.swordfish.common.job.JobProps;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 用 test/resources/hostmetrics 下的样例文件测试 /proc 和 cgroup 的解析 <p>
+ */
+public class HostMetricsTest {
+
+  private static final double DELTA = 1e-6;
+
+  private File baseDir;
+
+  private File procRoot;
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = Files.createTempDirectory("host-metrics").toFile();
+    FileUtils.copyDirectory(new File(getClass().getResource("/hostmetrics").toURI()), baseDir);
+    procRoot = new File(baseDir, "proc");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir);
+  }
+
+  @Test
+  public void testCpuUsage() throws IOException {
+    HostMetrics metrics = newMetrics(null);
+    metrics.sample();
+    // 第一次采样没有上一次的值
+    assertEquals(0, metrics.getCpuUsage(), DELTA);
+
+    FileUtils.copyFile(new File(procRoot, "stat.2"), new File(procRoot, "stat"));
+    metrics.sample();
+    // 总时间增加 2000, idle + iowait 增加 500
+    assertEquals(0.75, metrics.getCpuUsage(), DELTA);
+  }
+
+  @Test
+  public void testMemAvailable() {
+    HostMetrics metrics = newMetrics(null);
+    metrics.sample();
+    assertEquals(0.75, metrics.getMemUsage(), DELTA);
+  }
+
+  @Test
+  public void testMemWithoutMemAvailable() throws IOException {
+    FileUtils.copyFile(new File(procRoot, "meminfo.old"), new File(procRoot, "meminfo"));
+    HostMetrics metrics = newMetrics(null);
+    metrics.sample();
+    // MemTotal - MemFree - Buffers - Cached, 不能把 SwapCached 当作 Cached
+    assertEquals(0.5, metrics.getMemUsage(), DELTA);
+  }
+
+  @Test
+  public void testLoadAvg() {
+    HostMetrics metrics = newMetrics(null);
+    metrics.sample();
+    assertEquals(0.52, metrics.getLoadAvg1(), DELTA);
+    assertEquals(1.25, metrics.getLoadAvg5(), DELTA);
+    assertEquals(2.5, metrics.getLoadAvg15(), DELTA);
+  }
+
+  @Test
+  public void testNoCgroup() {
+    HostMetrics metrics = newMetrics("cgroup-none");
+    metrics.sample();
+    assertEquals(0, metrics.getCgroupMemLimit());
+    assertEquals(0, metrics.getCgroupCpuLimit(), DELTA);
+  }
+
+  @Test
+  public void testCgroupV1() {
+    HostMetrics metrics = newMetrics("cgroup-v1");
+    metrics.sample();
+    assertEquals(4294967296L, metrics.getCgroupMemLimit());
+    assertEquals(1.5, metrics.getCgroupCpuLimit(), DELTA);
+    // 限制小于物理内存, 按 cgroup 计算
+    assertEquals(0.25, metrics.getMemUsage(), DELTA);
+  }
+
+  @Test
+  public void testCgroupV1Unlimited() throws IOException {
+    write("cgroup-v1/memory/memory.limit_in_bytes", "9223372036854771712");
+    write("cgroup-v1/cpu/cpu.cfs_quota_us", "-1");
+    HostMetrics metrics = newMetrics("cgroup-v1");
+    metrics.sample();
+    assertEquals(0, metrics.getCgroupMemLimit());
+    assertEquals(0, metrics.getCgroupCpuLimit(), DELTA);
+    assertEquals(0.75, metrics.getMemUsage(), DELTA);
+  }
+
+  @Test
+  public void testCgroupV2() {
+    HostMetrics metrics = newMetrics("cgroup-v2");
+    metrics.sample();
+    assertEquals(8589934592L, metrics.getCgroupMemLimit());
+    assertEquals(2, metrics.getCgroupCpuLimit(), DELTA);
+    assertEquals(0.25, metrics.getMemUsage(), DELTA);
+  }
+
+  @Test
+  public void testCgroupV2Unlimited() throws IOException {
+    write("cgroup-v2/memory.max", "max");
+    write("cgroup-v2/cpu.max", "max 100000");
+    HostMetrics metrics = newMetrics("cgroup-v2");
+    metrics.sample();
+    assertEquals(0, metrics.getCgroupMemLimit());
+    assertEquals(0, metrics.getCgroupCpuLimit(), DELTA);
+  }
+
+  @Test
+  public void testFlowUsage() {
+    HostMetrics metrics = newMetrics(null);
+    JobProps props = new JobProps();
+    props.setExecId(1);
+
+    // 100 是 bash, 101 是它的子进程, 进程名中有空格和括号; 102 不属于这个 flow
+    metrics.onStart(props, 100);
+    metrics.sample();
+
+    HostMetrics.FlowUsage flowUsage = metrics.removeFlow(1);
+    assertEquals((300 + 100 + 50 + 50 + 200 + 100) * 10, flowUsage.getCpuMillis());
+    assertEquals((1000 + 500) * 4096, flowUsage.getRssBytes());
+    assertEquals((1000 + 500) * 4096, flowUsage.getPeakRssBytes());
+    assertNull(metrics.removeFlow(1));
+  }
+
+  @Test
+  public void testExitedProcesses() {
+    HostMetrics metrics = newMetrics(null);
+    JobProps props = new JobProps();
+    props.setExecId(2);
+
+    metrics.onStart(props, 100);
+    metrics.sample();
+    metrics.onExit(props, 100);
+
+    // 两次采样之间启动并结束的进程, 没有被采样到, 计为 0
+    metrics.onStart(props, 200);
+    metrics.onExit(props, 200);
+    metrics.sample();
+
+    assertEquals(800 * 10, metrics.removeFlow(2).getCpuMillis());
+  }
+
+  private HostMetrics newMetrics(String cgroup) {
+    return new HostMetrics(5, baseDir, procRoot, new File(baseDir, cgroup == null ? "cgroup-none" : cgroup));
+  }
+
+  private void write(String path, String content) throws IOException {
+    FileUtils.writeStringToFile(new File(baseDir, path), content + "\n", "UTF-8");
+  }
+}
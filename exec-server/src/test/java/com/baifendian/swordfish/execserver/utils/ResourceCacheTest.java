@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCacheTest {
+
+  private File baseDir;
+
+  private File remoteDir;
+
+  private File execDir;
+
+  /**
+   * 每个文件的下载次数
+   */
+  private final AtomicInteger downloads = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("resource-cache").toFile();
+    remoteDir = new File(baseDir, "remote");
+    execDir = new File(baseDir, "exec");
+    FileUtils.forceMkdir(remoteDir);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir);
+  }
+
+  @Test
+  public void testMissThenHit() throws Exception {
+    ResourceCache cache = newCache(1024);
+    String remote = remote("a.txt", "hello");
+
+    File first = new File(execDir, "1/a.txt");
+    assertFalse(cache.fetch(remote, first));
+    File second = new File(execDir, "2/a.txt");
+    assertTrue(cache.fetch(remote, second));
+
+    assertEquals(1, downloads.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals("hello", FileUtils.readFileToString(second, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testJobWriteNotCorruptCache() throws Exception {
+    ResourceCache cache = newCache(1024);
+    String remote = remote("a.txt", "hello");
+
+    File first = new File(execDir, "1/a.txt");
+    cache.fetch(remote, first);
+    assertTrue(first.canWrite());
+    FileUtils.writeStringToFile(first, "changed by job", StandardCharsets.UTF_8);
+
+    File second = new File(execDir, "2/a.txt");
+    assertTrue(cache.fetch(remote, second));
+    assertEquals("hello", FileUtils.readFileToString(second, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCorruptedCacheDownloadAgain() throws Exception {
+    ResourceCache cache = newCache(1024);
+    String remote = remote("a.txt", "hello");
+    cache.fetch(remote, new File(execDir, "1/a.txt"));
+
+    // 缓存文件被外部改动, 长度不一致时重新下载
+    File cacheFile = new File(new File(baseDir, "cache"), cache.genKey(remote));
+    cacheFile.setWritable(true);
+    FileUtils.writeStringToFile(cacheFile, "hi", StandardCharsets.UTF_8);
+
+    File second = new File(execDir, "2/a.txt");
+    assertFalse(cache.fetch(remote, second));
+    assertEquals(2, downloads.get());
+    assertEquals("hello", FileUtils.readFileToString(second, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    ResourceCache cache = newCache(10);
+    String a = remote("a.txt", "aaaaaa");
+    String b = remote("b.txt", "bbbbbb");
+
+    cache.fetch(a, new File(execDir, "a.txt"));
+    cache.fetch(b, new File(execDir, "b.txt"));
+
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(6, cache.getTotalBytes());
+    assertFalse(new File(new File(baseDir, "cache"), cache.genKey(a)).exists());
+    // 已经拷贝出去的文件不受影响
+    assertEquals("aaaaaa", FileUtils.readFileToString(new File(execDir, "a.txt"), StandardCharsets.UTF_8));
+
+    assertTrue(cache.fetch(b, new File(execDir, "b2.txt")));
+    assertFalse(cache.fetch(a, new File(execDir, "a2.txt")));
+    assertEquals(3, downloads.get());
+  }
+
+  @Test
+  public void testConcurrentFetch() throws Exception {
+    final ResourceCache cache = newCache(1024);
+    final String remote = remote("a.txt", "hello");
+
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        final File localFile = new File(execDir, i + "/a.txt");
+        futures.add(executorService.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return cache.fetch(remote, localFile);
+          }
+        }));
+      }
+      int hits = 0;
+      for (Future<Boolean> future : futures) {
+        if (future.get()) {
+          hits++;
+        }
+      }
+      assertEquals(7, hits);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertEquals(1, downloads.get());
+    for (int i = 0; i < 8; ++i) {
+      assertEquals("hello", FileUtils.readFileToString(new File(execDir, i + "/a.txt"), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testFetchExtractedWritableCopy() throws Exception {
+    ResourceCache cache = newCache(1024);
+    File zip = new File(remoteDir, "flow.zip");
+    try (ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(zip)) {
+      ZipArchiveEntry entry = new ZipArchiveEntry("bin/run.sh");
+      entry.setUnixMode(0100755);
+      zipOut.putArchiveEntry(entry);
+      zipOut.write("echo 1\n".getBytes(StandardCharsets.UTF_8));
+      zipOut.closeArchiveEntry();
+    }
+
+    File first = new File(execDir, "1");
+    assertFalse(cache.fetchExtracted(zip.getAbsolutePath(), first));
+    File script = new File(first, "bin/run.sh");
+    assertTrue(script.canExecute());
+    assertTrue(script.canWrite());
+    // 作业修改自己的拷贝, 不影响下一个执行
+    FileUtils.writeStringToFile(script, "changed by job", StandardCharsets.UTF_8);
+
+    File second = new File(execDir, "2");
+    assertTrue(cache.fetchExtracted(zip.getAbsolutePath(), second));
+    assertEquals("echo 1\n", FileUtils.readFileToString(new File(second, "bin/run.sh"), StandardCharsets.UTF_8));
+    assertTrue(new File(second, "bin/run.sh").canExecute());
+  }
+
+  private String remote(String name, String content) throws IOException {
+    File file = new File(remoteDir, name);
+    FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+    return file.getAbsolutePath();
+  }
+
+  /**
+   * 用本地目录代替 hdfs 的缓存
+   */
+  private ResourceCache newCache(long maxBytes) throws IOException {
+    return new ResourceCache(new File(baseDir, "cache"), maxBytes, true) {
+      @Override
+      String genKey(String hdfsFile) {
+        File file = new File(hdfsFile);
+        return genKey(hdfsFile, file.lastModified(), file.length());
+      }
+
+      @Override
+      SeekableByteChannel openZip(String hdfsZip) throws IOException {
+        return Files.newByteChannel(new File(hdfsZip).toPath());
+      }
+
+      @Override
+      void transfer(String hdfsFile, File localFile) throws IOException {
+        downloads.incrementAndGet();
+        try {
+          // 下载慢一点, 让并发的获取等待
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        FileUtils.copyFile(new File(hdfsFile), localFile);
+      }
+    };
+  }
+}
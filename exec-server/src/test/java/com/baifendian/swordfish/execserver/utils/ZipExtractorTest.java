@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.execserver.utils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipExtractorTest {
+
+  private File baseDir;
+
+  private File destDir;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("zip-extractor").toFile();
+    destDir = new File(baseDir, "dest");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir);
+  }
+
+  @Test
+  public void testExtractUnixMode() throws Exception {
+    File zip = new File(baseDir, "modes.zip");
+    try (ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(zip)) {
+      putEntry(zipOut, "conf/", null, 0755);
+      putEntry(zipOut, "conf/a.txt", "hello", 0644);
+      putEntry(zipOut, "bin/run", "echo 1\n", 0750);
+    }
+
+    assertEquals(2, ZipExtractor.extract(open(zip), destDir));
+
+    File text = new File(destDir, "conf/a.txt");
+    assertEquals("hello", FileUtils.readFileToString(text, StandardCharsets.UTF_8));
+    assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(text.toPath())));
+    // 没有 "#!" 但是 zip 中有可执行权限
+    File bin = new File(destDir, "bin/run");
+    assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(bin.toPath())));
+  }
+
+  @Test
+  public void testScriptWithoutUnixMode() throws Exception {
+    File zip = zip("conf/", null, "conf/a.txt", "hello", "run.sh", "#!/bin/bash\necho 1\n");
+
+    assertEquals(2, ZipExtractor.extract(open(zip), destDir));
+
+    File text = new File(destDir, "conf/a.txt");
+    assertEquals("hello", FileUtils.readFileToString(text, StandardCharsets.UTF_8));
+    assertFalse(text.canExecute());
+    assertTrue(new File(destDir, "run.sh").canExecute());
+  }
+
+  @Test
+  public void testZipSlip() throws Exception {
+    File zip = zip("../evil.txt", "evil");
+
+    try {
+      ZipExtractor.extract(open(zip), destDir);
+      fail("entry outside of the target dir should be rejected");
+    } catch (IOException e) {
+      assertFalse(new File(baseDir, "evil.txt").exists());
+    }
+  }
+
+  @Test
+  public void testZipSlipNothingExtracted() throws Exception {
+    File zip = zip("a.txt", "a", "../evil.txt", "evil");
+
+    try {
+      ZipExtractor.extract(open(zip), destDir);
+      fail("entry outside of the target dir should be rejected");
+    } catch (IOException e) {
+      // 所有条目检查完之后才开始解压
+      assertFalse(new File(destDir, "a.txt").exists());
+    }
+  }
+
+  @Test
+  public void testExtractManyFilesInParallel() throws Exception {
+    String[] entries = new String[200 * 2];
+    for (int i = 0; i < 200; ++i) {
+      entries[i * 2] = "dir" + (i % 10) + "/file" + i + ".txt";
+      entries[i * 2 + 1] = "content " + i;
+    }
+    File zip = zip(entries);
+
+    assertEquals(200, ZipExtractor.extract(open(zip), destDir));
+    for (int i = 0; i < 200; ++i) {
+      File file = new File(destDir, "dir" + (i % 10) + "/file" + i + ".txt");
+      assertEquals("content " + i, FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    }
+  }
+
+  private static SeekableByteChannel open(File zip) throws IOException {
+    return Files.newByteChannel(zip.toPath());
+  }
+
+  private static void putEntry(ZipArchiveOutputStream zipOut, String name, String content, int mode) throws IOException {
+    ZipArchiveEntry entry = new ZipArchiveEntry(name);
+    entry.setUnixMode((content == null ? 040000 : 0100000) | mode);
+    zipOut.putArchiveEntry(entry);
+    if (content != null) {
+      zipOut.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+    zipOut.closeArchiveEntry();
+  }
+
+  /**
+   * 按 "名称, 内容" 成对生成没有 unix 权限的 zip, 内容为 null 表示目录
+   */
+  private File zip(String... entries) throws IOException {
+    File zip = new File(baseDir, "plain.zip");
+    try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int i = 0; i < entries.length; i += 2) {
+        zipOut.putNextEntry(new ZipEntry(entries[i]));
+        if (entries[i + 1] != null) {
+          zipOut.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        zipOut.closeEntry();
+      }
+    }
+    return zip;
+  }
+}
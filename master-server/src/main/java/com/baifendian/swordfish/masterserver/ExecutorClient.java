@@ -18,16 +18,18 @@ package com.baifendian.swordfish.masterserver;
 import com.baifendian.swordfish.common.job.exception.ExecException;
 import com.baifendian.swordfish.rpc.RetInfo;
 import com.baifendian.swordfish.rpc.WorkerService;
+import com.baifendian.swordfish.rpc.client.PooledTransport;
+import com.baifendian.swordfish.rpc.client.TransportPool;
 import com.baifendian.swordfish.masterserver.utils.ResultHelper;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Executor thrift client, 连接从 {@link TransportPool} 中获取
+ */
 public class ExecutorClient {
 
   private static Logger logger = LoggerFactory.getLogger(ExecutorClient.class);
@@ -40,12 +42,10 @@ public class ExecutorClient {
 
   private static final int RPC_RETRIES = 3;
 
-  private TTransport tTransport;
-
-  private WorkerService.Client client;
-
   private int retries;
 
+  private final TransportPool transportPool = TransportPool.getInstance();
+
   public ExecutorClient(String host, int port, int retries) {
     this.host = host;
     this.port = port;
@@ -62,43 +62,61 @@ public class ExecutorClient {
     this.retries = RPC_RETRIES;
   }
 
-  private void connect() {
-    tTransport = new TSocket(host, port, timeout);
+  /**
+   * 一次 rpc 调用
+   */
+  private interface Call<T> {
+    T call(WorkerService.Client client) throws TException;
+  }
+
+  /**
+   * 使用池中的连接执行一次调用 <p>
+   *
+   * 复用的连接可能已经被服务端关闭, 失败时用新连接重试一次. 请求已经完整发出之后的失败 (例如读超时)
+   * 不能确定服务端是否已经执行, 只有幂等的调用才重试, 避免重复执行.
+   *
+   * @param idempotent 重复执行是否安全
+   */
+  private <T> T call(Call<T> call, boolean idempotent) throws TException {
+    PooledTransport pooled = transportPool.borrow(host, port, timeout);
     try {
-      TProtocol protocol = new TBinaryProtocol(tTransport);
-      client = new WorkerService.Client(protocol);
-      tTransport.open();
+      return callOnce(pooled, call);
     } catch (TTransportException e) {
-      e.printStackTrace();
+      if (!pooled.isReused() || (pooled.isRequestWritten() && !idempotent)) {
+        throw e;
+      }
+      logger.debug("pooled transport to {}:{} is stale, reconnect", host, port);
+      return callOnce(transportPool.create(host, port, timeout), call);
     }
   }
 
-  private void close() {
-    if (tTransport != null) {
-      tTransport.close();
+  private <T> T callOnce(PooledTransport pooled, Call<T> call) throws TException {
+    boolean success = false;
+    try {
+      T result = call.call(new WorkerService.Client(new TBinaryProtocol(pooled.beginCall())));
+      success = true;
+      return result;
+    } finally {
+      if (success) {
+        transportPool.release(pooled);
+      } else {
+        transportPool.invalidate(pooled);
+      }
     }
   }
 
-  public boolean scheduleExecFlow(int execId, long scheduleDate) {
-    connect();
+  public boolean scheduleExecFlow(final int execId, final long scheduleDate) {
     try {
-      client.scheduleExecFlow(execId, scheduleDate);
+      call(client -> client.scheduleExecFlow(execId, scheduleDate), false);
     } catch (TException e) {
       logger.error("report info error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public void execAdHoc(int id) throws TException {
-    connect();
-    try {
-      client.execAdHoc(id);
-    } finally {
-      close();
-    }
+  public void execAdHoc(final int id) throws TException {
+    call(client -> client.execAdHoc(id), false);
   }
 
   public boolean execFlow(int execId) throws TException {
@@ -116,29 +134,21 @@ public class ExecutorClient {
     return result;
   }
 
-  public boolean execFlowOne(int execId) throws TException {
-    connect();
+  public boolean execFlowOne(final int execId) throws TException {
     try {
-      RetInfo retInfo = client.execFlow(execId);
+      RetInfo retInfo = call(client -> client.execFlow(execId), false);
       if(retInfo.getStatus() != ResultHelper.SUCCESS.getStatus()){
         throw new ExecException(retInfo.getMsg());
       }
     } catch (TException e) {
       logger.error("exec flow error", e);
       throw e;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public RetInfo cancelExecFlow(int execId) throws TException {
-    connect();
-    try {
-      return client.cancelExecFlow(execId);
-    } finally {
-      close();
-    }
+  public RetInfo cancelExecFlow(final int execId) throws TException {
+    return call(client -> client.cancelExecFlow(execId), true);
   }
 
 }
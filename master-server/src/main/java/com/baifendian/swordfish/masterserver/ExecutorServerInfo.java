@@ -17,6 +17,12 @@ package com.baifendian.swordfish.masterserver;
 
 import com.baifendian.swordfish.rpc.HeartBeatData;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ExecutorServerInfo {
 
   private String host;
@@ -25,6 +31,16 @@ public class ExecutorServerInfo {
 
   private HeartBeatData heartBeatData;
 
+  /**
+   * 上次心跳之后 master 已经分发到该 executor 的 workflow, execId -> 分发时间
+   */
+  private Map<Integer, Long> dispatchedExecs = new ConcurrentHashMap<>();
+
+  /**
+   * master 收到心跳的时间, 使用 master 自己的时钟, 不受 executor 时钟差异的影响
+   */
+  private long receiveTime = System.currentTimeMillis();
+
   public String getHost() {
     return host;
   }
@@ -48,4 +64,70 @@ public class ExecutorServerInfo {
   public void setHeartBeatData(HeartBeatData heartBeatData) {
     this.heartBeatData = heartBeatData;
   }
+
+  public long getReceiveTime() {
+    return receiveTime;
+  }
+
+  public void setReceiveTime(long receiveTime) {
+    this.receiveTime = receiveTime;
+  }
+
+  public Map<Integer, Long> getDispatchedExecs() {
+    return dispatchedExecs;
+  }
+
+  public void setDispatchedExecs(Map<Integer, Long> dispatchedExecs) {
+    this.dispatchedExecs = dispatchedExecs;
+  }
+
+  /**
+   * 记录一个分发到该 executor 的 workflow <p>
+   */
+  public void addDispatchedExec(int execId) {
+    dispatchedExecs.put(execId, System.currentTimeMillis());
+  }
+
+  /**
+   * 心跳到达后, 去掉已经包含在心跳中的 workflow, 以及在上一次心跳到达之前分发的 workflow <p>
+   *
+   * 上一次心跳到达之前分发的 workflow 如果还在运行, 一定会包含在本次心跳中, 不在说明已经结束.
+   * 两个时间都是 master 的时钟.
+   *
+   * @param lastReceiveTime 上一次心跳到达 master 的时间
+   */
+  public void expireDispatchedExecs(long lastReceiveTime) {
+    if (heartBeatData == null) {
+      return;
+    }
+    Set<Integer> reported = heartBeatData.isSetExecIds() ? new HashSet<>(heartBeatData.getExecIds()) : new HashSet<Integer>();
+    Iterator<Map.Entry<Integer, Long>> iterator = dispatchedExecs.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Integer, Long> entry = iterator.next();
+      if (reported.contains(entry.getKey()) || entry.getValue() < lastReceiveTime) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * 正在运行的 workflow 数目, 包括心跳汇报的和心跳之后分发的 <p>
+   */
+  public int getRunningCount() {
+    int count = dispatchedExecs.size();
+    if (heartBeatData != null) {
+      count += heartBeatData.getExecIdsSize();
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutorServerInfo{" +
+        "host='" + host + '\'' +
+        ", port=" + port +
+        ", heartBeatData=" + heartBeatData +
+        ", dispatchedExecs=" + dispatchedExecs.keySet() +
+        '}';
+  }
 }
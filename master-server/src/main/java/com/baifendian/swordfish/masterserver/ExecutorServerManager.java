@@ -16,6 +16,9 @@
 package com.baifendian.swordfish.masterserver;
 
 import com.baifendian.swordfish.masterserver.exception.MasterException;
+import com.baifendian.swordfish.masterserver.selector.ExecutorSelector;
+import com.baifendian.swordfish.masterserver.selector.ExecutorSelectorFactory;
+import com.baifendian.swordfish.rpc.client.TransportPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +32,19 @@ public class ExecutorServerManager {
 
   private Map<String, ExecutorServerInfo> executorServers = new ConcurrentHashMap<>();
 
+  /**
+   * executor server 选择策略
+   */
+  private final ExecutorSelector executorSelector;
+
+  public ExecutorServerManager() {
+    this(ExecutorSelectorFactory.create());
+  }
+
+  public ExecutorServerManager(ExecutorSelector executorSelector) {
+    this.executorSelector = executorSelector;
+  }
+
   public synchronized ExecutorServerInfo addServer(String key, ExecutorServerInfo executorServerInfo) throws MasterException {
     if (executorServers.containsKey(key)) {
       throw new MasterException("executor is register");
@@ -40,28 +56,58 @@ public class ExecutorServerManager {
     if (!executorServers.containsKey(key)) {
       throw new MasterException("executor is not register");
     }
+    // 保留上次心跳之后分发的 workflow, 去掉已经包含在本次心跳中的
+    ExecutorServerInfo last = executorServers.get(key);
+    executorServerInfo.setDispatchedExecs(last.getDispatchedExecs());
+    executorServerInfo.expireDispatchedExecs(last.getReceiveTime());
     return executorServers.put(key, executorServerInfo);
   }
 
   /**
-   * 获取一个可用的executor server, 选取执行的workflow最少的那个excutorserver
+   * 获取一个可用的executor server, 按照配置的策略选取
    */
   public synchronized ExecutorServerInfo getExecutorServer() {
     logger.debug("executor servers:{}", executorServers.toString());
-    ExecutorServerInfo result = null;
+    List<ExecutorServerInfo> candidates = new ArrayList<>();
     for (ExecutorServerInfo executorServerInfo : executorServers.values()) {
       if (executorServerInfo.getHeartBeatData() == null) {
         continue;
       }
-      if (result == null) {
-        result = executorServerInfo;
-      } else {
-        if (result.getHeartBeatData().getExecIdsSize() > executorServerInfo.getHeartBeatData().getExecIdsSize()) {
-          result = executorServerInfo;
-        }
-      }
+      candidates.add(executorServerInfo);
+    }
+    if (candidates.isEmpty()) {
+      return null;
     }
-    return result;
+    return executorSelector.select(candidates);
+  }
+
+  /**
+   * 记录分发到 executor server 的 workflow, 在下次心跳之前计入该 executor 的负载 <p>
+   */
+  public synchronized void addDispatchedExec(ExecutorServerInfo executorServerInfo, int execId) {
+    String key = executorServerInfo.getHost() + ":" + executorServerInfo.getPort();
+    ExecutorServerInfo current = executorServers.get(key);
+    if (current != null) {
+      current.addDispatchedExec(execId);
+    }
+  }
+
+  /**
+   * 分发失败, 去掉之前记录的 workflow <p>
+   */
+  public synchronized void removeDispatchedExec(ExecutorServerInfo executorServerInfo, int execId) {
+    String key = executorServerInfo.getHost() + ":" + executorServerInfo.getPort();
+    ExecutorServerInfo current = executorServers.get(key);
+    if (current != null) {
+      current.getDispatchedExecs().remove(execId);
+    }
+  }
+
+  /**
+   * executor server 是否还在列表中, 超时或者连续出错后会被删除 <p>
+   */
+  public synchronized boolean containsServer(ExecutorServerInfo executorServerInfo) {
+    return executorServers.containsKey(executorServerInfo.getHost() + ":" + executorServerInfo.getPort());
   }
 
   public synchronized List<ExecutorServerInfo> checkTimeoutServer(long timeoutInterval) {
@@ -70,11 +116,12 @@ public class ExecutorServerManager {
     for (Map.Entry<String, ExecutorServerInfo> entry : executorServers.entrySet()) {
       logger.debug("{} {}", entry.getKey(), entry.getValue().getHeartBeatData());
       long nowTime = System.currentTimeMillis();
-      long diff = nowTime - entry.getValue().getHeartBeatData().getReportDate();
+      long diff = nowTime - entry.getValue().getReceiveTime();
       if (diff > timeoutInterval) {
         logger.warn("executor server time out {}", entry.getKey());
         executorServers.remove(entry.getKey());
         faultServers.add(entry.getValue());
+        TransportPool.getInstance().clear(entry.getValue().getHost(), entry.getValue().getPort());
       }
     }
     return faultServers;
@@ -82,6 +129,7 @@ public class ExecutorServerManager {
 
   public synchronized ExecutorServerInfo removeServer(ExecutorServerInfo executorServerInfo) {
     String key = executorServerInfo.getHost() + ":" + executorServerInfo.getPort();
+    TransportPool.getInstance().clear(executorServerInfo.getHost(), executorServerInfo.getPort());
     return executorServers.remove(key);
   }
 
@@ -33,6 +33,26 @@ public class MasterConfig {
    */
   public static int executionFlowQueueSize;
 
+  /**
+   * 每个 executor server 并行提交的线程数, 默认为 4
+   */
+  public static int dispatchParallelism;
+
+  /**
+   * 每个 executor server 等待提交的队列大小, 默认为 1000
+   */
+  public static int dispatchQueueSize;
+
+  /**
+   * 提交失败后重试的初始等待时间(每次翻倍), 单位: 毫秒, 默认为 1000
+   */
+  public static long dispatchRetryBackoff;
+
+  /**
+   * 提交失败后重试的最大等待时间, 单位: 毫秒, 默认为 30000
+   */
+  public static long dispatchRetryMaxBackoff;
+
   public static int heartBeatCheckInterval;
 
   public static int heartBeatTimeoutInterval;
@@ -43,6 +63,35 @@ public class MasterConfig {
 
   public static int masterPort;
 
+  /**
+   * executor server 选择策略, least_flows, weighted_load 或者 power_of_two, 默认为 least_flows
+   */
+  public static String executorSelector;
+
+  /**
+   * weighted_load 策略中 workflow 数目, cpu 和内存的权重
+   */
+  public static double executorSelectorFlowsWeight;
+
+  public static double executorSelectorCpuWeight;
+
+  public static double executorSelectorMemWeight;
+
+  /**
+   * 执行记录在热表中保留的天数, 超过后移到归档表, 0 表示不归档, 默认为 90
+   */
+  public static int archiveRetentionDays;
+
+  /**
+   * 归档检测的间隔, 单位: 分钟, 默认为 60
+   */
+  public static int archiveInterval;
+
+  /**
+   * 每批归档的执行数, 默认为 500
+   */
+  public static int archiveBatchSize;
+
   private static final String MASTER_MIN_THREADS = "master.min.threads";
   private static final String MASTER_MAX_THREADS = "master.max.threads";
   private static final String MASTER_PORT = "master.port";
@@ -58,10 +107,21 @@ public class MasterConfig {
 
     failRetryCount = conf.getInt("masterToWorker.failRetry.count", 2);
     executionFlowQueueSize = conf.getInt("masterToWorker.executionFlow.queueSize", 10000);
+    dispatchParallelism = conf.getInt("masterToWorker.dispatch.parallelism", 4);
+    dispatchQueueSize = conf.getInt("masterToWorker.dispatch.queueSize", 1000);
+    dispatchRetryBackoff = conf.getLong("masterToWorker.retry.backoff", 1000);
+    dispatchRetryMaxBackoff = conf.getLong("masterToWorker.retry.maxBackoff", 30000);
     heartBeatTimeoutInterval = conf.getInt("master.heartbeat.timeout.interval", 60) * 1000;
     heartBeatCheckInterval = conf.getInt("master.heartbeat.check.interval", 30);
     masterMinThreads = conf.getInt(MASTER_MIN_THREADS, 50);
     masterMaxThreads = conf.getInt(MASTER_MAX_THREADS, 200);
     masterPort = conf.getInt(MASTER_PORT, 9999);
+    executorSelector = conf.getString("master.executor.selector", "least_flows");
+    executorSelectorFlowsWeight = conf.getDouble("master.executor.selector.weight.flows", 1.0);
+    executorSelectorCpuWeight = conf.getDouble("master.executor.selector.weight.cpu", 1.0);
+    executorSelectorMemWeight = conf.getDouble("master.executor.selector.weight.mem", 1.0);
+    archiveRetentionDays = conf.getInt("master.archive.retention.days", 90);
+    archiveInterval = conf.getInt("master.archive.interval", 60);
+    archiveBatchSize = conf.getInt("master.archive.batch.size", 500);
   }
 }
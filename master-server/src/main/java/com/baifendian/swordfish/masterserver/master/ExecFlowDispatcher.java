@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.master;
+
+import com.baifendian.swordfish.dao.FlowDao;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import com.baifendian.swordfish.masterserver.ExecutorClient;
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+import com.baifendian.swordfish.masterserver.ExecutorServerManager;
+import com.baifendian.swordfish.masterserver.config.MasterConfig;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提交 exec flow 到 exec-server 的分发线程 <p>
+ *
+ * 分发线程只负责从 workflow 执行队列中取出 workflow 并选择 executor server, 真正的提交在每个 executor server 各自的线程池中进行,
+ * 一个 executor server 变慢或者宕机不会影响其他 executor server 的提交. 提交失败的 workflow 按照指数退避延迟放回执行队列, 不阻塞任何线程.
+ */
+public class ExecFlowDispatcher extends Thread {
+
+  /**
+   * LOGGER
+   */
+  private final Logger logger = LoggerFactory.getLogger(ExecFlowDispatcher.class);
+
+  /**
+   * 没有可用的 executor server 时的等待时间, 单位: 毫秒
+   */
+  private static final long NO_EXECUTOR_DELAY = 5000;
+
+  /**
+   * executor server manager
+   */
+  private final ExecutorServerManager executorServerManager;
+
+  /**
+   * {@link FlowDao}
+   */
+  private final FlowDao flowDao;
+
+  /**
+   * workflow 执行队列
+   */
+  private final BlockingQueue<ExecFlowInfo> executionFlowQueue;
+
+  /**
+   * executor server(host:port) -> 提交线程池
+   */
+  private final Map<String, ThreadPoolExecutor> executorPools = new ConcurrentHashMap<>();
+
+  /**
+   * executor server(host:port) -> 连续提交失败的次数, 提交成功后清零
+   */
+  private final Map<String, AtomicInteger> serverFailures = new ConcurrentHashMap<>();
+
+  /**
+   * 延迟重试
+   */
+  private final ScheduledExecutorService retryScheduler;
+
+  /**
+   * 是否已经关闭, 关闭后不再延迟重试
+   */
+  private volatile boolean stopped = false;
+
+  /**
+   * @param executorServerManager
+   * @param flowDao
+   * @param executionFlowQueue
+   */
+  public ExecFlowDispatcher(ExecutorServerManager executorServerManager, FlowDao flowDao, BlockingQueue<ExecFlowInfo> executionFlowQueue) {
+    this.executorServerManager = executorServerManager;
+    this.flowDao = flowDao;
+    this.executionFlowQueue = executionFlowQueue;
+    this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Master-dispatchRetry"));
+
+    this.setName("Master-dispatchExecFlow");
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      ExecFlowInfo execFlowInfo;
+      try {
+        execFlowInfo = executionFlowQueue.take();
+        logger.info("get execution flow from queue, exec info:{}", execFlowInfo);
+      } catch (InterruptedException e) {
+        logger.error(e.getMessage(), e);
+        break; // 中断则退出
+      }
+
+      try {
+        dispatch(execFlowInfo);
+      } catch (Exception e) {
+        logger.error("dispatch exec flow error, exec info:" + execFlowInfo, e);
+        retryLater(execFlowInfo, NO_EXECUTOR_DELAY);
+      }
+    }
+  }
+
+  /**
+   * 选择 executor server, 并放入它的提交线程池 <p>
+   */
+  private void dispatch(ExecFlowInfo execFlowInfo) {
+    ExecutorServerInfo executorServerInfo = executorServerManager.getExecutorServer();
+    if (executorServerInfo == null) {
+      logger.error("can't found active executor server, retry exec id:{} after {} ms", execFlowInfo.getExecId(), NO_EXECUTOR_DELAY);
+      retryLater(execFlowInfo, NO_EXECUTOR_DELAY);
+      return;
+    }
+
+    logger.info("execId:{} submit to exec {}:{}", execFlowInfo.getExecId(), executorServerInfo.getHost(), executorServerInfo.getPort());
+
+    // 提交之前就计入该 executor 的负载, 避免同一批 workflow 都选中同一个 executor
+    executorServerManager.addDispatchedExec(executorServerInfo, execFlowInfo.getExecId());
+    try {
+      getExecutorPool(executorServerInfo).execute(new SubmitTask(execFlowInfo, executorServerInfo));
+    } catch (RejectedExecutionException e) {
+      executorServerManager.removeDispatchedExec(executorServerInfo, execFlowInfo.getExecId());
+      if (isPoolShutdown(executorServerInfo)) {
+        // executor server 刚刚被删除, 线程池已经关闭, 马上重新分发
+        executionFlowQueue.offer(execFlowInfo);
+      } else {
+        // 该 executor 的提交队列已满, 稍后再分发
+        logger.warn("submit queue of {} is full, retry exec id:{} after {} ms", workerKey(executorServerInfo), execFlowInfo.getExecId(), NO_EXECUTOR_DELAY);
+        retryLater(execFlowInfo, NO_EXECUTOR_DELAY);
+      }
+    }
+  }
+
+  private ThreadPoolExecutor getExecutorPool(ExecutorServerInfo executorServerInfo) {
+    return executorPools.computeIfAbsent(workerKey(executorServerInfo), key -> {
+      int parallelism = Math.max(1, MasterConfig.dispatchParallelism);
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(Math.max(1, MasterConfig.dispatchQueueSize)), new NamedThreadFactory("Master-submit-" + key));
+      pool.allowCoreThreadTimeOut(true);
+      return pool;
+    });
+  }
+
+  private boolean isPoolShutdown(ExecutorServerInfo executorServerInfo) {
+    ThreadPoolExecutor pool = executorPools.get(workerKey(executorServerInfo));
+    return pool == null || pool.isShutdown();
+  }
+
+  /**
+   * 延迟一段时间后放回执行队列 <p>
+   */
+  private void retryLater(final ExecFlowInfo execFlowInfo, long delay) {
+    // 已经关闭, 不再重试, 下次启动时由恢复逻辑重新调度
+    if (stopped) {
+      return;
+    }
+
+    try {
+      retryScheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (!executionFlowQueue.offer(execFlowInfo)) {
+            logger.error("execution flow queue is full, drop exec info:{}", execFlowInfo);
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // shutdown 和这里并发时, stopped 的检查可能已经过去了
+      logger.warn("dispatcher is stopped, give up retry of exec info:{}", execFlowInfo);
+    }
+  }
+
+  /**
+   * 第 n 次重试的等待时间 <p>
+   */
+  private long backoff(int retries) {
+    long delay = MasterConfig.dispatchRetryBackoff << Math.min(Math.max(retries - 1, 0), 16);
+    return Math.min(delay, MasterConfig.dispatchRetryMaxBackoff);
+  }
+
+  /**
+   * 最多尝试的次数, 第一次提交加上失败重试的次数 <p>
+   */
+  private int maxAttempts() {
+    return MasterConfig.failRetryCount + 1;
+  }
+
+  /**
+   * 提交到 executor server 出错: workflow 延迟后重新分发 (可能选中其它 executor), <p>
+   * 同一个 executor server 连续出错达到重试次数时删除它, 并重新分发它上面的 workflow.
+   */
+  private void onExecutorServerError(ExecFlowInfo execFlowInfo, ExecutorServerInfo executorServerInfo) {
+    execFlowInfo.setServerErrorCount(execFlowInfo.getServerErrorCount() + 1);
+
+    String key = workerKey(executorServerInfo);
+    AtomicInteger failures = serverFailures.computeIfAbsent(key, k -> new AtomicInteger());
+
+    if (failures.incrementAndGet() < maxAttempts()) {
+      retryLater(execFlowInfo, backoff(execFlowInfo.getServerErrorCount()));
+      return;
+    }
+
+    /** executor server 连续出错，将执行数据放回队列，将该executor server从executor server列表删除 */
+    serverFailures.remove(key);
+    execFlowInfo.setServerErrorCount(0);
+    executionFlowQueue.offer(execFlowInfo);
+    logger.info("connect to executor server error {} times, remove {}", maxAttempts(), key);
+    ExecutorServerInfo removedExecutionServerInfo = executorServerManager.removeServer(executorServerInfo);
+    ThreadPoolExecutor pool = executorPools.remove(key);
+    if (pool != null) {
+      pool.shutdown();
+    }
+    if (removedExecutionServerInfo != null) {
+      resubmitExecFlow(removedExecutionServerInfo);
+    }
+  }
+
+  /**
+   * 提交成功, 清零该 executor server 的连续失败次数 <p>
+   */
+  private void onSubmitSuccess(ExecutorServerInfo executorServerInfo) {
+    AtomicInteger failures = serverFailures.get(workerKey(executorServerInfo));
+    if (failures != null) {
+      failures.set(0);
+    }
+  }
+
+  /**
+   * 内部错误: 没有达到重试次数则延迟重试, 否则认为执行失败 <p>
+   */
+  private void onInnerError(ExecFlowInfo execFlowInfo) {
+    execFlowInfo.setInnerErrorCount(execFlowInfo.getInnerErrorCount() + 1);
+    if (execFlowInfo.getInnerErrorCount() < maxAttempts()) {
+      retryLater(execFlowInfo, backoff(execFlowInfo.getInnerErrorCount()));
+      return;
+    }
+    flowDao.updateExecutionFlowStatus(execFlowInfo.getExecId(), FlowStatus.FAILED);
+  }
+
+  private void resubmitExecFlow(ExecutorServerInfo executorServerInfo) {
+    // 这里使用数据库查询到的数据保证准确性，避免内存数据出现不一致的情况
+    List<ExecutionFlow> executionFlows = flowDao.queryNoFinishFlow(workerKey(executorServerInfo));
+    if (!CollectionUtils.isEmpty(executionFlows)) {
+      logger.info("executor server {} fault, execIds size:{} ", executorServerInfo, executionFlows.size());
+      for (ExecutionFlow execFlow : executionFlows) {
+        Integer execId = execFlow.getId();
+        logger.info("reschedule workflow execId:{} ", execId);
+        ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
+        if (executionFlow != null) {
+          if (!executionFlow.getStatus().typeIsFinished()) {
+            logger.info("executor server fault reschedule workflow execId:{}", execId);
+            executionFlowQueue.offer(new ExecFlowInfo(executionFlow.getId()));
+          }
+        } else {
+          logger.warn("executor server fault reschedule workflow execId:{} not exists", execId);
+        }
+      }
+    }
+  }
+
+  /**
+   * 关闭所有提交线程池 <p>
+   */
+  public void shutdown() {
+    stopped = true;
+    this.interrupt();
+    retryScheduler.shutdownNow();
+    for (ThreadPoolExecutor pool : executorPools.values()) {
+      pool.shutdownNow();
+    }
+    executorPools.clear();
+    serverFailures.clear();
+  }
+
+  private static String workerKey(ExecutorServerInfo executorServerInfo) {
+    return String.format("%s:%d", executorServerInfo.getHost(), executorServerInfo.getPort());
+  }
+
+  /**
+   * 提交一个 workflow 到指定的 executor server, 只请求一次, 失败后交给重试逻辑 <p>
+   */
+  private class SubmitTask implements Runnable {
+
+    private final ExecFlowInfo execFlowInfo;
+
+    private final ExecutorServerInfo executorServerInfo;
+
+    SubmitTask(ExecFlowInfo execFlowInfo, ExecutorServerInfo executorServerInfo) {
+      this.execFlowInfo = execFlowInfo;
+      this.executorServerInfo = executorServerInfo;
+    }
+
+    @Override
+    public void run() {
+      int execId = execFlowInfo.getExecId();
+
+      if (stopped) {
+        return;
+      }
+
+      // 在队列中等待的时候 executor server 可能已经被删除了 (超时或者连续出错), 不再向它提交, 重新分发
+      if (!executorServerManager.containsServer(executorServerInfo)) {
+        logger.warn("executor server {} is removed, redispatch exec id:{}", workerKey(executorServerInfo), execId);
+        executionFlowQueue.offer(execFlowInfo);
+        return;
+      }
+
+      try {
+        ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
+        // 执行被取消
+        if (executionFlow == null) {
+          executorServerManager.removeDispatchedExec(executorServerInfo, execId);
+          return;
+        }
+        executionFlow.setWorker(workerKey(executorServerInfo));
+        ExecutorClient executorClient = new ExecutorClient(executorServerInfo);
+        executorClient.execFlowOne(execId);
+        onSubmitSuccess(executorServerInfo);
+        flowDao.updateExecutionFlow(executionFlow);
+      } catch (TException e) {
+        executorServerManager.removeDispatchedExec(executorServerInfo, execId);
+        // 如果执行被取消，结束重试请求
+        if (flowDao.queryExecutionFlow(execId) == null) {
+          return;
+        }
+        logger.error("run executor get error", e);
+        onExecutorServerError(execFlowInfo, executorServerInfo);
+      } catch (Exception e) { // 内部错误
+        executorServerManager.removeDispatchedExec(executorServerInfo, execId);
+        logger.error("inner error", e);
+        onInnerError(execFlowInfo);
+      }
+    }
+  }
+
+  /**
+   * 带名称的守护线程 <p>
+   */
+  private static class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -18,6 +18,17 @@ package com.baifendian.swordfish.masterserver.master;
 public class ExecFlowInfo {
   private int execId;
 
+  /**
+   * 提交到 executor server 出错的次数, 可能是不同的 executor, 只用于计算重试的等待时间;
+   * 是否删除 executor server 按照该 executor 自己的连续失败次数判断
+   */
+  private int serverErrorCount;
+
+  /**
+   * 提交时内部出错的次数
+   */
+  private int innerErrorCount;
+
   public ExecFlowInfo(){
   }
 
@@ -34,6 +45,22 @@ public class ExecFlowInfo {
     return this;
   }
 
+  public int getServerErrorCount() {
+    return serverErrorCount;
+  }
+
+  public void setServerErrorCount(int serverErrorCount) {
+    this.serverErrorCount = serverErrorCount;
+  }
+
+  public int getInnerErrorCount() {
+    return innerErrorCount;
+  }
+
+  public void setInnerErrorCount(int innerErrorCount) {
+    this.innerErrorCount = innerErrorCount;
+  }
+
   @Override
   public String toString(){
     return String.format("execId:%d", execId);
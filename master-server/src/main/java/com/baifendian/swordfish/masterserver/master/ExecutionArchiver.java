@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.master;
+
+import com.baifendian.swordfish.dao.FlowDao;
+import org.apache.commons.lang3.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+/**
+ * 执行记录归档线程, 把超过保留期的已结束执行从热表移到归档表 <p>
+ */
+public class ExecutionArchiver implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExecutionArchiver.class);
+
+  private final FlowDao flowDao;
+
+  /**
+   * 保留天数
+   */
+  private final int retentionDays;
+
+  /**
+   * 每批归档的执行数
+   */
+  private final int batchSize;
+
+  public ExecutionArchiver(FlowDao flowDao, int retentionDays, int batchSize) {
+    this.flowDao = flowDao;
+    this.retentionDays = retentionDays;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void run() {
+    Date before = DateUtils.addDays(new Date(), -retentionDays);
+
+    try {
+      long start = System.currentTimeMillis();
+      int count = flowDao.archiveExecutionFlows(before, batchSize);
+
+      if (count > 0) {
+        logger.info("archive {} executions ended before {}, cost {} ms", count, before,
+            System.currentTimeMillis() - start);
+      }
+    } catch (Exception e) {
+      logger.error("archive executions get error", e);
+    }
+  }
+}
@@ -57,17 +57,24 @@ public class FlowExecManager {
   private final FlowDao flowDao;
 
   /**
-   * 检测依赖的等待时间，默认 30 s
+   * workflow 执行结束的通知
+   */
+  private final FlowStatusNotifier flowStatusNotifier;
+
+  /**
+   * 没有收到通知时, 检测执行状态的间隔，默认 30 s
    */
   private static long checkInterval = 30 * 1000;
 
   /**
    * @param master
    * @param flowDao
+   * @param flowStatusNotifier
    */
-  public FlowExecManager(Master master, FlowDao flowDao) {
+  public FlowExecManager(Master master, FlowDao flowDao, FlowStatusNotifier flowStatusNotifier) {
     this.master = master;
     this.flowDao = flowDao;
+    this.flowStatusNotifier = flowStatusNotifier;
 
     ThreadFactory flowThreadFactory = new ThreadFactoryBuilder().setNameFormat("Scheduler-Master-AddData").build();
     appendFlowExecutorService = Executors.newCachedThreadPool(flowThreadFactory);
@@ -131,12 +138,7 @@ public class FlowExecManager {
    */
   private boolean checkExecStatus(int execId) {
     while (true) {
-      try {
-        Thread.sleep(checkInterval);
-      } catch (InterruptedException e) {
-        logger.error(e.getMessage(), e);
-        return false;
-      }
+      long version = flowStatusNotifier.execVersion(execId);
 
       ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
       if (executionFlow.getStatus().typeIsSuccess()) {
@@ -144,6 +146,14 @@ public class FlowExecManager {
       } else if (executionFlow.getStatus().typeIsFinished()) {
         return false;
       }
+
+      // 等待执行结束的通知, 收不到通知时按照间隔重新检测
+      try {
+        flowStatusNotifier.awaitExec(execId, version, checkInterval);
+      } catch (InterruptedException e) {
+        logger.error(e.getMessage(), e);
+        return false;
+      }
     }
   }
 
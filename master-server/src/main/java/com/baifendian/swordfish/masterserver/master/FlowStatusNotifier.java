@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.master;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * workflow 执行结束的通知中心 <p>
+ *
+ * exec-server 汇报 workflow 结束后, 唤醒等待该执行(execId)或者该 workflow(flowId)的线程. 等待方仍然以数据库为准,
+ * 通知只是提前结束等待: 先取版本号, 再查询数据库, 最后按照版本号等待, 这样查询和等待之间到达的通知也不会丢失.
+ * 收不到通知时(比如 master 重启或者 exec-server 汇报失败)等待超时后回退到数据库轮询.
+ */
+public class FlowStatusNotifier {
+
+  /**
+   * execId -> 信号
+   */
+  private final Map<Integer, Signal> execSignals = new ConcurrentHashMap<>();
+
+  /**
+   * flowId -> 信号
+   */
+  private final Map<Integer, Signal> flowSignals = new ConcurrentHashMap<>();
+
+  /**
+   * workflow 结束的监听者
+   */
+  private final List<FlowListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * workflow 结束的监听者, 在通知线程中回调, 不能阻塞 <p>
+   */
+  public interface FlowListener {
+    void onFlowFinished(int execId, int flowId);
+  }
+
+  /**
+   * 添加监听者 <p>
+   */
+  public void addListener(FlowListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * 某个执行当前的版本号 <p>
+   */
+  public long execVersion(int execId) {
+    return getSignal(execSignals, execId).version();
+  }
+
+  /**
+   * 某个 workflow 当前的版本号 <p>
+   */
+  public long flowVersion(int flowId) {
+    return getSignal(flowSignals, flowId).version();
+  }
+
+  /**
+   * 等待某个执行结束的通知 <p>
+   *
+   * @param version 查询数据库之前取得的版本号
+   * @param timeout 最长等待时间, 单位: 毫秒
+   * @return 是否收到了通知
+   */
+  public boolean awaitExec(int execId, long version, long timeout) throws InterruptedException {
+    return getSignal(execSignals, execId).await(version, timeout);
+  }
+
+  /**
+   * 等待某个 workflow 的任意一次执行结束的通知 <p>
+   *
+   * @see #awaitExec(int, long, long)
+   */
+  public boolean awaitFlow(int flowId, long version, long timeout) throws InterruptedException {
+    return getSignal(flowSignals, flowId).await(version, timeout);
+  }
+
+  /**
+   * 通知某个执行的状态发生了变化 <p>
+   *
+   * @param flowId 可以为 null
+   */
+  public void notifyFlowStatus(int execId, Integer flowId) {
+    getSignal(execSignals, execId).signal();
+    if (flowId != null) {
+      getSignal(flowSignals, flowId).signal();
+      for (FlowListener listener : listeners) {
+        listener.onFlowFinished(execId, flowId);
+      }
+    }
+  }
+
+  /**
+   * 清理长时间没有使用并且没有等待者的信号 <p>
+   *
+   * @param maxIdle 最长空闲时间, 单位: 毫秒
+   */
+  public void expire(long maxIdle) {
+    long now = System.currentTimeMillis();
+    expire(execSignals, now - maxIdle);
+    expire(flowSignals, now - maxIdle);
+  }
+
+  private void expire(Map<Integer, Signal> signals, long deadline) {
+    Iterator<Map.Entry<Integer, Signal>> iterator = signals.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getValue().isIdleSince(deadline)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private Signal getSignal(Map<Integer, Signal> signals, int key) {
+    Signal signal = signals.get(key);
+    if (signal == null) {
+      signals.putIfAbsent(key, new Signal());
+      signal = signals.get(key);
+    }
+    return signal;
+  }
+
+  /**
+   * 带版本号的信号 <p>
+   */
+  private static class Signal {
+
+    private long version = 0;
+
+    private int waiters = 0;
+
+    private long lastTouched = System.currentTimeMillis();
+
+    synchronized long version() {
+      lastTouched = System.currentTimeMillis();
+      return version;
+    }
+
+    synchronized void signal() {
+      lastTouched = System.currentTimeMillis();
+      version++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long since, long timeout) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeout;
+      waiters++;
+      try {
+        long remaining = timeout;
+        while (version == since && remaining > 0) {
+          wait(remaining);
+          remaining = deadline - System.currentTimeMillis();
+        }
+        return version != since;
+      } finally {
+        waiters--;
+        lastTouched = System.currentTimeMillis();
+      }
+    }
+
+    synchronized boolean isIdleSince(long deadline) {
+      return waiters == 0 && lastTouched < deadline;
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.baifendian.swordfish.masterserver.master;
 
 import com.baifendian.swordfish.common.job.exception.ExecException;
 import com.baifendian.swordfish.dao.FlowDao;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
 import com.baifendian.swordfish.dao.model.ExecutionFlow;
 import com.baifendian.swordfish.dao.model.ProjectFlow;
 import com.baifendian.swordfish.rpc.HeartBeatData;
@@ -26,6 +27,7 @@ import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
 import com.baifendian.swordfish.masterserver.ExecutorServerManager;
 import com.baifendian.swordfish.masterserver.config.MasterConfig;
 import com.baifendian.swordfish.masterserver.exception.MasterException;
+import com.baifendian.swordfish.masterserver.quartz.DepWaitManager;
 import com.baifendian.swordfish.masterserver.quartz.FlowScheduleJob;
 import org.apache.thrift.TException;
 import org.quartz.CronExpression;
@@ -50,9 +52,9 @@ public class Master {
   private final FlowDao flowDao;
 
   /**
-   * {@link Submit2ExecutorServerThread}
+   * {@link ExecFlowDispatcher}
    */
-  private Submit2ExecutorServerThread retryToWorkerThread;
+  private ExecFlowDispatcher execFlowDispatcher;
 
   /**
    * executor server服务检查线程
@@ -61,6 +63,26 @@ public class Master {
 
   private ScheduledExecutorService executorService;
 
+  /**
+   * workflow 执行结束的通知
+   */
+  private final FlowStatusNotifier flowStatusNotifier = new FlowStatusNotifier();
+
+  /**
+   * 通知信号的最长空闲时间, 单位: 毫秒
+   */
+  private static final long NOTIFIER_MAX_IDLE = 3600 * 1000;
+
+  /**
+   * 依赖等待管理
+   */
+  private DepWaitManager depWaitManager;
+
+  /**
+   * 没有收到通知时, 检测依赖的间隔, 单位: 毫秒
+   */
+  private static final long DEP_CHECK_INTERVAL = 30 * 1000;
+
   public Master(FlowDao flowDao){
     this.flowDao = flowDao;
     executorServerManager = new ExecutorServerManager();
@@ -69,19 +91,33 @@ public class Master {
   }
 
   public void run(){
-    flowExecManager = new FlowExecManager(this, flowDao);
+    flowExecManager = new FlowExecManager(this, flowDao, flowStatusNotifier);
     // 初始化调度作业
-    FlowScheduleJob.init(executionFlowQueue, flowDao);
+    depWaitManager = new DepWaitManager(flowDao, executionFlowQueue, flowStatusNotifier, DEP_CHECK_INTERVAL);
+    FlowScheduleJob.init(executionFlowQueue, flowDao, depWaitManager);
 
     // 启动请求 executor server的处理线程
-    retryToWorkerThread = new Submit2ExecutorServerThread(executorServerManager, flowDao, executionFlowQueue);
-    retryToWorkerThread.setDaemon(true);
-    retryToWorkerThread.start();
+    execFlowDispatcher = new ExecFlowDispatcher(executorServerManager, flowDao, executionFlowQueue);
+    execFlowDispatcher.setDaemon(true);
+    execFlowDispatcher.start();
 
     executorCheckThread = new ExecutorCheckThread(executorServerManager, MasterConfig.heartBeatTimeoutInterval,
             executionFlowQueue, flowDao);
     executorService.scheduleAtFixedRate(executorCheckThread, 10, MasterConfig.heartBeatCheckInterval, TimeUnit.SECONDS);
 
+    executorService.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        flowStatusNotifier.expire(NOTIFIER_MAX_IDLE);
+      }
+    }, 10, 10, TimeUnit.MINUTES);
+
+    if (MasterConfig.archiveRetentionDays > 0) {
+      ExecutionArchiver executionArchiver = new ExecutionArchiver(flowDao, MasterConfig.archiveRetentionDays,
+          MasterConfig.archiveBatchSize);
+      executorService.scheduleWithFixedDelay(executionArchiver, 1, MasterConfig.archiveInterval, TimeUnit.MINUTES);
+    }
+
     recoveryExecFlow();
   }
 
@@ -89,6 +125,8 @@ public class Master {
     if(!executorService.isShutdown()){
       executorService.shutdownNow();
     }
+    execFlowDispatcher.shutdown();
+    depWaitManager.destroy();
     flowExecManager.destroy();
   }
 
@@ -179,6 +217,18 @@ public class Master {
     executorServerManager.updateServer(key, executorServerInfo);
   }
 
+  /**
+   * exec-server 汇报 workflow 的状态, 结束时唤醒等待的任务
+   */
+  public void reportFlowStatus(int execId, FlowStatus status) {
+    logger.debug("exec id:{} report status:{}", execId, status);
+    if (!status.typeIsFinished()) {
+      return;
+    }
+    ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
+    flowStatusNotifier.notifyFlowStatus(execId, executionFlow != null ? executionFlow.getFlowId() : null);
+  }
+
   public RetInfo cancelExecFlow(int execId) throws TException {
     ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
     if(executionFlow == null) {
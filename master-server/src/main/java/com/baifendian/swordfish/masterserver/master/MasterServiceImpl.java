@@ -19,6 +19,7 @@ import com.baifendian.swordfish.dao.AdHocDao;
 import com.baifendian.swordfish.dao.DaoFactory;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.enums.ExecType;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
 import com.baifendian.swordfish.dao.enums.NodeDepType;
 import com.baifendian.swordfish.dao.enums.NotifyType;
 import com.baifendian.swordfish.dao.model.AdHoc;
@@ -249,4 +250,18 @@ public class MasterServiceImpl implements Iface {
       return ResultHelper.createErrorResult(e.getMessage());
     }
   }
+
+  /**
+   * execServer 汇报 workflow 的状态变化
+   */
+  @Override
+  public RetInfo reportFlowStatus(int execId, int status) throws TException {
+    try {
+      master.reportFlowStatus(execId, FlowStatus.valueOfType(status));
+    } catch (Exception e) {
+      LOGGER.warn("report flow status error", e);
+      return ResultHelper.createErrorResult(e.getMessage());
+    }
+    return ResultHelper.SUCCESS;
+  }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.quartz;
+
+import com.baifendian.swordfish.common.mail.EmailManager;
+import com.baifendian.swordfish.dao.FlowDao;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import com.baifendian.swordfish.masterserver.master.ExecFlowInfo;
+import com.baifendian.swordfish.masterserver.master.FlowStatusNotifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 依赖等待管理 <p>
+ *
+ * 调度作业插入 WAITING_DEP 的执行后交给这里, Quartz 线程立即返回. 依赖的 workflow 结束时({@link FlowStatusNotifier})
+ * 重新检测等待它的执行, 另外按照固定的间隔兜底检测并处理超时. 依赖成功后放入 workflow 执行队列, 失败或超时则置为 DEP_FAILED.
+ */
+public class DepWaitManager implements FlowStatusNotifier.FlowListener {
+
+  /**
+   * LOGGER
+   */
+  private final Logger logger = LoggerFactory.getLogger(DepWaitManager.class);
+
+  /**
+   * {@link FlowDao}
+   */
+  private final FlowDao flowDao;
+
+  /**
+   * workflow 执行队列
+   */
+  private final BlockingQueue<ExecFlowInfo> executionFlowQueue;
+
+  /**
+   * workflow 结束的通知
+   */
+  private final FlowStatusNotifier flowStatusNotifier;
+
+  /**
+   * 没有收到通知时, 检测依赖的间隔, 单位: 毫秒
+   */
+  private final long checkInterval;
+
+  /**
+   * 依赖的 workflow id -> 等待它的执行
+   */
+  private final Map<Integer, Set<DepWaitTask>> waitingTasks = new ConcurrentHashMap<>();
+
+  /**
+   * 检测和超时的定时器
+   */
+  private final ScheduledExecutorService scheduler;
+
+  public DepWaitManager(FlowDao flowDao, BlockingQueue<ExecFlowInfo> executionFlowQueue, FlowStatusNotifier flowStatusNotifier, long checkInterval) {
+    this.flowDao = flowDao;
+    this.executionFlowQueue = executionFlowQueue;
+    this.flowStatusNotifier = flowStatusNotifier;
+    this.checkInterval = checkInterval;
+    this.scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+      private final AtomicInteger threadNum = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Master-DepWait-" + threadNum.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    flowStatusNotifier.addListener(this);
+  }
+
+  /**
+   * 添加一个等待依赖的执行, 不阻塞调用线程 <p>
+   */
+  public void register(final DepWaitTask task) {
+    for (Integer flowId : task.getDepFlowIds()) {
+      Set<DepWaitTask> tasks = waitingTasks.get(flowId);
+      if (tasks == null) {
+        waitingTasks.putIfAbsent(flowId, Collections.newSetFromMap(new ConcurrentHashMap<DepWaitTask, Boolean>()));
+        tasks = waitingTasks.get(flowId);
+      }
+      tasks.add(task);
+    }
+    submitCheck(task);
+  }
+
+  @Override
+  public void onFlowFinished(int execId, int flowId) {
+    Set<DepWaitTask> tasks = waitingTasks.get(flowId);
+    if (tasks == null) {
+      return;
+    }
+    for (DepWaitTask task : tasks) {
+      submitCheck(task);
+    }
+  }
+
+  /**
+   * 当前等待依赖的执行数目 <p>
+   */
+  public int getWaitingCount() {
+    int count = 0;
+    for (Set<DepWaitTask> tasks : waitingTasks.values()) {
+      count += tasks.size();
+    }
+    return count;
+  }
+
+  public void destroy() {
+    scheduler.shutdownNow();
+  }
+
+  private void submitCheck(final DepWaitTask task) {
+    scheduler.execute(new Runnable() {
+      @Override
+      public void run() {
+        check(task);
+      }
+    });
+  }
+
+  /**
+   * 检测一次依赖, 根据结果执行, 失败或者安排下一次检测 <p>
+   */
+  private void check(final DepWaitTask task) {
+    synchronized (task) {
+      if (task.isDone()) {
+        return;
+      }
+
+      DepStatus status;
+      try {
+        status = task.check(flowDao);
+      } catch (Exception e) {
+        logger.error("check dep error, exec id:" + task.getExecutionFlow().getId(), e);
+        status = DepStatus.WAITING;
+      }
+
+      long now = System.currentTimeMillis();
+      if (status == DepStatus.WAITING && now >= task.getDeadline()) {
+        logger.error("exec id:{} 等待依赖的 workflow 任务超时", task.getExecutionFlow().getId());
+        status = DepStatus.FAILED;
+      }
+
+      switch (status) {
+        case SUCCESS:
+          finish(task);
+          sendToExecution(task.getExecutionFlow());
+          break;
+        case FAILED:
+          finish(task);
+          depFailed(task.getExecutionFlow());
+          break;
+        default:
+          // 安排下一次兜底检测, 不超过截止时间
+          if (task.getNextCheck() != null) {
+            task.getNextCheck().cancel(false);
+          }
+          long delay = Math.max(0, Math.min(checkInterval, task.getDeadline() - now));
+          task.setNextCheck(scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              check(task);
+            }
+          }, delay, TimeUnit.MILLISECONDS));
+          break;
+      }
+    }
+  }
+
+  private void finish(DepWaitTask task) {
+    task.setDone(true);
+    if (task.getNextCheck() != null) {
+      task.getNextCheck().cancel(false);
+    }
+    for (Integer flowId : task.getDepFlowIds()) {
+      Set<DepWaitTask> tasks = waitingTasks.get(flowId);
+      if (tasks != null) {
+        tasks.remove(task);
+      }
+    }
+  }
+
+  /**
+   * 依赖成功, 发送执行任务到 worker <p>
+   */
+  private void sendToExecution(ExecutionFlow executionFlow) {
+    logger.info("exec id:{} deps ready, add to execution queue", executionFlow.getId());
+    executionFlowQueue.add(new ExecFlowInfo(executionFlow.getId()));
+  }
+
+  /**
+   * 依赖失败, 则当前任务也失败 <p>
+   */
+  private void depFailed(ExecutionFlow executionFlow) {
+    executionFlow.setStatus(FlowStatus.DEP_FAILED);
+    executionFlow.setEndTime(new Date());
+    flowDao.updateExecutionFlow(executionFlow);
+    logger.error("exec id:{} 依赖的 workflow 执行失败", executionFlow.getId());
+    // 发送邮件
+    if (executionFlow.getNotifyType().typeIsSendFailureMail()) {
+      EmailManager.sendEmail(executionFlow);
+    }
+    // 当前执行也结束了, 唤醒依赖它的执行
+    flowStatusNotifier.notifyFlowStatus(executionFlow.getId(), executionFlow.getFlowId());
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.quartz;
+
+import com.baifendian.swordfish.dao.FlowDao;
+import com.baifendian.swordfish.dao.enums.FlowStatus;
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import com.baifendian.swordfish.dao.model.Schedule;
+import org.apache.commons.collections.CollectionUtils;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 一个等待依赖(WAITING_DEP)的 workflow 执行 <p>
+ *
+ * 每次检测只查询一次数据库, 不做任何等待, 由 {@link DepWaitManager} 决定什么时候再次检测. <p>
+ *
+ * 只检测自依赖 (上一调度周期), 依赖其它 workflow 的检测在原来的实现中就是注释掉的, 这里保持一致.
+ */
+public class DepWaitTask {
+
+  /**
+   * 等待依赖的执行
+   */
+  private final ExecutionFlow executionFlow;
+
+  /**
+   * 调度信息
+   */
+  private final Schedule schedule;
+
+  /**
+   * 本次调度的时间
+   */
+  private final Date scheduledFireTime;
+
+  /**
+   * 自依赖的上一调度周期的时间, 不需要自依赖时为 null
+   */
+  private final Date previousFireTime;
+
+  /**
+   * 起始时间 (ms)
+   */
+  private final long startTime;
+
+  /**
+   * 下一次检测
+   */
+  private ScheduledFuture<?> nextCheck;
+
+  /**
+   * 是否已经结束等待
+   */
+  private boolean done = false;
+
+  public DepWaitTask(ExecutionFlow executionFlow, Schedule schedule, Date scheduledFireTime, Date previousFireTime, long startTime) {
+    this.executionFlow = executionFlow;
+    this.schedule = schedule;
+    this.scheduledFireTime = scheduledFireTime;
+    this.previousFireTime = previousFireTime;
+    this.startTime = startTime;
+  }
+
+  public ExecutionFlow getExecutionFlow() {
+    return executionFlow;
+  }
+
+  public Date getScheduledFireTime() {
+    return scheduledFireTime;
+  }
+
+  ScheduledFuture<?> getNextCheck() {
+    return nextCheck;
+  }
+
+  void setNextCheck(ScheduledFuture<?> nextCheck) {
+    this.nextCheck = nextCheck;
+  }
+
+  boolean isDone() {
+    return done;
+  }
+
+  void setDone(boolean done) {
+    this.done = done;
+  }
+
+  /**
+   * 依赖的 workflow id, 目前只有自依赖 <p>
+   */
+  public Set<Integer> getDepFlowIds() {
+    Set<Integer> flowIds = new HashSet<>();
+    if (previousFireTime != null) {
+      flowIds.add(executionFlow.getFlowId());
+    }
+    return flowIds;
+  }
+
+  /**
+   * 等待的截止时间 (ms), 没有超时设置时为 Long.MAX_VALUE <p>
+   */
+  public long getDeadline() {
+    Integer timeout = schedule.getTimeout();
+    if (timeout == null) {
+      return Long.MAX_VALUE;
+    }
+    return startTime + timeout * 1000L;
+  }
+
+  /**
+   * 检测一次依赖 <p>
+   */
+  public DepStatus check(FlowDao flowDao) {
+    // 自依赖上一调度周期
+    if (previousFireTime != null) {
+      DepStatus status = checkDepWorkflowStatus(flowDao, executionFlow.getFlowId(), previousFireTime);
+      if (status != DepStatus.SUCCESS) {
+        return status;
+      }
+    }
+
+    return DepStatus.SUCCESS;
+  }
+
+  /**
+   * 检测一个 workflow 的 某一调度时刻的执行状态 <p>
+   */
+  private DepStatus checkDepWorkflowStatus(FlowDao flowDao, int flowId, Date previousFireTime) {
+    boolean isFind = false;
+    boolean isNotFinshed = false;
+    // 看上一个调度周期是否有成功的
+    List<ExecutionFlow> executionFlows = flowDao.queryFlowLastStatus(flowId, previousFireTime);
+    if (CollectionUtils.isNotEmpty(executionFlows)) {
+      isFind = true;
+      for (ExecutionFlow executionFlow : executionFlows) {
+        FlowStatus flowStatus = executionFlow.getStatus();
+        if (flowStatus != null && flowStatus.typeIsSuccess()) {
+          return DepStatus.SUCCESS; // 已经执行成功
+        } else if (flowStatus == null || !flowStatus.typeIsFinished()) {
+          isNotFinshed = true;
+        }
+      }
+    }
+
+    if (!isFind) {
+      return DepStatus.FAILED; // 没有找到上一调度周期的执行，那么这里可能是上一次执行没有更新到数据库就失败了，那么本次也应该失败
+    }
+
+    // 没有结束则继续等待, 否则全部执行失败
+    return isNotFinshed ? DepStatus.WAITING : DepStatus.FAILED;
+  }
+}
@@ -15,19 +15,15 @@
  */
 package com.baifendian.swordfish.masterserver.quartz;
 
-import com.baifendian.swordfish.common.mail.EmailManager;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.enums.DepPolicyType;
 import com.baifendian.swordfish.dao.enums.ExecType;
 import com.baifendian.swordfish.dao.enums.FlowStatus;
-import com.baifendian.swordfish.dao.enums.ScheduleType;
 import com.baifendian.swordfish.dao.model.ExecutionFlow;
 import com.baifendian.swordfish.dao.model.ProjectFlow;
 import com.baifendian.swordfish.dao.model.Schedule;
-import com.baifendian.swordfish.dao.model.flow.DepWorkflow;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
 import com.baifendian.swordfish.masterserver.master.ExecFlowInfo;
-import org.apache.commons.collections.CollectionUtils;
 import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
@@ -89,16 +85,17 @@ public class FlowScheduleJob implements Job {
   private static FlowDao flowDao;
 
   /**
-   * 检测依赖的等待时间，默认 30 s
+   * {@link DepWaitManager}
    */
-  private static long checkInterval = 30 * 1000;
+  private static DepWaitManager depWaitManager;
 
   /**
    * 初始化 Job （使用该调度 Job 前，必须先调用该函数初始化） <p>
    */
-  public static void init(BlockingQueue<ExecFlowInfo> executionFlowQueue, FlowDao flowDao) {
+  public static void init(BlockingQueue<ExecFlowInfo> executionFlowQueue, FlowDao flowDao, DepWaitManager depWaitManager) {
     FlowScheduleJob.executionFlowQueue = executionFlowQueue;
     FlowScheduleJob.flowDao = flowDao;
+    FlowScheduleJob.depWaitManager = depWaitManager;
   }
 
   @Override
@@ -115,7 +112,8 @@ public class FlowScheduleJob implements Job {
     // 起始时间 (ms)
     long startTime = System.currentTimeMillis();
 
-    ProjectFlow flow = flowDao.projectFlowfindById(flowId);
+    // 只查询工作流信息, 节点和 DAG 取自编译后的缓存
+    ProjectFlow flow = flowDao.queryProjectFlow(flowId);
     // 若 workflow 被删除，那么直接删除当前 job
     if (flow == null) {
       deleteJob(projectId, flowId);
@@ -134,7 +132,7 @@ public class FlowScheduleJob implements Job {
     // 插入 ExecutionFlow
     ExecutionFlow executionFlow;
     try {
-      executionFlow = flowDao.scheduleFlowToExecution(projectId, flowId, flow.getOwnerId(), scheduledFireTime,
+      executionFlow = flowDao.scheduleFlowToExecution(flow, flow.getOwnerId(), scheduledFireTime,
               ExecType.SCHEDULER, schedule.getMaxTryTimes(), null, null, schedule.getNotifyType(), schedule.getNotifyMails(), schedule.getTimeout());
     } catch (Exception e){
       throw new JobExecutionException(e);
@@ -144,56 +142,21 @@ public class FlowScheduleJob implements Job {
     executionFlow.setFlowName(flow.getName());
 
     // 自动依赖上一调度周期才能结束
-    boolean isNotUpdateWaitingDep = true;
+    Date previousFireTime = null;
     if (schedule.getDepPolicy() == DepPolicyType.DEP_PRE) {
-      Date previousFireTime = context.getPreviousFireTime();
-      // 存在上一调度周期
-      if (previousFireTime != null) {
-        if (isNotUpdateWaitingDep) { // 需要更新状态为 WAITING_DEP
-          updateWaitingDepFlowStatus(executionFlow);
-          isNotUpdateWaitingDep = false;
-        }
-
-        // 如果自依赖的上一个调度周期失败，那么本次也失败
-        if (!checkDepWorkflowStatus(flowId, previousFireTime, startTime, schedule.getTimeout())) {
-          executionFlow.setStatus(FlowStatus.DEP_FAILED);
-          executionFlow.setEndTime(new Date());
-          flowDao.updateExecutionFlow(executionFlow);
-          LOGGER.error("自依赖的上一周期执行失败");
-          // 发送邮件
-          if (executionFlow.getNotifyType().typeIsSendFailureMail()) {
-            EmailManager.sendEmail(executionFlow);
-          }
-          return;
-        }
-      }
+      previousFireTime = context.getPreviousFireTime();
     }
 
-    List<DepWorkflow> deps = JsonUtil.parseObjectList(schedule.getDepWorkflowsStr(), DepWorkflow.class);
-    if (deps != null) {
-      if (isNotUpdateWaitingDep) { // 需要更新状态为 WAITING_DEP
-        updateWaitingDepFlowStatus(executionFlow);
-      }
-
-      // 检测依赖
-      boolean isSuccess = checkDeps(schedule, scheduledFireTime, deps, startTime, schedule.getTimeout());
-
-      // 依赖失败，则当前任务也失败
-      if (!isSuccess) {
-        executionFlow.setStatus(FlowStatus.DEP_FAILED);
-        executionFlow.setEndTime(new Date());
-        flowDao.updateExecutionFlow(executionFlow);
-        LOGGER.error("依赖的 workflow 执行失败");
-        // 发送邮件
-        if (executionFlow.getNotifyType().typeIsSendFailureMail()) {
-          EmailManager.sendEmail(executionFlow);
-        }
-        return;
-      }
+    // 没有依赖，直接发送执行任务到 worker
+    // 依赖其它 workflow (schedule 的 depWorkflows) 的检测在原来的实现中就没有启用, 这里也不检测, 只等待自依赖
+    if (previousFireTime == null) {
+      sendToExecution(executionFlow, scheduledFireTime);
+      return;
     }
 
-    // 发送执行任务到 worker
-    sendToExecution(executionFlow, scheduledFireTime);
+    // 有依赖，更新状态为 WAITING_DEP，交给依赖等待管理，不阻塞 Quartz 线程
+    updateWaitingDepFlowStatus(executionFlow);
+    depWaitManager.register(new DepWaitTask(executionFlow, schedule, scheduledFireTime, previousFireTime, startTime));
   }
 
   /**
@@ -204,215 +167,6 @@ public class FlowScheduleJob implements Job {
     flowDao.updateExecutionFlow(executionFlow);
   }
 
-  /**
-   * 检测一个 workflow 的 某一调度时刻的执行状态 <p>
-   */
-  private boolean checkDepWorkflowStatus(int flowId, Date previousFireTime, long startTime, Integer timeout) {
-    // 循环检测，直到检测到依赖是否成功
-    while (true) {
-      boolean isFind = false;
-      boolean isNotFinshed = false;
-      // 看上一个调度周期是否有成功的
-      List<ExecutionFlow> executionFlows = flowDao.queryFlowLastStatus(flowId, previousFireTime);
-      if (CollectionUtils.isNotEmpty(executionFlows)) {
-        isFind = true;
-        for (ExecutionFlow executionFlow : executionFlows) {
-          FlowStatus flowStatus = executionFlow.getStatus();
-          if (flowStatus != null && flowStatus.typeIsSuccess()) {
-            return true; // 已经执行成功
-          } else if (flowStatus == null || !flowStatus.typeIsFinished()) {
-            isNotFinshed = true;
-          }
-        }
-      }
-
-      if (!isFind) {
-        return false; // 没有找到上一调度周期的执行，那么这里可能是上一次执行没有更新到数据库就失败了，那么本次也应该失败
-      }
-
-      if (isNotFinshed) { // 没有结束
-        // 如果超时
-        if (checkTimeout(startTime, timeout)) {
-          LOGGER.error("等待上一调度周期的任务超时");
-          return false; // 也认为是执行失败
-        }
-
-        // 等待一定的时间，再进行下一次检测
-        try {
-          Thread.sleep(checkInterval);
-        } catch (InterruptedException e) {
-          LOGGER.error(e.getMessage(), e);
-          return false; // 也认为是执行失败
-        }
-      } else {
-        return false; // 全部执行失败
-      }
-    }
-
-  }
-
-  /**
-   * 检测是否超时 <p>
-   *
-   * @return 是否超时
-   */
-  private boolean checkTimeout(long startTime, Integer timeout) {
-    if (timeout == null) {
-      return false;
-    }
-    int usedTime = (int) ((System.currentTimeMillis() - startTime) / 1000);
-    return timeout <= usedTime;
-  }
-
-  /**
-   * 是否成功 <p>
-   */
-  private boolean checkDeps(Schedule schedule, Date scheduledFireTime, List<DepWorkflow> deps, long startTime, Integer timeout) {
-    for (DepWorkflow depWorkflow : deps) {
-      int depFlowId = depWorkflow.getWorkflowId();
-      Schedule depSchedule = flowDao.querySchedule(depFlowId);
-      if (depSchedule != null) {
-        Map.Entry<Date, Date> cycleDate;
-        /*if (depSchedule.getScheduleType().ordinal() > schedule.getScheduleType().ordinal()) {
-          cycleDate = calcCycleDate(scheduledFireTime, depSchedule.getScheduleType());
-        } else {
-          cycleDate = calcCycleDate(scheduledFireTime, schedule.getScheduleType());
-        }
-
-        // 检测依赖的最新状态
-        if (!checkDepWorkflowStatus(scheduledFireTime, depFlowId, cycleDate, startTime, timeout)) {
-          return false;
-        }*/
-      }
-    }
-    return true;
-  }
-
-  /**
-   * 检测依赖的 workflow 的状态 <p>
-   *
-   * @return 是否成功
-   */
-  private boolean checkDepWorkflowStatus(Date scheduledFireTime, int depFlowId, Map.Entry<Date, Date> cycleDate, long startTime, Integer timeout) {
-    // 循环检测，直到检测到依赖是否成功
-    while (true) {
-      boolean isFind = false;
-      boolean isNotFinshed = false;
-      // 看当前周期（月、周、天 等）最开始的任务是不是成功的
-      List<ExecutionFlow> executionFlows = flowDao.queryFlowLastStatus(depFlowId, cycleDate.getValue(), scheduledFireTime);
-      if (CollectionUtils.isNotEmpty(executionFlows)) {
-        isFind = true;
-        for (ExecutionFlow executionFlow : executionFlows) {
-          FlowStatus flowStatus = executionFlow.getStatus();
-          if (flowStatus != null && flowStatus.typeIsSuccess()) {
-            return true; // 已经执行成功
-          } else if (flowStatus == null || !flowStatus.typeIsFinished()) {
-            isNotFinshed = true;
-          }
-        }
-      }
-
-      // 看上一个周期（月、周、天 等）最后的任务是不是成功的
-      executionFlows = flowDao.queryFlowLastStatus(depFlowId, cycleDate.getKey(), cycleDate.getValue());
-      if (CollectionUtils.isNotEmpty(executionFlows)) {
-        isFind = true;
-        for (ExecutionFlow executionFlow : executionFlows) {
-          FlowStatus flowStatus = executionFlow.getStatus();
-          if (flowStatus != null && flowStatus.typeIsSuccess()) {
-            return true; // 已经执行成功
-          } else if (flowStatus == null || !flowStatus.typeIsFinished()) {
-            isNotFinshed = true;
-          }
-        }
-      }
-
-      if (!isFind) {
-        return true; // 没有找到依赖的 workflow 的执行，那么可能是当前 workflow
-        // 的调度已经停止，姑且认为是成功
-      }
-
-      if (isNotFinshed) { // 没有结束
-        // 如果超时
-        if (checkTimeout(startTime, timeout)) {
-          LOGGER.error("等待依赖的 workflow 任务超时");
-          return false; // 也认为是执行失败
-        }
-
-        // 等待一定的时间，再进行下一次检测
-        try {
-          Thread.sleep(checkInterval);
-        } catch (InterruptedException e) {
-          LOGGER.error(e.getMessage(), e);
-          return false; // 也认为是执行失败
-        }
-      } else {
-        return false; // 全部执行失败
-      }
-    }
-  }
-
-  /**
-   * 计算上一个周期的时间起始时间和结束时间（起始时间 <= 有效时间 < 结束时间） <p>
-   *
-   * @return 周期的起始和结束时间
-   */
-  private Map.Entry<Date, Date> calcCycleDate(Date scheduledFireTime, ScheduleType scheduleType) {
-    // 起始时间
-    Calendar scheduleStartTime = Calendar.getInstance();
-    scheduleStartTime.setTime(scheduledFireTime);
-
-    // 介绍时间
-    Calendar scheduleEndTime = Calendar.getInstance();
-    scheduleEndTime.setTime(scheduledFireTime);
-    switch (scheduleType) {
-      case MINUTE:
-        // 上一分钟 ~ 当前分钟的开始
-        scheduleStartTime.add(Calendar.MINUTE, -1);
-        scheduleEndTime.set(Calendar.SECOND, 0);
-        break;
-
-      case HOUR:
-        // 上一小时 ~ 当前小时的开始
-        scheduleStartTime.add(Calendar.HOUR_OF_DAY, -1);
-        scheduleEndTime.set(Calendar.MINUTE, 0);
-        scheduleEndTime.set(Calendar.SECOND, 0);
-        break;
-
-      case DAY:
-        // 上一天 ~ 当前天的开始
-        scheduleStartTime.add(Calendar.DAY_OF_MONTH, -1);
-        scheduleEndTime.set(Calendar.HOUR_OF_DAY, 0);
-        scheduleEndTime.set(Calendar.MINUTE, 0);
-        scheduleEndTime.set(Calendar.SECOND, 0);
-        break;
-
-      case WEEK:
-        // 上一周 ~ 当前周的开始(周一)
-        scheduleStartTime.add(Calendar.WEEK_OF_YEAR, -1);
-        scheduleEndTime.setTime(scheduleStartTime.getTime());
-        scheduleEndTime.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
-        scheduleEndTime.set(Calendar.HOUR_OF_DAY, 0);
-        scheduleEndTime.set(Calendar.MINUTE, 0);
-        scheduleEndTime.set(Calendar.SECOND, 0);
-
-        break;
-
-      case MONTH:
-        // 上一月
-        scheduleStartTime.add(Calendar.MONTH, -1);
-        scheduleEndTime.setTime(scheduleStartTime.getTime());
-        scheduleEndTime.set(Calendar.DAY_OF_MONTH, 1);
-        scheduleEndTime.set(Calendar.HOUR_OF_DAY, 0);
-        scheduleEndTime.set(Calendar.MINUTE, 0);
-        scheduleEndTime.set(Calendar.SECOND, 0);
-        break;
-
-      default:
-        break;
-    }
-    return new AbstractMap.SimpleImmutableEntry<Date, Date>(scheduleStartTime.getTime(), scheduleEndTime.getTime());
-  }
-
   /**
    * 删除 job <p>
    */
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+
+import java.util.List;
+
+/**
+ * executor server 选择策略 <p>
+ */
+public interface ExecutorSelector {
+
+  /**
+   * 从可用的 executor server 中选择一个 <p>
+   *
+   * @param executorServers 可用的 executor server, 不为空
+   * @return 选中的 executor server
+   */
+  ExecutorServerInfo select(List<ExecutorServerInfo> executorServers);
+}
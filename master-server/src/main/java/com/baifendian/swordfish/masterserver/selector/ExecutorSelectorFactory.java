@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.config.MasterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 根据配置生成 {@link ExecutorSelector} <p>
+ */
+public class ExecutorSelectorFactory {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExecutorSelectorFactory.class);
+
+  public static final String LEAST_FLOWS = "least_flows";
+
+  public static final String WEIGHTED_LOAD = "weighted_load";
+
+  public static final String POWER_OF_TWO = "power_of_two";
+
+  private ExecutorSelectorFactory() {
+  }
+
+  /**
+   * 根据 master 的配置生成 <p>
+   */
+  public static ExecutorSelector create() {
+    return create(MasterConfig.executorSelector);
+  }
+
+  /**
+   * 根据名称生成, 未知的名称使用 {@link LeastFlowsSelector} <p>
+   */
+  public static ExecutorSelector create(String name) {
+    if (WEIGHTED_LOAD.equalsIgnoreCase(name)) {
+      return new WeightedLoadSelector(MasterConfig.executorSelectorFlowsWeight,
+          MasterConfig.executorSelectorCpuWeight, MasterConfig.executorSelectorMemWeight);
+    }
+    if (POWER_OF_TWO.equalsIgnoreCase(name)) {
+      return new PowerOfTwoChoicesSelector();
+    }
+    if (!LEAST_FLOWS.equalsIgnoreCase(name)) {
+      logger.warn("unknown executor selector:{}, use {}", name, LEAST_FLOWS);
+    }
+    return new LeastFlowsSelector();
+  }
+}
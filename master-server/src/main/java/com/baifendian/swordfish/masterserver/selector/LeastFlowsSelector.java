@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+
+import java.util.List;
+
+/**
+ * 选取正在运行的 workflow 最少的 executor server <p>
+ */
+public class LeastFlowsSelector implements ExecutorSelector {
+
+  @Override
+  public ExecutorServerInfo select(List<ExecutorServerInfo> executorServers) {
+    ExecutorServerInfo result = null;
+    for (ExecutorServerInfo executorServerInfo : executorServers) {
+      if (result == null || result.getRunningCount() > executorServerInfo.getRunningCount()) {
+        result = executorServerInfo;
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机选取两个 executor server, 取正在运行的 workflow 较少的那个 <p>
+ *
+ * 在心跳数据过期的情况下, 相比总是选择最小值, 可以避免一批请求都落到同一个 executor 上.
+ */
+public class PowerOfTwoChoicesSelector implements ExecutorSelector {
+
+  @Override
+  public ExecutorServerInfo select(List<ExecutorServerInfo> executorServers) {
+    int size = executorServers.size();
+    if (size == 1) {
+      return executorServers.get(0);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+
+    ExecutorServerInfo a = executorServers.get(first);
+    ExecutorServerInfo b = executorServers.get(second);
+    return a.getRunningCount() <= b.getRunningCount() ? a : b;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+import com.baifendian.swordfish.rpc.HeartBeatData;
+
+import java.util.List;
+
+/**
+ * 按照 workflow 数目, cpu 使用率和内存使用率加权选取负载最低的 executor server <p>
+ *
+ * workflow 数目按照所有 executor 中的最大值归一化到 [0, 1], cpu 和内存使用率本身就在 [0, 1] 之间.
+ */
+public class WeightedLoadSelector implements ExecutorSelector {
+
+  /**
+   * workflow 数目的权重
+   */
+  private final double flowsWeight;
+
+  /**
+   * cpu 使用率的权重
+   */
+  private final double cpuWeight;
+
+  /**
+   * 内存使用率的权重
+   */
+  private final double memWeight;
+
+  public WeightedLoadSelector(double flowsWeight, double cpuWeight, double memWeight) {
+    this.flowsWeight = flowsWeight;
+    this.cpuWeight = cpuWeight;
+    this.memWeight = memWeight;
+  }
+
+  @Override
+  public ExecutorServerInfo select(List<ExecutorServerInfo> executorServers) {
+    int maxRunning = 1;
+    for (ExecutorServerInfo executorServerInfo : executorServers) {
+      maxRunning = Math.max(maxRunning, executorServerInfo.getRunningCount());
+    }
+
+    ExecutorServerInfo result = null;
+    double minScore = Double.MAX_VALUE;
+    for (ExecutorServerInfo executorServerInfo : executorServers) {
+      double score = score(executorServerInfo, maxRunning);
+      if (result == null || score < minScore) {
+        result = executorServerInfo;
+        minScore = score;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 计算负载分数, 越小越空闲 <p>
+   */
+  private double score(ExecutorServerInfo executorServerInfo, int maxRunning) {
+    HeartBeatData heartBeatData = executorServerInfo.getHeartBeatData();
+    return flowsWeight * executorServerInfo.getRunningCount() / maxRunning
+        + cpuWeight * heartBeatData.getCpuUsed()
+        + memWeight * heartBeatData.getMemUsed();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver;
+
+import com.baifendian.swordfish.masterserver.selector.LeastFlowsSelector;
+import com.baifendian.swordfish.rpc.HeartBeatData;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutorServerInfoTest {
+
+  @Test
+  public void testExpireDispatchedExecs() {
+    HeartBeatData heartBeatData = new HeartBeatData();
+    heartBeatData.setExecIds(Arrays.asList(1, 2));
+    // executor 的时钟比 master 快很多, 不影响过期的判断
+    heartBeatData.setReportDate(Long.MAX_VALUE);
+
+    Map<Integer, Long> dispatched = new ConcurrentHashMap<>();
+    dispatched.put(1, 2000L); // 包含在心跳中
+    dispatched.put(3, 500L);  // 上次心跳之前分发, 没有包含在心跳中, 已经结束
+    dispatched.put(4, 1500L); // 上次心跳之后分发, 心跳中可能还没有
+
+    ExecutorServerInfo executorServerInfo = new ExecutorServerInfo();
+    executorServerInfo.setHeartBeatData(heartBeatData);
+    executorServerInfo.setDispatchedExecs(dispatched);
+
+    executorServerInfo.expireDispatchedExecs(1000L);
+
+    assertEquals(1, dispatched.size());
+    assertTrue(dispatched.containsKey(4));
+    assertEquals(3, executorServerInfo.getRunningCount());
+  }
+
+  @Test
+  public void testTimeoutUsesReceiveTime() {
+    ExecutorServerManager executorServerManager = new ExecutorServerManager(new LeastFlowsSelector());
+
+    HeartBeatData heartBeatData = new HeartBeatData();
+    // executor 的时钟比 master 慢一个小时
+    heartBeatData.setReportDate(System.currentTimeMillis() - 3600 * 1000);
+
+    ExecutorServerInfo executorServerInfo = new ExecutorServerInfo();
+    executorServerInfo.setHost("a");
+    executorServerInfo.setPort(10000);
+    executorServerInfo.setHeartBeatData(heartBeatData);
+    executorServerManager.addServer("a:10000", executorServerInfo);
+
+    assertTrue(executorServerManager.checkTimeoutServer(60 * 1000).isEmpty());
+
+    executorServerInfo.setReceiveTime(System.currentTimeMillis() - 120 * 1000);
+    assertEquals(1, executorServerManager.checkTimeoutServer(60 * 1000).size());
+  }
+}
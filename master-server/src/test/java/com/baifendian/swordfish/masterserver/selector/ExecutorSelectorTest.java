@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.masterserver.selector;
+
+import com.baifendian.swordfish.masterserver.ExecutorServerInfo;
+import com.baifendian.swordfish.rpc.HeartBeatData;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ExecutorSelectorTest {
+
+  private ExecutorServerInfo server(String host, int running, double cpu, double mem) {
+    List<Integer> execIds = new ArrayList<>();
+    for (int i = 0; i < running; ++i) {
+      execIds.add(i);
+    }
+
+    HeartBeatData heartBeatData = new HeartBeatData();
+    heartBeatData.setExecIds(execIds);
+    heartBeatData.setCpuUsed(cpu);
+    heartBeatData.setMemUsed(mem);
+
+    ExecutorServerInfo executorServerInfo = new ExecutorServerInfo();
+    executorServerInfo.setHost(host);
+    executorServerInfo.setPort(10000);
+    executorServerInfo.setHeartBeatData(heartBeatData);
+    return executorServerInfo;
+  }
+
+  @Test
+  public void testLeastFlows() {
+    ExecutorServerInfo a = server("a", 3, 0.1, 0.1);
+    ExecutorServerInfo b = server("b", 1, 0.9, 0.9);
+    ExecutorServerInfo c = server("c", 2, 0.1, 0.1);
+
+    assertSame(b, new LeastFlowsSelector().select(Arrays.asList(a, b, c)));
+  }
+
+  @Test
+  public void testLeastFlowsCountsDispatched() {
+    ExecutorServerInfo a = server("a", 1, 0.1, 0.1);
+    ExecutorServerInfo b = server("b", 2, 0.1, 0.1);
+
+    // 心跳之后分发到 a 的 workflow 也计入负载
+    a.addDispatchedExec(100);
+    a.addDispatchedExec(101);
+
+    assertSame(b, new LeastFlowsSelector().select(Arrays.asList(a, b)));
+  }
+
+  @Test
+  public void testWeightedLoad() {
+    ExecutorServerInfo a = server("a", 1, 0.9, 0.8);
+    ExecutorServerInfo b = server("b", 4, 0.1, 0.2);
+
+    assertSame(a, new WeightedLoadSelector(1.0, 0.0, 0.0).select(Arrays.asList(a, b)));
+    assertSame(b, new WeightedLoadSelector(0.0, 1.0, 0.0).select(Arrays.asList(a, b)));
+    assertSame(b, new WeightedLoadSelector(0.0, 0.0, 1.0).select(Arrays.asList(a, b)));
+
+    // flows: a = 0.25, b = 1.0; cpu + mem: a = 1.7, b = 0.3
+    assertSame(b, new WeightedLoadSelector(1.0, 1.0, 1.0).select(Arrays.asList(a, b)));
+  }
+
+  @Test
+  public void testPowerOfTwoSingle() {
+    ExecutorServerInfo a = server("a", 5, 0.1, 0.1);
+
+    assertSame(a, new PowerOfTwoChoicesSelector().select(Arrays.asList(a)));
+  }
+
+  @Test
+  public void testPowerOfTwoNeverPicksBusiest() {
+    ExecutorServerInfo a = server("a", 1, 0.1, 0.1);
+    ExecutorServerInfo b = server("b", 2, 0.1, 0.1);
+    ExecutorServerInfo c = server("c", 9, 0.1, 0.1);
+    List<ExecutorServerInfo> servers = Arrays.asList(a, b, c);
+
+    PowerOfTwoChoicesSelector selector = new PowerOfTwoChoicesSelector();
+
+    // 两个候选不会相同, 负载最高的永远比不过另一个
+    for (int i = 0; i < 1000; ++i) {
+      assertNotSame(c, selector.select(servers));
+    }
+
+    // 只有两个时总是选较少的
+    for (int i = 0; i < 100; ++i) {
+      assertSame(a, selector.select(Arrays.asList(a, c)));
+    }
+  }
+}
@@ -18,15 +18,12 @@ package com.baifendian.swordfish.rpc.client;
 import com.baifendian.swordfish.rpc.*;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Master thrift client
+ * Master thrift client, 连接从 {@link TransportPool} 中获取
  */
 public class MasterClient {
 
@@ -38,12 +35,10 @@ public class MasterClient {
 
   private int timeout = 10000;
 
-  private TTransport tTransport;
-
-  private MasterService.Client client;
-
   private int retries;
 
+  private final TransportPool transportPool = TransportPool.getInstance();
+
   public MasterClient(String host, int port, int retries) {
     this.host = host;
     this.port = port;
@@ -54,20 +49,46 @@ public class MasterClient {
     this(host, port, 3);
   }
 
-  private void connect() {
-    tTransport = new TSocket(host, port, timeout);
+  /**
+   * 一次 rpc 调用
+   */
+  private interface Call<T> {
+    T call(MasterService.Client client) throws TException;
+  }
+
+  /**
+   * 使用池中的连接执行一次调用 <p>
+   *
+   * 复用的连接可能已经被服务端关闭, 失败时用新连接重试一次. 请求已经完整发出之后的失败 (例如读超时)
+   * 不能确定服务端是否已经执行, 只有幂等的调用才重试, 避免重复执行.
+   *
+   * @param idempotent 重复执行是否安全
+   */
+  private <T> T call(Call<T> call, boolean idempotent) throws TException {
+    PooledTransport pooled = transportPool.borrow(host, port, timeout);
     try {
-      TProtocol protocol = new TBinaryProtocol(tTransport);
-      client = new MasterService.Client(protocol);
-      tTransport.open();
+      return callOnce(pooled, call);
     } catch (TTransportException e) {
-      e.printStackTrace();
+      if (!pooled.isReused() || (pooled.isRequestWritten() && !idempotent)) {
+        throw e;
+      }
+      logger.debug("pooled transport to {}:{} is stale, reconnect", host, port);
+      return callOnce(transportPool.create(host, port, timeout), call);
     }
   }
 
-  private void close() {
-    if (tTransport != null) {
-      tTransport.close();
+  private <T> T callOnce(PooledTransport pooled, Call<T> call) throws TException {
+    boolean success = false;
+    try {
+      T result = call.call(new MasterService.Client(new TBinaryProtocol(pooled.beginCall())));
+      success = true;
+      return result;
+    } finally {
+      if (success) {
+        transportPool.release(pooled);
+      } else {
+        transportPool.invalidate(pooled);
+      }
     }
   }
 
@@ -86,10 +107,9 @@ public class MasterClient {
     return result;
   }
 
-  public boolean executorReportOne(String clientHost, int clientPort, HeartBeatData heartBeatData) {
-    connect();
+  public boolean executorReportOne(final String clientHost, final int clientPort, final HeartBeatData heartBeatData) {
     try {
-      RetInfo retInfo = client.executorReport(clientHost, clientPort, heartBeatData);
+      RetInfo retInfo = call(client -> client.executorReport(clientHost, clientPort, heartBeatData), true);
       if (retInfo.getStatus() != 0) {
         logger.error("executor report return {}", retInfo.getMsg());
         return false;
@@ -97,16 +117,13 @@ public class MasterClient {
     } catch (TException e) {
       logger.error("report info error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public boolean registerExecutor(String clientHost, int clientPort, long registerTime) {
-    connect();
+  public boolean registerExecutor(final String clientHost, final int clientPort, final long registerTime) {
     try {
-      RetInfo ret = client.registerExecutor(clientHost, clientPort, registerTime);
+      RetInfo ret = call(client -> client.registerExecutor(clientHost, clientPort, registerTime), false);
       if (ret.getStatus() != 0) {
         logger.error("register executor error:{}", ret.getMsg());
         return false;
@@ -114,16 +131,13 @@ public class MasterClient {
     } catch (TException e) {
       logger.error("register executor error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public boolean setSchedule(int projectId, int flowId) {
-    connect();
+  public boolean setSchedule(final int projectId, final int flowId) {
     try {
-      RetInfo ret = client.setSchedule(projectId, flowId);
+      RetInfo ret = call(client -> client.setSchedule(projectId, flowId), true);
       if (ret.getStatus() != 0) {
         logger.error("set schedule error:{}", ret.getMsg());
         return false;
@@ -131,16 +145,13 @@ public class MasterClient {
     } catch (TException e) {
       logger.error("set schedule error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public boolean deleteSchedule(int projectId, int flowId) {
-    connect();
+  public boolean deleteSchedule(final int projectId, final int flowId) {
     try {
-      RetInfo ret = client.deleteSchedule(projectId, flowId);
+      RetInfo ret = call(client -> client.deleteSchedule(projectId, flowId), true);
       if (ret.getStatus() != 0) {
         logger.error("delete schedule error:{}", ret.getMsg());
         return false;
@@ -148,43 +159,31 @@ public class MasterClient {
     } catch (TException e) {
       logger.error("delete schedule error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public RetInfo execAdHoc(int id) throws TException {
-    connect();
+  public RetInfo execAdHoc(final int id) throws TException {
     try {
-      RetInfo ret = client.execAdHoc(id);
-      return ret;
+      return call(client -> client.execAdHoc(id), false);
     } catch (TException e) {
       logger.error("exec ad hoc error", e);
       throw e;
-    } finally {
-      close();
     }
   }
 
-  public RetResultInfo execFlow(int projectId, int flowId, long scheduleDate, ExecInfo execInfo) {
-    connect();
+  public RetResultInfo execFlow(final int projectId, final int flowId, final long scheduleDate, final ExecInfo execInfo) {
     try {
-      RetResultInfo ret = client.execFlow(projectId, flowId, scheduleDate, execInfo);
-
-      return ret;
+      return call(client -> client.execFlow(projectId, flowId, scheduleDate, execInfo), false);
     } catch (TException e) {
       logger.error("exec flow error", e);
       return null;
-    } finally {
-      close();
     }
   }
 
-  public boolean cancelExecFlow(int id) {
-    connect();
+  public boolean cancelExecFlow(final int id) {
     try {
-      RetInfo ret = client.cancelExecFlow(id);
+      RetInfo ret = call(client -> client.cancelExecFlow(id), true);
       if (ret.getStatus() != 0) {
         logger.error("cancel exec flow error:{}", ret.getMsg());
         return false;
@@ -192,23 +191,33 @@ public class MasterClient {
     } catch (TException e) {
       logger.error("cancel flow error", e);
       return false;
-    } finally {
-      close();
     }
     return true;
   }
 
-  public RetResultInfo appendWorkFlow(int projectId, int workflowId, ScheduleInfo scheduleInfo) {
-    connect();
+  /**
+   * 汇报 workflow 的状态变化, 只请求一次, master 有数据库轮询作为兜底
+   */
+  public boolean reportFlowStatus(final int execId, final int status) {
     try {
-      RetResultInfo ret = client.appendWorkFlow(projectId, workflowId, scheduleInfo);
+      RetInfo ret = call(client -> client.reportFlowStatus(execId, status), true);
+      if (ret.getStatus() != 0) {
+        logger.error("report flow status error:{}", ret.getMsg());
+        return false;
+      }
+    } catch (TException e) {
+      logger.error("report flow status error", e);
+      return false;
+    }
+    return true;
+  }
 
-      return ret;
+  public RetResultInfo appendWorkFlow(final int projectId, final int workflowId, final ScheduleInfo scheduleInfo) {
+    try {
+      return call(client -> client.appendWorkFlow(projectId, workflowId, scheduleInfo), false);
     } catch (TException e) {
       logger.error("exec flow error", e);
       return null;
-    } finally {
-      close();
     }
   }
 
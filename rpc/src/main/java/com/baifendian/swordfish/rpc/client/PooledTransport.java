@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.rpc.client;
+
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * 连接池中的一个连接 <p>
+ */
+public class PooledTransport {
+
+  /**
+   * 连接的 endpoint, host:port
+   */
+  private final String endpoint;
+
+  private final TSocket socket;
+
+  /**
+   * 上次归还到连接池的时间
+   */
+  private volatile long lastUsed;
+
+  /**
+   * 是否从空闲队列中取出(复用)的连接
+   */
+  private volatile boolean reused;
+
+  /**
+   * 本次调用的请求是否已经完整发出(flush 成功), 发出之后的失败不能确定服务端是否已经执行
+   */
+  private volatile boolean requestWritten;
+
+  /**
+   * 记录请求是否发出的 transport, 其它操作都委托给 socket
+   */
+  private final TTransport transport = new TTransport() {
+    @Override
+    public boolean isOpen() {
+      return socket.isOpen();
+    }
+
+    @Override
+    public void open() throws TTransportException {
+      socket.open();
+    }
+
+    @Override
+    public void close() {
+      socket.close();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+      return socket.read(buf, off, len);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+      socket.write(buf, off, len);
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+      socket.flush();
+      requestWritten = true;
+    }
+  };
+
+  PooledTransport(String endpoint, TSocket socket) {
+    this.endpoint = endpoint;
+    this.socket = socket;
+    this.lastUsed = System.currentTimeMillis();
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public TSocket getSocket() {
+    return socket;
+  }
+
+  /**
+   * 开始一次调用, 返回给 thrift client 使用的 transport <p>
+   */
+  public TTransport beginCall() {
+    requestWritten = false;
+    return transport;
+  }
+
+  public boolean isRequestWritten() {
+    return requestWritten;
+  }
+
+  public long getLastUsed() {
+    return lastUsed;
+  }
+
+  void setLastUsed(long lastUsed) {
+    this.lastUsed = lastUsed;
+  }
+
+  public boolean isReused() {
+    return reused;
+  }
+
+  void setReused(boolean reused) {
+    this.reused = reused;
+  }
+
+  void close() {
+    socket.close();
+  }
+
+  /**
+   * 检查空闲连接是否还可用 <p>
+   *
+   * 空闲的连接上不应该有任何数据, 用 1 毫秒的超时读一次: 超时说明连接正常; 读到 EOF 说明服务端已经关闭;
+   * 读到数据说明协议状态已经错乱. 后两种情况连接都不能再用, 读掉的数据不影响.
+   */
+  boolean isAlive() {
+    Socket raw = socket.getSocket();
+    if (raw == null || !socket.isOpen() || raw.isInputShutdown()) {
+      return false;
+    }
+
+    try {
+      int soTimeout = raw.getSoTimeout();
+      raw.setSoTimeout(1);
+      try {
+        raw.getInputStream().read();
+        return false;
+      } catch (SocketTimeoutException e) {
+        return true;
+      } finally {
+        raw.setSoTimeout(soTimeout);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.rpc.client;
+
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按照 endpoint(host:port) 划分的 thrift 连接池 <p>
+ *
+ * 同一个进程中的所有 client 共享一个连接池, 连接用完后归还, 空闲超时的连接由后台线程关闭, 取出空闲连接时会检查服务端是否已经关闭.
+ * 服务端是 TThreadPoolServer, 每个空闲连接都会占用服务端的一个工作线程, 所以每个 endpoint 保留的空闲连接数目需要较小.
+ */
+public class TransportPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransportPool.class);
+
+  /**
+   * 每个 endpoint 默认最多保留的空闲连接数目
+   */
+  private static final int DEFAULT_MAX_IDLE = 4;
+
+  /**
+   * 默认的空闲超时时间, 单位: 毫秒
+   */
+  private static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+  private static final TransportPool INSTANCE = new TransportPool(DEFAULT_MAX_IDLE, DEFAULT_IDLE_TIMEOUT);
+
+  /**
+   * endpoint -> 空闲连接, 最近归还的在队首
+   */
+  private final Map<String, ConcurrentLinkedDeque<PooledTransport>> idleTransports = new ConcurrentHashMap<>();
+
+  private final int maxIdle;
+
+  private final long idleTimeout;
+
+  public TransportPool(int maxIdle, long idleTimeout) {
+    this.maxIdle = maxIdle;
+    this.idleTimeout = idleTimeout;
+
+    ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Thrift-TransportPool-Evictor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    long interval = Math.max(idleTimeout / 2, 1000);
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          evictIdle();
+        } catch (Exception e) {
+          logger.error("evict idle transport error", e);
+        }
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public static TransportPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * 获取一个到 host:port 的连接, 优先复用空闲连接 <p>
+   *
+   * @param timeout socket 超时时间, 单位: 毫秒
+   */
+  public PooledTransport borrow(String host, int port, int timeout) throws TTransportException {
+    String endpoint = host + ":" + port;
+    ConcurrentLinkedDeque<PooledTransport> idles = idleTransports.get(endpoint);
+
+    if (idles != null) {
+      PooledTransport pooled;
+      while ((pooled = idles.pollFirst()) != null) {
+        // 除了空闲超时, 还要确认服务端没有关闭连接
+        if (isValid(pooled, System.currentTimeMillis()) && pooled.isAlive()) {
+          pooled.setReused(true);
+          pooled.getSocket().setTimeout(timeout);
+          return pooled;
+        }
+        pooled.close();
+      }
+    }
+
+    return create(endpoint, host, port, timeout);
+  }
+
+  /**
+   * 新建一个连接, 不经过空闲队列 <p>
+   */
+  public PooledTransport create(String host, int port, int timeout) throws TTransportException {
+    return create(host + ":" + port, host, port, timeout);
+  }
+
+  private PooledTransport create(String endpoint, String host, int port, int timeout) throws TTransportException {
+    TSocket socket = new TSocket(host, port, timeout);
+    socket.open();
+    return new PooledTransport(endpoint, socket);
+  }
+
+  /**
+   * 归还一个正常的连接 <p>
+   */
+  public void release(PooledTransport pooled) {
+    if (!pooled.getSocket().isOpen()) {
+      return;
+    }
+
+    ConcurrentLinkedDeque<PooledTransport> idles = idleTransports.get(pooled.getEndpoint());
+    if (idles == null) {
+      idleTransports.putIfAbsent(pooled.getEndpoint(), new ConcurrentLinkedDeque<PooledTransport>());
+      idles = idleTransports.get(pooled.getEndpoint());
+    }
+
+    if (idles.size() >= maxIdle) {
+      pooled.close();
+      return;
+    }
+    pooled.setLastUsed(System.currentTimeMillis());
+    idles.offerFirst(pooled);
+  }
+
+  /**
+   * 丢弃一个出错的连接, 调用出错后协议的状态不确定, 不能再复用 <p>
+   */
+  public void invalidate(PooledTransport pooled) {
+    pooled.close();
+  }
+
+  /**
+   * 关闭某个 endpoint 的所有空闲连接, 例如 endpoint 已经下线 <p>
+   */
+  public void clear(String host, int port) {
+    ConcurrentLinkedDeque<PooledTransport> idles = idleTransports.remove(host + ":" + port);
+    if (idles != null) {
+      PooledTransport pooled;
+      while ((pooled = idles.pollFirst()) != null) {
+        pooled.close();
+      }
+    }
+  }
+
+  /**
+   * 关闭空闲超时或者已经断开的连接 <p>
+   */
+  void evictIdle() {
+    long now = System.currentTimeMillis();
+    for (ConcurrentLinkedDeque<PooledTransport> idles : idleTransports.values()) {
+      Iterator<PooledTransport> iterator = idles.iterator();
+      while (iterator.hasNext()) {
+        PooledTransport pooled = iterator.next();
+        if (!isValid(pooled, now) && idles.remove(pooled)) {
+          logger.debug("evict idle transport {}", pooled.getEndpoint());
+          pooled.close();
+        }
+      }
+    }
+  }
+
+  private boolean isValid(PooledTransport pooled, long now) {
+    return pooled.getSocket().isOpen() && now - pooled.getLastUsed() < idleTimeout;
+  }
+}
@@ -177,7 +177,15 @@ service MasterService {
    *
    * execId : 执行 id
    */
-  RetInfo cancelExecFlow(1:i32 execId)
+  RetInfo cancelExecFlow(1:i32 execId),
+
+  /**
+   * execServer 汇报 workflow 的状态变化
+   *
+   * execId : 执行 id
+   * status : workflow 状态
+   */
+  RetInfo reportFlowStatus(1:i32 execId, 2:i32 status)
 }
 
 /**
@@ -178,9 +178,45 @@ CREATE TABLE `execution_flows` (
   `status` tinyint(4) NOT NULL COMMENT 'exec status',
   `extras` text DEFAULT NULL COMMENT 'extra information of the flows',
   PRIMARY KEY (`id`),
+  KEY `status` (`status`),
+  KEY `worker_status` (`worker`, `status`),
+  KEY `flow_schedule_time_id` (`flow_id`, `schedule_time`, `id`),
+  KEY `schedule_time` (`schedule_time`),
+  KEY `start_time` (`start_time`),
+  KEY `end_time` (`end_time`),
   FOREIGN KEY (`flow_id`) REFERENCES `project_flows`(`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+-- `execution_stats` table, existing installs upgrade and backfill with upgrade/01-execution-stats.sql
+DROP TABLE IF EXISTS `execution_stats`;
+CREATE TABLE `execution_stats` (
+  `project_id` int(11) NOT NULL COMMENT 'project id',
+  `flow_id` int(11) NOT NULL COMMENT 'flow id',
+  `stat_time` datetime NOT NULL COMMENT 'schedule time of the execs, truncated to hour',
+  `success` int(11) NOT NULL DEFAULT 0 COMMENT 'number of success execs',
+  `kill` int(11) NOT NULL DEFAULT 0 COMMENT 'number of killed execs',
+  `failed` int(11) NOT NULL DEFAULT 0 COMMENT 'number of failed execs',
+  `dep_failed` int(11) NOT NULL DEFAULT 0 COMMENT 'number of dependency failed execs',
+  `consume` bigint(20) NOT NULL DEFAULT 0 COMMENT 'total consume of the execs, unit: seconds',
+  `max_consume` int(11) NOT NULL DEFAULT 0 COMMENT 'max consume of the execs, unit: seconds',
+  `max_consume_exec_id` int(11) DEFAULT NULL COMMENT 'exec id of the max consume',
+  PRIMARY KEY (`project_id`, `stat_time`, `flow_id`),
+  FOREIGN KEY (`flow_id`) REFERENCES `project_flows`(`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- `execution_stat_records` table
+DROP TABLE IF EXISTS `execution_stat_records`;
+CREATE TABLE `execution_stat_records` (
+  `exec_id` int(11) NOT NULL COMMENT 'exec id counted in execution_stats',
+  `project_id` int(11) NOT NULL COMMENT 'project id',
+  `flow_id` int(11) NOT NULL COMMENT 'flow id',
+  `stat_time` datetime NOT NULL COMMENT 'schedule time of the exec, truncated to hour',
+  `status` tinyint(4) NOT NULL COMMENT 'finished status counted',
+  `consume` int(11) NOT NULL COMMENT 'consume of the exec, unit: seconds',
+  PRIMARY KEY (`exec_id`),
+  KEY `project_stat_time` (`project_id`, `stat_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 -- `execution_nodes` table
 DROP TABLE IF EXISTS `execution_nodes`;
 CREATE TABLE `execution_nodes` (
@@ -193,9 +229,21 @@ CREATE TABLE `execution_nodes` (
   `job_id` varchar(64) NOT NULL COMMENT 'job id',
   `status` tinyint(4) NOT NULL COMMENT 'status',
   PRIMARY KEY (`exec_id`, `name`),
+  KEY `job_id` (`job_id`),
   FOREIGN KEY (`exec_id`) REFERENCES `execution_flows`(`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+-- `execution_flows_archive` table, finished execs past the retention window, no foreign keys
+-- existing installs upgrade with upgrade/02-execution-archive.sql, then upgrade/03-execution-flow-index.sql
+DROP TABLE IF EXISTS `execution_flows_archive`;
+CREATE TABLE `execution_flows_archive` LIKE `execution_flows`;
+ALTER TABLE `execution_flows_archive` ROW_FORMAT=COMPRESSED;
+
+-- `execution_nodes_archive` table, nodes of the archived execs
+DROP TABLE IF EXISTS `execution_nodes_archive`;
+CREATE TABLE `execution_nodes_archive` LIKE `execution_nodes`;
+ALTER TABLE `execution_nodes_archive` ROW_FORMAT=COMPRESSED;
+
 -- `ad_hocs` table
 DROP TABLE If Exists `ad_hocs`;
 CREATE TABLE `ad_hocs` (
@@ -0,0 +1,74 @@
+-- Upgrade an existing install to the execution statistics rollups.
+-- New installs get all of this from create-table.sql.
+--
+-- Run it before starting the new master/web servers. Running it again later
+-- is safe: the status index is only added when it is missing, the tables
+-- are created IF NOT EXISTS, the backfill only adds execs that are missing
+-- from execution_stat_records, then execution_stats is rebuilt from the
+-- records.
+-- To repair a single project or time range afterwards, use
+-- POST /statistic/rebuild.
+
+-- unfinished execs are counted live through this index;
+-- only added when missing, a plain ADD KEY fails on the second run
+SET @add_status_key = IF(
+  (SELECT COUNT(*) FROM information_schema.statistics
+   WHERE table_schema = DATABASE() AND table_name = 'execution_flows' AND index_name = 'status') = 0,
+  'ALTER TABLE `execution_flows` ADD KEY `status` (`status`)',
+  'SELECT 1');
+PREPARE add_status_key FROM @add_status_key;
+EXECUTE add_status_key;
+DEALLOCATE PREPARE add_status_key;
+
+-- `execution_stats` table
+CREATE TABLE IF NOT EXISTS `execution_stats` (
+  `project_id` int(11) NOT NULL COMMENT 'project id',
+  `flow_id` int(11) NOT NULL COMMENT 'flow id',
+  `stat_time` datetime NOT NULL COMMENT 'schedule time of the execs, truncated to hour',
+  `success` int(11) NOT NULL DEFAULT 0 COMMENT 'number of success execs',
+  `kill` int(11) NOT NULL DEFAULT 0 COMMENT 'number of killed execs',
+  `failed` int(11) NOT NULL DEFAULT 0 COMMENT 'number of failed execs',
+  `dep_failed` int(11) NOT NULL DEFAULT 0 COMMENT 'number of dependency failed execs',
+  `consume` bigint(20) NOT NULL DEFAULT 0 COMMENT 'total consume of the execs, unit: seconds',
+  `max_consume` int(11) NOT NULL DEFAULT 0 COMMENT 'max consume of the execs, unit: seconds',
+  `max_consume_exec_id` int(11) DEFAULT NULL COMMENT 'exec id of the max consume',
+  PRIMARY KEY (`project_id`, `stat_time`, `flow_id`),
+  FOREIGN KEY (`flow_id`) REFERENCES `project_flows`(`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- `execution_stat_records` table
+CREATE TABLE IF NOT EXISTS `execution_stat_records` (
+  `exec_id` int(11) NOT NULL COMMENT 'exec id counted in execution_stats',
+  `project_id` int(11) NOT NULL COMMENT 'project id',
+  `flow_id` int(11) NOT NULL COMMENT 'flow id',
+  `stat_time` datetime NOT NULL COMMENT 'schedule time of the exec, truncated to hour',
+  `status` tinyint(4) NOT NULL COMMENT 'finished status counted',
+  `consume` int(11) NOT NULL COMMENT 'consume of the exec, unit: seconds',
+  PRIMARY KEY (`exec_id`),
+  KEY `project_stat_time` (`project_id`, `stat_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- backfill the records of finished execs (status: 4 success, 5 kill, 6 failed, 7 dep failed)
+INSERT IGNORE INTO `execution_stat_records` (`exec_id`, `project_id`, `flow_id`, `stat_time`, `status`, `consume`)
+SELECT e_f.id, p_f.project_id, e_f.flow_id,
+       DATE_FORMAT(e_f.schedule_time, '%Y-%m-%d %H:00:00'),
+       e_f.status,
+       IFNULL(GREATEST(timestampdiff(SECOND, e_f.start_time, e_f.end_time), 0), 0)
+FROM `execution_flows` e_f
+JOIN `project_flows` p_f ON e_f.flow_id = p_f.id
+WHERE e_f.status IN (4, 5, 6, 7);
+
+-- rebuild the hourly rollups from the records
+START TRANSACTION;
+
+DELETE FROM `execution_stats`;
+
+INSERT INTO `execution_stats` (`project_id`, `flow_id`, `stat_time`, `success`, `kill`, `failed`, `dep_failed`, `consume`, `max_consume`, `max_consume_exec_id`)
+SELECT project_id, flow_id, stat_time,
+       SUM(status = 4), SUM(status = 5), SUM(status = 6), SUM(status = 7),
+       SUM(consume), MAX(consume),
+       CAST(SUBSTRING_INDEX(GROUP_CONCAT(exec_id ORDER BY consume DESC), ',', 1) AS UNSIGNED)
+FROM `execution_stat_records`
+GROUP BY project_id, stat_time, flow_id;
+
+COMMIT;
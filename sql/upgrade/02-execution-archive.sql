@@ -0,0 +1,33 @@
+-- Upgrade an existing install to archive finished executions.
+-- New installs get all of this from create-table.sql.
+--
+-- Run it after 01-execution-stats.sql and before starting the new master
+-- and web servers. The archive tables are created LIKE the hot tables, so
+-- the indexes have to be added first.
+--
+-- On a large execution_flows table the ALTERs take a while. MySQL 5.6+
+-- builds the indexes online (ALGORITHM=INPLACE, LOCK=NONE).
+-- ROW_FORMAT=COMPRESSED needs innodb_file_per_table=ON and, before 5.7,
+-- innodb_file_format=Barracuda. Without them the ALTER either fails
+-- (innodb_strict_mode=ON) or keeps the default row format with a warning.
+-- Either way the archive still works, just uncompressed.
+
+ALTER TABLE `execution_flows`
+  ADD KEY `worker_status` (`worker`, `status`),
+  ADD KEY `flow_schedule_time` (`flow_id`, `schedule_time`),
+  ADD KEY `schedule_time` (`schedule_time`),
+  ADD KEY `start_time` (`start_time`),
+  ADD KEY `end_time` (`end_time`),
+  ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE `execution_nodes`
+  ADD KEY `job_id` (`job_id`),
+  ALGORITHM=INPLACE, LOCK=NONE;
+
+-- `execution_flows_archive` table, finished execs past the retention window, no foreign keys
+CREATE TABLE IF NOT EXISTS `execution_flows_archive` LIKE `execution_flows`;
+ALTER TABLE `execution_flows_archive` ROW_FORMAT=COMPRESSED;
+
+-- `execution_nodes_archive` table, nodes of the archived execs
+CREATE TABLE IF NOT EXISTS `execution_nodes_archive` LIKE `execution_nodes`;
+ALTER TABLE `execution_nodes_archive` ROW_FORMAT=COMPRESSED;
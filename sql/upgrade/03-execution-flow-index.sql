@@ -0,0 +1,48 @@
+-- Replace the (flow_id, schedule_time) index of the exec tables with
+-- (flow_id, schedule_time, id), the access path of the cursor paging of the
+-- execution list. New installs get it from create-table.sql.
+--
+-- Run it after 02-execution-archive.sql. Running it again is safe: each
+-- step checks information_schema.statistics first. The new index is added
+-- before the old one is dropped, so the foreign key on flow_id always has
+-- an index. MySQL 5.6+ builds it online (ALGORITHM=INPLACE, LOCK=NONE).
+
+-- execution_flows: add the new index
+SET @ddl = IF(
+  (SELECT COUNT(*) FROM information_schema.statistics
+   WHERE table_schema = DATABASE() AND table_name = 'execution_flows' AND index_name = 'flow_schedule_time_id') = 0,
+  'ALTER TABLE `execution_flows` ADD KEY `flow_schedule_time_id` (`flow_id`, `schedule_time`, `id`), ALGORITHM=INPLACE, LOCK=NONE',
+  'SELECT 1');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- execution_flows: drop the old one
+SET @ddl = IF(
+  (SELECT COUNT(*) FROM information_schema.statistics
+   WHERE table_schema = DATABASE() AND table_name = 'execution_flows' AND index_name = 'flow_schedule_time') > 0,
+  'ALTER TABLE `execution_flows` DROP KEY `flow_schedule_time`, ALGORITHM=INPLACE, LOCK=NONE',
+  'SELECT 1');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- execution_flows_archive: add the new index
+SET @ddl = IF(
+  (SELECT COUNT(*) FROM information_schema.statistics
+   WHERE table_schema = DATABASE() AND table_name = 'execution_flows_archive' AND index_name = 'flow_schedule_time_id') = 0,
+  'ALTER TABLE `execution_flows_archive` ADD KEY `flow_schedule_time_id` (`flow_id`, `schedule_time`, `id`), ALGORITHM=INPLACE, LOCK=NONE',
+  'SELECT 1');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- execution_flows_archive: drop the old one
+SET @ddl = IF(
+  (SELECT COUNT(*) FROM information_schema.statistics
+   WHERE table_schema = DATABASE() AND table_name = 'execution_flows_archive' AND index_name = 'flow_schedule_time') > 0,
+  'ALTER TABLE `execution_flows_archive` DROP KEY `flow_schedule_time`, ALGORITHM=INPLACE, LOCK=NONE',
+  'SELECT 1');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
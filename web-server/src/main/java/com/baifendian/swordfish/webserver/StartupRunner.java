@@ -17,8 +17,10 @@ package com.baifendian.swordfish.webserver;
 
 import com.baifendian.swordfish.common.hadoop.ConfigurationUtil;
 import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import com.baifendian.swordfish.webserver.service.ResourceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -26,12 +28,18 @@ import org.springframework.stereotype.Component;
 public class StartupRunner implements CommandLineRunner {
   private static Logger logger = LoggerFactory.getLogger(StartupRunner.class.getName());
 
+  @Autowired
+  private ResourceService resourceService;
+
   public void run(String... args) {
     logger.info("begin startup...");
 
     logger.info("init hdfs instance");
     HdfsClient.init(ConfigurationUtil.getConfiguration());
 
+    logger.info("start sweeping stale resource part files");
+    resourceService.startPartSweeper();
+
     // TODO::
 
     logger.info("end startup");
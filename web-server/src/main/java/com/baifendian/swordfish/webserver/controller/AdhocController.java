@@ -103,6 +103,7 @@ public class AdhocController {
    * @param index
    * @param from
    * @param size
+   * @param cursor   按游标读取时上一次返回的游标, 传入时忽略 from; 空串表示从第一条开始
    * @param response
    * @return
    */
@@ -112,9 +113,10 @@ public class AdhocController {
                                 @RequestParam(value = "index") int index,
                                 @RequestParam(value = "from", required = false, defaultValue = "0") int from,
                                 @RequestParam(value = "size", required = false, defaultValue = "100") int size,
+                                @RequestParam(value = "cursor", required = false) String cursor,
                                 HttpServletResponse response) {
-    logger.info("Operator user {}, get adhoc logs, exec id: {}, index: {}, from: {}, size: {}",
-        operator.getName(), execId, index, from, size);
+    logger.info("Operator user {}, get adhoc logs, exec id: {}, index: {}, from: {}, size: {}, cursor: {}",
+        operator.getName(), execId, index, from, size, cursor);
 
     // index & from 的限制
     if (index < 0 || from < 0) {
@@ -128,7 +130,7 @@ public class AdhocController {
       throw new IllegalArgumentException("Argument is not valid, size must be between (0, 1000]");
     }
 
-    return adhocService.queryLogs(operator, execId, index, from, size, response);
+    return adhocService.queryLogs(operator, execId, index, from, size, cursor, response);
   }
 
   /**
@@ -137,6 +139,8 @@ public class AdhocController {
    * @param operator
    * @param execId
    * @param index
+   * @param from
+   * @param size
    * @param response
    * @return
    */
@@ -144,16 +148,24 @@ public class AdhocController {
   public AdHocResultData queryResult(@RequestAttribute(value = "session.user") User operator,
                                      @PathVariable int execId,
                                      @RequestParam(value = "index") int index,
+                                     @RequestParam(value = "from", required = false, defaultValue = "0") int from,
+                                     @RequestParam(value = "size", required = false) Integer size,
                                      HttpServletResponse response) {
-    logger.info("Operator user {}, get adhoc result, exec id: {}, index: {}",
-        operator.getName(), execId, index);
+    logger.info("Operator user {}, get adhoc result, exec id: {}, index: {}, from: {}, size: {}",
+        operator.getName(), execId, index, from, size);
 
     // index 的限制
-    if (index < 0) {
+    if (index < 0 || from < 0) {
+      response.setStatus(HttpStatus.SC_NOT_MODIFIED);
+      throw new IllegalArgumentException("Argument is not valid, index & from must be equal or more than zero");
+    }
+
+    // size 的限制, 不指定时返回所有的行
+    if (size != null && size <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
-      throw new IllegalArgumentException("Argument is not valid, index must be equal or more than zero");
+      throw new IllegalArgumentException("Argument is not valid, size must be more than zero");
     }
 
-    return adhocService.queryResult(operator, execId, index, response);
+    return adhocService.queryResult(operator, execId, index, from, size, response);
   }
 }
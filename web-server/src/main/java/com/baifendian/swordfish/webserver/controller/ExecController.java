@@ -24,10 +24,12 @@ import com.baifendian.swordfish.dao.model.User;
 import com.baifendian.swordfish.webserver.dto.ExecWorkflowsResponse;
 import com.baifendian.swordfish.webserver.dto.LogResult;
 import com.baifendian.swordfish.webserver.service.ExecService;
+import com.baifendian.swordfish.webserver.service.LogHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.Date;
@@ -42,6 +44,11 @@ public class ExecController {
 
   private static Logger logger = LoggerFactory.getLogger(ExecController.class.getName());
 
+  /**
+   * 跟踪日志时, 一次返回的最大条数
+   */
+  private static final int MAX_TAIL_SIZE = 1000;
+
   @Autowired
   private ExecService execService;
 
@@ -90,6 +97,8 @@ public class ExecController {
    * @param status
    * @param from
    * @param size
+   * @param cursor   按游标翻页时上一次返回的游标, 传入时忽略 from; 空串表示从第一条开始
+   * @param count    按游标翻页时是否返回估计的总数
    * @param response
    * @return
    */
@@ -102,13 +111,17 @@ public class ExecController {
                                           @RequestParam(value = "status", required = false) String status,
                                           @RequestParam(value = "from", required = false, defaultValue = "0") int from,
                                           @RequestParam(value = "size", required = false, defaultValue = "100") int size,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "count", required = false, defaultValue = "false") boolean count,
                                           HttpServletResponse response) {
-    logger.info("Operator user {}, query exec list, start date: {}, end date: {}, project name: {}, workflow name: {}, status: {}, from: {}, size: {}",
-        operator.getName(), startDate, endDate, projectName, workflowName, status, from, size);
-
+    logger.info("Operator user {}, query exec list, start date: {}, end date: {}, project name: {}, workflow name: {}, status: {}, from: {}, size: {}, cursor: {}",
+        operator.getName(), startDate, endDate, projectName, workflowName, status, from, size, cursor);
 
+    if (cursor != null) {
+      size = Math.max(1, size);
+    }
 
-    return execService.getExecWorkflow(operator,projectName,workflowName,new Date(startDate),new Date(endDate),status,from,size,response);
+    return execService.getExecWorkflow(operator,projectName,workflowName,new Date(startDate),new Date(endDate),status,from,size,cursor,count,response);
   }
 
   /**
@@ -151,6 +164,35 @@ public class ExecController {
     return execService.getEexcWorkflowLog(operator,jobId,from,size,response);
   }
 
+  /**
+   * 按游标跟踪日志, 不需要像 from/size 一样每次跳过之前的日志
+   *
+   * @param operator
+   * @param jobId
+   * @param cursor   上一次返回的游标, 为空时从第一条开始
+   * @param size     返回的最大条数, 不超过 1000
+   * @param follow   没有新日志时是否等待 (long-poll)
+   * @param timeout  follow 模式下最长的等待时间, 单位: 毫秒
+   * @param response
+   * @return
+   */
+  @GetMapping(value = "/{jobId}/logs/tail")
+  public DeferredResult<LogResult> tailLogs(@RequestAttribute(value = "session.user") User operator,
+                                            @PathVariable(value = "jobId") String jobId,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "size", required = false, defaultValue = "100") int size,
+                                            @RequestParam(value = "follow", required = false, defaultValue = "false") boolean follow,
+                                            @RequestParam(value = "timeout", required = false, defaultValue = "20000") long timeout,
+                                            HttpServletResponse response) {
+    logger.debug("Operator user {}, tail log, job id: {}, cursor: {}, size: {}, follow: {}",
+        operator.getName(), jobId, cursor, size, follow);
+
+    size = Math.max(1, Math.min(size, MAX_TAIL_SIZE));
+    timeout = Math.min(timeout, LogHelper.MAX_FOLLOW_TIMEOUT);
+
+    return execService.tailExecWorkflowLog(operator, jobId, cursor, size, follow, timeout, response);
+  }
+
   /**
    * kill 某个运行的任务
    *
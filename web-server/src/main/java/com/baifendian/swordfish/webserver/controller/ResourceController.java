@@ -21,12 +21,12 @@ import com.baifendian.swordfish.webserver.service.ResourceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -167,32 +167,56 @@ public class ResourceController {
   }
 
   /**
-   * 下载资源, 须有资源的 'r 权限'
+   * 以流的方式上传资源文件, 请求体即文件内容, 不存在则创建, 需要具备项目的 "w 权限" <p>
+   *
+   * 大文件可以通过 Content-Range 分段上传, 中断后可以用 "bytes * /total" 查询已经收到的范围再继续.
    *
    * @param operator
    * @param projectName
    * @param name
+   * @param desc
+   * @param filename
+   * @param contentRange
+   * @param contentMd5
+   * @param request
    * @param response
    */
-  @GetMapping(value = "/{name:.+}/file")
-  @ResponseBody
-  public ResponseEntity<org.springframework.core.io.Resource> downloadResource(@RequestAttribute(value = "session.user") User operator,
-                                                                               @PathVariable String projectName,
-                                                                               @PathVariable String name,
-                                                                               HttpServletResponse response) {
-    logger.info("Operator user {}, download resource, project name: {}, resource name: {}",
-        operator.getName(), projectName, name);
-
-    org.springframework.core.io.Resource file = resourceService.downloadResource(operator, projectName, name, response);
-
-    if (file == null) {
-      return ResponseEntity
-          .noContent().build();
-    }
+  @PutMapping(value = "/{name:.+}/file")
+  public Resource uploadResourceFile(@RequestAttribute(value = "session.user") User operator,
+                                     @PathVariable String projectName,
+                                     @PathVariable String name,
+                                     @RequestParam(value = "desc", required = false) String desc,
+                                     @RequestParam(value = "filename", required = false) String filename,
+                                     @RequestHeader(value = "Content-Range", required = false) String contentRange,
+                                     @RequestHeader(value = "Content-MD5", required = false) String contentMd5,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+    logger.info("Operator user {}, upload resource file, project name: {}, resource name: {}, desc: {}, filename: {}, range: {}",
+        operator.getName(), projectName, name, desc, filename, contentRange);
+
+    return resourceService.uploadResourceFile(operator, projectName, name, desc, filename, contentRange, contentMd5, request.getInputStream(), response);
+  }
 
-    return ResponseEntity
-        .ok()
-        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"")
-        .body(file);
+  /**
+   * 下载资源, 须有资源的 'r 权限', 支持单段的 Range 请求
+   *
+   * @param operator
+   * @param projectName
+   * @param name
+   * @param range
+   * @param ifRange
+   * @param response
+   */
+  @GetMapping(value = "/{name:.+}/file")
+  public void downloadResource(@RequestAttribute(value = "session.user") User operator,
+                               @PathVariable String projectName,
+                               @PathVariable String name,
+                               @RequestHeader(value = "Range", required = false) String range,
+                               @RequestHeader(value = "If-Range", required = false) String ifRange,
+                               HttpServletResponse response) {
+    logger.info("Operator user {}, download resource, project name: {}, resource name: {}, range: {}",
+        operator.getName(), projectName, name, range);
+
+    resourceService.downloadResource(operator, projectName, name, range, ifRange, response);
   }
 }
@@ -46,6 +46,7 @@ public class StatController {
    * @param projectName
    * @param startTime
    * @param endTime
+   * @param unit        统计粒度, day 或者 hour, 默认 day
    * @param response
    * @return
    */
@@ -54,16 +55,22 @@ public class StatController {
                                         @RequestParam(value = "projectName") String projectName,
                                         @RequestParam(value = "startTime") long startTime,
                                         @RequestParam(value = "endTime") long endTime,
+                                        @RequestParam(value = "unit", required = false, defaultValue = "day") String unit,
                                         HttpServletResponse response) {
-    logger.info("Operator user {}, get states, project name: {}, start time: {}, end time: {}",
-        operator.getName(), projectName, startTime, endTime);
+    logger.info("Operator user {}, get states, project name: {}, start time: {}, end time: {}, unit: {}",
+        operator.getName(), projectName, startTime, endTime, unit);
+
+    if (!"day".equals(unit) && !"hour".equals(unit)) {
+      response.setStatus(HttpStatus.SC_BAD_REQUEST);
+      throw new IllegalArgumentException("Argument is not valid, unit must be day or hour");
+    }
 
     // TODO:: 检测时间跨度, 必须是 (0, 30]
 
     Date statDate = new Date(startTime);
     Date endDate = new Date(endTime);
 
-    return statService.queryStates(operator, projectName, startTime, endTime, response);
+    return statService.queryStates(operator, projectName, startTime, endTime, "hour".equals(unit), response);
   }
 
   /**
@@ -121,4 +128,30 @@ public class StatController {
 
     return statService.queryErrors(operator, projectName, date, num, response);
   }
+
+  /**
+   * 从执行历史重建统计信息, 用于回填历史数据, 需要是项目所有者或者管理员
+   *
+   * @param operator
+   * @param projectName
+   * @param startTime
+   * @param endTime
+   * @param response
+   */
+  @PostMapping(value = "/rebuild")
+  public void rebuildStats(@RequestAttribute(value = "session.user") User operator,
+                           @RequestParam(value = "projectName") String projectName,
+                           @RequestParam(value = "startTime") long startTime,
+                           @RequestParam(value = "endTime") long endTime,
+                           HttpServletResponse response) {
+    logger.info("Operator user {}, rebuild stats, project name: {}, start time: {}, end time: {}",
+        operator.getName(), projectName, startTime, endTime);
+
+    if (startTime >= endTime) {
+      response.setStatus(HttpStatus.SC_BAD_REQUEST);
+      throw new IllegalArgumentException("Argument is not valid, start time must be before end time");
+    }
+
+    statService.rebuildStats(operator, projectName, startTime, endTime, response);
+  }
 }
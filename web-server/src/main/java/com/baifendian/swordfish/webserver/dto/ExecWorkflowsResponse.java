@@ -8,10 +8,18 @@ import java.util.List;
  * Created by caojingwei on 2017/4/12.
  */
 public class ExecWorkflowsResponse {
+  /**
+   * 执行总数, 按游标翻页时为估计值, 没有要求统计时为 -1
+   */
   private int total;
   private int length;
   private List<ExecutionFlow> executions;
 
+  /**
+   * 按游标翻页时下一页的游标, 没有更多数据时为 null
+   */
+  private String cursor;
+
   public ExecWorkflowsResponse() {
   }
 
@@ -44,4 +52,12 @@ public class ExecWorkflowsResponse {
   public void setExecutions(List<ExecutionFlow> executions) {
     this.executions = executions;
   }
+
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
 }
@@ -44,6 +44,11 @@ public class LogResult {
    */
   private List<String> content = Collections.emptyList();
 
+  /**
+   * 按游标读取时, 下一次读取的游标
+   */
+  private String cursor;
+
   public LogResult() {
 
   }
@@ -87,4 +92,12 @@ public class LogResult {
   public void setTook(long took) {
     this.took = took;
   }
+
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
 }
@@ -15,9 +15,9 @@
  */
 package com.baifendian.swordfish.webserver.interceptor;
 
-import com.baifendian.swordfish.dao.mapper.UserMapper;
 import com.baifendian.swordfish.dao.model.Session;
 import com.baifendian.swordfish.dao.model.User;
+import com.baifendian.swordfish.webserver.service.AuthCache;
 import com.baifendian.swordfish.webserver.service.SessionService;
 import org.apache.commons.httpclient.HttpStatus;
 import org.slf4j.Logger;
@@ -39,7 +39,7 @@ public class LoginInterceptor implements HandlerInterceptor {
   private SessionService sessionService;
 
   @Autowired
-  private UserMapper userMapper;
+  private AuthCache authCache;
 
   @Override
   public boolean preHandle(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, Object o) throws Exception {
@@ -55,7 +55,7 @@ public class LoginInterceptor implements HandlerInterceptor {
     logger.info("session is: {}", session.getId());
 
     // 获取到了, 则设置一下 session
-    User user = userMapper.queryById(session.getUserId());
+    User user = authCache.getUser(session.getUserId());
 
     if (user == null) {
       httpServletResponse.setStatus(HttpStatus.SC_UNAUTHORIZED);
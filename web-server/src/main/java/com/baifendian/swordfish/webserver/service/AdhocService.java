@@ -16,11 +16,12 @@
 package com.baifendian.swordfish.webserver.service;
 
 import com.baifendian.swordfish.common.adhoc.AdHocParam;
+import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import com.baifendian.swordfish.common.hadoop.HdfsException;
 import com.baifendian.swordfish.common.job.UdfsInfo;
 import com.baifendian.swordfish.dao.enums.FlowStatus;
 import com.baifendian.swordfish.dao.mapper.AdHocMapper;
 import com.baifendian.swordfish.dao.mapper.MasterServerMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.model.*;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
 import com.baifendian.swordfish.rpc.RetInfo;
@@ -38,6 +39,11 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -47,7 +53,7 @@ public class AdhocService {
   private static Logger logger = LoggerFactory.getLogger(AdhocService.class.getName());
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
@@ -79,7 +85,7 @@ public class AdhocService {
   public ExecutorId execAdhoc(User operator, String projectName, String stms, int limit, String proxyUser, String queue, List<UdfsInfo> udfs, int timeout, HttpServletResponse response) {
 
     // 查看用户对项目是否具备相应权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -163,10 +169,11 @@ public class AdhocService {
    * @param index
    * @param from
    * @param size
+   * @param cursor   不为 null 时按游标读取, 忽略 from
    * @param response
    * @return
    */
-  public AdHocLogData queryLogs(User operator, int execId, int index, int from, int size, HttpServletResponse response) {
+  public AdHocLogData queryLogs(User operator, int execId, int index, int from, int size, String cursor, HttpServletResponse response) {
 
     // 查看用户对项目是否具备相应权限
     Project project = adHocMapper.queryProjectByExecId(execId);
@@ -213,7 +220,7 @@ public class AdhocService {
     AdHocResult adHocResult = results.get(index);
 
     // 4. 获取日志信息
-    LogResult logResult = logHelper.getLog(from, size, jobId);
+    LogResult logResult = (cursor != null) ? logHelper.getLogAfter(cursor, size, jobId) : logHelper.getLog(from, size, jobId);
 
     // 构造结果返回
     AdHocLogData adHocLogData = new AdHocLogData();
@@ -232,10 +239,12 @@ public class AdhocService {
    * @param operator
    * @param execId
    * @param index
+   * @param from     起始行, 从 0 开始
+   * @param size     返回的最大行数, 为空时返回 from 之后的所有行
    * @param response
    * @return
    */
-  public AdHocResultData queryResult(User operator, int execId, int index, HttpServletResponse response) {
+  public AdHocResultData queryResult(User operator, int execId, int index, int from, Integer size, HttpServletResponse response) {
 
     // 查看用户对项目是否具备相应权限
     Project project = adHocMapper.queryProjectByExecId(execId);
@@ -260,8 +269,69 @@ public class AdhocService {
     adHocResultData.setStartTime(adHocResult.getStartTime());
     adHocResultData.setEndTime(adHocResult.getEndTime());
     adHocResultData.setStm(adHocResult.getStm());
-    adHocResultData.setResults(JsonUtil.parseObject(adHocResult.getResult(), AdHocJsonObject.class));
+
+    AdHocJsonObject results = JsonUtil.parseObject(adHocResult.getResult(), AdHocJsonObject.class);
+    if (results != null) {
+      int limit = (size == null) ? Integer.MAX_VALUE : size;
+      if (results.getResultFile() != null) {
+        // 结果在 hdfs 文件中, 只读取需要的行
+        results.setValues(readResultFile(results, from, limit));
+        results.setResultFile(null);
+        results.setOffsets(null);
+      } else if (results.getValues() != null) {
+        // 以前保存在数据库中的结果
+        List<List<String>> values = results.getValues();
+        results.setRowCount(values.size());
+        int start = Math.min(from, values.size());
+        int end = (int) Math.min((long) start + limit, values.size());
+        results.setValues(new ArrayList<>(values.subList(start, end)));
+      }
+    }
+    adHocResultData.setResults(results);
 
     return adHocResultData;
   }
+
+  /**
+   * 从结果文件中读取 [from, from + size) 行, 每行是一个 json 数组 <p>
+   * 有行偏移索引时先 seek 到 from 之前最近的索引行, 不需要从第 0 行扫描; 文件已被清理时返回空
+   */
+  private List<List<String>> readResultFile(AdHocJsonObject results, int from, int size) {
+    List<List<String>> values = new ArrayList<>();
+    String resultFile = results.getResultFile();
+
+    int lineNo = 0;
+    long offset = 0;
+    List<Long> offsets = results.getOffsets();
+    if (results.getOffsetInterval() > 0 && offsets != null && !offsets.isEmpty()) {
+      int block = Math.min(from / results.getOffsetInterval(), offsets.size() - 1);
+      lineNo = block * results.getOffsetInterval();
+      offset = offsets.get(block);
+    }
+
+    try {
+      if (!HdfsClient.getInstance().exists(resultFile)) {
+        logger.warn("adhoc result file: {} not exists, may be cleaned", resultFile);
+        return values;
+      }
+    } catch (IOException e) {
+      logger.error("check adhoc result file: " + resultFile + " error", e);
+      throw new HdfsException("read adhoc result file error", e);
+    }
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(HdfsClient.getInstance().open(resultFile, offset), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null && values.size() < size) {
+        if (lineNo++ < from) {
+          continue;
+        }
+        values.add(JsonUtil.parseObjectList(line, String.class));
+      }
+    } catch (IOException e) {
+      logger.error("read adhoc result file: " + resultFile + " error", e);
+      throw new HdfsException("read adhoc result file error", e);
+    }
+
+    return values;
+  }
 }
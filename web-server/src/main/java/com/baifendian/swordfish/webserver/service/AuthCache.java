@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import com.baifendian.swordfish.dao.mapper.ProjectMapper;
+import com.baifendian.swordfish.dao.mapper.ProjectUserMapper;
+import com.baifendian.swordfish.dao.mapper.SessionMapper;
+import com.baifendian.swordfish.dao.mapper.UserMapper;
+import com.baifendian.swordfish.dao.model.Project;
+import com.baifendian.swordfish.dao.model.ProjectUser;
+import com.baifendian.swordfish.dao.model.Session;
+import com.baifendian.swordfish.dao.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鉴权相关数据的缓存: session, 用户, 项目 (按名称) 以及用户在项目中的权限 <p>
+ *
+ * 每个请求都会查询这些数据, 缓存后大部分请求不需要访问数据库. 通过 {@link ProjectService}, {@link UserService}
+ * 以及登录进行的修改会使相应的缓存失效, 其他途径的修改最多延迟 ttl 秒生效.
+ */
+@Service
+public class AuthCache {
+
+  private static Logger logger = LoggerFactory.getLogger(AuthCache.class.getName());
+
+  /**
+   * 输出缓存统计信息的间隔, 单位: 分钟
+   */
+  private static final long STATS_INTERVAL = 5;
+
+  @Value("${auth.cache.ttl:60}")
+  private int ttl;
+
+  @Value("${auth.cache.size:10000}")
+  private int size;
+
+  @Autowired
+  private SessionMapper sessionMapper;
+
+  @Autowired
+  private UserMapper userMapper;
+
+  @Autowired
+  private ProjectMapper projectMapper;
+
+  @Autowired
+  private ProjectUserMapper projectUserMapper;
+
+  /**
+   * sessionId@ip -> session
+   */
+  private TtlCache<String, Session> sessions;
+
+  /**
+   * userId -> user
+   */
+  private TtlCache<Integer, User> users;
+
+  /**
+   * 项目名称 -> project
+   */
+  private TtlCache<String, Project> projects;
+
+  /**
+   * projectId:userId -> 权限
+   */
+  private TtlCache<String, Integer> perms;
+
+  private ScheduledExecutorService statsExecutor;
+
+  @PostConstruct
+  public void init() {
+    sessions = new TtlCache<>("session", size, ttl, TimeUnit.SECONDS);
+    users = new TtlCache<>("user", size, ttl, TimeUnit.SECONDS);
+    projects = new TtlCache<>("project", size, ttl, TimeUnit.SECONDS);
+    perms = new TtlCache<>("perm", size, ttl, TimeUnit.SECONDS);
+
+    statsExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "AuthCache-Stats");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    statsExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        logger.info("auth cache stats, {}; {}; {}; {}", sessions, users, projects, perms);
+      }
+    }, STATS_INTERVAL, STATS_INTERVAL, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    statsExecutor.shutdownNow();
+  }
+
+  /**
+   * 根据 id 和 ip 查询 session
+   *
+   * @param sessionId
+   * @param ip
+   * @return
+   */
+  public Session getSession(final String sessionId, final String ip) {
+    return sessions.get(sessionKey(sessionId, ip), key -> sessionMapper.queryByIdAndIp(sessionId, ip));
+  }
+
+  public void invalidateSession(String sessionId, String ip) {
+    sessions.invalidate(sessionKey(sessionId, ip));
+  }
+
+  private static String sessionKey(String sessionId, String ip) {
+    return sessionId + "@" + ip;
+  }
+
+  /**
+   * 根据 id 查询用户
+   *
+   * @param userId
+   * @return
+   */
+  public User getUser(int userId) {
+    return users.get(userId, userMapper::queryById);
+  }
+
+  public void invalidateUser(int userId) {
+    users.invalidate(userId);
+  }
+
+  public void invalidateAllUsers() {
+    users.invalidateAll();
+  }
+
+  /**
+   * 根据名称查询项目, 返回的对象是共享的, 不要修改
+   *
+   * @param name
+   * @return
+   */
+  public Project getProject(String name) {
+    return projects.get(name, projectMapper::queryByName);
+  }
+
+  public void invalidateProject(String name) {
+    projects.invalidate(name);
+  }
+
+  /**
+   * 查询用户在项目中的权限, 不是项目成员时为 0
+   *
+   * @param projectId
+   * @param userId
+   * @return
+   */
+  public int getPerm(final int projectId, final int userId) {
+    return perms.get(permKey(projectId, userId), key -> {
+      ProjectUser projectUser = projectUserMapper.query(projectId, userId);
+      return (projectUser == null) ? 0 : projectUser.getPerm();
+    });
+  }
+
+  public void invalidatePerm(int projectId, int userId) {
+    perms.invalidate(permKey(projectId, userId));
+  }
+
+  public void invalidateAllPerms() {
+    perms.invalidateAll();
+  }
+
+  private static String permKey(int projectId, int userId) {
+    return projectId + ":" + userId;
+  }
+}
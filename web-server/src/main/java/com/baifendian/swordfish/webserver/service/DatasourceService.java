@@ -18,7 +18,6 @@ package com.baifendian.swordfish.webserver.service;
 import com.baifendian.swordfish.common.datasource.DataSourceManager;
 import com.baifendian.swordfish.dao.enums.DbType;
 import com.baifendian.swordfish.dao.mapper.DataSourceMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.model.DataSource;
 import com.baifendian.swordfish.dao.model.Project;
 import com.baifendian.swordfish.dao.model.User;
@@ -44,7 +43,7 @@ public class DatasourceService {
   private DataSourceMapper dataSourceMapper;
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
@@ -63,7 +62,7 @@ public class DatasourceService {
    */
   public DataSource createDataSource(User operator, String projectName, String name, String desc, DbType type, String parameter, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     // 不存在的项目名
     if (project == null) {
@@ -160,7 +159,7 @@ public class DatasourceService {
    */
   public DataSource modifyDataSource(User operator, String projectName, String name, String desc, String parameter, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     // 不存在的项目名
     if (project == null) {
@@ -211,7 +210,7 @@ public class DatasourceService {
    */
   public void deleteDataSource(User operator, String projectName, String name, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     //不存在的项目名
     if (project == null) {
@@ -244,7 +243,7 @@ public class DatasourceService {
    */
   public List<DataSource> query(User operator, String projectName, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     // 不存在的项目名
     if (project == null) {
@@ -272,7 +271,7 @@ public class DatasourceService {
    */
   public DataSource queryByName(User operator, String projectName, String name, HttpServletResponse response) {
     // 查询项目信息
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     // 不存在的项目名
     if (project == null) {
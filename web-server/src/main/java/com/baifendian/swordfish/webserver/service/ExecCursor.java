@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 执行列表的翻页游标, 为上一页最后一条执行的 (schedule_time, id) <p>
+ *
+ * 对调用方是不透明的字符串, 编码为 "毫秒时间:id" 的 base64.
+ */
+class ExecCursor {
+
+  private final Date scheduleTime;
+
+  private final int execId;
+
+  ExecCursor(Date scheduleTime, int execId) {
+    this.scheduleTime = scheduleTime;
+    this.execId = execId;
+  }
+
+  Date getScheduleTime() {
+    return scheduleTime;
+  }
+
+  int getExecId() {
+    return execId;
+  }
+
+  static String encode(ExecutionFlow executionFlow) {
+    String value = executionFlow.getScheduleTime().getTime() + ":" + executionFlow.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * 解析游标, 为空时返回 null, 表示从第一条开始
+   *
+   * @throws IllegalArgumentException 游标格式不正确
+   */
+  static ExecCursor decode(String cursor) {
+    if (StringUtils.isEmpty(cursor)) {
+      return null;
+    }
+
+    try {
+      String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int index = value.indexOf(':');
+      return new ExecCursor(new Date(Long.parseLong(value.substring(0, index))), Integer.parseInt(value.substring(index + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Argument is not valid, cursor: " + cursor);
+    }
+  }
+}
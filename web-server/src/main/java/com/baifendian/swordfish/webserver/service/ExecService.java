@@ -18,9 +18,8 @@ package com.baifendian.swordfish.webserver.service;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.enums.*;
 import com.baifendian.swordfish.dao.mapper.ExecutionFlowMapper;
-import com.baifendian.swordfish.dao.mapper.ExecutionNodeMapper;
+import com.baifendian.swordfish.dao.mapper.ExecutionStatMapper;
 import com.baifendian.swordfish.dao.mapper.MasterServerMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.model.*;
 import com.baifendian.swordfish.dao.model.flow.params.Property;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
@@ -41,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -54,7 +54,7 @@ public class ExecService {
   private static Logger logger = LoggerFactory.getLogger(ExecService.class.getName());
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
@@ -66,7 +66,7 @@ public class ExecService {
   private ExecutionFlowMapper executionFlowMapper;
 
   @Autowired
-  private ExecutionNodeMapper executionNodeMapper;
+  private ExecutionStatMapper executionStatMapper;
 
   @Autowired
   private LogHelper logHelper;
@@ -77,7 +77,7 @@ public class ExecService {
   public List<Integer> postExecWorkflow(User operator, String projectName, String workflowName, String schedule, ExecType execType, String nodeName, NodeDepType nodeDep, NotifyType notifyType, String notifyMails, int timeout, HttpServletResponse response) {
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -169,9 +169,11 @@ public class ExecService {
   /**
    * 查询任务运行情况
    *
+   * @param cursor 不为 null 时按游标翻页, 忽略 from; 空串表示从第一条开始
+   * @param count  按游标翻页时是否返回估计的总数
    * @return
    */
-  public ExecWorkflowsResponse getExecWorkflow(User operator, String projectName, String workflowName, Date startDate, Date endDate, String status, int from, int size, HttpServletResponse response) {
+  public ExecWorkflowsResponse getExecWorkflow(User operator, String projectName, String workflowName, Date startDate, Date endDate, String status, int from, int size, String cursor, boolean count, HttpServletResponse response) {
 
     List<String> workflowList;
 
@@ -184,7 +186,7 @@ public class ExecService {
     }
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -207,11 +209,49 @@ public class ExecService {
       return null;
     }
 
+    if (cursor != null) {
+      ExecCursor execCursor;
+
+      try {
+        execCursor = ExecCursor.decode(cursor);
+      } catch (IllegalArgumentException e) {
+        logger.error("Exec cursor is not valid: {}", cursor);
+        response.setStatus(HttpStatus.SC_BAD_REQUEST);
+        return null;
+      }
+
+      return getExecWorkflowAfter(project, workflowList, startDate, endDate, flowStatusList, execCursor, size, count);
+    }
+
     List<ExecutionFlow> executionFlowList = executionFlowMapper.selectByFlowIdAndTimesAndStatusLimit(projectName,workflowList, startDate, endDate, (from-1)*size, size, flowStatusList);
     int total = executionFlowMapper.sumByFlowIdAndTimesAndStatus(projectName,workflowList, startDate, endDate,  flowStatusList);
     return new ExecWorkflowsResponse(total,size,executionFlowList);
   }
 
+  /**
+   * 按游标翻页, 多取一条判断是否还有下一页, 总数从统计汇总中估计, 不需要扫描之前的执行
+   */
+  private ExecWorkflowsResponse getExecWorkflowAfter(Project project, List<String> workflowList, Date startDate, Date endDate, List<FlowStatus> flowStatusList, ExecCursor execCursor, int size, boolean count) {
+    Date cursorTime = (execCursor == null) ? null : execCursor.getScheduleTime();
+    int cursorId = (execCursor == null) ? 0 : execCursor.getExecId();
+
+    List<ExecutionFlow> executionFlowList = executionFlowMapper.selectByFlowIdAndTimesAndStatusAfter(project.getName(), workflowList, startDate, endDate, cursorTime, cursorId, size + 1, flowStatusList);
+
+    String nextCursor = null;
+
+    if (executionFlowList.size() > size) {
+      executionFlowList = new ArrayList<>(executionFlowList.subList(0, size));
+      nextCursor = ExecCursor.encode(executionFlowList.get(size - 1));
+    }
+
+    int total = count ? executionStatMapper.countByFlowsAndTimesAndStatus(project.getId(), workflowList, ExecutionStatRecord.truncateToHour(startDate), endDate, flowStatusList) : -1;
+
+    ExecWorkflowsResponse execWorkflowsResponse = new ExecWorkflowsResponse(total, size, executionFlowList);
+    execWorkflowsResponse.setCursor(nextCursor);
+
+    return execWorkflowsResponse;
+  }
+
   /**
    * 查询具体某个任务的运行情况
    *
@@ -222,7 +262,7 @@ public class ExecService {
    */
   public ExecutionFlow getExecWorkflow(User operator, int execId, HttpServletResponse response) {
 
-    ExecutionFlow executionFlow = executionFlowMapper.selectByExecId(execId);
+    ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
 
     if (executionFlow == null) {
       logger.error("exec flow does not exist: {}", execId);
@@ -231,7 +271,7 @@ public class ExecService {
     }
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(executionFlow.getProjectName());
+    Project project = authCache.getProject(executionFlow.getProjectName());
 
     if (project == null) {
       logger.error("Project does not exist: {}", executionFlow.getProjectName());
@@ -245,7 +285,7 @@ public class ExecService {
       return null;
     }
 
-    List<ExecutionNode> executionNodeList = executionNodeMapper.selectExecNodeById(execId);
+    List<ExecutionNode> executionNodeList = flowDao.queryExecutionNodes(execId);
 
     try {
       JSONObject jsonObject = new JSONObject(executionFlow.getWorkflowData());
@@ -284,37 +324,75 @@ public class ExecService {
    * @return
    */
   public LogResult getEexcWorkflowLog(User operator, String jobId, int from, int size, HttpServletResponse response) {
-    ExecutionNode executionNode = executionNodeMapper.selectExecNodeByJobId(jobId);
+    if (!checkLogPerm(operator, jobId, response)) {
+      return null;
+    }
+
+    return logHelper.getLog(from, size, jobId);
+  }
+
+  /**
+   * 按游标跟踪日志, follow 为 true 时没有新日志会等待至多 timeout 毫秒 <p>
+   *
+   * @param operator
+   * @param jobId
+   * @param cursor   上一次返回的游标, 为空时从第一条开始
+   * @param size
+   * @param follow
+   * @param timeout
+   * @return
+   */
+  public DeferredResult<LogResult> tailExecWorkflowLog(User operator, String jobId, String cursor, int size, boolean follow, long timeout, HttpServletResponse response) {
+    DeferredResult<LogResult> result = new DeferredResult<>();
+
+    if (!checkLogPerm(operator, jobId, response)) {
+      result.setResult(null);
+      return result;
+    }
+
+    if (follow) {
+      return logHelper.followLog(cursor, size, jobId, timeout);
+    }
+
+    result.setResult(logHelper.getLogAfter(cursor, size, jobId));
+    return result;
+  }
+
+  /**
+   * 检查用户是否有查看 job 日志的权限, 没有时设置 response 的状态 <p>
+   */
+  private boolean checkLogPerm(User operator, String jobId, HttpServletResponse response) {
+    ExecutionNode executionNode = flowDao.queryExecutionNodeByJobId(jobId);
 
     if (executionNode == null) {
       logger.error("job id does not exist: {}", jobId);
       response.setStatus(HttpStatus.SC_NOT_FOUND);
-      return null;
+      return false;
     }
 
-    ExecutionFlow executionFlow = executionFlowMapper.selectByExecId(executionNode.getExecId());
+    ExecutionFlow executionFlow = flowDao.queryExecutionFlow(executionNode.getExecId());
 
     if (executionFlow == null) {
       logger.error("execution flow does not exist: {}", executionNode.getExecId());
       response.setStatus(HttpStatus.SC_NOT_FOUND);
-      return null;
+      return false;
     }
 
-    Project project = projectMapper.queryByName(executionFlow.getProjectName());
+    Project project = authCache.getProject(executionFlow.getProjectName());
 
     if (project == null) {
       logger.error("project does not exist: {}", executionFlow.getProjectName());
       response.setStatus(HttpStatus.SC_NOT_FOUND);
-      return null;
+      return false;
     }
 
     if (!projectService.hasExecPerm(operator.getId(), project)) {
       logger.error("User {} has no right permission for the project {} to get exec project flow log", operator.getName(), project.getName());
       response.setStatus(HttpStatus.SC_UNAUTHORIZED);
-      return null;
+      return false;
     }
 
-    return logHelper.getLog(from, size, jobId);
+    return true;
   }
 
   /**
@@ -325,7 +403,7 @@ public class ExecService {
    * @param response
    */
   public void postKillWorkflow(User operator, int execId, HttpServletResponse response) {
-    ExecutionFlow executionFlow = executionFlowMapper.selectByExecId(execId);
+    ExecutionFlow executionFlow = flowDao.queryExecutionFlow(execId);
 
     if (executionFlow == null) {
       logger.error("exec flow does not exist: {}", execId);
@@ -334,7 +412,7 @@ public class ExecService {
     }
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(executionFlow.getProjectName());
+    Project project = authCache.getProject(executionFlow.getProjectName());
 
     if (project == null) {
       logger.error("Project does not exist: {}", executionFlow.getProjectName());
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志的游标, 日志按 (nanoTime, _uid) 排序 <p>
+ *
+ * 日志写入 es 有延迟, 时间较早的日志可能在游标越过它之后才能被搜索到, 只从上一次的最后一条之后读取会漏掉这些日志.
+ * 所以每次从最近一段时间 ({@link #WINDOW}) 的开始处重新读取, 并记录窗口内已返回日志的 _uid, 用于去重.
+ * 记录的是 _uid 本身而不是 hash, 不同的日志不会因为 hash 相同而被当作已返回.
+ * 窗口内记录的条数有上限 ({@link #MAX_SEEN}), 超出时缩小窗口; 早于窗口才被搜索到的日志仍然会被漏掉.
+ *
+ * 对调用方是不透明的字符串, 编码为 (版本, 窗口开始时间, 已返回的最大时间, (长度, _uid)...) 的 base64.
+ */
+class LogCursor {
+
+  /**
+   * 重新读取的时间窗口, 单位: 纳秒, 与日志中的 nanoTime 相同
+   */
+  static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+  /**
+   * 窗口内最多记录的条数, 限制游标的长度
+   */
+  static final int MAX_SEEN = 256;
+
+  /**
+   * 编码的版本, 旧的游标是 "nanoTime:_uid" 的文本, 第一个字节是数字
+   */
+  private static final byte VERSION = 3;
+
+  /**
+   * 记录 _uid 的 hash 的版本, 已经发出去的游标仍然可以解析
+   */
+  private static final byte HASH_VERSION = 2;
+
+  /**
+   * 窗口的开始时间, 从这个时间开始读取
+   */
+  private final long from;
+
+  /**
+   * 已返回日志的最大时间
+   */
+  private final long high;
+
+  /**
+   * 窗口内已返回日志的 _uid
+   */
+  private final String[] seen;
+
+  LogCursor(long from, long high, String[] seen) {
+    this.from = from;
+    this.high = high;
+    this.seen = seen;
+  }
+
+  long getFrom() {
+    return from;
+  }
+
+  long getHigh() {
+    return high;
+  }
+
+  String[] getSeen() {
+    return seen;
+  }
+
+  /**
+   * 搜索的 search_after, 空字符串排在所有 _uid 之前, 即包含 from 时刻的日志
+   */
+  Object[] searchAfter() {
+    return new Object[]{from, ""};
+  }
+
+  /**
+   * 根据读到的日志选出未返回过的, 并计算下一个游标 <p>
+   *
+   * @param cursor     当前游标, 为 null 时表示从第一条开始
+   * @param sortValues 从游标处读到的日志的排序值 (nanoTime, _uid), 按顺序
+   * @param size       最多选出的条数
+   * @param accepted   选出的日志在 sortValues 中的下标
+   * @return 下一个游标, 没有选出日志时为当前游标
+   */
+  static LogCursor advance(LogCursor cursor, List<Object[]> sortValues, int size, List<Integer> accepted) {
+    Set<String> pending = new HashSet<>();
+    long from = Long.MIN_VALUE;
+    long high = Long.MIN_VALUE;
+    if (cursor != null) {
+      Collections.addAll(pending, cursor.seen);
+      from = cursor.from;
+      high = cursor.high;
+    }
+
+    // 处理过的日志在 sortValues 中的下标
+    List<Integer> processed = new ArrayList<>();
+    for (int i = 0; i < sortValues.size() && accepted.size() < size; i++) {
+      long nanoTime = nanoTime(sortValues.get(i));
+      if (!pending.remove(uid(sortValues.get(i)))) {
+        accepted.add(i);
+      }
+      processed.add(i);
+      high = Math.max(high, nanoTime);
+    }
+
+    if (accepted.isEmpty()) {
+      return cursor;
+    }
+
+    from = Math.max(from, high - WINDOW);
+
+    // 窗口内处理过的日志按时间倒序, 保留最新的; 没有处理到的已返回日志在处理位置之后, 都要保留
+    Collections.sort(processed, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Long.compare(nanoTime(sortValues.get(o2)), nanoTime(sortValues.get(o1)));
+      }
+    });
+    List<String> seen = new ArrayList<>(pending);
+    for (int i : processed) {
+      long nanoTime = nanoTime(sortValues.get(i));
+      if (nanoTime < from) {
+        break;
+      }
+      if (seen.size() >= MAX_SEEN) {
+        // 窗口从保留的最早一条之后开始, 相同时间的其它日志不再读取
+        from = nanoTime + 1;
+        break;
+      }
+      seen.add(uid(sortValues.get(i)));
+    }
+
+    return new LogCursor(from, high, seen.toArray(new String[seen.size()]));
+  }
+
+  private static long nanoTime(Object[] sortValue) {
+    return ((Number) sortValue[0]).longValue();
+  }
+
+  private static String uid(Object[] sortValue) {
+    return String.valueOf(sortValue[1]);
+  }
+
+  static String encode(LogCursor cursor) {
+    List<byte[]> uids = new ArrayList<>();
+    int length = 1 + 8 + 8;
+    for (String uid : cursor.seen) {
+      byte[] bytes = uid.getBytes(StandardCharsets.UTF_8);
+      uids.add(bytes);
+      length += 2 + bytes.length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.put(VERSION).putLong(cursor.from).putLong(cursor.high);
+    for (byte[] bytes : uids) {
+      buffer.putShort((short) bytes.length).put(bytes);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+
+  /**
+   * 解析游标, 为空时返回 null, 表示从第一条开始
+   *
+   * @throws IllegalArgumentException 游标格式不正确
+   */
+  static LogCursor decode(String cursor) {
+    if (StringUtils.isEmpty(cursor)) {
+      return null;
+    }
+
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+      if (bytes.length > 0 && bytes[0] == VERSION) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        long from = buffer.getLong();
+        long high = buffer.getLong();
+        List<String> seen = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+          byte[] uid = new byte[buffer.getShort() & 0xffff];
+          buffer.get(uid);
+          seen.add(new String(uid, StandardCharsets.UTF_8));
+        }
+        return new LogCursor(from, high, seen.toArray(new String[seen.size()]));
+      }
+
+      // 记录 hash 的游标: 已返回的 _uid 无法还原, 窗口内的日志可能重复返回一次
+      if (bytes.length > 0 && bytes[0] == HASH_VERSION) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        long from = buffer.getLong();
+        long high = buffer.getLong();
+        if (buffer.remaining() % 4 != 0) {
+          throw new IllegalArgumentException();
+        }
+        return new LogCursor(from, high, new String[0]);
+      }
+
+      // 旧的游标: 上一次的最后一条 "nanoTime:_uid", 与它时间相同的日志可能重复返回一次
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      int index = value.indexOf(':');
+      long nanoTime = Long.parseLong(value.substring(0, index));
+      return new LogCursor(nanoTime, nanoTime, new String[]{value.substring(index + 1)});
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Argument is not valid, cursor: " + cursor);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LogCursor{from=" + from + ", high=" + high + ", seen=" + Arrays.toString(seen) + "}";
+  }
+}
@@ -25,19 +25,55 @@ import org.elasticsearch.search.SearchHits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class LogHelper {
 
   private static Logger logger = LoggerFactory.getLogger(LogHelper.class.getName());
 
+  /**
+   * follow 模式下没有新日志时, 再次查询的间隔, 单位: 毫秒
+   */
+  private static final long FOLLOW_POLL_INTERVAL = 1000;
+
+  /**
+   * follow 模式最长的等待时间, 单位: 毫秒
+   */
+  public static final long MAX_FOLLOW_TIMEOUT = 30000;
+
   private EsSearch search = EsSearch.getInstance();
 
+  /**
+   * follow 模式下再次查询的线程, 等待期间不占用请求线程
+   */
+  private final ScheduledExecutorService followExecutor = Executors.newScheduledThreadPool(4, new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "LogFollower-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  @PreDestroy
+  public void destroy() {
+    followExecutor.shutdownNow();
+  }
+
   public LogResult getLog(Integer from, Integer size, String jobId) {
     if (from == null) {
       from = 0;
@@ -90,4 +126,99 @@ public class LogHelper {
     result.setTook(System.currentTimeMillis() - start);
     return result;
   }
+
+  /**
+   * 按游标读取日志, 按时间正序 <p>
+   *
+   * 日志只从 es 中读取. exec-server 上没有按作业分开的本地日志文件 (作业日志和 exec-server 自身的日志写在同一个文件中),
+   * 所以 es 索引滞后时不能从本地文件补充; 索引滞后的日志由游标的时间窗口在之后的读取中补上, 见 {@link LogCursor}.
+   *
+   * @param cursor 上一次返回的游标, 为 null 时从第一条开始
+   * @param size   返回的最大条数
+   * @param jobId
+   * @return 日志, 其中的游标用于读取之后的日志; 没有新日志时游标不变
+   */
+  public LogResult getLogAfter(String cursor, int size, String jobId) {
+    long start = System.currentTimeMillis();
+
+    LogResult result = new LogResult();
+    result.setCursor(cursor);
+
+    LogCursor logCursor = LogCursor.decode(cursor);
+
+    // 窗口内已返回的日志会被再次读到, 多读这么多条
+    int fetchSize = (logCursor != null) ? size + logCursor.getSeen().length : size;
+    SearchResponse response = search.searchAfter((logCursor != null) ? logCursor.searchAfter() : null, fetchSize, jobId);
+
+    if (response.status() == RestStatus.OK) {
+      SearchHits searchHits = response.getHits();
+      SearchHit[] hits = searchHits.getHits();
+
+      List<Object[]> sortValues = new ArrayList<>(hits.length);
+      for (SearchHit hit : hits) {
+        sortValues.add(hit.getSortValues());
+      }
+      List<Integer> accepted = new ArrayList<>();
+      LogCursor next = LogCursor.advance(logCursor, sortValues, size, accepted);
+
+      List<String> contents = new ArrayList<>(accepted.size());
+      for (int index : accepted) {
+        Map<String, Object> fieldMap = hits[index].getSource();
+        Object message = (fieldMap != null) ? fieldMap.get("nest_msg") : null;
+        contents.add((message != null) ? message.toString() : StringUtils.EMPTY);
+      }
+
+      result.setTotal(searchHits.getTotalHits());
+      result.setLength(contents.size());
+      result.setContent(contents);
+
+      if (next != logCursor) {
+        result.setCursor(LogCursor.encode(next));
+      }
+    } else {
+      logger.error("search status: {}", response.status());
+    }
+
+    result.setTook(System.currentTimeMillis() - start);
+    return result;
+  }
+
+  /**
+   * 跟踪日志 (long-poll): 有新日志时立即返回, 否则每隔一段时间再查询, 直到有新日志或超时 <p>
+   *
+   * @param cursor  上一次返回的游标
+   * @param size    返回的最大条数
+   * @param jobId
+   * @param timeout 最长等待时间, 单位: 毫秒
+   */
+  public DeferredResult<LogResult> followLog(final String cursor, final int size, final String jobId, long timeout) {
+    // 先检查游标, 非法时直接抛出
+    LogCursor.decode(cursor);
+
+    final long deadline = System.currentTimeMillis() + Math.min(Math.max(timeout, 0), MAX_FOLLOW_TIMEOUT);
+    final DeferredResult<LogResult> deferredResult = new DeferredResult<>(MAX_FOLLOW_TIMEOUT + FOLLOW_POLL_INTERVAL * 5);
+
+    Runnable poll = new Runnable() {
+      @Override
+      public void run() {
+        if (deferredResult.isSetOrExpired()) {
+          return;
+        }
+        try {
+          LogResult result = getLogAfter(cursor, size, jobId);
+          if (!result.getContent().isEmpty() || System.currentTimeMillis() + FOLLOW_POLL_INTERVAL > deadline) {
+            deferredResult.setResult(result);
+          } else {
+            followExecutor.schedule(this, FOLLOW_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+          }
+        } catch (Exception e) {
+          logger.error("follow log of job " + jobId + " error", e);
+          deferredResult.setErrorResult(e);
+        }
+      }
+    };
+    followExecutor.execute(poll);
+
+    return deferredResult;
+  }
 }
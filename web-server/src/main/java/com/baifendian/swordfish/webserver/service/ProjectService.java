@@ -46,6 +46,9 @@ public class ProjectService {
   @Autowired
   private ProjectMapper projectMapper;
 
+  @Autowired
+  private AuthCache authCache;
+
   @Autowired
   private ProjectUserMapper projectUserMapper;
 
@@ -118,6 +121,7 @@ public class ProjectService {
     project.setModifyTime(now);
 
     int count = projectMapper.updateById(project);
+    authCache.invalidateProject(name);
 
     if (count <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -153,6 +157,8 @@ public class ProjectService {
     // TODO:: 严格来说, 应该清理 Local/HDFS 上的相关目录
 
     int count = projectMapper.deleteById(project.getId());
+    authCache.invalidateProject(name);
+    authCache.invalidateAllPerms();
 
     if (count <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -191,7 +197,7 @@ public class ProjectService {
    * @return
    */
   public ProjectUser addProjectUser(User operator, String name, String userName, int perm, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(name);
+    Project project = authCache.getProject(name);
 
     // 不存在的项目名
     if (project == null) {
@@ -241,6 +247,7 @@ public class ProjectService {
     projectUser.setModifyTime(now);
 
     projectUserMapper.insert(projectUser);
+    authCache.invalidatePerm(project.getId(), user.getId());
 
     return projectUser;
   }
@@ -255,7 +262,7 @@ public class ProjectService {
    * @param response
    */
   public ProjectUser modifyProjectUser(User operator, String name, String userName, int perm, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(name);
+    Project project = authCache.getProject(name);
 
     // 不存在的项目名
     if (project == null) {
@@ -298,6 +305,7 @@ public class ProjectService {
     projectUser.setModifyTime(now);
 
     projectUserMapper.modify(projectUser);
+    authCache.invalidatePerm(project.getId(), user.getId());
 
     return projectUser;
   }
@@ -312,7 +320,7 @@ public class ProjectService {
    */
   public void deleteProjectUser(User operator, String name, String userName, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(name);
+    Project project = authCache.getProject(name);
 
     // 不存在的项目名
     if (project == null) {
@@ -341,6 +349,7 @@ public class ProjectService {
     }
 
     int count = projectUserMapper.delete(project.getId(), user.getId());
+    authCache.invalidatePerm(project.getId(), user.getId());
 
     if (count <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -360,7 +369,7 @@ public class ProjectService {
    */
   public List<ProjectUser> queryUser(User operator, String name, HttpServletResponse response) {
     // 查询项目
-    Project project = projectMapper.queryByName(name);
+    Project project = authCache.getProject(name);
 
     // 不存在的项目名
     if (project == null) {
@@ -389,13 +398,7 @@ public class ProjectService {
       return Constants.PROJECT_USER_PERM_ALL;
     }
 
-    ProjectUser projectUser = projectUserMapper.query(project.getId(), userId);
-
-    if (projectUser == null) {
-      return 0;
-    }
-
-    return projectUser.getPerm();
+    return authCache.getPerm(project.getId(), userId);
   }
 
   /**
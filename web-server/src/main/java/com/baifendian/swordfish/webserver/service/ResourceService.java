@@ -17,33 +17,62 @@ package com.baifendian.swordfish.webserver.service;
 
 import com.baifendian.swordfish.common.config.BaseConfig;
 import com.baifendian.swordfish.common.hadoop.HdfsClient;
+import com.baifendian.swordfish.common.hadoop.HdfsException;
+import com.baifendian.swordfish.common.hadoop.HdfsTransfer;
 import com.baifendian.swordfish.common.utils.CommonUtil;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.mapper.ResourceMapper;
 import com.baifendian.swordfish.dao.model.Project;
 import com.baifendian.swordfish.dao.model.Resource;
 import com.baifendian.swordfish.dao.model.User;
-import com.baifendian.swordfish.webserver.service.storage.FileSystemStorageService;
+import com.baifendian.swordfish.webserver.service.storage.ByteRange;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ResourceService {
 
   private static Logger logger = LoggerFactory.getLogger(ResourceService.class.getName());
 
+  /**
+   * 清理临时文件的间隔, 单位: 分钟
+   */
+  private static final long PART_SWEEP_INTERVAL = 60;
+
+  /**
+   * 等待临时文件恢复 (截断或者中断的写入) 的最长时间, 单位: 毫秒
+   */
+  private static final long PART_RECOVERY_TIMEOUT = 10000;
+
+  /**
+   * 上传中断后遗留的临时文件, 超过这么久没有修改就删除, 单位: 小时
+   */
+  @Value("${resource.part.expire.hours:24}")
+  private int partExpireHours;
+
   @Autowired
   private ResourceMapper resourceMapper;
 
@@ -51,15 +80,52 @@ public class ResourceService {
   private ProjectService projectService;
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
-  @Autowired
-  private FileSystemStorageService fileSystemStorageService;
+  private ScheduledExecutorService partSweeper;
+
+  /**
+   * 启动临时文件的定期清理, 需要在 {@link HdfsClient} 初始化之后调用 <p>
+   */
+  public synchronized void startPartSweeper() {
+    if (partSweeper != null) {
+      return;
+    }
+
+    partSweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Resource-PartSweeper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    // 启动时先清理一次
+    partSweeper.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          sweepPartFiles(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(partExpireHours));
+        } catch (Exception e) {
+          logger.error("Sweep resource part files error", e);
+        }
+      }
+    }, 0, PART_SWEEP_INTERVAL, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public synchronized void destroy() {
+    if (partSweeper != null) {
+      partSweeper.shutdownNow();
+      partSweeper = null;
+    }
+  }
 
   /**
    * 创建资源:<br>
-   * 1) 先下载资源到本地, 为了避免并发问题, 随机生成一个文件名称<br>
-   * 2) 拷贝到 hdfs 中, 给予合适的文件名称(包含后缀)<p>
+   * 1) 上传的文件直接写入 hdfs 中的临时文件, 不落本地磁盘<br>
+   * 2) 写完之后改名为合适的文件名称(包含后缀)<p>
    *
    * @param operator
    * @param projectName
@@ -85,7 +151,7 @@ public class ResourceService {
     }
 
     // 判断是否具备相应的权限, 必须具备写权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -194,7 +260,7 @@ public class ResourceService {
     }
 
     // 判断是否具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -249,14 +315,13 @@ public class ResourceService {
   }
 
   /**
-   * 上传文件到 hdfs 中
+   * 上传文件到 hdfs 中, 先写到临时文件, 写完后再替换正式文件
    *
    * @param project
    * @param name
    * @param file
    */
   private boolean upload(Project project, String name, MultipartFile file) {
-    // 保存到本地
     String fileSuffix = CommonUtil.fileSuffix(file.getOriginalFilename()); // file suffix
     String nameSuffix = CommonUtil.fileSuffix(name);
 
@@ -265,17 +330,314 @@ public class ResourceService {
       return false;
     }
 
-    String localFilename = BaseConfig.getLocalResourceFilename(project.getId(), UUID.randomUUID().toString()); // 随机的一个文件名称
+    String partFilename = getPartFilename(project, name);
 
-    fileSystemStorageService.store(file, localFilename);
+    try (InputStream in = file.getInputStream()) {
+      HdfsTransfer.getInstance().upload(in, partFilename, false);
+    } catch (IOException e) {
+      logger.error("Upload file {} to hdfs {} error", file.getOriginalFilename(), partFilename, e);
+      HdfsClient.getInstance().delete(partFilename, false);
+      throw new HdfsException("Upload file to hdfs error", e);
+    }
 
-    // 保存到 hdfs 并删除源文件
-    String hdfsFilename = BaseConfig.getHdfsResourcesFilename(project.getId(), name);
-    HdfsClient.getInstance().copyLocalToHdfs(localFilename, hdfsFilename, true, true);
+    commitPartFile(project, name);
 
     return true;
   }
 
+  /**
+   * 以流的方式上传资源文件, 请求体直接写入 hdfs, 不存在则创建资源 <p>
+   *
+   * 带有 Content-Range 时为分段上传: 每段必须从已经收到的长度开始, 否则返回 409 并通过 Range 头告知已收到的范围;
+   * 中间段返回 202, 最后一段完成后资源生效. "bytes * /total" 用于查询已经收到的范围. <p>
+   *
+   * 带有 Content-MD5 (base64) 时会校验本次请求体, 不一致返回 400 并丢弃本次写入的数据.
+   * 上一次丢弃数据的截断还在进行时, 先等待其完成, 超时返回 503 和 Retry-After. 中断后遗留的临时文件会被定期清理.
+   *
+   * @param operator
+   * @param projectName
+   * @param name
+   * @param desc
+   * @param filename     原始文件名, 可以为空
+   * @param contentRange
+   * @param contentMd5
+   * @param in           请求体
+   * @param response
+   * @return 完成时返回资源信息, 否则返回 null
+   */
+  public Resource uploadResourceFile(User operator,
+                                     String projectName,
+                                     String name,
+                                     String desc,
+                                     String filename,
+                                     String contentRange,
+                                     String contentMd5,
+                                     InputStream in,
+                                     HttpServletResponse response) {
+    // 判断是否具备相应的权限, 必须具备写权限
+    Project project = authCache.getProject(projectName);
+
+    if (project == null) {
+      logger.error("Project does not exist: {}", projectName);
+      response.setStatus(HttpStatus.SC_BAD_REQUEST);
+      return null;
+    }
+
+    if (!projectService.hasWritePerm(operator.getId(), project)) {
+      logger.error("User {} has no right permission for the project {}", operator.getName(), projectName);
+      response.setStatus(HttpStatus.SC_UNAUTHORIZED);
+      return null;
+    }
+
+    // 判断后缀
+    if (filename != null && !StringUtils.equals(CommonUtil.fileSuffix(filename), CommonUtil.fileSuffix(name))) {
+      logger.error("File {} suffix must the same with resource name {} suffix", filename, name);
+      response.setStatus(HttpStatus.SC_BAD_REQUEST);
+      return null;
+    }
+
+    ByteRange range = null;
+
+    if (contentRange != null) {
+      try {
+        range = ByteRange.parseContentRange(contentRange);
+      } catch (IllegalArgumentException e) {
+        logger.error("Content-Range is not valid: {}", contentRange);
+        response.setStatus(HttpStatus.SC_BAD_REQUEST);
+        return null;
+      }
+    }
+
+    String partFilename = getPartFilename(project, name);
+
+    // 上一次的截断或者中断的写入还在恢复时, 长度还不确定, 也不能追加
+    if (range != null && (range.isQuery() || range.getStart() != 0)
+        && !HdfsClient.getInstance().waitFileClosed(partFilename, PART_RECOVERY_TIMEOUT)) {
+      logger.error("Upload resource {}, part file {} is still being recovered", name, partFilename);
+      response.setHeader("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(PART_RECOVERY_TIMEOUT)));
+      response.setStatus(HttpStatus.SC_SERVICE_UNAVAILABLE);
+      return null;
+    }
+
+    long received = getPartLength(partFilename);
+
+    // 只是查询上传进度
+    if (range != null && range.isQuery()) {
+      setReceivedRange(response, received);
+      response.setStatus(HttpStatus.SC_ACCEPTED);
+      return null;
+    }
+
+    // 分段必须是连续的, 从 0 开始表示重新上传
+    if (range != null && range.getStart() != 0 && range.getStart() != received) {
+      logger.error("Upload resource {} range {} does not match received length {}", name, contentRange, received);
+      setReceivedRange(response, received);
+      response.setStatus(HttpStatus.SC_CONFLICT);
+      return null;
+    }
+
+    long start = (range == null) ? 0 : range.getStart();
+    MessageDigest md5 = newMd5Digest();
+    long written;
+
+    try (InputStream body = new DigestInputStream(in, md5)) {
+      written = HdfsTransfer.getInstance().upload(body, partFilename, start > 0);
+    } catch (IOException e) {
+      logger.error("Upload resource {} to hdfs {} error", name, partFilename, e);
+      discardPart(partFilename, start);
+      throw new HdfsException("Upload file to hdfs error", e);
+    }
+
+    String digest = Base64.getEncoder().encodeToString(md5.digest());
+
+    // 校验长度和 md5
+    if ((range != null && written != range.getLength()) || (contentMd5 != null && !StringUtils.equals(contentMd5.trim(), digest))) {
+      logger.error("Upload resource {} verify failed, length: {}, md5: {}, expect md5: {}", name, written, digest, contentMd5);
+      discardPart(partFilename, start);
+      setReceivedRange(response, start);
+      response.setStatus(HttpStatus.SC_BAD_REQUEST);
+      return null;
+    }
+
+    response.setHeader("Content-MD5", digest);
+
+    // 还有后续的分段
+    if (range != null && !range.isLast()) {
+      setReceivedRange(response, range.getEnd() + 1);
+      response.setStatus(HttpStatus.SC_ACCEPTED);
+      return null;
+    }
+
+    commitPartFile(project, name);
+
+    return saveResource(operator, project, name, desc, filename, response);
+  }
+
+  /**
+   * 上传完成后保存资源信息, 不存在则创建, 存在则更新
+   */
+  private Resource saveResource(User operator, Project project, String name, String desc, String filename, HttpServletResponse response) {
+    Resource resource = resourceMapper.queryResource(project.getId(), name);
+    Date now = new Date();
+
+    if (resource == null) {
+      resource = new Resource();
+
+      resource.setName(name);
+      resource.setOriginFilename(StringUtils.defaultString(filename, name));
+      resource.setDesc(desc);
+      resource.setOwnerId(operator.getId());
+      resource.setOwner(operator.getName());
+      resource.setProjectId(project.getId());
+      resource.setProjectName(project.getName());
+      resource.setCreateTime(now);
+      resource.setModifyTime(now);
+
+      try {
+        resourceMapper.insert(resource);
+      } catch (DuplicateKeyException e) {
+        logger.error("Resource has exist, can't create again.", e);
+        response.setStatus(HttpStatus.SC_CONFLICT);
+        return null;
+      }
+
+      response.setStatus(HttpStatus.SC_CREATED);
+      return resource;
+    }
+
+    if (filename != null) {
+      resource.setOriginFilename(filename);
+    }
+
+    if (desc != null) {
+      resource.setDesc(desc);
+    }
+
+    resource.setOwnerId(operator.getId());
+    resource.setModifyTime(now);
+
+    resourceMapper.update(resource);
+
+    return resource;
+  }
+
+  /**
+   * 上传中的临时文件, 以 "." 开头, 不会和资源名称冲突
+   */
+  private static String getPartFilename(Project project, String name) {
+    return BaseConfig.getHdfsResourcesFilename(project.getId(), "." + name + ".part");
+  }
+
+  /**
+   * 删除修改时间早于 expireTime 的临时文件, 包括已经删除的项目下的 <p>
+   *
+   * @param expireTime 毫秒时间
+   * @return 删除的文件数
+   */
+  int sweepPartFiles(long expireTime) {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+    int count = 0;
+
+    try {
+      if (!hdfsClient.exists(BaseConfig.getHdfsDataBasePath())) {
+        return 0;
+      }
+
+      for (FileStatus projectDir : hdfsClient.listFileStatus(BaseConfig.getHdfsDataBasePath())) {
+        if (!projectDir.isDirectory() || !StringUtils.isNumeric(projectDir.getPath().getName())) {
+          continue;
+        }
+
+        String resourcesDir = BaseConfig.getHdfsResourcesDir(Integer.parseInt(projectDir.getPath().getName()));
+        if (!hdfsClient.exists(resourcesDir)) {
+          continue;
+        }
+
+        for (FileStatus status : hdfsClient.listFileStatus(resourcesDir)) {
+          String filename = status.getPath().getName();
+
+          if (status.isFile() && isPartFilename(filename) && status.getModificationTime() < expireTime) {
+            logger.info("Delete stale part file {}, modify time: {}", status.getPath(), new Date(status.getModificationTime()));
+            hdfsClient.delete(status.getPath().toString(), false);
+            count++;
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Sweep resource part files error", e);
+    }
+
+    return count;
+  }
+
+  private static boolean isPartFilename(String filename) {
+    return filename.startsWith(".") && filename.endsWith(".part");
+  }
+
+  /**
+   * 已经收到的长度, 临时文件不存在时为 0
+   */
+  private static long getPartLength(String partFilename) {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    try {
+      return hdfsClient.exists(partFilename) ? hdfsClient.getFileStatus(partFilename).getLen() : 0;
+    } catch (IOException e) {
+      logger.error("Get hdfs file {} status error", partFilename, e);
+      throw new HdfsException("Get hdfs file status error", e);
+    }
+  }
+
+  /**
+   * 丢弃本次写入的数据, 截断到 start, start 为 0 时直接删除
+   */
+  private static void discardPart(String partFilename, long start) {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    try {
+      if (start == 0) {
+        hdfsClient.delete(partFilename, false);
+      } else if (!hdfsClient.truncate(partFilename, start)) {
+        logger.info("Truncate {} to {} is in progress", partFilename, start);
+      }
+    } catch (HdfsException e) {
+      logger.error("Discard part file {} error", partFilename, e);
+    }
+  }
+
+  /**
+   * 临时文件替换为正式的资源文件
+   */
+  private static void commitPartFile(Project project, String name) {
+    HdfsClient hdfsClient = HdfsClient.getInstance();
+
+    String partFilename = getPartFilename(project, name);
+    String hdfsFilename = BaseConfig.getHdfsResourcesFilename(project.getId(), name);
+
+    hdfsClient.delete(hdfsFilename, false);
+
+    if (!hdfsClient.rename(partFilename, hdfsFilename)) {
+      logger.error("Rename hdfs file {} to {} failed", partFilename, hdfsFilename);
+      throw new HdfsException("Rename hdfs file failed");
+    }
+  }
+
+  private static void setReceivedRange(HttpServletResponse response, long received) {
+    String value = ByteRange.receivedRange(received);
+
+    if (value != null) {
+      response.setHeader("Range", value);
+    }
+  }
+
+  private static MessageDigest newMd5Digest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * 拷贝资源
    *
@@ -310,7 +672,7 @@ public class ResourceService {
     }
 
     // 判断是否具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -395,7 +757,7 @@ public class ResourceService {
                              HttpServletResponse response) {
 
     // 判断是否具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -436,7 +798,7 @@ public class ResourceService {
   public List<Resource> getResources(User operator, String projectName, HttpServletResponse response) {
 
     // 判断是否具备相应的权限, 必须具备读权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -468,7 +830,7 @@ public class ResourceService {
   public Resource getResource(User operator, String projectName, String name, HttpServletResponse response) {
 
     // 判断是否具备相应的权限, 必须具备读权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -495,31 +857,36 @@ public class ResourceService {
   }
 
   /**
-   * 下载资源文件
+   * 下载资源文件, hdfs 的输入流直接写到响应中, 支持单段的 Range 请求 <p>
+   *
+   * ETag 由修改时间和长度组成, If-Range 不匹配时返回整个文件.
    *
    * @param operator
    * @param projectName
    * @param name
+   * @param rangeHeader
+   * @param ifRange
    * @param response
-   * @return
    */
-  public org.springframework.core.io.Resource downloadResource(User operator,
-                                                               String projectName,
-                                                               String name,
-                                                               HttpServletResponse response) {
+  public void downloadResource(User operator,
+                               String projectName,
+                               String name,
+                               String rangeHeader,
+                               String ifRange,
+                               HttpServletResponse response) {
     // 判断是否具备相应的权限, 必须具备读权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
       response.setStatus(HttpStatus.SC_BAD_REQUEST);
-      return null;
+      return;
     }
 
     if (!projectService.hasReadPerm(operator.getId(), project)) {
       logger.error("User {} has no right permission for the project {}", operator.getName(), projectName);
       response.setStatus(HttpStatus.SC_UNAUTHORIZED);
-      return null;
+      return;
     }
 
     // 下载文件
@@ -527,16 +894,51 @@ public class ResourceService {
 
     if (resource == null) {
       logger.error("Download file not exist, project {}, resource {}", projectName, name);
-      return null;
+      response.setStatus(HttpStatus.SC_NO_CONTENT);
+      return;
     }
 
-    String localFilename = BaseConfig.getLocalDownloadFilename(project.getId(), name);
     String hdfsFilename = BaseConfig.getHdfsResourcesFilename(project.getId(), name);
+    FileStatus fileStatus = HdfsClient.getInstance().getFileStatus(hdfsFilename);
+
+    long length = fileStatus.getLen();
+    String etag = "\"" + fileStatus.getModificationTime() + "-" + length + "\"";
+
+    ByteRange range = null;
 
-    HdfsClient.getInstance().copyHdfsToLocal(hdfsFilename, localFilename, false, true);
+    if (ifRange == null || StringUtils.equals(ifRange, etag)) {
+      try {
+        range = ByteRange.parseRange(rangeHeader, length);
+      } catch (IllegalArgumentException e) {
+        logger.error("Download resource {} range {} not satisfiable, length: {}", name, rangeHeader, length);
+        response.setHeader("Content-Range", "bytes */" + length);
+        response.setStatus(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+    }
 
-    org.springframework.core.io.Resource file = fileSystemStorageService.loadAsResource(localFilename);
+    long offset = (range == null) ? 0 : range.getStart();
+    long count = (range == null) ? length : range.getLength();
 
-    return file;
+    response.setContentType("application/octet-stream");
+    response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "\"");
+    response.setHeader("Accept-Ranges", "bytes");
+    response.setHeader("ETag", etag);
+    response.setDateHeader("Last-Modified", fileStatus.getModificationTime());
+    response.setHeader("Content-Length", Long.toString(count));
+
+    if (range != null) {
+      response.setHeader("Content-Range", range.toContentRange());
+      response.setStatus(HttpStatus.SC_PARTIAL_CONTENT);
+    } else {
+      response.setStatus(HttpStatus.SC_OK);
+    }
+
+    try {
+      HdfsTransfer.getInstance().download(hdfsFilename, offset, count, response.getOutputStream());
+    } catch (IOException e) {
+      logger.error("Download hdfs file {} error", hdfsFilename, e);
+      throw new HdfsException("Download hdfs file error", e);
+    }
   }
 }
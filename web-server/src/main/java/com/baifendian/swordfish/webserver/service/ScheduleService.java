@@ -18,7 +18,6 @@ package com.baifendian.swordfish.webserver.service;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.enums.*;
 import com.baifendian.swordfish.dao.mapper.MasterServerMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.mapper.ScheduleMapper;
 import com.baifendian.swordfish.dao.model.*;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
@@ -47,7 +46,7 @@ public class ScheduleService {
   private ScheduleMapper scheduleMapper;
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
@@ -76,7 +75,7 @@ public class ScheduleService {
    */
   @Transactional(value = "TransactionManager", rollbackFor = Exception.class)
   public Schedule createSchedule(User operator, String projectName, String workflowName, String schedule, NotifyType notifyType, String notifyMails, int maxTryTimes, FailurePolicyType failurePolicy, String depWorkflows, DepPolicyType depPolicyType, int timeout, HttpServletResponse response){
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -159,7 +158,7 @@ public class ScheduleService {
    */
   @Transactional(value = "TransactionManager", rollbackFor = Exception.class)
   public Schedule patchSchedule(User operator, String projectName, String workflowName, String schedule, NotifyType notifyType, String notifyMails, Integer maxTryTimes, FailurePolicyType failurePolicy, String depWorkflows, DepPolicyType depPolicyType, Integer timeout, ScheduleStatus scheduleStatus, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -260,7 +259,7 @@ public class ScheduleService {
    * 设置一个调度的上下线
    */
   public void postScheduleStatus(User operator,String projectName,String workflowName,String scheduleStatus,HttpServletResponse response) throws Exception{
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -364,7 +363,7 @@ public class ScheduleService {
    * @return
    */
   public Schedule querySchedule(User operator, String projectName, String workflowName, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       return null;
@@ -394,7 +393,7 @@ public class ScheduleService {
    * @return
    */
   public List<Schedule> queryAllSchedule(User operator, String projectName, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       return null;
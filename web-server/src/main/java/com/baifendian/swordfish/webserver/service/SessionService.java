@@ -44,6 +44,9 @@ public class SessionService {
   @Autowired
   private SessionMapper sessionMapper;
 
+  @Autowired
+  private AuthCache authCache;
+
   /**
    * 从请求中获取用户的 session
    *
@@ -72,7 +75,7 @@ public class SessionService {
 
     logger.info("session: {} from ip: {}", sessionId, ip);
 
-    return sessionMapper.queryByIdAndIp(sessionId, ip);
+    return authCache.getSession(sessionId, ip);
   }
 
   /**
@@ -98,6 +101,7 @@ public class SessionService {
         return new UserSessionData(session.getId(), user);
       } else { // 有效期外, 则删除
         sessionMapper.deleteById(session.getId());
+        authCache.invalidateSession(session.getId(), ip);
       }
     }
 
@@ -15,8 +15,10 @@
  */
 package com.baifendian.swordfish.webserver.service;
 
-import com.baifendian.swordfish.dao.mapper.ExecutionFlowMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
+import com.baifendian.swordfish.dao.FlowDao;
+import com.baifendian.swordfish.dao.enums.UserRoleType;
+import com.baifendian.swordfish.dao.mapper.ExecutionStatMapper;
+import com.baifendian.swordfish.dao.mapper.ExecutionStatMapperProvider;
 import com.baifendian.swordfish.dao.model.*;
 import com.baifendian.swordfish.webserver.dto.StatResponse;
 import org.apache.commons.httpclient.HttpStatus;
@@ -27,33 +29,43 @@ import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * 执行统计, 查询的是执行结束时增量更新的汇总表 (execution_stats), 代价和历史数据量无关 <p>
+ */
 @Service
 public class StatService {
 
   private static Logger logger = LoggerFactory.getLogger(StatService.class.getName());
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
 
   @Autowired
-  private ExecutionFlowMapper executionFlowMapper;
+  private ExecutionStatMapper executionStatMapper;
+
+  @Autowired
+  private FlowDao flowDao;
 
   /**
-   * 查询状态信息
+   * 查询状态信息, 结束的执行来自汇总表, 未结束的执行实时统计
    *
    * @param operator
    * @param projectName
    * @param startTime
    * @param endTime
+   * @param hourly      是否按小时统计, 否则按天
    * @param response
    */
-  public List<StatResponse> queryStates(User operator, String projectName, long startTime, long endTime, HttpServletResponse response) {
+  public List<StatResponse> queryStates(User operator, String projectName, long startTime, long endTime, boolean hourly, HttpServletResponse response) {
 
     long timeInt = (endTime - startTime)/86400000;
     if (timeInt > 30){
@@ -66,7 +78,7 @@ public class StatService {
     Date endDate = new Date(endTime);
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -80,17 +92,71 @@ public class StatService {
       return null;
     }
 
-    List<ExecutionState> executionStateList = executionFlowMapper.selectStateByProject(project.getId(),startDate,endDate);
+    String format = hourly ? ExecutionStatMapperProvider.HOUR_FORMAT : ExecutionStatMapperProvider.DAY_FORMAT;
+
+    List<ExecutionState> finishedStates = executionStatMapper.selectStateByProject(project.getId(), startDate, endDate, format);
+    List<ExecutionState> liveStates = executionStatMapper.selectLiveStateByProject(project.getId(), startDate, endDate, format);
 
     List<StatResponse> statResponseList = new ArrayList<>();
 
-    for (ExecutionState executionState:executionStateList){
+    for (ExecutionState executionState : mergeStates(finishedStates, liveStates)) {
       statResponseList.add(new StatResponse(executionState));
     }
 
     return statResponseList;
   }
 
+  /**
+   * 按时间合并结束和未结束的统计, 结果按时间排序
+   */
+  private static List<ExecutionState> mergeStates(List<ExecutionState> finishedStates, List<ExecutionState> liveStates) {
+    Map<Date, ExecutionState> states = new TreeMap<>();
+
+    for (ExecutionState state : finishedStates) {
+      states.put(state.getDay(), state);
+    }
+
+    for (ExecutionState live : liveStates) {
+      ExecutionState state = states.get(live.getDay());
+
+      if (state == null) {
+        states.put(live.getDay(), live);
+        continue;
+      }
+
+      state.setInit(state.getInit() + live.getInit());
+      state.setWaitingDep(state.getWaitingDep() + live.getWaitingDep());
+      state.setWaitingRes(state.getWaitingRes() + live.getWaitingRes());
+      state.setRunning(state.getRunning() + live.getRunning());
+    }
+
+    return new ArrayList<>(states.values());
+  }
+
+  /**
+   * 返回 date 所在的那一天的开始时间
+   */
+  private static Date truncateToDay(Date date) {
+    Calendar calendar = Calendar.getInstance();
+
+    calendar.setTime(date);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+
+    return calendar.getTime();
+  }
+
+  private static Date nextDay(Date date) {
+    Calendar calendar = Calendar.getInstance();
+
+    calendar.setTime(date);
+    calendar.add(Calendar.DAY_OF_MONTH, 1);
+
+    return calendar.getTime();
+  }
+
   /**
    * 返回查询排行
    *
@@ -105,7 +171,7 @@ public class StatService {
     Date datetime = new Date(date);
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -119,7 +185,9 @@ public class StatService {
       return null;
     }
 
-    return executionFlowMapper.selectConsumesByProject(project.getId(),num,datetime);
+    Date startDate = truncateToDay(datetime);
+
+    return executionStatMapper.selectConsumesByProject(project.getId(), num, startDate, nextDay(startDate));
   }
 
   /**
@@ -135,7 +203,7 @@ public class StatService {
     Date datetime = new Date(date);
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -149,6 +217,38 @@ public class StatService {
       return null;
     }
 
-    return executionFlowMapper.selectErrorsByProject(project.getId(),num,datetime);
+    Date startDate = truncateToDay(datetime);
+
+    return executionStatMapper.selectErrorsByProject(project.getId(), num, startDate, nextDay(startDate));
+  }
+
+  /**
+   * 从执行历史重建统计, 用于上线时回填历史数据或者修正统计, 需要是项目所有者或者管理员
+   *
+   * @param operator
+   * @param projectName
+   * @param startTime
+   * @param endTime
+   * @param response
+   */
+  public void rebuildStats(User operator, String projectName, long startTime, long endTime, HttpServletResponse response) {
+    // 查看是否对项目具备相应的权限
+    Project project = authCache.getProject(projectName);
+
+    if (project == null) {
+      logger.error("Project does not exist: {}", projectName);
+      response.setStatus(HttpStatus.SC_NOT_MODIFIED);
+      return;
+    }
+
+    if (operator.getRole() != UserRoleType.ADMIN_USER && operator.getId() != project.getOwnerId()) {
+      logger.error("User {} has no right permission for the project {} to rebuild stats", operator.getName(), projectName);
+      response.setStatus(HttpStatus.SC_UNAUTHORIZED);
+      return;
+    }
+
+    int count = flowDao.rebuildExecutionStats(project.getId(), new Date(startTime), new Date(endTime));
+
+    logger.info("Rebuild stats of project {} from {} to {}, {} execs", projectName, new Date(startTime), new Date(endTime), count);
   }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 有容量上限的 TTL 缓存, 超过容量时淘汰最久没有访问的项 <p>
+ *
+ * 加载在锁外进行; 加载期间发生的失效会使这次加载的结果不被缓存, 避免写操作之后又缓存了旧值. null 不会被缓存.
+ */
+public class TtlCache<K, V> {
+
+  private final String name;
+
+  private final int maxSize;
+
+  private final long ttlMillis;
+
+  private final Map<K, Entry<V>> entries;
+
+  /**
+   * 每次失效时增加, 用于判断加载期间是否发生了失效
+   */
+  private long generation = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong loadNanos = new AtomicLong();
+
+  public TtlCache(String name, int maxSize, long ttl, TimeUnit unit) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.ttlMillis = unit.toMillis(ttl);
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > TtlCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * 获取缓存的值, 不存在或者已经过期时调用 loader 加载 <p>
+   *
+   * @param key    key
+   * @param loader 加载函数, 返回 null 时不缓存
+   * @return 值
+   */
+  public V get(K key, Function<K, V> loader) {
+    long gen;
+
+    synchronized (this) {
+      Entry<V> entry = entries.get(key);
+
+      if (entry != null) {
+        if (entry.expireAt > System.currentTimeMillis()) {
+          hits.incrementAndGet();
+          return entry.value;
+        }
+
+        entries.remove(key);
+      }
+
+      gen = generation;
+    }
+
+    misses.incrementAndGet();
+
+    long start = System.nanoTime();
+    V value = loader.apply(key);
+    loadNanos.addAndGet(System.nanoTime() - start);
+
+    if (value != null) {
+      synchronized (this) {
+        if (gen == generation) {
+          entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+      }
+    }
+
+    return value;
+  }
+
+  public synchronized void invalidate(K key) {
+    generation++;
+    entries.remove(key);
+  }
+
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * 命中率, 没有访问时为 0
+   */
+  public double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+
+    return (total == 0) ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * 平均每次加载的耗时, 单位: 微秒
+   */
+  public double getAverageLoadMicros() {
+    long missCount = misses.get();
+
+    return (missCount == 0) ? 0 : loadNanos.get() / 1000.0 / missCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: size=%d, hits=%d, misses=%d, hitRatio=%.3f, avgLoad=%.1fus",
+        name, size(), getHitCount(), getMissCount(), getHitRatio(), getAverageLoadMicros());
+  }
+
+  private static class Entry<V> {
+    private final V value;
+
+    private final long expireAt;
+
+    Entry(V value, long expireAt) {
+      this.value = value;
+      this.expireAt = expireAt;
+    }
+  }
+}
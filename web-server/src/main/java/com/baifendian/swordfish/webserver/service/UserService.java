@@ -42,6 +42,9 @@ public class UserService {
   @Autowired
   private UserMapper userMapper;
 
+  @Autowired
+  private AuthCache authCache;
+
   @Autowired
   private ProjectMapper projectMapper;
 
@@ -174,6 +177,7 @@ public class UserService {
     user.setModifyTime(now);
 
     int count = userMapper.update(user);
+    authCache.invalidateUser(user.getId());
 
     if (count <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -216,6 +220,7 @@ public class UserService {
     }
 
     int count = userMapper.delete(name);
+    authCache.invalidateAllUsers();
 
     if (count <= 0) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
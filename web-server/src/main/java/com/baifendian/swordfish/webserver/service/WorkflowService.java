@@ -19,7 +19,6 @@ import com.baifendian.swordfish.common.utils.graph.Graph;
 import com.baifendian.swordfish.dao.FlowDao;
 import com.baifendian.swordfish.dao.mapper.FlowNodeMapper;
 import com.baifendian.swordfish.dao.mapper.ProjectFlowMapper;
-import com.baifendian.swordfish.dao.mapper.ProjectMapper;
 import com.baifendian.swordfish.dao.mapper.ResourceMapper;
 import com.baifendian.swordfish.dao.model.*;
 import com.baifendian.swordfish.dao.utils.json.JsonUtil;
@@ -53,7 +52,7 @@ public class WorkflowService {
   private FlowNodeMapper flowNodeMapper;
 
   @Autowired
-  private ProjectMapper projectMapper;
+  private AuthCache authCache;
 
   @Autowired
   private ProjectService projectService;
@@ -81,7 +80,7 @@ public class WorkflowService {
   public ProjectFlow createWorkflow(User operator, String projectName, String name, String desc, String proxyUser, String queue, String data, MultipartFile file, HttpServletResponse response) {
 
     // 查看是否对项目具备相应的权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -216,7 +215,7 @@ public class WorkflowService {
   public ProjectFlow patchWorkflow(User operator, String projectName, String name, String desc, String proxyUser, String queue, String data, MultipartFile file, HttpServletResponse response) {
 
     // 查询项目是否存在以及是否具备相应权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       logger.error("Project does not exist: {}", projectName);
@@ -318,7 +317,7 @@ public class WorkflowService {
   public void deleteProjectFlow(User operator, String projectName, String name, HttpServletResponse response) {
 
     // 查询项目是否存在以及是否具备相应权限
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -338,6 +337,7 @@ public class WorkflowService {
     }
 
     projectFlowMapper.deleteByProjectAndName(project.getId(), name);
+    flowDao.invalidateCompiledFlow(projectFlow.getId());
 
     // TODO 删除调度，删除日志等
 
@@ -353,7 +353,7 @@ public class WorkflowService {
    * @param proxyUser
    */
   public void modifyWorkflowConf(User operator, String projectName, String queue, String proxyUser, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -378,7 +378,7 @@ public class WorkflowService {
    */
   public List<ProjectFlow> queryAllProjectFlow(User operator, String projectName, HttpServletResponse response) {
 
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -405,7 +405,7 @@ public class WorkflowService {
    */
   public ProjectFlow queryProjectFlow(User operator, String projectName, String name, HttpServletResponse response) {
 
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -428,7 +428,7 @@ public class WorkflowService {
    * @return
    */
   public Resource downloadProjectFlowFile(User operator, String projectName, String name, HttpServletResponse response) {
-    Project project = projectMapper.queryByName(projectName);
+    Project project = authCache.getProject(projectName);
 
     if (project == null) {
       response.setStatus(HttpStatus.SC_NOT_MODIFIED);
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service.storage;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * http 请求中的字节范围, 包括上传使用的 Content-Range 和下载使用的 Range <p>
+ *
+ * start, end 都包含在范围内; 只查询上传进度时 ("bytes * /total") start, end 为 -1.
+ */
+public class ByteRange {
+
+  private static final String BYTES_UNIT = "bytes";
+
+  private final long start;
+
+  private final long end;
+
+  /**
+   * 文件总长度, 未知时为 -1
+   */
+  private final long total;
+
+  public ByteRange(long start, long end, long total) {
+    this.start = start;
+    this.end = end;
+    this.total = total;
+  }
+
+  /**
+   * 解析上传请求的 Content-Range, 格式为 "bytes start-end/total" 或者 "bytes * /total" (中间没有空格) <p>
+   *
+   * @param header Content-Range
+   * @return 字节范围
+   * @throws IllegalArgumentException 格式不正确
+   */
+  public static ByteRange parseContentRange(String header) {
+    String value = StringUtils.trimToEmpty(header);
+
+    if (!value.startsWith(BYTES_UNIT + " ")) {
+      throw new IllegalArgumentException("Argument is not valid, Content-Range: " + header);
+    }
+
+    value = value.substring(BYTES_UNIT.length() + 1).trim();
+    int slash = value.indexOf('/');
+
+    try {
+      if (slash < 0) {
+        throw new IllegalArgumentException("Argument is not valid, Content-Range: " + header);
+      }
+
+      long total = Long.parseLong(value.substring(slash + 1).trim());
+      String range = value.substring(0, slash).trim();
+
+      if (range.equals("*")) {
+        return new ByteRange(-1, -1, total);
+      }
+
+      int dash = range.indexOf('-');
+      long start = Long.parseLong(range.substring(0, dash).trim());
+      long end = Long.parseLong(range.substring(dash + 1).trim());
+
+      if (start < 0 || end < start || end >= total) {
+        throw new IllegalArgumentException("Argument is not valid, Content-Range: " + header);
+      }
+
+      return new ByteRange(start, end, total);
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Argument is not valid, Content-Range: " + header);
+    }
+  }
+
+  /**
+   * 解析下载请求的 Range, 支持 "bytes=start-end", "bytes=start-" 和 "bytes=-suffixLength" <p>
+   *
+   * 多段的 Range 不支持, 返回 null, 由调用者返回整个文件.
+   *
+   * @param header Range, 为空时返回 null
+   * @param length 文件长度
+   * @return 字节范围, 不合法或者不支持时返回 null
+   * @throws IllegalArgumentException 范围在文件之外, 应该返回 416
+   */
+  public static ByteRange parseRange(String header, long length) {
+    String value = StringUtils.trimToEmpty(header);
+
+    if (!value.startsWith(BYTES_UNIT + "=") || value.indexOf(',') >= 0) {
+      return null;
+    }
+
+    String range = value.substring(BYTES_UNIT.length() + 1).trim();
+    int dash = range.indexOf('-');
+
+    if (dash < 0) {
+      return null;
+    }
+
+    long start;
+    long end;
+
+    try {
+      String first = range.substring(0, dash).trim();
+      String last = range.substring(dash + 1).trim();
+
+      if (first.isEmpty()) {
+        // 最后 n 个字节
+        long suffixLength = Long.parseLong(last);
+        if (suffixLength <= 0) {
+          throw new IllegalArgumentException("Range not satisfiable: " + header);
+        }
+        start = Math.max(0, length - suffixLength);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(first);
+        end = length - 1;
+
+        if (!last.isEmpty()) {
+          long lastPos = Long.parseLong(last);
+          // 语法上不合法的范围直接忽略
+          if (lastPos < start) {
+            return null;
+          }
+          end = Math.min(lastPos, end);
+        }
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+
+    if (start >= length || end < start) {
+      throw new IllegalArgumentException("Range not satisfiable: " + header);
+    }
+
+    return new ByteRange(start, end, length);
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * 是否只是查询上传进度
+   */
+  public boolean isQuery() {
+    return start < 0;
+  }
+
+  /**
+   * 是否是最后一段
+   */
+  public boolean isLast() {
+    return end + 1 == total;
+  }
+
+  /**
+   * 下载时的 Content-Range 响应头
+   */
+  public String toContentRange() {
+    return BYTES_UNIT + " " + start + "-" + end + "/" + total;
+  }
+
+  /**
+   * 上传时告诉客户端已经收到的范围, 即 Range 响应头, length 为 0 时返回 null
+   */
+  public static String receivedRange(long length) {
+    return (length <= 0) ? null : BYTES_UNIT + "=0-" + (length - 1);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import com.baifendian.swordfish.dao.model.ExecutionFlow;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExecCursorTest {
+
+  @Test
+  public void testRoundTrip() {
+    ExecutionFlow executionFlow = new ExecutionFlow();
+    executionFlow.setId(42);
+    executionFlow.setScheduleTime(new Date(1500000000123L));
+
+    ExecCursor execCursor = ExecCursor.decode(ExecCursor.encode(executionFlow));
+
+    assertEquals(1500000000123L, execCursor.getScheduleTime().getTime());
+    assertEquals(42, execCursor.getExecId());
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(ExecCursor.decode(null));
+    assertNull(ExecCursor.decode(""));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalid() {
+    ExecCursor.decode("not-a-cursor");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotBase64() {
+    ExecCursor.decode("%%%");
+  }
+}
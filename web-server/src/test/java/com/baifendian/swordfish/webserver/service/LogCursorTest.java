@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LogCursorTest {
+
+  @Test
+  public void testRoundTrip() {
+    LogCursor cursor = LogCursor.decode(LogCursor.encode(new LogCursor(-5L, 1500000000123456789L, new String[]{"log#AV1", "", "日志#2"})));
+
+    assertEquals(-5L, cursor.getFrom());
+    assertEquals(1500000000123456789L, cursor.getHigh());
+    assertArrayEquals(new String[]{"log#AV1", "", "日志#2"}, cursor.getSeen());
+  }
+
+  @Test
+  public void testHashCursor() {
+    // 之前记录 _uid 的 hash 的游标, 仍然可以继续读取
+    ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 4);
+    buffer.put((byte) 2).putLong(100L).putLong(200L).putInt("a".hashCode());
+    LogCursor cursor = LogCursor.decode(Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array()));
+
+    assertEquals(100L, cursor.getFrom());
+    assertEquals(200L, cursor.getHigh());
+    assertEquals(0, cursor.getSeen().length);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(LogCursor.decode(null));
+    assertNull(LogCursor.decode(""));
+  }
+
+  @Test
+  public void testLegacy() {
+    String legacy = Base64.getUrlEncoder().withoutPadding().encodeToString("123:log#AV1:x".getBytes(StandardCharsets.UTF_8));
+    LogCursor cursor = LogCursor.decode(legacy);
+
+    assertEquals(123L, cursor.getFrom());
+    assertArrayEquals(new String[]{"log#AV1:x"}, cursor.getSeen());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalid() {
+    LogCursor.decode("not-a-cursor");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotBase64() {
+    LogCursor.decode("%%%");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() {
+    LogCursor.decode(Base64.getUrlEncoder().encodeToString(new byte[]{2, 0, 0}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedUid() {
+    ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 2 + 1);
+    buffer.put((byte) 3).putLong(100L).putLong(200L).putShort((short) 5).put((byte) 'a');
+    LogCursor.decode(Base64.getUrlEncoder().encodeToString(buffer.array()));
+  }
+
+  @Test
+  public void testHashCollision() {
+    // "Aa" 和 "BB" 的 hashCode 相同, 但是不同的日志
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+
+    List<Integer> accepted = new ArrayList<>();
+    LogCursor cursor = LogCursor.advance(null, sorts(100, "BB"), 10, accepted);
+
+    // "Aa" 较晚才被索引, 排在已返回的 "BB" 之前, 不能当作已返回
+    accepted.clear();
+    cursor = LogCursor.decode(LogCursor.encode(cursor));
+    LogCursor.advance(cursor, sorts(100, "Aa", 100, "BB"), 10, accepted);
+    assertEquals(Arrays.asList(0), accepted);
+  }
+
+  @Test
+  public void testLateLogReturned() {
+    List<Integer> accepted = new ArrayList<>();
+    LogCursor cursor = LogCursor.advance(null, sorts(100, "a", 200, "b", 300, "c"), 10, accepted);
+    assertEquals(Arrays.asList(0, 1, 2), accepted);
+
+    // "x" 在 "c" 之后才被索引, 但时间更早
+    accepted.clear();
+    cursor = LogCursor.decode(LogCursor.encode(cursor));
+    LogCursor next = LogCursor.advance(cursor, sorts(100, "a", 150, "x", 200, "b", 300, "c"), 10, accepted);
+    assertEquals(Arrays.asList(1), accepted);
+
+    // 再次读取时不重复
+    accepted.clear();
+    assertSame(next, LogCursor.advance(next, sorts(100, "a", 150, "x", 200, "b", 300, "c"), 10, accepted));
+    assertEquals(0, accepted.size());
+  }
+
+  @Test
+  public void testSizeLimit() {
+    List<Integer> accepted = new ArrayList<>();
+    LogCursor cursor = LogCursor.advance(null, sorts(100, "a", 200, "b", 300, "c"), 2, accepted);
+    assertEquals(Arrays.asList(0, 1), accepted);
+    assertEquals(200, cursor.getHigh());
+
+    accepted.clear();
+    LogCursor.advance(cursor, sorts(100, "a", 200, "b", 300, "c"), 2, accepted);
+    assertEquals(Arrays.asList(2), accepted);
+  }
+
+  @Test
+  public void testWindow() {
+    long late = LogCursor.WINDOW * 2;
+
+    List<Integer> accepted = new ArrayList<>();
+    LogCursor cursor = LogCursor.advance(null, sorts(100, "a", late, "b"), 10, accepted);
+
+    // 早于窗口的不再读取, 也不记录
+    assertEquals(late - LogCursor.WINDOW, cursor.getFrom());
+    assertArrayEquals(new String[]{"b"}, cursor.getSeen());
+    assertEquals(late - LogCursor.WINDOW, cursor.searchAfter()[0]);
+  }
+
+  @Test
+  public void testMaxSeen() {
+    List<Object[]> sortValues = new ArrayList<>();
+    for (int i = 0; i < LogCursor.MAX_SEEN * 2; i++) {
+      sortValues.add(new Object[]{(long) i, "uid" + i});
+    }
+
+    List<Integer> accepted = new ArrayList<>();
+    LogCursor cursor = LogCursor.advance(null, sortValues, sortValues.size(), accepted);
+
+    assertEquals(sortValues.size(), accepted.size());
+    assertEquals(LogCursor.MAX_SEEN, cursor.getSeen().length);
+    assertEquals(LogCursor.MAX_SEEN, cursor.getFrom());
+
+    // 窗口内的都已返回
+    accepted.clear();
+    LogCursor.advance(cursor, sortValues.subList(LogCursor.MAX_SEEN, sortValues.size()), 10, accepted);
+    assertEquals(0, accepted.size());
+  }
+
+  private static List<Object[]> sorts(Object... values) {
+    List<Object[]> sortValues = new ArrayList<>();
+    for (int i = 0; i < values.length; i += 2) {
+      sortValues.add(new Object[]{((Number) values[i]).longValue(), values[i + 1]});
+    }
+    return sortValues;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TtlCacheTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final Function<String, String> loader = key -> {
+    loads.incrementAndGet();
+    return key.startsWith("null") ? null : key + "_" + loads.get();
+  };
+
+  @Test
+  public void testHitAndMiss() {
+    TtlCache<String, String> cache = new TtlCache<>("test", 10, 1, TimeUnit.MINUTES);
+
+    assertEquals("a_1", cache.get("a", loader));
+    assertEquals("a_1", cache.get("a", loader));
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5, cache.getHitRatio(), 0.001);
+  }
+
+  @Test
+  public void testNullNotCached() {
+    TtlCache<String, String> cache = new TtlCache<>("test", 10, 1, TimeUnit.MINUTES);
+
+    assertNull(cache.get("null", loader));
+    assertNull(cache.get("null", loader));
+    assertEquals(2, loads.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testExpire() {
+    TtlCache<String, String> cache = new TtlCache<>("test", 10, 0, TimeUnit.SECONDS);
+
+    assertEquals("a_1", cache.get("a", loader));
+    assertEquals("a_2", cache.get("a", loader));
+  }
+
+  @Test
+  public void testInvalidate() {
+    TtlCache<String, String> cache = new TtlCache<>("test", 10, 1, TimeUnit.MINUTES);
+
+    cache.get("a", loader);
+    cache.get("b", loader);
+    cache.invalidate("a");
+    assertEquals("a_3", cache.get("a", loader));
+    assertEquals("b_2", cache.get("b", loader));
+
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidateDuringLoad() {
+    final TtlCache<String, String> cache = new TtlCache<>("test", 10, 1, TimeUnit.MINUTES);
+
+    // 加载期间发生失效, 加载的结果不缓存
+    assertEquals("a", cache.get("a", key -> {
+      cache.invalidate(key);
+      return key;
+    }));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEvict() {
+    TtlCache<String, String> cache = new TtlCache<>("test", 2, 1, TimeUnit.MINUTES);
+
+    cache.get("a", loader);
+    cache.get("b", loader);
+    cache.get("a", loader);
+    cache.get("c", loader);
+
+    assertEquals(2, cache.size());
+    // b 最久没有访问, 被淘汰
+    assertEquals("b_4", cache.get("b", loader));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 Baifendian Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baifendian.swordfish.webserver.service.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+
+  @Test
+  public void testParseContentRange() {
+    ByteRange range = ByteRange.parseContentRange("bytes 100-199/300");
+
+    assertEquals(100, range.getStart());
+    assertEquals(199, range.getEnd());
+    assertEquals(100, range.getLength());
+    assertFalse(range.isLast());
+
+    assertTrue(ByteRange.parseContentRange("bytes 200-299/300").isLast());
+    assertTrue(ByteRange.parseContentRange("bytes */300").isQuery());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseContentRangeOutOfTotal() {
+    ByteRange.parseContentRange("bytes 200-300/300");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseContentRangeInvalid() {
+    ByteRange.parseContentRange("items 0-1/2");
+  }
+
+  @Test
+  public void testParseRange() {
+    ByteRange range = ByteRange.parseRange("bytes=10-19", 100);
+    assertEquals("bytes 10-19/100", range.toContentRange());
+
+    range = ByteRange.parseRange("bytes=90-", 100);
+    assertEquals("bytes 90-99/100", range.toContentRange());
+
+    range = ByteRange.parseRange("bytes=-30", 100);
+    assertEquals("bytes 70-99/100", range.toContentRange());
+
+    range = ByteRange.parseRange("bytes=50-1000", 100);
+    assertEquals("bytes 50-99/100", range.toContentRange());
+
+    range = ByteRange.parseRange("bytes=-1000", 100);
+    assertEquals("bytes 0-99/100", range.toContentRange());
+  }
+
+  @Test
+  public void testParseRangeIgnored() {
+    assertNull(ByteRange.parseRange(null, 100));
+    assertNull(ByteRange.parseRange("bytes=0-1,5-6", 100));
+    assertNull(ByteRange.parseRange("bytes=20-10", 100));
+    assertNull(ByteRange.parseRange("bytes=a-b", 100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseRangeNotSatisfiable() {
+    ByteRange.parseRange("bytes=100-", 100);
+  }
+
+  @Test
+  public void testReceivedRange() {
+    assertNull(ByteRange.receivedRange(0));
+    assertEquals("bytes=0-99", ByteRange.receivedRange(100));
+  }
+}